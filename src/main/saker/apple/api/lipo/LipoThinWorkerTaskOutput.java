@@ -0,0 +1,24 @@
+package saker.apple.api.lipo;
+
+import java.util.NavigableMap;
+
+import saker.build.file.path.SakerPath;
+
+/**
+ * Output of the operation that extracts the architectures of an universal file.
+ */
+public interface LipoThinWorkerTaskOutput {
+	/**
+	 * Gets the path of the output directory that contains the extracted files.
+	 *
+	 * @return The absolute execution path.
+	 */
+	public SakerPath getOutputDirectory();
+
+	/**
+	 * Gets the paths of the extracted files mapped to their architectures.
+	 *
+	 * @return An unmodifiable map of absolute execution paths.
+	 */
+	public NavigableMap<String, SakerPath> getPaths();
+}
@@ -0,0 +1,34 @@
+package saker.apple.api.plist;
+
+import java.util.NavigableMap;
+
+import saker.build.file.path.SakerPath;
+
+/**
+ * Output of the batch plist converting task.
+ */
+public interface BatchConvertPlistWorkerTaskOutput {
+	/**
+	 * Gets the path of the output directory that contains the converted plists.
+	 * 
+	 * @return The absolute execution path.
+	 */
+	public SakerPath getOutputDirectory();
+
+	/**
+	 * Gets the mappings of the converted plists.
+	 * <p>
+	 * The returned map has relative path keys which specify the location of the file in the output directory. The
+	 * associated values are the absolute execution paths of the converted files.
+	 * 
+	 * @return An unmodifiable map.
+	 */
+	public NavigableMap<SakerPath, SakerPath> getMappings();
+
+	/**
+	 * Gets the format identifier of the output plists.
+	 * 
+	 * @return The format.
+	 */
+	public String getFormat();
+}
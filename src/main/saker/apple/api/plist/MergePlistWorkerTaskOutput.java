@@ -0,0 +1,22 @@
+package saker.apple.api.plist;
+
+import saker.build.file.path.SakerPath;
+
+/**
+ * Output of the plist merging task.
+ */
+public interface MergePlistWorkerTaskOutput {
+	/**
+	 * Gets the path to the merged output plist.
+	 * 
+	 * @return The absolute execution path.
+	 */
+	public SakerPath getPath();
+
+	/**
+	 * Gets the format identifier of the output plist.
+	 * 
+	 * @return The format.
+	 */
+	public String getFormat();
+}
@@ -0,0 +1,29 @@
+package saker.apple.api.strip;
+
+import java.util.NavigableMap;
+
+import saker.build.file.path.SakerPath;
+
+/**
+ * Output of the batch strip task.
+ * <p>
+ * Clients shouldn't implement this interface.
+ */
+public interface BatchStripWorkerTaskOutput {
+	/**
+	 * Gets the path of the output directory that contains the stripped binaries.
+	 * 
+	 * @return The absolute execution path.
+	 */
+	public SakerPath getOutputDirectory();
+
+	/**
+	 * Gets the mappings of the stripped binaries.
+	 * <p>
+	 * The returned map has relative path keys which specify the location of the file in the output directory. The
+	 * associated values are the absolute execution paths of the stripped files.
+	 * 
+	 * @return An unmodifiable map.
+	 */
+	public NavigableMap<SakerPath, SakerPath> getMappings();
+}
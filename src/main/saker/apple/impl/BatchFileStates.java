@@ -0,0 +1,201 @@
+package saker.apple.impl;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import saker.build.file.SakerDirectory;
+import saker.build.file.SakerFile;
+import saker.build.file.content.ContentDescriptor;
+import saker.build.file.path.SakerPath;
+import saker.build.task.TaskExecutionUtilities;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+
+/**
+ * The states of the output files of a batch worker task that processes its inputs one by one.
+ * <p>
+ * Set as a tagged output of the task, and retrieved in the next build to only process the inputs that changed. The
+ * previous file states are only reused if the configuration that affects all of the outputs (e.g. the output format)
+ * is unchanged.
+ */
+public final class BatchFileStates implements Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private Object configuration;
+	private NavigableMap<SakerPath, FileState> files;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public BatchFileStates() {
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param configuration
+	 *            The configuration that the outputs were produced with. Should implement {@link Object#equals(Object)}
+	 *            and be serializable.
+	 * @param files
+	 *            The states of the files mapped to the relative paths of the inputs.
+	 */
+	public BatchFileStates(Object configuration, NavigableMap<SakerPath, FileState> files) {
+		this.configuration = configuration;
+		this.files = files;
+	}
+
+	public Object getConfiguration() {
+		return configuration;
+	}
+
+	public NavigableMap<SakerPath, FileState> getFiles() {
+		return files;
+	}
+
+	/**
+	 * Gets the file states from the previous build that can be reused with the given configuration.
+	 *
+	 * @param prevstate
+	 *            The state from the previous build or <code>null</code> if not available.
+	 * @param configuration
+	 *            The current configuration.
+	 * @return The reusable file states. Empty if there's no previous state or the configuration changed.
+	 */
+	public static NavigableMap<SakerPath, FileState> getReusableFiles(BatchFileStates prevstate,
+			Object configuration) {
+		if (prevstate == null || !Objects.equals(prevstate.configuration, configuration)) {
+			return Collections.emptyNavigableMap();
+		}
+		return prevstate.files;
+	}
+
+	/**
+	 * Checks if an output file is up to date, and it doesn't need to be produced again.
+	 *
+	 * @param prevfilestate
+	 *            The {@linkplain #getReusableFiles(BatchFileStates, Object) reusable} file state from the previous
+	 *            build, or <code>null</code> if none.
+	 * @param inputcontents
+	 *            The current contents of the input.
+	 * @param outputcontents
+	 *            The current contents of the output file, or <code>null</code> if it doesn't exist.
+	 * @return <code>true</code> if the input and the output are unchanged since the previous build.
+	 */
+	public static boolean isUpToDate(FileState prevfilestate, ContentDescriptor inputcontents,
+			ContentDescriptor outputcontents) {
+		if (prevfilestate == null || outputcontents == null) {
+			return false;
+		}
+		return !inputcontents.isChanged(prevfilestate.inputContents)
+				&& !outputcontents.isChanged(prevfilestate.outputContents);
+	}
+
+	/**
+	 * Gets the relative paths of the outputs from the previous build whose inputs are no longer present.
+	 * <p>
+	 * The outputs are removed regardless of the configuration, as the previous configuration doesn't affect the
+	 * location of the outputs.
+	 *
+	 * @param prevstate
+	 *            The state from the previous build or <code>null</code> if not available.
+	 * @param inputs
+	 *            The relative paths of the current inputs.
+	 * @return The relative paths of the outputs to remove.
+	 */
+	public static NavigableSet<SakerPath> getRemovedFiles(BatchFileStates prevstate, Set<SakerPath> inputs) {
+		NavigableSet<SakerPath> result = new TreeSet<>();
+		if (prevstate == null) {
+			return result;
+		}
+		for (SakerPath prevrelativepath : prevstate.files.keySet()) {
+			if (!inputs.contains(prevrelativepath)) {
+				result.add(prevrelativepath);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes the outputs from the previous build whose inputs are no longer present.
+	 * <p>
+	 * The output directory needs to be synchronized afterwards.
+	 *
+	 * @param taskutils
+	 *            The task utilities.
+	 * @param outputdir
+	 *            The output directory that the relative paths are resolved against.
+	 * @param prevstate
+	 *            The state from the previous build or <code>null</code> if not available.
+	 * @param inputs
+	 *            The relative paths of the current inputs.
+	 */
+	public static void removeOutputsOfRemovedInputs(TaskExecutionUtilities taskutils, SakerDirectory outputdir,
+			BatchFileStates prevstate, Set<SakerPath> inputs) {
+		for (SakerPath prevrelativepath : getRemovedFiles(prevstate, inputs)) {
+			SakerFile prevfile = taskutils.resolveFileAtRelativePath(outputdir, prevrelativepath);
+			if (prevfile != null) {
+				prevfile.remove();
+			}
+		}
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeObject(configuration);
+		SerialUtils.writeExternalMap(out, files);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		configuration = SerialUtils.readExternalObject(in);
+		files = SerialUtils.readExternalSortedImmutableNavigableMap(in);
+	}
+
+	/**
+	 * The state of an output file that is used to determine if it needs to be produced again in the next build.
+	 */
+	public static final class FileState implements Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		private ContentDescriptor inputContents;
+		private ContentDescriptor outputContents;
+
+		/**
+		 * For {@link Externalizable}.
+		 */
+		public FileState() {
+		}
+
+		public FileState(ContentDescriptor inputContents, ContentDescriptor outputContents) {
+			this.inputContents = inputContents;
+			this.outputContents = outputContents;
+		}
+
+		public ContentDescriptor getInputContents() {
+			return inputContents;
+		}
+
+		public ContentDescriptor getOutputContents() {
+			return outputContents;
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			out.writeObject(inputContents);
+			out.writeObject(outputContents);
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			inputContents = SerialUtils.readExternalObject(in);
+			outputContents = SerialUtils.readExternalObject(in);
+		}
+	}
+}
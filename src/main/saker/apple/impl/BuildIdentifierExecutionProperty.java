@@ -0,0 +1,58 @@
+package saker.apple.impl;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.UUID;
+
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.runtime.execution.ExecutionProperty;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+
+/**
+ * Execution property that provides a random identifier that is the same for all tasks during a build execution.
+ * <p>
+ * The property is only used to scope other execution properties to the build, therefore dependencies shouldn't be
+ * reported on it.
+ */
+public class BuildIdentifierExecutionProperty implements ExecutionProperty<UUID>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	public static final BuildIdentifierExecutionProperty INSTANCE = new BuildIdentifierExecutionProperty();
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public BuildIdentifierExecutionProperty() {
+	}
+
+	@Override
+	public UUID getCurrentValue(ExecutionContext executioncontext) throws Exception {
+		return UUID.randomUUID();
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass().getName().hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return ObjectUtils.isSameClass(this, obj);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[]";
+	}
+
+}
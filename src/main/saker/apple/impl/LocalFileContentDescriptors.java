@@ -0,0 +1,90 @@
+package saker.apple.impl;
+
+import java.util.Collection;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import saker.build.file.content.ContentDescriptor;
+import saker.build.file.path.SakerPath;
+import saker.build.runtime.execution.ExecutionProperty;
+import saker.build.task.TaskContext;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.thirdparty.saker.util.thread.ThreadUtils;
+import saker.std.api.util.SakerStandardUtils;
+
+/**
+ * Utility functions for reporting dependencies on local files.
+ * <p>
+ * The content descriptor execution properties created by this class use the same
+ * {@linkplain BuildIdentifierExecutionProperty build identifier}, therefore they are equal for the same path in a
+ * build. The build system computes each execution property only once per build, so a local file that is used by
+ * multiple tasks is only hashed once.
+ */
+public class LocalFileContentDescriptors {
+	private LocalFileContentDescriptors() {
+		throw new UnsupportedOperationException();
+	}
+
+	public static ExecutionProperty<? extends ContentDescriptor> getExecutionProperty(TaskContext taskcontext,
+			SakerPath path) {
+		return SakerStandardUtils.createLocalFileContentDescriptorExecutionProperty(path, getBuildIdentifier(taskcontext));
+	}
+
+	/**
+	 * Gets the content descriptor of the local file and reports an execution dependency on it.
+	 * 
+	 * @param taskcontext
+	 *            The task context.
+	 * @param path
+	 *            The local path of the file.
+	 * @return The content descriptor, or <code>null</code> if the file doesn't exist.
+	 */
+	public static ContentDescriptor getReport(TaskContext taskcontext, SakerPath path) {
+		return taskcontext.getTaskUtilities().getReportExecutionDependency(getExecutionProperty(taskcontext, path));
+	}
+
+	/**
+	 * Gets the content descriptors of the local files and reports execution dependencies on them.
+	 * <p>
+	 * The content descriptors are calculated in parallel. The results are cached for the build, so the following
+	 * {@link #getReport(TaskContext, SakerPath)} calls for the same paths don't recompute them.
+	 * 
+	 * @param taskcontext
+	 *            The task context.
+	 * @param paths
+	 *            The local paths of the files.
+	 * @return The content descriptors mapped to their paths. The value is <code>null</code> for non-existent files.
+	 */
+	public static NavigableMap<SakerPath, ContentDescriptor> getReport(TaskContext taskcontext,
+			Collection<SakerPath> paths) {
+		NavigableMap<SakerPath, ContentDescriptor> result = new TreeMap<>();
+		if (paths.isEmpty()) {
+			return result;
+		}
+		if (paths.size() == 1) {
+			SakerPath path = paths.iterator().next();
+			result.put(path, getReport(taskcontext, path));
+			return result;
+		}
+		UUID buildid = getBuildIdentifier(taskcontext);
+		ThreadUtils.runParallelItems(paths, path -> {
+			ContentDescriptor cd = taskcontext.getTaskUtilities().getReportExecutionDependency(
+					SakerStandardUtils.createLocalFileContentDescriptorExecutionProperty(path, buildid));
+			synchronized (result) {
+				result.put(path, cd);
+			}
+		});
+		return result;
+	}
+
+	private static UUID getBuildIdentifier(TaskContext taskcontext) {
+		try {
+			//don't report a dependency, as the identifier changes in every build
+			return taskcontext.getExecutionContext()
+					.getExecutionPropertyCurrentValue(BuildIdentifierExecutionProperty.INSTANCE);
+		} catch (Exception e) {
+			throw ObjectUtils.sneakyThrow(e);
+		}
+	}
+}
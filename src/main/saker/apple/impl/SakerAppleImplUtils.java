@@ -1,10 +1,22 @@
 package saker.apple.impl;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Predicate;
 
+import saker.build.thirdparty.saker.util.ImmutableUtils;
 import saker.build.thirdparty.saker.util.function.Functionals;
 import saker.nest.version.VersionRange;
+import saker.sdk.support.api.SDKDescription;
+import saker.sdk.support.api.SDKSupportUtils;
+import saker.std.api.file.location.ExecutionFileLocation;
+import saker.std.api.file.location.FileLocation;
 
 public class SakerAppleImplUtils {
 	private SakerAppleImplUtils() {
@@ -40,4 +52,80 @@ public class SakerAppleImplUtils {
 			return false;
 		};
 	}
+
+	/**
+	 * Checks if the input files are accessible when the task that uses them is dispatched to a build cluster.
+	 * <p>
+	 * The contents of the execution files are transferred to the cluster when the task accesses them, therefore they
+	 * can be used on any build machine. Local files refer to the file system of the machine that runs the build, so the
+	 * tasks that use them shouldn't be dispatched.
+	 * 
+	 * @param inputs
+	 *            The input files. <code>null</code> elements are ignored.
+	 * @return <code>true</code> if all inputs are execution files.
+	 */
+	public static boolean isRemoteDispatchableInputs(Iterable<? extends FileLocation> inputs) {
+		for (FileLocation fl : inputs) {
+			if (fl != null && !(fl instanceof ExecutionFileLocation)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the SDK descriptions to the object output.
+	 * <p>
+	 * The SDK names are written as UTF strings instead of serialized objects, which avoids the object stream overhead
+	 * for the keys. Use {@link #readExternalSDKDescriptions(ObjectInput)} to read the map back.
+	 * 
+	 * @param out
+	 *            The object output.
+	 * @param sdkdescriptions
+	 *            The SDK descriptions. May be <code>null</code>.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public static void writeExternalSDKDescriptions(ObjectOutput out,
+			Map<String, ? extends SDKDescription> sdkdescriptions) throws IOException {
+		if (sdkdescriptions == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(sdkdescriptions.size());
+		for (Entry<String, ? extends SDKDescription> entry : sdkdescriptions.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeObject(entry.getValue());
+		}
+	}
+
+	/**
+	 * Reads the SDK descriptions that were written using
+	 * {@link #writeExternalSDKDescriptions(ObjectOutput, Map)}.
+	 * <p>
+	 * The returned map is ordered by the {@linkplain SDKSupportUtils#getSDKNameComparator() SDK name comparator}, and
+	 * the SDK names are interned, as the same few names are present in most of the deserialized task factories.
+	 * 
+	 * @param in
+	 *            The object input.
+	 * @return The unmodifiable SDK descriptions map, or <code>null</code> if <code>null</code> was written.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 * @throws ClassNotFoundException
+	 *             If a description class was not found.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends SDKDescription> NavigableMap<String, T> readExternalSDKDescriptions(ObjectInput in)
+			throws IOException, ClassNotFoundException {
+		int size = in.readInt();
+		if (size < 0) {
+			return null;
+		}
+		TreeMap<String, T> result = new TreeMap<>(SDKSupportUtils.getSDKNameComparator());
+		for (int i = 0; i < size; i++) {
+			String name = in.readUTF().intern();
+			result.put(name, (T) in.readObject());
+		}
+		return ImmutableUtils.unmodifiableNavigableMap(result);
+	}
 }
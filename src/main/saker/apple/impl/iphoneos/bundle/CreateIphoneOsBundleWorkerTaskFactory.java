@@ -13,6 +13,7 @@ import saker.build.runtime.execution.ExecutionContext;
 import saker.build.task.Task;
 import saker.build.task.TaskContext;
 import saker.build.task.TaskFactory;
+import saker.build.task.identifier.TaskIdentifier;
 import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
 import saker.build.thirdparty.saker.util.ImmutableUtils;
 import saker.build.thirdparty.saker.util.SetTransformingNavigableMap;
@@ -26,6 +27,7 @@ public class CreateIphoneOsBundleWorkerTaskFactory implements TaskFactory<Create
 	private static final long serialVersionUID = 1L;
 
 	private TaskFactory<? extends PrepareDirectoryWorkerTaskOutput> prepareTaskFactory;
+	private TaskIdentifier pkgInfoTaskId;
 
 	/**
 	 * For {@link Externalizable}.
@@ -42,6 +44,15 @@ public class CreateIphoneOsBundleWorkerTaskFactory implements TaskFactory<Create
 		this.prepareTaskFactory = prepareTaskFactory;
 	}
 
+	/**
+	 * Sets the identifier of the task that generates the PkgInfo file of the bundle.
+	 * <p>
+	 * The task waits for the generator task before preparing the bundle contents.
+	 */
+	public void setPkgInfoTaskId(TaskIdentifier pkgInfoTaskId) {
+		this.pkgInfoTaskId = pkgInfoTaskId;
+	}
+
 	@Override
 	public Task<? extends CreateIphoneOsBundleWorkerTaskOutput> createTask(ExecutionContext executioncontext) {
 		return this;
@@ -52,6 +63,11 @@ public class CreateIphoneOsBundleWorkerTaskFactory implements TaskFactory<Create
 		CreateIphoneOsBundleWorkerTaskIdentifier taskid = (CreateIphoneOsBundleWorkerTaskIdentifier) taskcontext
 				.getTaskId();
 
+		if (pkgInfoTaskId != null) {
+			//the generated PkgInfo is an input of the prepared directory
+			taskcontext.getTaskResult(pkgInfoTaskId);
+		}
+
 		PrepareDirectoryWorkerTaskOutput prepareout = taskcontext.getTaskUtilities().runTaskResult(
 				SakerStandardTaskUtils.createPrepareDirectoryTaskIdentifier(taskid.getOutputPath()),
 				prepareTaskFactory);
@@ -77,17 +93,20 @@ public class CreateIphoneOsBundleWorkerTaskFactory implements TaskFactory<Create
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
 		out.writeObject(prepareTaskFactory);
+		out.writeObject(pkgInfoTaskId);
 	}
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		prepareTaskFactory = SerialUtils.readExternalObject(in);
+		pkgInfoTaskId = SerialUtils.readExternalObject(in);
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + ((pkgInfoTaskId == null) ? 0 : pkgInfoTaskId.hashCode());
 		result = prime * result + ((prepareTaskFactory == null) ? 0 : prepareTaskFactory.hashCode());
 		return result;
 	}
@@ -101,6 +120,11 @@ public class CreateIphoneOsBundleWorkerTaskFactory implements TaskFactory<Create
 		if (getClass() != obj.getClass())
 			return false;
 		CreateIphoneOsBundleWorkerTaskFactory other = (CreateIphoneOsBundleWorkerTaskFactory) obj;
+		if (pkgInfoTaskId == null) {
+			if (other.pkgInfoTaskId != null)
+				return false;
+		} else if (!pkgInfoTaskId.equals(other.pkgInfoTaskId))
+			return false;
 		if (prepareTaskFactory == null) {
 			if (other.prepareTaskFactory != null)
 				return false;
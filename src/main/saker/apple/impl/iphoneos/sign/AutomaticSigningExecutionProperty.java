@@ -0,0 +1,105 @@
+package saker.apple.impl.iphoneos.sign;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import saker.build.file.path.SakerPath;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.runtime.execution.ExecutionProperty;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+
+/**
+ * Execution property that selects the provisioning profile and signing identity for an application using the
+ * {@link SigningIndex} of the build environment.
+ * <p>
+ * The selection is performed once per build execution, so the signing is reconfigured if the installed profiles or
+ * identities change between builds.
+ */
+public class AutomaticSigningExecutionProperty implements ExecutionProperty<SigningSelection>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private String bundleIdentifier;
+	private String signingIdentity;
+	private SakerPath provisioningProfile;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public AutomaticSigningExecutionProperty() {
+	}
+
+	public AutomaticSigningExecutionProperty(String bundleIdentifier, String signingIdentity,
+			SakerPath provisioningProfile) {
+		this.bundleIdentifier = bundleIdentifier;
+		this.signingIdentity = signingIdentity;
+		this.provisioningProfile = provisioningProfile;
+	}
+
+	@Override
+	public SigningSelection getCurrentValue(ExecutionContext executioncontext) throws Exception {
+		SigningIndex index = executioncontext.getEnvironment()
+				.getEnvironmentPropertyCurrentValue(SigningIndexEnvironmentProperty.INSTANCE);
+		return index.select(bundleIdentifier, signingIdentity, provisioningProfile, System.currentTimeMillis());
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeObject(bundleIdentifier);
+		out.writeObject(signingIdentity);
+		out.writeObject(provisioningProfile);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		bundleIdentifier = SerialUtils.readExternalObject(in);
+		signingIdentity = SerialUtils.readExternalObject(in);
+		provisioningProfile = SerialUtils.readExternalObject(in);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((bundleIdentifier == null) ? 0 : bundleIdentifier.hashCode());
+		result = prime * result + ((provisioningProfile == null) ? 0 : provisioningProfile.hashCode());
+		result = prime * result + ((signingIdentity == null) ? 0 : signingIdentity.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		AutomaticSigningExecutionProperty other = (AutomaticSigningExecutionProperty) obj;
+		if (bundleIdentifier == null) {
+			if (other.bundleIdentifier != null)
+				return false;
+		} else if (!bundleIdentifier.equals(other.bundleIdentifier))
+			return false;
+		if (provisioningProfile == null) {
+			if (other.provisioningProfile != null)
+				return false;
+		} else if (!provisioningProfile.equals(other.provisioningProfile))
+			return false;
+		if (signingIdentity == null) {
+			if (other.signingIdentity != null)
+				return false;
+		} else if (!signingIdentity.equals(other.signingIdentity))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + (bundleIdentifier != null ? "bundleIdentifier=" + bundleIdentifier : "")
+				+ (signingIdentity != null ? ", signingIdentity=" + signingIdentity : "")
+				+ (provisioningProfile != null ? ", provisioningProfile=" + provisioningProfile : "") + "]";
+	}
+
+}
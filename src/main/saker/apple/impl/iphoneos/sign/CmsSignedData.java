@@ -0,0 +1,279 @@
+package saker.apple.impl.iphoneos.sign;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decoder for CMS (PKCS #7) <code>SignedData</code> structures.
+ * <p>
+ * Provisioning profiles are plists wrapped in a signed CMS envelope. This class extracts the encapsulated content and
+ * the signer certificates from such envelopes without verifying the signature, in the same way as
+ * <code>security cms -D</code> does.
+ * <p>
+ * Both DER and BER encodings are supported, i.e. indefinite lengths and constructed octet strings are accepted.
+ */
+public final class CmsSignedData {
+	private static final int TAG_INTEGER = 0x02;
+	private static final int TAG_OCTET_STRING = 0x04;
+	private static final int TAG_OID = 0x06;
+	private static final int TAG_SEQUENCE = 0x30;
+	private static final int TAG_SET = 0x31;
+	private static final int TAG_CONSTRUCTED = 0x20;
+	private static final int TAG_CONTEXT_0 = 0xa0;
+
+	/**
+	 * The encoded object identifier of the signed data content type: 1.2.840.113549.1.7.2
+	 */
+	private static final byte[] OID_SIGNED_DATA = { 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01,
+			0x07, 0x02 };
+
+	/**
+	 * The maximum nesting of constructed elements with indefinite length.
+	 */
+	private static final int MAX_DEPTH = 64;
+
+	private final byte[] content;
+	private final List<byte[]> certificateEncodings;
+
+	private CmsSignedData(byte[] content, List<byte[]> certificateEncodings) {
+		this.content = content;
+		this.certificateEncodings = certificateEncodings;
+	}
+
+	/**
+	 * Decodes the signed data from the bytes of a CMS <code>ContentInfo</code> structure.
+	 *
+	 * @param bytes
+	 *            The encoded bytes. The position of the buffer is not modified.
+	 * @return The decoded signed data.
+	 * @throws IOException
+	 *             If the data is malformed, or it is not a signed data content.
+	 */
+	public static CmsSignedData decode(ByteBuffer bytes) throws IOException {
+		ByteBuffer buf = bytes.duplicate();
+		Element contentinfo = Element.read(buf, 0);
+		contentinfo.require(TAG_SEQUENCE, "ContentInfo");
+		ByteBuffer cibuf = contentinfo.contents();
+		Element contenttype = Element.read(cibuf, 1);
+		contenttype.require(TAG_OID, "ContentInfo content type");
+		if (!Arrays.equals(contenttype.toByteArray(), OID_SIGNED_DATA)) {
+			throw new IOException("Content is not CMS SignedData.");
+		}
+		Element explicitcontent = Element.read(cibuf, 1);
+		explicitcontent.require(TAG_CONTEXT_0, "ContentInfo content");
+		Element signeddata = Element.read(explicitcontent.contents(), 2);
+		signeddata.require(TAG_SEQUENCE, "SignedData");
+
+		ByteBuffer sdbuf = signeddata.contents();
+		Element.read(sdbuf, 3).require(TAG_INTEGER, "SignedData version");
+		Element.read(sdbuf, 3).require(TAG_SET, "SignedData digest algorithms");
+		Element encapcontentinfo = Element.read(sdbuf, 3);
+		encapcontentinfo.require(TAG_SEQUENCE, "SignedData encapsulated content info");
+
+		byte[] content = null;
+		ByteBuffer ecibuf = encapcontentinfo.contents();
+		Element.read(ecibuf, 4).require(TAG_OID, "Encapsulated content type");
+		if (Element.hasNext(ecibuf)) {
+			Element econtent = Element.read(ecibuf, 4);
+			econtent.require(TAG_CONTEXT_0, "Encapsulated content");
+			Element octets = Element.read(econtent.contents(), 5);
+			ByteArrayOutputStream contentbytes = new ByteArrayOutputStream(octets.getContentLength());
+			octets.readOctetString(contentbytes, 5);
+			content = contentbytes.toByteArray();
+		}
+
+		List<byte[]> certificates = Collections.emptyList();
+		if (Element.hasNext(sdbuf)) {
+			Element next = Element.read(sdbuf, 3);
+			//certificates [0] IMPLICIT CertificateSet OPTIONAL
+			if (next.tag == TAG_CONTEXT_0) {
+				certificates = new ArrayList<>();
+				ByteBuffer certsbuf = next.contents();
+				while (Element.hasNext(certsbuf)) {
+					certificates.add(Element.read(certsbuf, 4).toEncodedByteArray());
+				}
+			}
+			//the CRLs and signer infos are not needed
+		}
+		return new CmsSignedData(content, Collections.unmodifiableList(certificates));
+	}
+
+	/**
+	 * Gets the encapsulated content.
+	 *
+	 * @return The content bytes, or <code>null</code> if the signed data is detached.
+	 */
+	public byte[] getContent() {
+		return content;
+	}
+
+	/**
+	 * Gets the encoded bytes of the certificates in the signed data.
+	 *
+	 * @return An unmodifiable list of certificate encodings. May be empty.
+	 */
+	public List<byte[]> getCertificateEncodings() {
+		return certificateEncodings;
+	}
+
+	/**
+	 * Decodes the X.509 certificates in the signed data.
+	 *
+	 * @return The certificates.
+	 * @throws CertificateException
+	 *             If a certificate failed to be decoded.
+	 */
+	public List<X509Certificate> getCertificates() throws CertificateException {
+		CertificateFactory factory = CertificateFactory.getInstance("X.509");
+		List<X509Certificate> result = new ArrayList<>(certificateEncodings.size());
+		for (byte[] enc : certificateEncodings) {
+			result.add((X509Certificate) factory.generateCertificate(new ByteArrayInputStream(enc)));
+		}
+		return result;
+	}
+
+	private static final class Element {
+		private final ByteBuffer buffer;
+		private final int tag;
+		private final int start;
+		private final int contentStart;
+		private final int contentEnd;
+		private final int end;
+
+		private Element(ByteBuffer buffer, int tag, int start, int contentStart, int contentEnd, int end) {
+			this.buffer = buffer;
+			this.tag = tag;
+			this.start = start;
+			this.contentStart = contentStart;
+			this.contentEnd = contentEnd;
+			this.end = end;
+		}
+
+		public static boolean hasNext(ByteBuffer buf) {
+			return buf.hasRemaining();
+		}
+
+		/**
+		 * Reads the next element, and moves the position of the buffer after it.
+		 */
+		public static Element read(ByteBuffer buf, int depth) throws IOException {
+			if (depth > MAX_DEPTH) {
+				throw new IOException("Too deeply nested CMS structure.");
+			}
+			int start = buf.position();
+			int tag = readByte(buf);
+			if ((tag & 0x1f) == 0x1f) {
+				throw new IOException("Unsupported high tag number form at offset: " + start);
+			}
+			int lenbyte = readByte(buf);
+			if (lenbyte == 0x80) {
+				//indefinite length, the contents are terminated by an end-of-contents element
+				if ((tag & TAG_CONSTRUCTED) == 0) {
+					throw new IOException("Indefinite length for primitive element at offset: " + start);
+				}
+				int contentstart = buf.position();
+				while (true) {
+					if (buf.remaining() >= 2 && buf.get(buf.position()) == 0 && buf.get(buf.position() + 1) == 0) {
+						int contentend = buf.position();
+						buf.position(contentend + 2);
+						return new Element(buf, tag, start, contentstart, contentend, contentend + 2);
+					}
+					read(buf, depth + 1);
+				}
+			}
+			int length;
+			if (lenbyte < 0x80) {
+				length = lenbyte;
+			} else {
+				int count = lenbyte & 0x7f;
+				if (count > 4) {
+					throw new IOException("Unsupported length at offset: " + start);
+				}
+				length = 0;
+				for (int i = 0; i < count; i++) {
+					length = (length << 8) | readByte(buf);
+				}
+				if (length < 0) {
+					throw new IOException("Invalid length at offset: " + start);
+				}
+			}
+			int contentstart = buf.position();
+			if (length > buf.remaining()) {
+				throw new IOException("Element at offset " + start + " overflows its container.");
+			}
+			int contentend = contentstart + length;
+			buf.position(contentend);
+			return new Element(buf, tag, start, contentstart, contentend, contentend);
+		}
+
+		public void require(int expectedtag, String name) throws IOException {
+			if (tag != expectedtag) {
+				throw new IOException("Unexpected tag for " + name + ": 0x" + Integer.toHexString(tag)
+						+ " expected: 0x" + Integer.toHexString(expectedtag));
+			}
+		}
+
+		public int getContentLength() {
+			return contentEnd - contentStart;
+		}
+
+		public ByteBuffer contents() {
+			ByteBuffer result = buffer.duplicate();
+			result.limit(contentEnd);
+			result.position(contentStart);
+			return result.slice();
+		}
+
+		public byte[] toByteArray() {
+			byte[] result = new byte[getContentLength()];
+			contents().get(result);
+			return result;
+		}
+
+		/**
+		 * Gets the whole encoding of the element, including the tag and length.
+		 */
+		public byte[] toEncodedByteArray() {
+			ByteBuffer dup = buffer.duplicate();
+			byte[] result = new byte[end - start];
+			dup.limit(end);
+			dup.position(start);
+			dup.get(result);
+			return result;
+		}
+
+		public void readOctetString(ByteArrayOutputStream out, int depth) throws IOException {
+			if (tag == TAG_OCTET_STRING) {
+				ByteBuffer c = contents();
+				byte[] bytes = new byte[c.remaining()];
+				c.get(bytes);
+				out.write(bytes);
+				return;
+			}
+			if (tag != (TAG_OCTET_STRING | TAG_CONSTRUCTED)) {
+				throw new IOException("Unexpected tag for OCTET STRING: 0x" + Integer.toHexString(tag));
+			}
+			//constructed form in BER, the segments are concatenated
+			ByteBuffer c = contents();
+			while (hasNext(c)) {
+				read(c, depth + 1).readOctetString(out, depth + 1);
+			}
+		}
+
+		private static int readByte(ByteBuffer buf) throws IOException {
+			if (!buf.hasRemaining()) {
+				throw new IOException("Unexpected end of CMS data.");
+			}
+			return buf.get() & 0xff;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package saker.apple.impl.iphoneos.sign;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of the provisioning profiles in a directory.
+ * <p>
+ * The profiles are decoded when the index is first queried, and the index is only updated if the last modification
+ * time of the directory changes. During an update, only the added and modified profile files are decoded.
+ * <p>
+ * The files that fail to be decoded are not part of the index.
+ */
+public final class ProvisioningProfileIndex {
+	public static final String PROFILE_FILE_EXTENSION = ".mobileprovision";
+
+	private final Path directory;
+
+	//synchronized on this
+	private long directoryModification = Long.MIN_VALUE;
+	private NavigableMap<String, Entry> entries = Collections.emptyNavigableMap();
+
+	public ProvisioningProfileIndex(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Gets the directory where Xcode installs the provisioning profiles of the current user.
+	 */
+	public static Path getDefaultDirectory() {
+		return Paths.get(System.getProperty("user.home"), "Library", "MobileDevice", "Provisioning Profiles");
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Gets the currently installed profiles, updating the index if necessary.
+	 *
+	 * @return An unmodifiable collection of index entries.
+	 * @throws IOException
+	 *             If the directory listing fails.
+	 */
+	public synchronized Collection<Entry> getProfiles() throws IOException {
+		long dirmodification;
+		try {
+			dirmodification = Files.getLastModifiedTime(directory).toMillis();
+		} catch (NoSuchFileException e) {
+			directoryModification = Long.MIN_VALUE;
+			entries = Collections.emptyNavigableMap();
+			return Collections.emptyList();
+		}
+		if (dirmodification == directoryModification) {
+			return entries.values();
+		}
+		NavigableMap<String, Entry> nentries = new TreeMap<>();
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory, "*" + PROFILE_FILE_EXTENSION)) {
+			for (Path p : ds) {
+				String fname = p.getFileName().toString();
+				BasicFileAttributes attrs;
+				try {
+					attrs = Files.readAttributes(p, BasicFileAttributes.class);
+				} catch (IOException e) {
+					//removed concurrently
+					continue;
+				}
+				if (!attrs.isRegularFile()) {
+					continue;
+				}
+				long size = attrs.size();
+				long lastmodified = attrs.lastModifiedTime().toMillis();
+				Entry prev = entries.get(fname);
+				if (prev != null && prev.size == size && prev.lastModified == lastmodified) {
+					nentries.put(fname, prev);
+					continue;
+				}
+				ProvisioningProfileInfo info;
+				try {
+					info = ProvisioningProfileInfo.decode(ByteBuffer.wrap(Files.readAllBytes(p)));
+				} catch (IOException | RuntimeException e) {
+					//not a valid profile, or its contents couldn't be converted, ignore
+					continue;
+				}
+				nentries.put(fname, new Entry(p, size, lastmodified, info));
+			}
+		}
+		entries = Collections.unmodifiableNavigableMap(nentries);
+		directoryModification = dirmodification;
+		return entries.values();
+	}
+
+	/**
+	 * Selects the most appropriate provisioning profile for the given bundle identifier.
+	 * <p>
+	 * Expired profiles are not selected. An exact application identifier match is preferred to wildcard ones, and the
+	 * most specific wildcard is preferred among them. If there are still multiple candidates, the one that expires the
+	 * latest is selected.
+	 *
+	 * @param profiles
+	 *            The profiles to select from.
+	 * @param bundleidentifier
+	 *            The bundle identifier of the application.
+	 * @param certificatefingerprints
+	 *            The fingerprints of the certificates one of which should be allowed by the selected profile.
+	 *            <code>null</code> to not filter based on the certificates.
+	 * @param currenttime
+	 *            The current time in milliseconds to check the expiration against.
+	 * @return The selected profile or <code>null</code> if there are no appropriate ones.
+	 */
+	public static Entry select(Iterable<? extends Entry> profiles, String bundleidentifier,
+			Set<String> certificatefingerprints, long currenttime) {
+		Entry result = null;
+		int resultspecificity = -1;
+		for (Entry e : profiles) {
+			ProvisioningProfileInfo info = e.getInfo();
+			long expiration = info.getExpirationDate();
+			if (expiration >= 0 && expiration <= currenttime) {
+				continue;
+			}
+			int specificity = getBundleIdentifierMatchSpecificity(info.getApplicationIdentifier(), bundleidentifier);
+			if (specificity < 0) {
+				continue;
+			}
+			if (certificatefingerprints != null
+					&& Collections.disjoint(info.getCertificateFingerprints(), certificatefingerprints)) {
+				continue;
+			}
+			if (result != null) {
+				if (specificity < resultspecificity) {
+					continue;
+				}
+				if (specificity == resultspecificity) {
+					long resultexpiration = result.getInfo().getExpirationDate();
+					if (Long.compareUnsigned(expiration, resultexpiration) < 0) {
+						//unsigned comparison so -1 (no expiration) is greater than everything
+						continue;
+					}
+					if (expiration == resultexpiration && e.getPath().compareTo(result.getPath()) >= 0) {
+						//choose deterministically
+						continue;
+					}
+				}
+			}
+			result = e;
+			resultspecificity = specificity;
+		}
+		return result;
+	}
+
+	/**
+	 * Matches the bundle identifier against an application identifier in a provisioning profile.
+	 * <p>
+	 * The application identifier is prefixed by the team identifier or application identifier prefix, and may end
+	 * with a <code>*</code> wildcard.
+	 *
+	 * @return The specificity of the match, or -1 if it doesn't match. An exact match has the greatest specificity.
+	 */
+	public static int getBundleIdentifierMatchSpecificity(String applicationidentifier, String bundleidentifier) {
+		if (applicationidentifier == null || bundleidentifier == null) {
+			return -1;
+		}
+		int dotidx = applicationidentifier.indexOf('.');
+		if (dotidx < 0) {
+			return -1;
+		}
+		String pattern = applicationidentifier.substring(dotidx + 1);
+		if (pattern.endsWith("*")) {
+			String prefix = pattern.substring(0, pattern.length() - 1);
+			if (bundleidentifier.startsWith(prefix)) {
+				return prefix.length();
+			}
+			return -1;
+		}
+		if (pattern.equals(bundleidentifier)) {
+			return Integer.MAX_VALUE;
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + directory + "]";
+	}
+
+	/**
+	 * A provisioning profile file in the index.
+	 */
+	public static final class Entry {
+		private final Path path;
+		private final long size;
+		private final long lastModified;
+		private final ProvisioningProfileInfo info;
+
+		Entry(Path path, long size, long lastModified, ProvisioningProfileInfo info) {
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.info = info;
+		}
+
+		public Path getPath() {
+			return path;
+		}
+
+		public ProvisioningProfileInfo getInfo() {
+			return info;
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "[" + path + "]";
+		}
+	}
+
+}
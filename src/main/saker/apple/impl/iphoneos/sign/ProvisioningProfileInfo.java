@@ -0,0 +1,272 @@
+package saker.apple.impl.iphoneos.sign;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import saker.apple.impl.plist.lib.Plist;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+
+/**
+ * The information decoded from a provisioning profile that is required for signing.
+ * <p>
+ * The entitlements are stored in their serialized <code>.xcent</code> form, as that is how they are passed to
+ * <code>codesign</code>. The object is externalizable so it can be stored as a task output, and reused in the next
+ * build if the contents of the profile haven't changed. See {@link #getProfileHash()}.
+ */
+public final class ProvisioningProfileInfo implements Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+
+	private byte[] profileHash;
+	private byte[] xcentBytes;
+	private String applicationIdentifier;
+	private String teamIdentifier;
+	private long expirationDate = -1;
+	private List<String> certificateFingerprints;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public ProvisioningProfileInfo() {
+	}
+
+	/**
+	 * Decodes the information from the bytes of a provisioning profile.
+	 *
+	 * @param profilebytes
+	 *            The contents of the provisioning profile file.
+	 * @return The decoded information.
+	 * @throws IOException
+	 *             If the decoding fails.
+	 * @throws IllegalArgumentException
+	 *             If the profile doesn't contain the entitlements.
+	 */
+	public static ProvisioningProfileInfo decode(ByteBuffer profilebytes) throws IOException, IllegalArgumentException {
+		return decode(profilebytes, hash(profilebytes));
+	}
+
+	/**
+	 * Decodes the information from the bytes of a provisioning profile with an already computed hash.
+	 *
+	 * @param profilebytes
+	 *            The contents of the provisioning profile file.
+	 * @param profilehash
+	 *            The hash of the contents as computed by {@link #hash(ByteBuffer)}.
+	 * @return The decoded information.
+	 * @throws IOException
+	 *             If the decoding fails.
+	 * @throws IllegalArgumentException
+	 *             If the profile doesn't contain the entitlements.
+	 */
+	public static ProvisioningProfileInfo decode(ByteBuffer profilebytes, byte[] profilehash)
+			throws IOException, IllegalArgumentException {
+		ProvisioningProfileInfo result = new ProvisioningProfileInfo();
+		result.profileHash = profilehash;
+
+		//the provisioning profile is a plist in a signed CMS envelope, decode it in-process
+		//instead of running security cms -D
+		byte[] profileinfo = CmsSignedData.decode(profilebytes).getContent();
+		if (profileinfo == null) {
+			throw new IOException("Provisioning profile has no content.");
+		}
+
+		Object entitlementsobj;
+		Object teamids;
+		Object expiration;
+		Object certs;
+		//the Java backend is used explicitly, as the native one doesn't convert the date and data values
+		try (Plist plist = Plist.readFrom(ByteBuffer.wrap(profileinfo), Plist.BACKEND_JAVA)) {
+			entitlementsobj = plist.get("Entitlements");
+			teamids = plist.get("TeamIdentifier");
+			expiration = plist.get("ExpirationDate");
+			certs = plist.get("DeveloperCertificates");
+		}
+		if (!(entitlementsobj instanceof Map)) {
+			throw new IllegalArgumentException(
+					"Entitlements entry is not a dictionary in provisioning profile information: " + entitlementsobj);
+		}
+		@SuppressWarnings("unchecked")
+		Map<String, ?> entitlements = (Map<String, ?>) entitlementsobj;
+		try (Plist xcentplist = Plist.createWithContents(entitlements, Plist.BACKEND_JAVA)) {
+			result.xcentBytes = xcentplist.serialize(Plist.FORMAT_XML);
+		}
+		result.applicationIdentifier = getStringOrNull(entitlements.get("application-identifier"));
+
+		if (teamids instanceof Object[] && ((Object[]) teamids).length > 0) {
+			result.teamIdentifier = getStringOrNull(((Object[]) teamids)[0]);
+		}
+		if (expiration instanceof Date) {
+			result.expirationDate = ((Date) expiration).getTime();
+		}
+
+		List<String> fingerprints = new ArrayList<>();
+		if (certs instanceof Object[]) {
+			for (Object c : (Object[]) certs) {
+				if (c instanceof byte[]) {
+					fingerprints.add(getCertificateFingerprint((byte[]) c));
+				}
+			}
+		}
+		result.certificateFingerprints = Collections.unmodifiableList(fingerprints);
+		return result;
+	}
+
+	/**
+	 * Computes the hash of the provisioning profile contents that is used to determine if a previously decoded
+	 * information can be reused.
+	 * <p>
+	 * The position of the buffer is not modified.
+	 */
+	public static byte[] hash(ByteBuffer profilebytes) {
+		MessageDigest digest = createDigest("SHA-256");
+		digest.update(profilebytes.duplicate());
+		return digest.digest();
+	}
+
+	/**
+	 * Gets the fingerprint of an encoded certificate in the same format as <code>security find-identity</code> prints
+	 * it.
+	 *
+	 * @param certificateencoding
+	 *            The DER encoding of the certificate.
+	 * @return The uppercase hexadecimal SHA-1 hash of the certificate.
+	 */
+	public static String getCertificateFingerprint(byte[] certificateencoding) {
+		byte[] sha1 = createDigest("SHA-1").digest(certificateencoding);
+		char[] chars = new char[sha1.length * 2];
+		for (int i = 0; i < sha1.length; i++) {
+			chars[i * 2] = HEX_CHARS[(sha1[i] >>> 4) & 0xF];
+			chars[i * 2 + 1] = HEX_CHARS[sha1[i] & 0xF];
+		}
+		return new String(chars);
+	}
+
+	public byte[] getProfileHash() {
+		return profileHash;
+	}
+
+	public boolean isSameProfileHash(byte[] hash) {
+		return Arrays.equals(profileHash, hash);
+	}
+
+	/**
+	 * Gets the entitlements of the profile serialized as an XML plist.
+	 */
+	public byte[] getXcentBytes() {
+		return xcentBytes;
+	}
+
+	public String getApplicationIdentifier() {
+		return applicationIdentifier;
+	}
+
+	public String getTeamIdentifier() {
+		return teamIdentifier;
+	}
+
+	/**
+	 * Gets the expiration date of the profile in milliseconds since the epoch.
+	 *
+	 * @return The expiration date or -1 if not available.
+	 */
+	public long getExpirationDate() {
+		return expirationDate;
+	}
+
+	/**
+	 * Gets the fingerprints of the certificates that are allowed to sign with the profile.
+	 *
+	 * @see #getCertificateFingerprint(byte[])
+	 */
+	public List<String> getCertificateFingerprints() {
+		return certificateFingerprints;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		SerialUtils.writeExternalByteArray(out, profileHash);
+		SerialUtils.writeExternalByteArray(out, xcentBytes);
+		out.writeObject(applicationIdentifier);
+		out.writeObject(teamIdentifier);
+		out.writeLong(expirationDate);
+		SerialUtils.writeExternalCollection(out, certificateFingerprints);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		profileHash = SerialUtils.readExternalByteArray(in);
+		xcentBytes = SerialUtils.readExternalByteArray(in);
+		applicationIdentifier = SerialUtils.readExternalObject(in);
+		teamIdentifier = SerialUtils.readExternalObject(in);
+		expirationDate = in.readLong();
+		certificateFingerprints = SerialUtils.readExternalImmutableList(in);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(profileHash);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		ProvisioningProfileInfo other = (ProvisioningProfileInfo) obj;
+		if (!Arrays.equals(profileHash, other.profileHash))
+			return false;
+		if (!Arrays.equals(xcentBytes, other.xcentBytes))
+			return false;
+		if (applicationIdentifier == null) {
+			if (other.applicationIdentifier != null)
+				return false;
+		} else if (!applicationIdentifier.equals(other.applicationIdentifier))
+			return false;
+		if (teamIdentifier == null) {
+			if (other.teamIdentifier != null)
+				return false;
+		} else if (!teamIdentifier.equals(other.teamIdentifier))
+			return false;
+		if (expirationDate != other.expirationDate)
+			return false;
+		if (certificateFingerprints == null) {
+			if (other.certificateFingerprints != null)
+				return false;
+		} else if (!certificateFingerprints.equals(other.certificateFingerprints))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[applicationIdentifier=" + applicationIdentifier + ", teamIdentifier="
+				+ teamIdentifier + "]";
+	}
+
+	private static String getStringOrNull(Object o) {
+		return o instanceof String ? (String) o : null;
+	}
+
+	private static MessageDigest createDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(algorithm + " not available.", e);
+		}
+	}
+}
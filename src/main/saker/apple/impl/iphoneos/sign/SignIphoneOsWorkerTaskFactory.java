@@ -7,19 +7,19 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.InvalidPathException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.TreeMap;
-import java.util.UUID;
 
 import saker.apple.api.iphoneos.sign.SignIphoneOsWorkerTaskOutput;
-import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.LocalFileContentDescriptors;
+import saker.apple.impl.plist.PlistWorkerUtils;
 import saker.apple.main.iphoneos.sign.SignIphoneOsTaskFactory;
 import saker.build.exception.InvalidPathFormatException;
 import saker.build.file.ByteArraySakerFile;
@@ -40,8 +40,8 @@ import saker.build.task.TaskFactory;
 import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
 import saker.build.thirdparty.saker.util.ImmutableUtils;
 import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.thirdparty.saker.util.io.ByteArrayRegion;
 import saker.build.thirdparty.saker.util.io.SerialUtils;
-import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
 import saker.build.trace.BuildTrace;
 import saker.process.api.CollectingProcessIOConsumer;
 import saker.process.api.SakerProcess;
@@ -50,11 +50,11 @@ import saker.std.api.file.location.ExecutionFileLocation;
 import saker.std.api.file.location.FileLocation;
 import saker.std.api.file.location.FileLocationVisitor;
 import saker.std.api.file.location.LocalFileLocation;
-import saker.std.api.util.SakerStandardUtils;
 
 public class SignIphoneOsWorkerTaskFactory
 		implements TaskFactory<SignIphoneOsWorkerTaskOutput>, Task<SignIphoneOsWorkerTaskOutput>, Externalizable {
 	private static final String EMBEDDED_MOBILEPROVISION_FILE_NAME = "embedded.mobileprovision";
+	private static final String OUTPUT_TAG_PROFILE_INFO = "profile-info";
 
 	private static final long serialVersionUID = 1L;
 
@@ -69,6 +69,13 @@ public class SignIphoneOsWorkerTaskFactory
 	public SignIphoneOsWorkerTaskFactory() {
 	}
 
+	/**
+	 * Creates a new worker task.
+	 * <p>
+	 * If the signing identity or the provisioning profile is <code>null</code>, it is selected automatically when the
+	 * task runs. The profile is selected based on the <code>CFBundleIdentifier</code> in the Info.plist of the
+	 * application. The identity can only be selected if the profile is a local file.
+	 */
 	public SignIphoneOsWorkerTaskFactory(SakerPath appDirectory, NavigableMap<SakerPath, SakerPath> mappings,
 			String signingIdentity, FileLocation provisioningProfile) {
 		this.appDirectory = appDirectory;
@@ -133,20 +140,29 @@ public class SignIphoneOsWorkerTaskFactory
 			outputdependencies.put(delegatef.getSakerPath(), cd);
 		}
 
+		FileLocation provisioningprofile = provisioningProfile;
+		String signingidentity = signingIdentity;
+		if (provisioningprofile == null || signingidentity == null) {
+			SigningSelection selection = selectSigning(taskcontext, appdirpath, provisioningprofile, signingidentity);
+			if (provisioningprofile == null) {
+				provisioningprofile = LocalFileLocation.create(selection.getProvisioningProfilePath());
+			}
+			signingidentity = selection.getSigningIdentity();
+		}
+
 		SakerFile[] embedprovisionfile = { null };
-		SakerPath[] provisioningprofilepath = { null };
-		provisioningProfile.accept(new FileLocationVisitor() {
+		ByteArrayRegion[] provisioningprofilebytes = { null };
+		provisioningprofile.accept(new FileLocationVisitor() {
 			@Override
 			public void visit(LocalFileLocation loc) {
 				SakerPath path = loc.getLocalPath();
-				ContentDescriptor cd = taskutils.getReportExecutionDependency(
-						SakerStandardUtils.createLocalFileContentDescriptorExecutionProperty(path, UUID.randomUUID()));
+				ContentDescriptor cd = LocalFileContentDescriptors.getReport(taskcontext, path);
 				if (cd == null || cd instanceof DirectoryContentDescriptor) {
 					throw ObjectUtils
 							.sneakyThrow(new NoSuchFileException("Provisioning profile is not a file: " + path));
 				}
-				provisioningprofilepath[0] = path;
 				try {
+					provisioningprofilebytes[0] = LocalFileProvider.getInstance().getAllBytes(path);
 					embedprovisionfile[0] = taskutils.createProviderPathFile(EMBEDDED_MOBILEPROVISION_FILE_NAME,
 							LocalFileProvider.getInstance().getPathKey(path));
 				} catch (Exception e) {
@@ -163,8 +179,8 @@ public class SignIphoneOsWorkerTaskFactory
 							.sneakyThrow(new NoSuchFileException("Provisioning profile is not a file: " + path));
 				}
 				try {
-					provisioningprofilepath[0] = SakerPath.valueOf(taskcontext.mirror(f));
 					taskcontext.reportInputFileDependency(null, path, f.getContentDescriptor());
+					provisioningprofilebytes[0] = f.getBytes();
 					embedprovisionfile[0] = new DelegateSakerFile(EMBEDDED_MOBILEPROVISION_FILE_NAME, f);
 				} catch (Exception e) {
 					throw ObjectUtils.sneakyThrow(e);
@@ -173,42 +189,31 @@ public class SignIphoneOsWorkerTaskFactory
 		});
 		outputdir.add(embedprovisionfile[0]);
 
-		CollectingProcessIOConsumer securityoutconsumer = new CollectingProcessIOConsumer();
-		{
-			SakerProcessBuilder pb = SakerProcessBuilder.create();
-			pb.setCommand(ImmutableUtils.asUnmodifiableArrayList("security", "cms", "-D"));
-			//TODO use -i <file> instead of redirected input
-			pb.setStandardInputFile(provisioningprofilepath[0]);
-			pb.setStandardOutputConsumer(securityoutconsumer);
-			pb.setStandardErrorMerge(true);
-			try (SakerProcess proc = pb.start()) {
-				proc.processIO();
-				int ec = proc.waitFor();
-				if (ec != 0) {
-					throw new IOException(
-							"Failed to extract entitlements from provisioning profile. Command exited with: " + ec);
-				}
+		ByteArrayRegion profilebytes = provisioningprofilebytes[0];
+		ByteBuffer profilebuffer = ByteBuffer.wrap(profilebytes.getArray(), profilebytes.getOffset(),
+				profilebytes.getLength());
+		byte[] profilehash = ProvisioningProfileInfo.hash(profilebuffer);
+		ProvisioningProfileInfo profileinfo = taskcontext.getPreviousTaskOutput(OUTPUT_TAG_PROFILE_INFO,
+				ProvisioningProfileInfo.class);
+		if (profileinfo == null || !profileinfo.isSameProfileHash(profilehash)) {
+			try {
+				profileinfo = ProvisioningProfileInfo.decode(profilebuffer, profilehash);
+			} catch (IOException e) {
+				throw new IOException("Failed to decode provisioning profile: " + provisioningprofile, e);
 			}
 		}
-
-		Object entitlementsobj;
-		try (UnsyncByteArrayInputStream is = new UnsyncByteArrayInputStream(securityoutconsumer.getByteArrayRegion());
-				Plist plist = Plist.readFrom(is)) {
-			entitlementsobj = plist.get("Entitlements");
-			if (!(entitlementsobj instanceof Map)) {
-				throw new IllegalArgumentException(
-						"Entitlements entry is not a dictionary in provisioning profile information: "
-								+ entitlementsobj);
-			}
+		//else the profile is unchanged since the previous run, no need to decode it again
+		taskcontext.setTaskOutput(OUTPUT_TAG_PROFILE_INFO, profileinfo);
+
+		//keep the .xcent file from the previous run if it is the same, so it doesn't need to be written again
+		SakerDirectory xcentdir = outputdir.getParent();
+		String xcentfilename = outputdir.getName() + ".xcent";
+		byte[] xcentbytes = profileinfo.getXcentBytes();
+		SakerFile xcentfile = xcentdir.get(xcentfilename);
+		if (xcentfile == null || xcentfile instanceof SakerDirectory || !isSameContents(xcentfile, xcentbytes)) {
+			xcentfile = new ByteArraySakerFile(xcentfilename, xcentbytes);
+			xcentdir.add(xcentfile);
 		}
-		byte[] xcentbytes;
-		try (@SuppressWarnings("unchecked")
-		Plist xcentplist = Plist.createWithContents((Map<String, ?>) entitlementsobj)) {
-			xcentbytes = xcentplist.serialize(Plist.FORMAT_XML);
-		}
-
-		ByteArraySakerFile xcentfile = new ByteArraySakerFile(outputdir.getName() + ".xcent", xcentbytes);
-		outputdir.getParent().add(xcentfile);
 
 		Path xcentlocalpath = taskcontext.mirror(xcentfile);
 		Path outputdirlocalpath = taskcontext.mirror(outputdir);
@@ -220,7 +225,7 @@ public class SignIphoneOsWorkerTaskFactory
 			localfp.delete(filelistpath);
 			SakerProcessBuilder pb = SakerProcessBuilder.create();
 			pb.setCommand(ImmutableUtils.asUnmodifiableArrayList("codesign", "--file-list", filelistpath.toString(),
-					"--force", "-vvvv", "--sign", signingIdentity, "--entitlements", xcentlocalpath.toString(),
+					"--force", "-vvvv", "--sign", signingidentity, "--entitlements", xcentlocalpath.toString(),
 					outputdirlocalpath.toString()));
 			pb.setStandardErrorMerge(true);
 			CollectingProcessIOConsumer outconsumer = new CollectingProcessIOConsumer();
@@ -280,6 +285,35 @@ public class SignIphoneOsWorkerTaskFactory
 		return result;
 	}
 
+	private static SigningSelection selectSigning(TaskContext taskcontext, SakerPath appdirpath,
+			FileLocation provisioningprofile, String signingidentity) throws IOException {
+		String bundleid = null;
+		SakerPath localprofilepath = null;
+		if (provisioningprofile == null) {
+			//only the bundle identifier is looked up, the plist is not decoded as a whole
+			Object bundleidobj = PlistWorkerUtils.getInputReportDependency(taskcontext,
+					ExecutionFileLocation.create(appdirpath.resolve("Info.plist"))).lookup("CFBundleIdentifier");
+			if (!(bundleidobj instanceof String)) {
+				throw new IllegalArgumentException(
+						"Failed to determine bundle identifier for provisioning profile selection of: " + appdirpath);
+			}
+			bundleid = (String) bundleidobj;
+		} else if (provisioningprofile instanceof LocalFileLocation) {
+			localprofilepath = ((LocalFileLocation) provisioningprofile).getLocalPath();
+		} else {
+			throw new IllegalArgumentException(
+					"Signing identity can only be selected automatically for local provisioning profiles.");
+		}
+		return taskcontext.getTaskUtilities().getReportExecutionDependency(
+				new AutomaticSigningExecutionProperty(bundleid, signingidentity, localprofilepath));
+	}
+
+	private static boolean isSameContents(SakerFile file, byte[] bytes) throws IOException {
+		ByteArrayRegion contents = file.getBytes();
+		return ByteBuffer.wrap(contents.getArray(), contents.getOffset(), contents.getLength())
+				.equals(ByteBuffer.wrap(bytes));
+	}
+
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
 		out.writeObject(appDirectory);
@@ -0,0 +1,227 @@
+package saker.apple.impl.iphoneos.sign;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.io.ByteArrayRegion;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import saker.process.api.CollectingProcessIOConsumer;
+import saker.process.api.SakerProcess;
+import saker.process.api.SakerProcessBuilder;
+
+/**
+ * Index of the provisioning profiles and code signing identities of the current user that is used for automatic
+ * signing configuration.
+ * <p>
+ * The code signing identities are listed using <code>security find-identity</code>, and the listing is only repeated
+ * if the contents of the keychains directory are modified.
+ * <p>
+ * An instance is scoped to the build environment, see {@link SigningIndexEnvironmentProperty}.
+ */
+public final class SigningIndex {
+	private static final Pattern PATTERN_FIND_IDENTITY_LINE = Pattern
+			.compile("^\\s*[0-9]+\\)\\s+([0-9A-Fa-f]{40})\\s+\"(.*)\"\\s*$");
+	private static final Pattern PATTERN_FINGERPRINT = Pattern.compile("[0-9A-Fa-f]{40}");
+
+	private final ProvisioningProfileIndex profileIndex;
+	private final Path keychainsDirectory;
+
+	//synchronized on this
+	private long keychainsModification = Long.MIN_VALUE;
+	private NavigableMap<String, String> identities;
+
+	public SigningIndex(ProvisioningProfileIndex profileIndex, Path keychainsDirectory) {
+		this.profileIndex = profileIndex;
+		this.keychainsDirectory = keychainsDirectory;
+	}
+
+	/**
+	 * Gets the directory that contains the keychains of the current user.
+	 */
+	public static Path getDefaultKeychainsDirectory() {
+		return Paths.get(System.getProperty("user.home"), "Library", "Keychains");
+	}
+
+	public ProvisioningProfileIndex getProfileIndex() {
+		return profileIndex;
+	}
+
+	/**
+	 * Gets the valid code signing identities.
+	 *
+	 * @return The uppercase SHA-1 fingerprints of the identities mapped to their names.
+	 * @throws IOException
+	 *             If the listing fails.
+	 */
+	public synchronized NavigableMap<String, String> getCodesigningIdentities() throws IOException {
+		long modification = getKeychainsModification(keychainsDirectory);
+		if (identities != null && modification == keychainsModification) {
+			return identities;
+		}
+		identities = listCodesigningIdentities();
+		keychainsModification = modification;
+		return identities;
+	}
+
+	/**
+	 * Selects the provisioning profile and the signing identity if they are not specified.
+	 *
+	 * @param bundleidentifier
+	 *            The bundle identifier of the application. May be <code>null</code> if the provisioning profile is
+	 *            specified.
+	 * @param signingidentity
+	 *            The specified signing identity or <code>null</code>.
+	 * @param provisioningprofile
+	 *            The local path of the specified provisioning profile or <code>null</code>.
+	 * @param currenttime
+	 *            The current time in milliseconds.
+	 * @return The selection.
+	 * @throws IOException
+	 *             If the selection fails.
+	 */
+	public SigningSelection select(String bundleidentifier, String signingidentity, SakerPath provisioningprofile,
+			long currenttime) throws IOException {
+		Set<String> fingerprints;
+		if (signingidentity == null) {
+			fingerprints = new TreeSet<>(getCodesigningIdentities().keySet());
+		} else if (PATTERN_FINGERPRINT.matcher(signingidentity).matches()) {
+			fingerprints = Collections.singleton(signingidentity.toUpperCase(Locale.ENGLISH));
+		} else {
+			//codesign accepts a substring of the identity name
+			fingerprints = new TreeSet<>();
+			for (Entry<String, String> entry : getCodesigningIdentities().entrySet()) {
+				if (entry.getValue().contains(signingidentity)) {
+					fingerprints.add(entry.getKey());
+				}
+			}
+			if (fingerprints.isEmpty()) {
+				//may not be listed as valid, let codesign report the error if any
+				fingerprints = null;
+			}
+		}
+
+		ProvisioningProfileInfo profileinfo;
+		SakerPath profilepath;
+		if (provisioningprofile == null) {
+			ProvisioningProfileIndex.Entry entry = ProvisioningProfileIndex.select(profileIndex.getProfiles(),
+					bundleidentifier, fingerprints, currenttime);
+			if (entry == null) {
+				throw new IOException("No valid provisioning profile found for bundle identifier: "
+						+ bundleidentifier + " in " + profileIndex.getDirectory());
+			}
+			profileinfo = entry.getInfo();
+			profilepath = SakerPath.valueOf(entry.getPath());
+		} else {
+			try {
+				profileinfo = ProvisioningProfileInfo.decode(
+						ByteBuffer.wrap(Files.readAllBytes(LocalFileProvider.toRealPath(provisioningprofile))));
+			} catch (RuntimeException e) {
+				throw new IOException("Failed to decode provisioning profile: " + provisioningprofile, e);
+			}
+			profilepath = provisioningprofile;
+		}
+
+		String selectedidentity = signingidentity;
+		if (selectedidentity == null) {
+			selectedidentity = selectIdentity(profileinfo.getCertificateFingerprints(), fingerprints);
+			if (selectedidentity == null) {
+				throw new IOException("No signing identity found for the certificates of the provisioning profile: "
+						+ profilepath);
+			}
+		}
+		return new SigningSelection(profilepath, selectedidentity);
+	}
+
+	/**
+	 * Parses the output of <code>security find-identity -v -p codesigning</code>.
+	 *
+	 * @return The uppercase SHA-1 fingerprints of the identities mapped to their names.
+	 */
+	public static NavigableMap<String, String> parseFindIdentityOutput(ByteArrayRegion outputbytes)
+			throws IOException {
+		NavigableMap<String, String> result = new TreeMap<>();
+		try (UnsyncByteArrayInputStream bais = new UnsyncByteArrayInputStream(outputbytes);
+				BufferedReader reader = new BufferedReader(new InputStreamReader(bais, StandardCharsets.UTF_8))) {
+			for (String line; (line = reader.readLine()) != null;) {
+				Matcher m = PATTERN_FIND_IDENTITY_LINE.matcher(line);
+				if (m.matches()) {
+					result.put(m.group(1).toUpperCase(Locale.ENGLISH), m.group(2));
+				}
+			}
+		}
+		return ImmutableUtils.unmodifiableNavigableMap(result);
+	}
+
+	private static String selectIdentity(List<String> profilefingerprints, Set<String> candidatefingerprints) {
+		for (String fp : profilefingerprints) {
+			if (candidatefingerprints == null || candidatefingerprints.contains(fp)) {
+				return fp;
+			}
+		}
+		return null;
+	}
+
+	private static NavigableMap<String, String> listCodesigningIdentities() throws IOException {
+		SakerProcessBuilder pb = SakerProcessBuilder.create();
+		pb.setCommand(ImmutableUtils.asUnmodifiableArrayList("security", "find-identity", "-v", "-p", "codesigning"));
+		pb.setStandardErrorMerge(true);
+		CollectingProcessIOConsumer outconsumer = new CollectingProcessIOConsumer();
+		pb.setStandardOutputConsumer(outconsumer);
+		try (SakerProcess proc = pb.start()) {
+			proc.processIO();
+			int ec = proc.waitFor();
+			if (ec != 0) {
+				throw new IOException("Failed to list code signing identities. Exit code: " + ec);
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("Failed to wait for process.", e);
+		}
+		return parseFindIdentityOutput(outconsumer.getByteArrayRegion());
+	}
+
+	private static long getKeychainsModification(Path dir) throws IOException {
+		//the keychain databases are modified in place, so check the files as well
+		long result;
+		try {
+			result = Files.getLastModifiedTime(dir).toMillis();
+		} catch (NoSuchFileException e) {
+			return Long.MIN_VALUE;
+		}
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+			for (Path p : ds) {
+				try {
+					result = Math.max(result, Files.getLastModifiedTime(p).toMillis());
+				} catch (IOException e) {
+					//removed concurrently
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + profileIndex + "]";
+	}
+}
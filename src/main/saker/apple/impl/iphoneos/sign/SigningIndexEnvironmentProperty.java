@@ -0,0 +1,58 @@
+package saker.apple.impl.iphoneos.sign;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import saker.build.runtime.environment.EnvironmentProperty;
+import saker.build.runtime.environment.SakerEnvironment;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+
+/**
+ * Environment property that provides the {@link SigningIndex} of the build environment.
+ * <p>
+ * The index updates itself when the profiles or keychains are modified, therefore dependencies shouldn't be reported
+ * on this property. Use {@link AutomaticSigningExecutionProperty} instead.
+ */
+public class SigningIndexEnvironmentProperty implements EnvironmentProperty<SigningIndex>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	public static final SigningIndexEnvironmentProperty INSTANCE = new SigningIndexEnvironmentProperty();
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public SigningIndexEnvironmentProperty() {
+	}
+
+	@Override
+	public SigningIndex getCurrentValue(SakerEnvironment environment) throws Exception {
+		return new SigningIndex(new ProvisioningProfileIndex(ProvisioningProfileIndex.getDefaultDirectory()),
+				SigningIndex.getDefaultKeychainsDirectory());
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass().getName().hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return ObjectUtils.isSameClass(this, obj);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[]";
+	}
+
+}
@@ -0,0 +1,93 @@
+package saker.apple.impl.iphoneos.sign;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import saker.build.file.path.SakerPath;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+
+/**
+ * The automatically selected provisioning profile and signing identity.
+ *
+ * @see SigningIndex#select(String, String, SakerPath, long)
+ */
+public final class SigningSelection implements Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private SakerPath provisioningProfilePath;
+	private String signingIdentity;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public SigningSelection() {
+	}
+
+	public SigningSelection(SakerPath provisioningProfilePath, String signingIdentity) {
+		this.provisioningProfilePath = provisioningProfilePath;
+		this.signingIdentity = signingIdentity;
+	}
+
+	/**
+	 * Gets the local path of the provisioning profile.
+	 */
+	public SakerPath getProvisioningProfilePath() {
+		return provisioningProfilePath;
+	}
+
+	public String getSigningIdentity() {
+		return signingIdentity;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeObject(provisioningProfilePath);
+		out.writeObject(signingIdentity);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		provisioningProfilePath = SerialUtils.readExternalObject(in);
+		signingIdentity = SerialUtils.readExternalObject(in);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((provisioningProfilePath == null) ? 0 : provisioningProfilePath.hashCode());
+		result = prime * result + ((signingIdentity == null) ? 0 : signingIdentity.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		SigningSelection other = (SigningSelection) obj;
+		if (provisioningProfilePath == null) {
+			if (other.provisioningProfilePath != null)
+				return false;
+		} else if (!provisioningProfilePath.equals(other.provisioningProfilePath))
+			return false;
+		if (signingIdentity == null) {
+			if (other.signingIdentity != null)
+				return false;
+		} else if (!signingIdentity.equals(other.signingIdentity))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[provisioningProfilePath=" + provisioningProfilePath
+				+ ", signingIdentity=" + signingIdentity + "]";
+	}
+
+}
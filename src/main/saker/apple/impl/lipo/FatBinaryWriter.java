@@ -0,0 +1,440 @@
+package saker.apple.impl.lipo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import saker.apple.impl.macho.MachOArchitectures;
+import saker.apple.impl.macho.MachOFile;
+import saker.apple.impl.macho.MachOImage;
+
+/**
+ * Writes universal (fat) Mach-O files from thin Mach-O or already universal inputs, and extracts the slices of
+ * universal files.
+ * <p>
+ * The architecture and alignment of the inputs are determined from their Mach-O headers the same way as the
+ * <code>lipo</code> tool does, see {@link MachOFile}. The slices are copied to the output using {@link FileChannel}
+ * transfers, without reading them into memory.
+ * <p>
+ * Inputs in other formats (e.g. static libraries) are not supported, {@link #readSlices(Path)} returns
+ * <code>null</code> for them, and the <code>lipo</code> tool should be used instead.
+ */
+public final class FatBinaryWriter {
+	private static final int ZERO_BUFFER_SIZE = 64 * 1024;
+
+	private FatBinaryWriter() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * An architecture slice in an input file.
+	 */
+	public static final class Slice {
+		private final Path path;
+		private final long offset;
+		private final long size;
+		private final int cpuType;
+		private final int cpuSubType;
+		private final int align;
+
+		public Slice(Path path, long offset, long size, int cpuType, int cpuSubType, int align) {
+			this.path = path;
+			this.offset = offset;
+			this.size = size;
+			this.cpuType = cpuType;
+			this.cpuSubType = cpuSubType;
+			this.align = align;
+		}
+
+		public Path getPath() {
+			return path;
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public int getCpuType() {
+			return cpuType;
+		}
+
+		public int getCpuSubType() {
+			return cpuSubType;
+		}
+
+		/**
+		 * Gets the alignment of the slice as a power of 2.
+		 */
+		public int getAlign() {
+			return align;
+		}
+
+		boolean isSameArchitecture(Slice other) {
+			return MachOArchitectures.isSameArchitecture(cpuType, cpuSubType, other.cpuType, other.cpuSubType);
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "[" + path + " cputype=" + cpuType + " cpusubtype=" + cpuSubType
+					+ " align=2^" + align + "]";
+		}
+	}
+
+	/**
+	 * Reads the architecture slices of the given thin or universal Mach-O file.
+	 *
+	 * @param path
+	 *            The path of the file.
+	 * @return The slices of the file or <code>null</code> if it is not a Mach-O file.
+	 * @throws IOException
+	 *             If the file is malformed or an I/O error occurs.
+	 */
+	public static List<Slice> readSlices(Path path) throws IOException {
+		return getSlices(path, MachOFile.read(path));
+	}
+
+	/**
+	 * Gets the architecture slices of an already parsed Mach-O file.
+	 *
+	 * @param path
+	 *            The path of the file.
+	 * @param file
+	 *            The parsed file. May be <code>null</code>.
+	 * @return The slices of the file or <code>null</code> if the argument file is <code>null</code>.
+	 */
+	public static List<Slice> getSlices(Path path, MachOFile file) {
+		if (file == null) {
+			return null;
+		}
+		List<Slice> result = new ArrayList<>();
+		for (MachOImage img : file.getImages()) {
+			result.add(new Slice(path, img.getOffset(), img.getSize(), img.getCpuType(), img.getCpuSubType(),
+					img.getAlign()));
+		}
+		return result;
+	}
+
+	/**
+	 * Orders the argument slices the same way as they are placed in the output by {@link #write(List, Path)}.
+	 * <p>
+	 * The slices are ordered by their alignment. Slices with the same alignment keep their order.
+	 *
+	 * @param slices
+	 *            The slices.
+	 * @return The sorted slices in a new list.
+	 * @throws IllegalArgumentException
+	 *             If there are multiple slices for the same architecture.
+	 */
+	public static List<Slice> sort(List<Slice> slices) throws IllegalArgumentException {
+		List<Slice> sorted = new ArrayList<>(slices);
+		for (int i = 0; i < sorted.size(); i++) {
+			Slice s = sorted.get(i);
+			for (int j = 0; j < i; j++) {
+				if (s.isSameArchitecture(sorted.get(j))) {
+					throw new IllegalArgumentException("Multiple inputs have the same architecture: "
+							+ sorted.get(j).getPath() + " and " + s.getPath() + " (cputype=" + s.getCpuType()
+							+ " cpusubtype=" + s.getCpuSubType() + ")");
+				}
+			}
+		}
+		//stable sort, inputs with the same alignment keep their order
+		sorted.sort(Comparator.comparingInt(Slice::getAlign));
+		return sorted;
+	}
+
+	/**
+	 * Writes the universal file that consists of the argument slices.
+	 * <p>
+	 * The slices are ordered by their alignment in the output.
+	 *
+	 * @param slices
+	 *            The slices.
+	 * @param output
+	 *            The output path.
+	 * @return The slices in the output file. The paths of the slices are the output path.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 * @throws IllegalArgumentException
+	 *             If there are multiple slices for the same architecture.
+	 */
+	public static List<Slice> write(List<Slice> slices, Path output) throws IOException, IllegalArgumentException {
+		List<Slice> sorted = sort(slices);
+
+		List<Slice> result = layout(sorted, output);
+		boolean fat64 = isFat64Required(result);
+		ByteBuffer header = createHeader(result, fat64);
+
+		try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(out, header, 0);
+			long position = header.capacity();
+			for (int i = 0; i < sorted.size(); i++) {
+				Slice in = sorted.get(i);
+				Slice outslice = result.get(i);
+				writeZeros(out, position, outslice.getOffset() - position);
+				try (FileChannel inchannel = FileChannel.open(in.getPath(), StandardOpenOption.READ)) {
+					transferFully(inchannel, in.getOffset(), in.getSize(), out, outslice.getOffset());
+				}
+				position = outslice.getOffset() + outslice.getSize();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Updates a previously written universal file in place by overwriting the contents of the changed slices.
+	 * <p>
+	 * The argument slices must be sorted, and must contain the same architectures in the same order as the previous
+	 * output. A changed slice is written at its previous offset if it fits before the next slice. The gap after a
+	 * slice that became smaller is zero filled, and the file is truncated if the last slice became smaller. The
+	 * offsets of the unchanged slices are kept, therefore the result may be laid out differently than a file that is
+	 * written by {@link #write(List, Path)}, but it is a valid universal file nonetheless.
+	 * <p>
+	 * If the file cannot be updated in place, <code>null</code> is returned without modifying the output, and it should
+	 * be written fully instead.
+	 * <p>
+	 * If an I/O error occurs during the update, the output file is deleted, as it may be left in an inconsistent
+	 * state.
+	 *
+	 * @param output
+	 *            The output path.
+	 * @param previous
+	 *            The slices in the output file, as returned by a previous {@link #write(List, Path) write} or
+	 *            {@link #update(Path, List, List, BitSet) update} call.
+	 * @param slices
+	 *            The sorted input slices.
+	 * @param changed
+	 *            The indexes of the input slices which have changed since the output was written.
+	 * @return The slices in the output file or <code>null</code> if the file cannot be updated in place.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public static List<Slice> update(Path output, List<Slice> previous, List<Slice> slices, BitSet changed)
+			throws IOException {
+		int count = slices.size();
+		if (previous.size() != count || count == 0) {
+			return null;
+		}
+		List<Slice> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Slice prev = previous.get(i);
+			Slice s = slices.get(i);
+			if (!prev.isSameArchitecture(s) || prev.getAlign() != s.getAlign()) {
+				return null;
+			}
+			if (!changed.get(i)) {
+				if (prev.getSize() != s.getSize()) {
+					return null;
+				}
+				result.add(prev);
+				continue;
+			}
+			if (i + 1 < count && prev.getOffset() + s.getSize() > previous.get(i + 1).getOffset()) {
+				//doesn't fit before the next slice
+				return null;
+			}
+			result.add(new Slice(output, prev.getOffset(), s.getSize(), s.getCpuType(), s.getCpuSubType(),
+					s.getAlign()));
+		}
+		Slice prevlast = previous.get(count - 1);
+		long prevend = prevlast.getOffset() + prevlast.getSize();
+
+		try (FileChannel out = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			if (out.size() != prevend) {
+				return null;
+			}
+			//keep the header type of the previous output, as the offsets of the slices depend on it
+			ByteBuffer magic = ByteBuffer.allocate(4);
+			magic.order(ByteOrder.BIG_ENDIAN);
+			while (magic.hasRemaining()) {
+				if (out.read(magic, magic.position()) < 0) {
+					return null;
+				}
+			}
+			boolean fat64;
+			switch (magic.getInt(0)) {
+				case MachOFile.FAT_MAGIC: {
+					fat64 = false;
+					break;
+				}
+				case MachOFile.FAT_MAGIC_64: {
+					fat64 = true;
+					break;
+				}
+				default: {
+					return null;
+				}
+			}
+			if (!fat64 && isFat64Required(result)) {
+				return null;
+			}
+			try {
+				for (int i = 0; i < count; i++) {
+					if (!changed.get(i)) {
+						continue;
+					}
+					Slice in = slices.get(i);
+					Slice outslice = result.get(i);
+					try (FileChannel inchannel = FileChannel.open(in.getPath(), StandardOpenOption.READ)) {
+						transferFully(inchannel, in.getOffset(), in.getSize(), out, outslice.getOffset());
+					}
+					if (i + 1 < count) {
+						writeZeros(out, outslice.getOffset() + outslice.getSize(),
+								previous.get(i).getSize() - outslice.getSize());
+					}
+				}
+				Slice last = result.get(count - 1);
+				long end = last.getOffset() + last.getSize();
+				if (end < prevend) {
+					out.truncate(end);
+				}
+				writeFully(out, createHeader(result, fat64), 0);
+			} catch (Throwable e) {
+				try {
+					out.close();
+					Files.deleteIfExists(output);
+				} catch (Throwable e2) {
+					e.addSuppressed(e2);
+				}
+				throw e;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the contents of the argument slices to separate files.
+	 * <p>
+	 * The slices must be in the same input file. The input is opened once, and each slice is transferred to its output
+	 * without reading it into memory.
+	 *
+	 * @param input
+	 *            The input file that contains the slices.
+	 * @param outputs
+	 *            The output paths mapped to the slices that should be written to them.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public static void extract(Path input, Map<Path, ? extends Slice> outputs) throws IOException {
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+			for (Entry<Path, ? extends Slice> entry : outputs.entrySet()) {
+				Slice slice = entry.getValue();
+				try (FileChannel out = FileChannel.open(entry.getKey(), StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					transferFully(in, slice.getOffset(), slice.getSize(), out, 0);
+				}
+			}
+		}
+	}
+
+	private static List<Slice> layout(List<Slice> sorted, Path output) {
+		boolean fat64 = false;
+		while (true) {
+			List<Slice> result = new ArrayList<>(sorted.size());
+			long offset = getHeaderSize(sorted.size(), fat64);
+			for (Slice s : sorted) {
+				offset = alignUp(offset, s.getAlign());
+				result.add(new Slice(output, offset, s.getSize(), s.getCpuType(), s.getCpuSubType(), s.getAlign()));
+				offset += s.getSize();
+			}
+			if (fat64 || !isFat64Required(result)) {
+				return result;
+			}
+			//the 64 bit header is larger, lay out again
+			fat64 = true;
+		}
+	}
+
+	private static boolean isFat64Required(List<Slice> slices) {
+		for (Slice s : slices) {
+			if (s.getOffset() + s.getSize() > 0xffffffffL) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int getHeaderSize(int count, boolean fat64) {
+		return MachOFile.FAT_HEADER_SIZE + count * (fat64 ? MachOFile.FAT_ARCH_64_SIZE : MachOFile.FAT_ARCH_SIZE);
+	}
+
+	private static ByteBuffer createHeader(List<Slice> slices, boolean fat64) {
+		ByteBuffer header = ByteBuffer.allocate(getHeaderSize(slices.size(), fat64));
+		header.order(ByteOrder.BIG_ENDIAN);
+		header.putInt(fat64 ? MachOFile.FAT_MAGIC_64 : MachOFile.FAT_MAGIC);
+		header.putInt(slices.size());
+		for (Slice s : slices) {
+			header.putInt(s.getCpuType());
+			header.putInt(s.getCpuSubType());
+			if (fat64) {
+				header.putLong(s.getOffset());
+				header.putLong(s.getSize());
+				header.putInt(s.getAlign());
+				//reserved
+				header.putInt(0);
+			} else {
+				header.putInt((int) s.getOffset());
+				header.putInt((int) s.getSize());
+				header.putInt(s.getAlign());
+			}
+		}
+		header.flip();
+		return header;
+	}
+
+	private static long alignUp(long offset, int align) {
+		long mask = (1L << align) - 1;
+		return (offset + mask) & ~mask;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			position += channel.write(buf, position);
+		}
+	}
+
+	private static void writeZeros(FileChannel channel, long position, long count) throws IOException {
+		if (count <= 0) {
+			return;
+		}
+		//the gap after a shrunk slice can be large, write it in chunks
+		ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(count, ZERO_BUFFER_SIZE));
+		while (count > 0) {
+			zeros.clear();
+			if (count < zeros.capacity()) {
+				zeros.limit((int) count);
+			}
+			int len = zeros.remaining();
+			writeFully(channel, zeros, position);
+			position += len;
+			count -= len;
+		}
+	}
+
+	static void transferFully(FileChannel in, long inposition, long count, FileChannel out, long outposition)
+			throws IOException {
+		out.position(outposition);
+		while (count > 0) {
+			long transferred = in.transferTo(inposition, count, out);
+			if (transferred <= 0) {
+				throw new IOException("Failed to transfer slice contents.");
+			}
+			inposition += transferred;
+			count -= transferred;
+		}
+	}
+}
@@ -4,16 +4,26 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
-import java.util.UUID;
+import java.util.Set;
 
 import saker.apple.api.SakerAppleUtils;
 import saker.apple.api.lipo.LipoCreateWorkerTaskOutput;
+import saker.apple.impl.LocalFileContentDescriptors;
+import saker.apple.impl.SakerAppleImplUtils;
+import saker.apple.impl.macho.MachOArchitectureIndex;
+import saker.apple.impl.macho.MachOFile;
+import saker.apple.impl.macho.MachOFileCache;
 import saker.apple.main.lipo.LipoCreateTaskFactory;
 import saker.build.file.DirectoryVisitPredicate;
 import saker.build.file.SakerDirectory;
@@ -25,10 +35,10 @@ import saker.build.file.path.SakerPath;
 import saker.build.file.provider.LocalFileProvider;
 import saker.build.file.provider.SakerPathFiles;
 import saker.build.runtime.execution.ExecutionContext;
-import saker.build.runtime.execution.ExecutionProperty;
 import saker.build.task.CommonTaskContentDescriptors;
 import saker.build.task.Task;
 import saker.build.task.TaskContext;
+import saker.build.task.TaskExecutionEnvironmentSelector;
 import saker.build.task.TaskExecutionUtilities.MirroredFileContents;
 import saker.build.task.TaskFactory;
 import saker.build.thirdparty.saker.util.ImmutableUtils;
@@ -46,15 +56,18 @@ import saker.std.api.file.location.ExecutionFileLocation;
 import saker.std.api.file.location.FileLocation;
 import saker.std.api.file.location.FileLocationVisitor;
 import saker.std.api.file.location.LocalFileLocation;
-import saker.std.api.util.SakerStandardUtils;
 
 public class LipoCreateWorkerTaskFactory
 		implements TaskFactory<LipoCreateWorkerTaskOutput>, Task<LipoCreateWorkerTaskOutput>, Externalizable {
 	private static final long serialVersionUID = 1L;
 
+	private static final String OUTPUT_TAG_OUTPUT_STATE = "output-state";
+
 	private List<FileLocation> inputs;
 
 	private NavigableMap<String, ? extends SDKDescription> sdkDescriptions;
+	private boolean remoteDispatchable;
+	private boolean useLipoTool;
 
 	/**
 	 * For {@link Externalizable}.
@@ -71,6 +84,44 @@ public class LipoCreateWorkerTaskFactory
 		this.sdkDescriptions = sdkdescriptions;
 	}
 
+	/**
+	 * Sets whether the task can be dispatched to build clusters.
+	 * <p>
+	 * Should only be set if the inputs are
+	 * {@linkplain SakerAppleImplUtils#isRemoteDispatchableInputs(Iterable) accessible on the clusters}.
+	 */
+	public void setRemoteDispatchable(boolean remoteDispatchable) {
+		this.remoteDispatchable = remoteDispatchable;
+	}
+
+	/**
+	 * Sets whether the <code>lipo</code> tool should be used to create the output instead of the in-process
+	 * {@link FatBinaryWriter}.
+	 * <p>
+	 * The tool is used regardless of this setting if an input is not a Mach-O file.
+	 */
+	public void setUseLipoTool(boolean useLipoTool) {
+		this.useLipoTool = useLipoTool;
+	}
+
+	@Override
+	public Set<String> getCapabilities() {
+		if (remoteDispatchable) {
+			return ImmutableUtils.singletonNavigableSet(CAPABILITY_REMOTE_DISPATCHABLE);
+		}
+		return TaskFactory.super.getCapabilities();
+	}
+
+	@Override
+	public TaskExecutionEnvironmentSelector getExecutionEnvironmentSelector() {
+		if (remoteDispatchable && !ObjectUtils.isNullOrEmpty(sdkDescriptions)) {
+			//the build machine needs to have the used SDKs
+			//the tool may be needed even if not requested, as it is used for the non Mach-O inputs
+			return SDKSupportUtils.getSDKBasedClusterExecutionEnvironmentSelector(sdkDescriptions.values());
+		}
+		return TaskFactory.super.getExecutionEnvironmentSelector();
+	}
+
 	@Override
 	public int getRequestedComputationTokenCount() {
 		return 1;
@@ -87,18 +138,18 @@ public class LipoCreateWorkerTaskFactory
 		}
 		taskcontext.setStandardOutDisplayIdentifier("lipo:" + fname);
 
-		List<String> lipocommand = new ArrayList<>();
-
-		NavigableMap<String, SDKReference> sdkrefs = SDKSupportUtils.resolveSDKReferences(taskcontext,
-				this.sdkDescriptions);
-		SDKReference liposdk = SDKSupportUtils.requireSDK(sdkrefs, SakerAppleUtils.SDK_NAME_LIPO);
-		SakerPath exepath = liposdk.getPath(SakerAppleUtils.SDK_XCODE_EXECUTABLE_PATH_EXECUTABLE);
-		if (exepath == null) {
-			throw new SDKPathNotFoundException("lipo executable SDK path not found in: " + liposdk);
+		List<SakerPath> localinputpaths = new ArrayList<>();
+		for (FileLocation inputFile : inputs) {
+			if (inputFile instanceof LocalFileLocation) {
+				localinputpaths.add(((LocalFileLocation) inputFile).getLocalPath());
+			}
 		}
-		lipocommand.add(exepath.toString());
-		lipocommand.add("-create");
+		//hash the local inputs in parallel
+		NavigableMap<SakerPath, ContentDescriptor> localinputcontents = LocalFileContentDescriptors
+				.getReport(taskcontext, localinputpaths);
 
+		List<Path> inputfilelocalpaths = new ArrayList<>();
+		List<ContentDescriptor> inputfilecontents = new ArrayList<>();
 		for (FileLocation inputFile : inputs) {
 			inputFile.accept(new FileLocationVisitor() {
 				@Override
@@ -115,19 +166,19 @@ public class LipoCreateWorkerTaskFactory
 						throw ObjectUtils.sneakyThrow(nsfe);
 					}
 					taskcontext.reportInputFileDependency(null, inputpath, mirroredinputfile.getContents());
-					lipocommand.add(mirroredinputfile.getPath().toString());
+					inputfilelocalpaths.add(mirroredinputfile.getPath());
+					inputfilecontents.add(mirroredinputfile.getContents());
 				}
 
 				@Override
 				public void visit(LocalFileLocation loc) {
 					SakerPath inputpath = loc.getLocalPath();
-					ExecutionProperty<? extends ContentDescriptor> envprop = SakerStandardUtils
-							.createLocalFileContentDescriptorExecutionProperty(inputpath, UUID.randomUUID());
-					lipocommand.add(inputpath.toString());
-					ContentDescriptor cd = taskcontext.getTaskUtilities().getReportExecutionDependency(envprop);
+					ContentDescriptor cd = localinputcontents.get(inputpath);
 					if (cd == null || cd instanceof DirectoryContentDescriptor) {
 						throw ObjectUtils.sneakyThrow(new NoSuchFileException(inputpath + " is not a file."));
 					}
+					inputfilelocalpaths.add(LocalFileProvider.toRealPath(inputpath));
+					inputfilecontents.add(cd);
 				}
 			});
 		}
@@ -137,22 +188,24 @@ public class LipoCreateWorkerTaskFactory
 
 		Path outputfilelocalpath = taskcontext.mirror(outputdir, DirectoryVisitPredicate.synchronizeNothing())
 				.resolve(fname);
-		lipocommand.add("-output");
-		lipocommand.add(outputfilelocalpath.toString());
-
-		SakerProcessBuilder pb = SakerProcessBuilder.create();
-		pb.setCommand(lipocommand);
-		pb.setStandardErrorMerge(true);
-		CollectingProcessIOConsumer outconsumer = new CollectingProcessIOConsumer();
-		pb.setStandardOutputConsumer(outconsumer);
-		try (SakerProcess proc = pb.start()) {
-			proc.processIO();
-			int ec = proc.waitFor();
-			if (ec != 0) {
-				throw new IOException("lipo failed: " + ec);
+		Map<FatBinaryWriter.Slice, Integer> sliceinputindexes = new IdentityHashMap<>();
+		List<FatBinaryWriter.Slice> slices = readInputSlices(taskcontext, inputfilelocalpaths, inputfilecontents,
+				sliceinputindexes);
+		List<FatBinaryWriter.Slice> sortedslices = null;
+		List<FatBinaryWriter.Slice> outputslices = null;
+		if (slices != null && !useLipoTool) {
+			sortedslices = FatBinaryWriter.sort(slices);
+			OutputState prevstate = taskcontext.getPreviousTaskOutput(OUTPUT_TAG_OUTPUT_STATE, OutputState.class);
+			if (prevstate != null) {
+				outputslices = updateOutput(outputdir.get(fname), prevstate, sortedslices, sliceinputindexes,
+						inputfilecontents, outputfilelocalpath);
 			}
-		} finally {
-			taskcontext.getStandardOut().write(outconsumer.getByteArrayRegion());
+			if (outputslices == null) {
+				outputslices = FatBinaryWriter.write(sortedslices, outputfilelocalpath);
+			}
+			copyExecutablePermissions(inputfilelocalpaths.get(0), outputfilelocalpath);
+		} else {
+			runLipoTool(taskcontext, inputfilelocalpaths, outputfilelocalpath);
 		}
 
 		ProviderHolderPathKey outputfilepathkey = LocalFileProvider.getInstance().getPathKey(outputfilelocalpath);
@@ -167,11 +220,134 @@ public class LipoCreateWorkerTaskFactory
 		outputfile.synchronize();
 
 		SakerPath outputabsolutepath = outputfile.getSakerPath();
-		taskcontext.reportOutputFileDependency(null, outputabsolutepath, outputfile.getContentDescriptor());
+		ContentDescriptor outputcontents = outputfile.getContentDescriptor();
+		taskcontext.reportOutputFileDependency(null, outputabsolutepath, outputcontents);
+
+		if (outputslices != null) {
+			//only store the state if the output was written by us, as we don't know the layout of lipo outputs
+			List<SliceState> slicestates = new ArrayList<>(outputslices.size());
+			for (int i = 0; i < outputslices.size(); i++) {
+				slicestates.add(new SliceState(sliceinputindexes.get(sortedslices.get(i)), outputslices.get(i)));
+			}
+			taskcontext.setTaskOutput(OUTPUT_TAG_OUTPUT_STATE, new OutputState(
+					ImmutableUtils.makeImmutableList(inputfilecontents), slicestates, outputcontents));
+		}
 
 		return new LipoCreateTaskOutputImpl(outputabsolutepath);
 	}
 
+	/**
+	 * Updates the output of the previous run in place if only some of the inputs have changed.
+	 * <p>
+	 * Returns <code>null</code> if the output needs to be fully written instead.
+	 */
+	private static List<FatBinaryWriter.Slice> updateOutput(SakerFile prevoutputfile, OutputState prevstate,
+			List<FatBinaryWriter.Slice> sortedslices, Map<FatBinaryWriter.Slice, Integer> sliceinputindexes,
+			List<ContentDescriptor> inputcontents, Path outputpath) throws IOException {
+		if (prevoutputfile == null || prevoutputfile.getContentDescriptor().isChanged(prevstate.outputContents)) {
+			//the output was modified or removed since the previous run
+			return null;
+		}
+		if (prevstate.inputContents.size() != inputcontents.size()
+				|| prevstate.slices.size() != sortedslices.size()) {
+			return null;
+		}
+		List<FatBinaryWriter.Slice> prevslices = new ArrayList<>(sortedslices.size());
+		BitSet changed = new BitSet();
+		for (int i = 0; i < sortedslices.size(); i++) {
+			SliceState prevslice = prevstate.slices.get(i);
+			int inputindex = sliceinputindexes.get(sortedslices.get(i));
+			if (prevslice.inputIndex != inputindex) {
+				return null;
+			}
+			if (inputcontents.get(inputindex).isChanged(prevstate.inputContents.get(inputindex))) {
+				changed.set(i);
+			}
+			prevslices.add(prevslice.toSlice(outputpath));
+		}
+		if (changed.isEmpty()) {
+			//nothing to update
+			return prevslices;
+		}
+		return FatBinaryWriter.update(outputpath, prevslices, sortedslices, changed);
+	}
+
+	/**
+	 * Reads the slices of the inputs, or returns <code>null</code> if any of them is not supported by the
+	 * in-process writer.
+	 * <p>
+	 * The Mach-O inputs are validated before creating the output, so duplicate or mismatching architectures are
+	 * reported without running <code>lipo</code>.
+	 */
+	private List<FatBinaryWriter.Slice> readInputSlices(TaskContext taskcontext, List<Path> inputpaths,
+			List<ContentDescriptor> inputcontents, Map<FatBinaryWriter.Slice, Integer> sliceinputindexes)
+			throws IOException {
+		MachOFileCache machocache = MachOFileCache.get(taskcontext);
+		MachOArchitectureIndex archindex = new MachOArchitectureIndex();
+		List<FatBinaryWriter.Slice> result = new ArrayList<>();
+		boolean allmacho = true;
+		for (int i = 0; i < inputpaths.size(); i++) {
+			Path p = inputpaths.get(i);
+			MachOFile machofile = machocache.getLocalFile(p, inputcontents.get(i));
+			if (machofile == null) {
+				allmacho = false;
+				continue;
+			}
+			archindex.add(inputs.get(i), machofile);
+			for (FatBinaryWriter.Slice slice : FatBinaryWriter.getSlices(p, machofile)) {
+				result.add(slice);
+				sliceinputindexes.put(slice, i);
+			}
+		}
+		return allmacho ? result : null;
+	}
+
+	static void copyExecutablePermissions(Path from, Path to) throws IOException {
+		//lipo creates the output with the permissions of the first input
+		if (!Files.getFileStore(to).supportsFileAttributeView(PosixFileAttributeView.class)) {
+			return;
+		}
+		try {
+			Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+		} catch (UnsupportedOperationException e) {
+			//the input doesn't support it
+		}
+	}
+
+	private void runLipoTool(TaskContext taskcontext, List<Path> inputpaths, Path outputpath) throws Exception {
+		List<String> lipocommand = new ArrayList<>();
+
+		NavigableMap<String, SDKReference> sdkrefs = SDKSupportUtils.resolveSDKReferences(taskcontext,
+				this.sdkDescriptions);
+		SDKReference liposdk = SDKSupportUtils.requireSDK(sdkrefs, SakerAppleUtils.SDK_NAME_LIPO);
+		SakerPath exepath = liposdk.getPath(SakerAppleUtils.SDK_XCODE_EXECUTABLE_PATH_EXECUTABLE);
+		if (exepath == null) {
+			throw new SDKPathNotFoundException("lipo executable SDK path not found in: " + liposdk);
+		}
+		lipocommand.add(exepath.toString());
+		lipocommand.add("-create");
+		for (Path p : inputpaths) {
+			lipocommand.add(p.toString());
+		}
+		lipocommand.add("-output");
+		lipocommand.add(outputpath.toString());
+
+		SakerProcessBuilder pb = SakerProcessBuilder.create();
+		pb.setCommand(lipocommand);
+		pb.setStandardErrorMerge(true);
+		CollectingProcessIOConsumer outconsumer = new CollectingProcessIOConsumer();
+		pb.setStandardOutputConsumer(outconsumer);
+		try (SakerProcess proc = pb.start()) {
+			proc.processIO();
+			int ec = proc.waitFor();
+			if (ec != 0) {
+				throw new IOException("lipo failed: " + ec);
+			}
+		} finally {
+			taskcontext.getStandardOut().write(outconsumer.getByteArrayRegion());
+		}
+	}
+
 	@Override
 	public Task<? extends LipoCreateWorkerTaskOutput> createTask(ExecutionContext executioncontext) {
 		return this;
@@ -181,15 +357,18 @@ public class LipoCreateWorkerTaskFactory
 	public void writeExternal(ObjectOutput out) throws IOException {
 		SerialUtils.writeExternalCollection(out, inputs);
 
-		SerialUtils.writeExternalMap(out, sdkDescriptions);
+		SakerAppleImplUtils.writeExternalSDKDescriptions(out, sdkDescriptions);
+		out.writeBoolean(remoteDispatchable);
+		out.writeBoolean(useLipoTool);
 	}
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		inputs = SerialUtils.readExternalImmutableList(in);
 
-		sdkDescriptions = SerialUtils.readExternalSortedImmutableNavigableMap(in,
-				SDKSupportUtils.getSDKNameComparator());
+		sdkDescriptions = SakerAppleImplUtils.readExternalSDKDescriptions(in);
+		remoteDispatchable = in.readBoolean();
+		useLipoTool = in.readBoolean();
 	}
 
 	@Override
@@ -197,7 +376,9 @@ public class LipoCreateWorkerTaskFactory
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((inputs == null) ? 0 : inputs.hashCode());
+		result = prime * result + (remoteDispatchable ? 1231 : 1237);
 		result = prime * result + ((sdkDescriptions == null) ? 0 : sdkDescriptions.hashCode());
+		result = prime * result + (useLipoTool ? 1231 : 1237);
 		return result;
 	}
 
@@ -215,11 +396,100 @@ public class LipoCreateWorkerTaskFactory
 				return false;
 		} else if (!inputs.equals(other.inputs))
 			return false;
+		if (remoteDispatchable != other.remoteDispatchable)
+			return false;
 		if (sdkDescriptions == null) {
 			if (other.sdkDescriptions != null)
 				return false;
 		} else if (!sdkDescriptions.equals(other.sdkDescriptions))
 			return false;
+		if (useLipoTool != other.useLipoTool)
+			return false;
 		return true;
 	}
+
+	public static final class SliceState implements Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		protected int inputIndex;
+		protected long offset;
+		protected long size;
+		protected int cpuType;
+		protected int cpuSubType;
+		protected int align;
+
+		/**
+		 * For {@link Externalizable}.
+		 */
+		public SliceState() {
+		}
+
+		public SliceState(int inputIndex, FatBinaryWriter.Slice slice) {
+			this.inputIndex = inputIndex;
+			this.offset = slice.getOffset();
+			this.size = slice.getSize();
+			this.cpuType = slice.getCpuType();
+			this.cpuSubType = slice.getCpuSubType();
+			this.align = slice.getAlign();
+		}
+
+		public FatBinaryWriter.Slice toSlice(Path path) {
+			return new FatBinaryWriter.Slice(path, offset, size, cpuType, cpuSubType, align);
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			out.writeInt(inputIndex);
+			out.writeLong(offset);
+			out.writeLong(size);
+			out.writeInt(cpuType);
+			out.writeInt(cpuSubType);
+			out.writeInt(align);
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			inputIndex = in.readInt();
+			offset = in.readLong();
+			size = in.readLong();
+			cpuType = in.readInt();
+			cpuSubType = in.readInt();
+			align = in.readInt();
+		}
+	}
+
+	public static final class OutputState implements Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		protected List<ContentDescriptor> inputContents;
+		protected List<SliceState> slices;
+		protected ContentDescriptor outputContents;
+
+		/**
+		 * For {@link Externalizable}.
+		 */
+		public OutputState() {
+		}
+
+		public OutputState(List<ContentDescriptor> inputContents, List<SliceState> slices,
+				ContentDescriptor outputContents) {
+			this.inputContents = inputContents;
+			this.slices = slices;
+			this.outputContents = outputContents;
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			SerialUtils.writeExternalCollection(out, inputContents);
+			SerialUtils.writeExternalCollection(out, slices);
+			out.writeObject(outputContents);
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			inputContents = SerialUtils.readExternalImmutableList(in);
+			slices = SerialUtils.readExternalImmutableList(in);
+			outputContents = SerialUtils.readExternalObject(in);
+		}
+	}
 }
@@ -0,0 +1,87 @@
+package saker.apple.impl.lipo;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.NavigableMap;
+
+import saker.apple.api.lipo.LipoThinWorkerTaskOutput;
+import saker.build.file.path.SakerPath;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+
+final class LipoThinTaskOutputImpl implements LipoThinWorkerTaskOutput, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private SakerPath outputDirectory;
+	private NavigableMap<String, SakerPath> paths;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public LipoThinTaskOutputImpl() {
+	}
+
+	public LipoThinTaskOutputImpl(SakerPath outputDirectory, NavigableMap<String, SakerPath> paths) {
+		this.outputDirectory = outputDirectory;
+		this.paths = paths;
+	}
+
+	@Override
+	public SakerPath getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	@Override
+	public NavigableMap<String, SakerPath> getPaths() {
+		return paths;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeObject(outputDirectory);
+		SerialUtils.writeExternalMap(out, paths);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		outputDirectory = SerialUtils.readExternalObject(in);
+		paths = SerialUtils.readExternalSortedImmutableNavigableMap(in);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((outputDirectory == null) ? 0 : outputDirectory.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LipoThinTaskOutputImpl other = (LipoThinTaskOutputImpl) obj;
+		if (outputDirectory == null) {
+			if (other.outputDirectory != null)
+				return false;
+		} else if (!outputDirectory.equals(other.outputDirectory))
+			return false;
+		if (paths == null) {
+			if (other.paths != null)
+				return false;
+		} else if (!paths.equals(other.paths))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + outputDirectory + ", " + paths + "]";
+	}
+
+}
@@ -0,0 +1,338 @@
+package saker.apple.impl.lipo;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+
+import saker.apple.api.SakerAppleUtils;
+import saker.apple.api.lipo.LipoThinWorkerTaskOutput;
+import saker.apple.impl.LocalFileContentDescriptors;
+import saker.apple.impl.SakerAppleImplUtils;
+import saker.apple.impl.macho.MachOFile;
+import saker.apple.impl.macho.MachOFileCache;
+import saker.apple.impl.macho.MachOImage;
+import saker.apple.main.lipo.LipoThinTaskFactory;
+import saker.build.file.DirectoryVisitPredicate;
+import saker.build.file.SakerDirectory;
+import saker.build.file.SakerFile;
+import saker.build.file.content.ContentDescriptor;
+import saker.build.file.content.DirectoryContentDescriptor;
+import saker.build.file.path.ProviderHolderPathKey;
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.file.provider.SakerPathFiles;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.CommonTaskContentDescriptors;
+import saker.build.task.Task;
+import saker.build.task.TaskContext;
+import saker.build.task.TaskExecutionEnvironmentSelector;
+import saker.build.task.TaskExecutionUtilities;
+import saker.build.task.TaskExecutionUtilities.MirroredFileContents;
+import saker.build.task.TaskFactory;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+import saker.build.trace.BuildTrace;
+import saker.process.api.CollectingProcessIOConsumer;
+import saker.process.api.SakerProcess;
+import saker.process.api.SakerProcessBuilder;
+import saker.sdk.support.api.SDKDescription;
+import saker.sdk.support.api.SDKReference;
+import saker.sdk.support.api.SDKSupportUtils;
+import saker.sdk.support.api.exc.SDKPathNotFoundException;
+import saker.std.api.file.location.ExecutionFileLocation;
+import saker.std.api.file.location.FileLocation;
+import saker.std.api.file.location.FileLocationVisitor;
+import saker.std.api.file.location.LocalFileLocation;
+import saker.std.api.util.SakerStandardUtils;
+
+public class LipoThinWorkerTaskFactory
+		implements TaskFactory<LipoThinWorkerTaskOutput>, Task<LipoThinWorkerTaskOutput>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private FileLocation inputFile;
+	private NavigableSet<String> architectures;
+
+	private NavigableMap<String, ? extends SDKDescription> sdkDescriptions;
+	private boolean remoteDispatchable;
+	private boolean useLipoTool;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public LipoThinWorkerTaskFactory() {
+	}
+
+	public LipoThinWorkerTaskFactory(FileLocation inputFile, Set<String> architectures) {
+		this.inputFile = inputFile;
+		this.architectures = ImmutableUtils.makeImmutableNavigableSet(architectures);
+	}
+
+	public void setSDKDescriptions(NavigableMap<String, ? extends SDKDescription> sdkdescriptions) {
+		ObjectUtils.requireComparator(sdkdescriptions, SDKSupportUtils.getSDKNameComparator());
+		this.sdkDescriptions = sdkdescriptions;
+	}
+
+	/**
+	 * Sets whether the task can be dispatched to build clusters.
+	 * <p>
+	 * Should only be set if the inputs are
+	 * {@linkplain SakerAppleImplUtils#isRemoteDispatchableInputs(Iterable) accessible on the clusters}.
+	 */
+	public void setRemoteDispatchable(boolean remoteDispatchable) {
+		this.remoteDispatchable = remoteDispatchable;
+	}
+
+	/**
+	 * Sets whether the <code>lipo</code> tool should be used to extract the architectures instead of copying the
+	 * slices in-process.
+	 * <p>
+	 * The tool is used regardless of this setting if the input is not a Mach-O file.
+	 */
+	public void setUseLipoTool(boolean useLipoTool) {
+		this.useLipoTool = useLipoTool;
+	}
+
+	@Override
+	public Set<String> getCapabilities() {
+		if (remoteDispatchable) {
+			return ImmutableUtils.singletonNavigableSet(CAPABILITY_REMOTE_DISPATCHABLE);
+		}
+		return TaskFactory.super.getCapabilities();
+	}
+
+	@Override
+	public TaskExecutionEnvironmentSelector getExecutionEnvironmentSelector() {
+		if (remoteDispatchable && !ObjectUtils.isNullOrEmpty(sdkDescriptions)) {
+			//the build machine needs to have the used SDKs
+			//the tool may be needed even if not requested, as it is used for the non Mach-O inputs
+			return SDKSupportUtils.getSDKBasedClusterExecutionEnvironmentSelector(sdkDescriptions.values());
+		}
+		return TaskFactory.super.getExecutionEnvironmentSelector();
+	}
+
+	@Override
+	public int getRequestedComputationTokenCount() {
+		return 1;
+	}
+
+	@Override
+	public LipoThinWorkerTaskOutput run(TaskContext taskcontext) throws Exception {
+		LipoThinWorkerTaskIdentifier taskid = (LipoThinWorkerTaskIdentifier) taskcontext.getTaskId();
+		SakerPath outputpath = taskid.getOutputPath();
+		String fname = SakerStandardUtils.getFileLocationFileName(inputFile);
+		if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+			BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_WORKER);
+			BuildTrace.setDisplayInformation("lipo-thin:" + fname, LipoThinTaskFactory.TASK_NAME + ":" + fname);
+		}
+		taskcontext.setStandardOutDisplayIdentifier("lipo-thin:" + fname);
+
+		Path[] inputfilelocalpath = { null };
+		ContentDescriptor[] inputfilecontents = { null };
+		inputFile.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(ExecutionFileLocation loc) {
+				SakerPath inputpath = loc.getPath();
+				MirroredFileContents mirroredinputfile;
+				try {
+					mirroredinputfile = taskcontext.getTaskUtilities().mirrorFileAtPathContents(inputpath);
+				} catch (IOException e) {
+					taskcontext.reportInputFileDependency(null, inputpath, CommonTaskContentDescriptors.IS_NOT_FILE);
+					NoSuchFileException nsfe = new NoSuchFileException(loc.toString());
+					nsfe.initCause(e);
+					throw ObjectUtils.sneakyThrow(nsfe);
+				}
+				taskcontext.reportInputFileDependency(null, inputpath, mirroredinputfile.getContents());
+				inputfilelocalpath[0] = mirroredinputfile.getPath();
+				inputfilecontents[0] = mirroredinputfile.getContents();
+			}
+
+			@Override
+			public void visit(LocalFileLocation loc) {
+				SakerPath inputpath = loc.getLocalPath();
+				ContentDescriptor cd = LocalFileContentDescriptors.getReport(taskcontext, inputpath);
+				if (cd == null || cd instanceof DirectoryContentDescriptor) {
+					throw ObjectUtils.sneakyThrow(new NoSuchFileException(inputpath + " is not a file."));
+				}
+				inputfilelocalpath[0] = LocalFileProvider.toRealPath(inputpath);
+				inputfilecontents[0] = cd;
+			}
+		});
+		Path inputpath = inputfilelocalpath[0];
+
+		MachOFile machofile = MachOFileCache.get(taskcontext).getLocalFile(inputpath, inputfilecontents[0]);
+		Map<String, MachOImage> images = null;
+		if (machofile != null) {
+			images = new LinkedHashMap<>();
+			for (String arch : architectures) {
+				MachOImage img = machofile.getImage(arch);
+				if (img == null) {
+					throw new IllegalArgumentException("Architecture " + arch + " not found in " + inputFile
+							+ ". Available architectures: " + machofile.getArchitectures());
+				}
+				images.put(arch, img);
+			}
+		}
+
+		TaskExecutionUtilities taskutils = taskcontext.getTaskUtilities();
+		SakerDirectory outputdir = taskutils.resolveDirectoryAtRelativePathCreate(
+				SakerPathFiles.requireBuildDirectory(taskcontext), outputpath);
+		//the outputs are recreated, this also removes the architectures that are no longer extracted
+		outputdir.clear();
+		Map<String, SakerDirectory> archdirs = new TreeMap<>();
+		Map<String, Path> outputlocalpaths = new TreeMap<>();
+		for (String arch : architectures) {
+			SakerDirectory archdir = taskutils.resolveDirectoryAtRelativePathCreate(outputdir, SakerPath.valueOf(arch));
+			archdirs.put(arch, archdir);
+			outputlocalpaths.put(arch,
+					taskcontext.mirror(archdir, DirectoryVisitPredicate.synchronizeNothing()).resolve(fname));
+		}
+
+		if (images != null && !useLipoTool) {
+			Map<Path, FatBinaryWriter.Slice> slices = new LinkedHashMap<>();
+			for (Entry<String, MachOImage> entry : images.entrySet()) {
+				MachOImage img = entry.getValue();
+				slices.put(outputlocalpaths.get(entry.getKey()), new FatBinaryWriter.Slice(inputpath, img.getOffset(),
+						img.getSize(), img.getCpuType(), img.getCpuSubType(), img.getAlign()));
+			}
+			FatBinaryWriter.extract(inputpath, slices);
+			for (Path outpath : slices.keySet()) {
+				LipoCreateWorkerTaskFactory.copyExecutablePermissions(inputpath, outpath);
+			}
+		} else {
+			runLipoTool(taskcontext, inputpath, outputlocalpaths);
+		}
+
+		NavigableMap<String, SakerPath> resultpaths = new TreeMap<>();
+		Map<String, SakerFile> outputfiles = new TreeMap<>();
+		for (Entry<String, Path> entry : outputlocalpaths.entrySet()) {
+			ProviderHolderPathKey outputfilepathkey = LocalFileProvider.getInstance().getPathKey(entry.getValue());
+			if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_013) {
+				taskutils.invalidateWithPosixFilePermissions(outputfilepathkey);
+			} else {
+				taskcontext.invalidate(outputfilepathkey);
+			}
+			SakerFile outputfile = taskutils.createProviderPathFile(fname, outputfilepathkey);
+			archdirs.get(entry.getKey()).add(outputfile);
+			outputfiles.put(entry.getKey(), outputfile);
+		}
+		outputdir.synchronize();
+
+		NavigableMap<SakerPath, ContentDescriptor> outputdependencies = new TreeMap<>();
+		for (Entry<String, SakerFile> entry : outputfiles.entrySet()) {
+			SakerFile outputfile = entry.getValue();
+			SakerPath outputabsolutepath = outputfile.getSakerPath();
+			outputdependencies.put(outputabsolutepath, outputfile.getContentDescriptor());
+			resultpaths.put(entry.getKey(), outputabsolutepath);
+		}
+		taskutils.reportOutputFileDependency(null, outputdependencies);
+
+		return new LipoThinTaskOutputImpl(outputdir.getSakerPath(),
+				ImmutableUtils.unmodifiableNavigableMap(resultpaths));
+	}
+
+	private void runLipoTool(TaskContext taskcontext, Path inputpath, Map<String, Path> outputpaths) throws Exception {
+		NavigableMap<String, SDKReference> sdkrefs = SDKSupportUtils.resolveSDKReferences(taskcontext,
+				this.sdkDescriptions);
+		SDKReference liposdk = SDKSupportUtils.requireSDK(sdkrefs, SakerAppleUtils.SDK_NAME_LIPO);
+		SakerPath exepath = liposdk.getPath(SakerAppleUtils.SDK_XCODE_EXECUTABLE_PATH_EXECUTABLE);
+		if (exepath == null) {
+			throw new SDKPathNotFoundException("lipo executable SDK path not found in: " + liposdk);
+		}
+		for (Entry<String, Path> entry : outputpaths.entrySet()) {
+			SakerProcessBuilder pb = SakerProcessBuilder.create();
+			pb.setCommand(ImmutableUtils.asUnmodifiableArrayList(exepath.toString(), inputpath.toString(), "-thin",
+					entry.getKey(), "-output", entry.getValue().toString()));
+			pb.setStandardErrorMerge(true);
+			CollectingProcessIOConsumer outconsumer = new CollectingProcessIOConsumer();
+			pb.setStandardOutputConsumer(outconsumer);
+			try (SakerProcess proc = pb.start()) {
+				proc.processIO();
+				int ec = proc.waitFor();
+				if (ec != 0) {
+					throw new IOException("lipo failed: " + ec);
+				}
+			} finally {
+				taskcontext.getStandardOut().write(outconsumer.getByteArrayRegion());
+			}
+		}
+	}
+
+	@Override
+	public Task<? extends LipoThinWorkerTaskOutput> createTask(ExecutionContext executioncontext) {
+		return this;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeObject(inputFile);
+		SerialUtils.writeExternalCollection(out, architectures);
+
+		SakerAppleImplUtils.writeExternalSDKDescriptions(out, sdkDescriptions);
+		out.writeBoolean(remoteDispatchable);
+		out.writeBoolean(useLipoTool);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		inputFile = SerialUtils.readExternalObject(in);
+		architectures = SerialUtils.readExternalSortedImmutableNavigableSet(in);
+
+		sdkDescriptions = SakerAppleImplUtils.readExternalSDKDescriptions(in);
+		remoteDispatchable = in.readBoolean();
+		useLipoTool = in.readBoolean();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((architectures == null) ? 0 : architectures.hashCode());
+		result = prime * result + ((inputFile == null) ? 0 : inputFile.hashCode());
+		result = prime * result + (remoteDispatchable ? 1231 : 1237);
+		result = prime * result + ((sdkDescriptions == null) ? 0 : sdkDescriptions.hashCode());
+		result = prime * result + (useLipoTool ? 1231 : 1237);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LipoThinWorkerTaskFactory other = (LipoThinWorkerTaskFactory) obj;
+		if (architectures == null) {
+			if (other.architectures != null)
+				return false;
+		} else if (!architectures.equals(other.architectures))
+			return false;
+		if (inputFile == null) {
+			if (other.inputFile != null)
+				return false;
+		} else if (!inputFile.equals(other.inputFile))
+			return false;
+		if (remoteDispatchable != other.remoteDispatchable)
+			return false;
+		if (sdkDescriptions == null) {
+			if (other.sdkDescriptions != null)
+				return false;
+		} else if (!sdkDescriptions.equals(other.sdkDescriptions))
+			return false;
+		if (useLipoTool != other.useLipoTool)
+			return false;
+		return true;
+	}
+}
@@ -0,0 +1,113 @@
+package saker.apple.impl.macho;
+
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+
+/**
+ * Collects the architectures of Mach-O files that are combined into a single universal file.
+ * <p>
+ * The index fails when the same architecture is added from multiple sources, or if the images have different file
+ * types, as they can't be used together.
+ */
+public final class MachOArchitectureIndex {
+	private final Map<String, Entry> architectures = new TreeMap<>();
+	private Entry fileTypeEntry;
+
+	public MachOArchitectureIndex() {
+	}
+
+	/**
+	 * Validates that the images of a file can be used together.
+	 * <p>
+	 * The images in a universal file must have different architectures and the same file type.
+	 *
+	 * @param source
+	 *            The name of the file used in error messages.
+	 * @param file
+	 *            The file.
+	 * @throws IllegalArgumentException
+	 *             If an architecture is present multiple times, or the file types of the images mismatch.
+	 */
+	public static void validate(Object source, MachOFile file) throws IllegalArgumentException {
+		new MachOArchitectureIndex().add(source, file);
+	}
+
+	/**
+	 * Adds the images of the argument file to the index.
+	 *
+	 * @param source
+	 *            The name of the file used in error messages.
+	 * @param file
+	 *            The file.
+	 * @throws IllegalArgumentException
+	 *             If an architecture of the file is already present, or the file types of the images mismatch.
+	 */
+	public void add(Object source, MachOFile file) throws IllegalArgumentException {
+		for (MachOImage img : file.getImages()) {
+			add(source, img);
+		}
+	}
+
+	/**
+	 * Adds an image to the index.
+	 *
+	 * @param source
+	 *            The name of the file used in error messages.
+	 * @param image
+	 *            The image.
+	 * @throws IllegalArgumentException
+	 *             If the architecture of the image is already present, or its file type mismatches the previously
+	 *             added ones.
+	 */
+	public void add(Object source, MachOImage image) throws IllegalArgumentException {
+		Entry entry = new Entry(source, image);
+		String arch = image.getArchitecture();
+		Entry prev = architectures.putIfAbsent(arch, entry);
+		if (prev != null) {
+			throw new IllegalArgumentException(
+					"Multiple inputs have the same architecture: " + arch + " in " + prev.source + " and " + source);
+		}
+		if (fileTypeEntry == null) {
+			fileTypeEntry = entry;
+		} else if (fileTypeEntry.image.getFileType() != image.getFileType()) {
+			throw new IllegalArgumentException("Mismatched Mach-O file types: " + fileTypeEntry.image.getFileType()
+					+ " for " + fileTypeEntry.image.getArchitecture() + " in " + fileTypeEntry.source + " and "
+					+ image.getFileType() + " for " + arch + " in " + source);
+		}
+	}
+
+	/**
+	 * Gets the names of the architectures in the index.
+	 */
+	public NavigableSet<String> getArchitectures() {
+		return ImmutableUtils.makeImmutableNavigableSet(architectures.keySet());
+	}
+
+	/**
+	 * Gets the image for the given architecture.
+	 *
+	 * @return The image or <code>null</code> if not present.
+	 */
+	public MachOImage getImage(String architecture) {
+		Entry entry = architectures.get(architecture);
+		return entry == null ? null : entry.image;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + architectures.keySet() + "]";
+	}
+
+	private static final class Entry {
+		private final Object source;
+		private final MachOImage image;
+
+		public Entry(Object source, MachOImage image) {
+			this.source = source;
+			this.image = image;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package saker.apple.impl.macho;
+
+/**
+ * Utility functions for Mach-O CPU types.
+ */
+public class MachOArchitectures {
+	public static final int CPU_ARCH_ABI64 = 0x01000000;
+	public static final int CPU_ARCH_ABI64_32 = 0x02000000;
+
+	public static final int CPU_TYPE_X86 = 7;
+	public static final int CPU_TYPE_X86_64 = CPU_TYPE_X86 | CPU_ARCH_ABI64;
+	public static final int CPU_TYPE_ARM = 12;
+	public static final int CPU_TYPE_ARM64 = CPU_TYPE_ARM | CPU_ARCH_ABI64;
+	public static final int CPU_TYPE_ARM64_32 = CPU_TYPE_ARM | CPU_ARCH_ABI64_32;
+	public static final int CPU_TYPE_POWERPC = 18;
+	public static final int CPU_TYPE_POWERPC64 = CPU_TYPE_POWERPC | CPU_ARCH_ABI64;
+
+	/**
+	 * Mask for the capability bits in the CPU subtype.
+	 */
+	public static final int CPU_SUBTYPE_MASK = 0xff000000;
+
+	private MachOArchitectures() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Checks if the arguments represent the same architecture.
+	 * <p>
+	 * The capability bits of the subtypes are ignored.
+	 */
+	public static boolean isSameArchitecture(int cputype, int cpusubtype, int othercputype, int othercpusubtype) {
+		return cputype == othercputype
+				&& (cpusubtype & ~CPU_SUBTYPE_MASK) == (othercpusubtype & ~CPU_SUBTYPE_MASK);
+	}
+
+	/**
+	 * Gets the architecture name for the given CPU type and subtype in the same format as <code>lipo</code> uses.
+	 * <p>
+	 * Unknown architectures are named as <code>cputype(N)_cpusubtype(M)</code>.
+	 */
+	public static String getArchitectureName(int cputype, int cpusubtype) {
+		int subtype = cpusubtype & ~CPU_SUBTYPE_MASK;
+		switch (cputype) {
+			case CPU_TYPE_X86: {
+				if (subtype == 3) {
+					return "i386";
+				}
+				break;
+			}
+			case CPU_TYPE_X86_64: {
+				if (subtype == 3) {
+					return "x86_64";
+				}
+				if (subtype == 8) {
+					return "x86_64h";
+				}
+				break;
+			}
+			case CPU_TYPE_ARM: {
+				switch (subtype) {
+					case 0:
+						return "arm";
+					case 6:
+						return "armv6";
+					case 9:
+						return "armv7";
+					case 10:
+						return "armv7f";
+					case 11:
+						return "armv7s";
+					case 12:
+						return "armv7k";
+					case 14:
+						return "armv6m";
+					case 15:
+						return "armv7m";
+					case 16:
+						return "armv7em";
+					default:
+						break;
+				}
+				break;
+			}
+			case CPU_TYPE_ARM64: {
+				switch (subtype) {
+					case 0:
+						return "arm64";
+					case 1:
+						return "arm64v8";
+					case 2:
+						return "arm64e";
+					default:
+						break;
+				}
+				break;
+			}
+			case CPU_TYPE_ARM64_32: {
+				if (subtype == 1) {
+					return "arm64_32";
+				}
+				break;
+			}
+			case CPU_TYPE_POWERPC: {
+				return "ppc";
+			}
+			case CPU_TYPE_POWERPC64: {
+				return "ppc64";
+			}
+			default: {
+				break;
+			}
+		}
+		return "cputype(" + cputype + ")_cpusubtype(" + subtype + ")";
+	}
+}
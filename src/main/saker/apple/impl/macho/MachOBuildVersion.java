@@ -0,0 +1,131 @@
+package saker.apple.impl.macho;
+
+/**
+ * The target platform and versions of a {@link MachOImage}.
+ * <p>
+ * The versions are encoded as <code>xxxx.yy.zz</code> in nibbles, the same way as in the load commands.
+ */
+public final class MachOBuildVersion {
+	public static final int PLATFORM_MACOS = 1;
+	public static final int PLATFORM_IOS = 2;
+	public static final int PLATFORM_TVOS = 3;
+	public static final int PLATFORM_WATCHOS = 4;
+	public static final int PLATFORM_BRIDGEOS = 5;
+	public static final int PLATFORM_MACCATALYST = 6;
+	public static final int PLATFORM_IOSSIMULATOR = 7;
+	public static final int PLATFORM_TVOSSIMULATOR = 8;
+	public static final int PLATFORM_WATCHOSSIMULATOR = 9;
+	public static final int PLATFORM_DRIVERKIT = 10;
+	public static final int PLATFORM_VISIONOS = 11;
+	public static final int PLATFORM_VISIONOSSIMULATOR = 12;
+
+	private final int platform;
+	private final int minOs;
+	private final int sdk;
+
+	public MachOBuildVersion(int platform, int minOs, int sdk) {
+		this.platform = platform;
+		this.minOs = minOs;
+		this.sdk = sdk;
+	}
+
+	public int getPlatform() {
+		return platform;
+	}
+
+	public int getMinOs() {
+		return minOs;
+	}
+
+	public int getSdk() {
+		return sdk;
+	}
+
+	/**
+	 * Gets the minimum OS version in the <code>major.minor.patch</code> format.
+	 */
+	public String getMinOsVersionString() {
+		return toVersionString(minOs);
+	}
+
+	/**
+	 * Gets the SDK version in the <code>major.minor.patch</code> format.
+	 */
+	public String getSdkVersionString() {
+		return toVersionString(sdk);
+	}
+
+	/**
+	 * Gets the name of the platform as displayed by <code>otool</code>.
+	 *
+	 * @return The name, or the number of the platform if unknown.
+	 */
+	public String getPlatformName() {
+		switch (platform) {
+			case PLATFORM_MACOS:
+				return "macos";
+			case PLATFORM_IOS:
+				return "ios";
+			case PLATFORM_TVOS:
+				return "tvos";
+			case PLATFORM_WATCHOS:
+				return "watchos";
+			case PLATFORM_BRIDGEOS:
+				return "bridgeos";
+			case PLATFORM_MACCATALYST:
+				return "maccatalyst";
+			case PLATFORM_IOSSIMULATOR:
+				return "iossimulator";
+			case PLATFORM_TVOSSIMULATOR:
+				return "tvossimulator";
+			case PLATFORM_WATCHOSSIMULATOR:
+				return "watchossimulator";
+			case PLATFORM_DRIVERKIT:
+				return "driverkit";
+			case PLATFORM_VISIONOS:
+				return "visionos";
+			case PLATFORM_VISIONOSSIMULATOR:
+				return "visionossimulator";
+			default:
+				return Integer.toString(platform);
+		}
+	}
+
+	public static String toVersionString(int version) {
+		return (version >>> 16) + "." + ((version >>> 8) & 0xff) + "." + (version & 0xff);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + minOs;
+		result = prime * result + platform;
+		result = prime * result + sdk;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		MachOBuildVersion other = (MachOBuildVersion) obj;
+		if (minOs != other.minOs)
+			return false;
+		if (platform != other.platform)
+			return false;
+		if (sdk != other.sdk)
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + getPlatformName() + " minos=" + getMinOsVersionString() + " sdk="
+				+ getSdkVersionString() + "]";
+	}
+}
@@ -0,0 +1,246 @@
+package saker.apple.impl.macho;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+
+/**
+ * Parsed representation of a thin or universal (fat) Mach-O file.
+ * <p>
+ * The headers and load commands are parsed directly from the memory mapped file, only the decoded values are kept.
+ * Instances don't reference the mapped memory, so they can be cached after the file is closed.
+ * <p>
+ * A thin file consists of a single {@linkplain MachOImage image}, while universal files have an image for each of
+ * their architecture slices.
+ */
+public final class MachOFile {
+	public static final int FAT_MAGIC = 0xcafebabe;
+	public static final int FAT_MAGIC_64 = 0xcafebabf;
+	public static final int MH_MAGIC = 0xfeedface;
+	public static final int MH_MAGIC_64 = 0xfeedfacf;
+	public static final int MH_CIGAM = 0xcefaedfe;
+	public static final int MH_CIGAM_64 = 0xcffaedfe;
+
+	public static final int FAT_HEADER_SIZE = 8;
+	public static final int FAT_ARCH_SIZE = 20;
+	public static final int FAT_ARCH_64_SIZE = 32;
+
+	/**
+	 * The maximum alignment of a slice as a power of 2.
+	 */
+	public static final int MAX_ALIGN = 15;
+	/**
+	 * The maximum number of architectures in a fat header that we accept.
+	 * <p>
+	 * Java class files start with the same magic as the fat header, this limit is used to distinguish them, as their
+	 * major version is at least 45.
+	 */
+	public static final int MAX_FAT_ARCH_COUNT = 30;
+
+	private final boolean fat;
+	private final boolean fat64;
+	private final List<MachOImage> images;
+
+	private MachOFile(boolean fat, boolean fat64, List<MachOImage> images) {
+		this.fat = fat;
+		this.fat64 = fat64;
+		this.images = images;
+	}
+
+	/**
+	 * Reads the Mach-O file at the given path.
+	 * <p>
+	 * The header regions of the file are memory mapped, the slice contents are not accessed.
+	 *
+	 * @param path
+	 *            The path of the file.
+	 * @return The parsed file or <code>null</code> if it is not a Mach-O file. Universal files that contain static
+	 *         libraries are not considered to be Mach-O files.
+	 * @throws IOException
+	 *             If the file is malformed or an I/O error occurs.
+	 */
+	public static MachOFile read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long filesize = channel.size();
+			return parse(filesize, (offset, length) -> channel.map(MapMode.READ_ONLY, offset, length),
+					path.toString());
+		}
+	}
+
+	/**
+	 * Parses the Mach-O file in the argument buffer.
+	 * <p>
+	 * The buffer is not modified.
+	 *
+	 * @param buffer
+	 *            The contents of the file from the position to the limit.
+	 * @return The parsed file or <code>null</code> if it is not a Mach-O file.
+	 * @throws IOException
+	 *             If the file is malformed.
+	 */
+	public static MachOFile parse(ByteBuffer buffer) throws IOException {
+		ByteBuffer contents = buffer.slice();
+		return parse(contents.remaining(), (offset, length) -> {
+			ByteBuffer dup = contents.duplicate();
+			dup.position((int) offset);
+			dup.limit((int) (offset + length));
+			return dup.slice();
+		}, "buffer");
+	}
+
+	/**
+	 * Checks if the file is universal.
+	 * <p>
+	 * A universal file with a single slice is still universal.
+	 */
+	public boolean isFat() {
+		return fat;
+	}
+
+	public boolean isFat64() {
+		return fat64;
+	}
+
+	/**
+	 * Gets the images in the file in the order they appear.
+	 */
+	public List<MachOImage> getImages() {
+		return images;
+	}
+
+	/**
+	 * Gets the image for the given architecture.
+	 *
+	 * @param architecture
+	 *            The architecture name.
+	 * @return The image or <code>null</code> if not found.
+	 * @see MachOArchitectures#getArchitectureName(int, int)
+	 */
+	public MachOImage getImage(String architecture) {
+		for (MachOImage img : images) {
+			if (img.getArchitecture().equals(architecture)) {
+				return img;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the architecture names of the images in the order they appear.
+	 */
+	public List<String> getArchitectures() {
+		List<String> result = new ArrayList<>(images.size());
+		for (MachOImage img : images) {
+			result.add(img.getArchitecture());
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + (fat ? "fat " : "") + getArchitectures() + "]";
+	}
+
+	@FunctionalInterface
+	private interface RegionMapper {
+		public ByteBuffer map(long offset, long length) throws IOException;
+	}
+
+	private static MachOFile parse(long filesize, RegionMapper mapper, String source) throws IOException {
+		if (filesize < FAT_HEADER_SIZE) {
+			return null;
+		}
+		ByteBuffer headerbuf = mapper.map(0, FAT_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+		int magic = headerbuf.getInt(0);
+		if (magic == FAT_MAGIC || magic == FAT_MAGIC_64) {
+			return parseFat(filesize, mapper, source, magic == FAT_MAGIC_64, headerbuf.getInt(4));
+		}
+		if (isThinMagic(magic)) {
+			MachOImage img = parseImage(mapper, source, 0, filesize, -1);
+			return new MachOFile(false, false, Collections.singletonList(img));
+		}
+		return null;
+	}
+
+	private static boolean isThinMagic(int magic) {
+		return magic == MH_MAGIC || magic == MH_MAGIC_64 || magic == MH_CIGAM || magic == MH_CIGAM_64;
+	}
+
+	private static MachOFile parseFat(long filesize, RegionMapper mapper, String source, boolean fat64, int count)
+			throws IOException {
+		if (count <= 0 || count > MAX_FAT_ARCH_COUNT) {
+			//probably a Java class file
+			return null;
+		}
+		int archsize = fat64 ? FAT_ARCH_64_SIZE : FAT_ARCH_SIZE;
+		if (FAT_HEADER_SIZE + (long) count * archsize > filesize) {
+			throw new IOException("Truncated fat header in: " + source);
+		}
+		ByteBuffer archs = mapper.map(FAT_HEADER_SIZE, count * archsize).order(ByteOrder.BIG_ENDIAN);
+		List<MachOImage> images = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int cputype = archs.getInt();
+			int cpusubtype = archs.getInt();
+			long offset;
+			long size;
+			int align;
+			if (fat64) {
+				offset = archs.getLong();
+				size = archs.getLong();
+				align = archs.getInt();
+				//reserved
+				archs.getInt();
+			} else {
+				offset = archs.getInt() & 0xffffffffL;
+				size = archs.getInt() & 0xffffffffL;
+				align = archs.getInt();
+			}
+			if (offset < 0 || size < 0 || offset + size > filesize) {
+				throw new IOException("Slice out of bounds in: " + source);
+			}
+			if (align < 0 || align > MAX_ALIGN) {
+				throw new IOException("Invalid slice alignment 2^" + align + " in: " + source);
+			}
+			if (size < 4 || !isThinMagic(mapper.map(offset, 4).order(ByteOrder.BIG_ENDIAN).getInt(0))) {
+				//universal static library or other non Mach-O contents
+				return null;
+			}
+			MachOImage img = parseImage(mapper, source, offset, size, align);
+			if (!MachOArchitectures.isSameArchitecture(cputype, cpusubtype, img.getCpuType(), img.getCpuSubType())) {
+				throw new IOException(
+						"Architecture of slice " + i + " doesn't match its Mach-O header in: " + source);
+			}
+			images.add(img);
+		}
+		return new MachOFile(true, fat64, ImmutableUtils.unmodifiableList(images));
+	}
+
+	private static MachOImage parseImage(RegionMapper mapper, String source, long offset, long size, int fatalign)
+			throws IOException {
+		if (size < 4) {
+			throw new IOException("Truncated Mach-O header in: " + source);
+		}
+		int magic = mapper.map(offset, 4).order(ByteOrder.BIG_ENDIAN).getInt(0);
+		boolean is64 = magic == MH_MAGIC_64 || magic == MH_CIGAM_64;
+		ByteOrder order = magic == MH_MAGIC || magic == MH_MAGIC_64 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		int headersize = is64 ? MachOImage.MACH_HEADER_64_SIZE : MachOImage.MACH_HEADER_SIZE;
+		if (size < headersize) {
+			throw new IOException("Truncated Mach-O header in: " + source);
+		}
+		long sizeofcmds = mapper.map(offset + 20, 4).order(order).getInt(0) & 0xffffffffL;
+		if (headersize + sizeofcmds > size) {
+			throw new IOException("Truncated Mach-O load commands in: " + source);
+		}
+		ByteBuffer header = mapper.map(offset, (int) (headersize + sizeofcmds)).order(order);
+		return MachOImage.parse(header, is64, offset, size, fatalign, source);
+	}
+}
@@ -0,0 +1,191 @@
+package saker.apple.impl.macho;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import saker.build.file.content.ContentDescriptor;
+import saker.build.runtime.environment.SakerEnvironment;
+import saker.build.task.TaskContext;
+import saker.build.thirdparty.saker.util.io.function.IOSupplier;
+import saker.build.trace.BuildTrace;
+
+/**
+ * Size bounded LRU cache of parsed Mach-O files.
+ * <p>
+ * The files are keyed by their path and content descriptor, so a changed file is never served from the cache. The
+ * result of files that are not Mach-O files is cached as well. The cache is scoped to the build environment, and is
+ * accessible via {@link #get(TaskContext)}.
+ */
+public final class MachOFileCache {
+	/**
+	 * System property that specifies the maximum number of cached files.
+	 */
+	public static final String PROPERTY_MAX_ENTRIES = "saker.apple.macho.cache.entries";
+
+	private static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	//placeholder for files that are not Mach-O files
+	private static final Object NOT_MACH_O = new Object();
+
+	private final int maxEntries;
+
+	//access ordered for LRU eviction, synchronized on itself
+	private final LinkedHashMap<CacheKey, Object> files = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public MachOFileCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public static int getDefaultMaxEntries() {
+		return Integer.getInteger(PROPERTY_MAX_ENTRIES, DEFAULT_MAX_ENTRIES);
+	}
+
+	public static MachOFileCache get(TaskContext taskcontext) {
+		SakerEnvironment environment = taskcontext.getExecutionContext().getEnvironment();
+		try {
+			return environment.getEnvironmentPropertyCurrentValue(MachOFileCacheEnvironmentProperty.INSTANCE);
+		} catch (Exception e) {
+			//shouldn't happen, the computation doesn't throw
+			throw new RuntimeException("Failed to retrieve Mach-O file cache.", e);
+		}
+	}
+
+	/**
+	 * Gets the parsed Mach-O file at the given local file system path.
+	 * <p>
+	 * If the content descriptor is <code>null</code>, the result is not cached.
+	 *
+	 * @param localpath
+	 *            The local path of the file.
+	 * @param contentdescriptor
+	 *            The content descriptor of the file.
+	 * @return The parsed file or <code>null</code> if it is not a Mach-O file.
+	 * @throws IOException
+	 *             If the file is malformed or an I/O error occurs.
+	 * @see MachOFile#read(Path)
+	 */
+	public MachOFile getLocalFile(Path localpath, ContentDescriptor contentdescriptor) throws IOException {
+		try {
+			return get(localpath.toString(), contentdescriptor, () -> MachOFile.read(localpath));
+		} finally {
+			reportBuildTrace();
+		}
+	}
+
+	/**
+	 * Gets the parsed Mach-O file with the given contents.
+	 *
+	 * @param path
+	 *            The path of the file used as part of the cache key.
+	 * @param contentdescriptor
+	 *            The content descriptor of the file.
+	 * @param contents
+	 *            The supplier of the file contents if it is not found in the cache.
+	 * @return The parsed file or <code>null</code> if it is not a Mach-O file.
+	 * @throws IOException
+	 *             If the file is malformed or the contents can't be retrieved.
+	 * @see MachOFile#parse(ByteBuffer)
+	 */
+	public MachOFile getFile(String path, ContentDescriptor contentdescriptor, IOSupplier<? extends ByteBuffer> contents)
+			throws IOException {
+		try {
+			return get(path, contentdescriptor, () -> MachOFile.parse(contents.get()));
+		} finally {
+			reportBuildTrace();
+		}
+	}
+
+	private MachOFile get(String path, ContentDescriptor contentdescriptor, IOSupplier<? extends MachOFile> loader)
+			throws IOException {
+		if (contentdescriptor == null) {
+			misses.incrementAndGet();
+			return loader.get();
+		}
+		CacheKey key = new CacheKey(path, contentdescriptor);
+		Object cached;
+		synchronized (files) {
+			cached = files.get(key);
+		}
+		if (cached != null) {
+			hits.incrementAndGet();
+			return cached == NOT_MACH_O ? null : (MachOFile) cached;
+		}
+		misses.incrementAndGet();
+		//parse outside of the lock, concurrent loads of the same file are harmless
+		MachOFile result = loader.get();
+		synchronized (files) {
+			files.put(key, result == null ? NOT_MACH_O : result);
+			Iterator<?> it = files.values().iterator();
+			while (files.size() > maxEntries && it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+		}
+		return result;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Reports the current cache statistics to the build trace.
+	 */
+	public void reportBuildTrace() {
+		if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+			Map<String, Object> stats = new LinkedHashMap<>();
+			stats.put("Hits", hits.get());
+			stats.put("Misses", misses.get());
+			synchronized (files) {
+				stats.put("Entries", files.size());
+			}
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("Mach-O cache", stats);
+			BuildTrace.setValues(values, BuildTrace.VALUE_CATEGORY_ENVIRONMENT);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[hits=" + hits + ", misses=" + misses + "]";
+	}
+
+	private static final class CacheKey {
+		private final String path;
+		private final ContentDescriptor contentDescriptor;
+
+		public CacheKey(String path, ContentDescriptor contentDescriptor) {
+			this.path = path;
+			this.contentDescriptor = contentDescriptor;
+		}
+
+		@Override
+		public int hashCode() {
+			return path.hashCode() * 31 + contentDescriptor.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			CacheKey other = (CacheKey) obj;
+			return path.equals(other.path) && contentDescriptor.equals(other.contentDescriptor);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package saker.apple.impl.macho;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import saker.build.runtime.environment.EnvironmentProperty;
+import saker.build.runtime.environment.SakerEnvironment;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+
+/**
+ * Environment property that provides the {@link MachOFileCache} of the build environment.
+ * <p>
+ * The property is only used to scope the cache to the build environment, therefore dependencies shouldn't be reported
+ * on it.
+ */
+public class MachOFileCacheEnvironmentProperty implements EnvironmentProperty<MachOFileCache>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	public static final MachOFileCacheEnvironmentProperty INSTANCE = new MachOFileCacheEnvironmentProperty();
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public MachOFileCacheEnvironmentProperty() {
+	}
+
+	@Override
+	public MachOFileCache getCurrentValue(SakerEnvironment environment) throws Exception {
+		return new MachOFileCache(MachOFileCache.getDefaultMaxEntries());
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass().getName().hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return ObjectUtils.isSameClass(this, obj);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[]";
+	}
+
+}
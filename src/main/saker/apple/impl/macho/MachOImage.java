@@ -0,0 +1,368 @@
+package saker.apple.impl.macho;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+
+/**
+ * A single architecture image in a {@link MachOFile}.
+ * <p>
+ * Contains the decoded Mach-O header and the commonly used load commands. Other load commands can be accessed based
+ * on their {@linkplain MachOLoadCommand#getOffset() file offsets}.
+ */
+public final class MachOImage {
+	public static final int MH_OBJECT = 0x1;
+	public static final int MH_EXECUTE = 0x2;
+	public static final int MH_DYLIB = 0x6;
+	public static final int MH_BUNDLE = 0x8;
+
+	public static final int LC_SEGMENT = 0x1;
+	public static final int LC_LOAD_DYLIB = 0xc;
+	public static final int LC_ID_DYLIB = 0xd;
+	public static final int LC_SEGMENT_64 = 0x19;
+	public static final int LC_UUID = 0x1b;
+	public static final int LC_LAZY_LOAD_DYLIB = 0x20;
+	public static final int LC_VERSION_MIN_MACOSX = 0x24;
+	public static final int LC_VERSION_MIN_IPHONEOS = 0x25;
+	public static final int LC_VERSION_MIN_TVOS = 0x2f;
+	public static final int LC_VERSION_MIN_WATCHOS = 0x30;
+	public static final int LC_BUILD_VERSION = 0x32;
+	public static final int LC_LOAD_WEAK_DYLIB = 0x80000018;
+	public static final int LC_REEXPORT_DYLIB = 0x8000001f;
+	public static final int LC_LOAD_UPWARD_DYLIB = 0x80000023;
+
+	static final int MACH_HEADER_SIZE = 28;
+	static final int MACH_HEADER_64_SIZE = 32;
+
+	private final long offset;
+	private final long size;
+	private final int align;
+	private final boolean is64;
+	private final int cpuType;
+	private final int cpuSubType;
+	private final int fileType;
+	private final int flags;
+	private final List<MachOLoadCommand> loadCommands;
+	private final List<MachOSegment> segments;
+	private final UUID uuid;
+	private final MachOBuildVersion buildVersion;
+	private final String installName;
+	private final List<String> linkedLibraries;
+
+	private MachOImage(long offset, long size, int align, boolean is64, int cpuType, int cpuSubType, int fileType,
+			int flags, List<MachOLoadCommand> loadCommands, List<MachOSegment> segments, UUID uuid,
+			MachOBuildVersion buildVersion, String installName, List<String> linkedLibraries) {
+		this.offset = offset;
+		this.size = size;
+		this.align = align;
+		this.is64 = is64;
+		this.cpuType = cpuType;
+		this.cpuSubType = cpuSubType;
+		this.fileType = fileType;
+		this.flags = flags;
+		this.loadCommands = loadCommands;
+		this.segments = segments;
+		this.uuid = uuid;
+		this.buildVersion = buildVersion;
+		this.installName = installName;
+		this.linkedLibraries = linkedLibraries;
+	}
+
+	/**
+	 * Gets the offset of the image in the file.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the size of the image in the file.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the alignment of the image as a power of 2.
+	 * <p>
+	 * For slices of universal files, this is the alignment in the fat header. For thin files, it is determined the
+	 * same way as <code>lipo</code> does.
+	 */
+	public int getAlign() {
+		return align;
+	}
+
+	public boolean is64() {
+		return is64;
+	}
+
+	public int getCpuType() {
+		return cpuType;
+	}
+
+	public int getCpuSubType() {
+		return cpuSubType;
+	}
+
+	/**
+	 * Gets the name of the architecture of the image.
+	 *
+	 * @see MachOArchitectures#getArchitectureName(int, int)
+	 */
+	public String getArchitecture() {
+		return MachOArchitectures.getArchitectureName(cpuType, cpuSubType);
+	}
+
+	/**
+	 * Gets the Mach-O file type. E.g. {@link #MH_EXECUTE}.
+	 */
+	public int getFileType() {
+		return fileType;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public List<MachOLoadCommand> getLoadCommands() {
+		return loadCommands;
+	}
+
+	public List<MachOSegment> getSegments() {
+		return segments;
+	}
+
+	/**
+	 * Gets the segment with the given name.
+	 *
+	 * @return The segment or <code>null</code> if not found.
+	 */
+	public MachOSegment getSegment(String name) {
+		for (MachOSegment seg : segments) {
+			if (seg.getName().equals(name)) {
+				return seg;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the UUID in the <code>LC_UUID</code> load command.
+	 *
+	 * @return The UUID or <code>null</code> if the image has none.
+	 */
+	public UUID getUUID() {
+		return uuid;
+	}
+
+	/**
+	 * Gets the target platform and version information of the image.
+	 * <p>
+	 * The information is read from the <code>LC_BUILD_VERSION</code> load command, or from the older
+	 * <code>LC_VERSION_MIN_*</code> commands.
+	 *
+	 * @return The build version or <code>null</code> if the image has none.
+	 */
+	public MachOBuildVersion getBuildVersion() {
+		return buildVersion;
+	}
+
+	/**
+	 * Gets the install name of a dynamic library from the <code>LC_ID_DYLIB</code> load command.
+	 *
+	 * @return The install name or <code>null</code> if the image has none.
+	 */
+	public String getInstallName() {
+		return installName;
+	}
+
+	/**
+	 * Gets the install names of the dynamic libraries that the image links to.
+	 * <p>
+	 * Includes weak, lazy, upward and reexported libraries.
+	 */
+	public List<String> getLinkedLibraries() {
+		return linkedLibraries;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + getArchitecture() + " filetype=" + fileType + " offset=" + offset
+				+ " size=" + size + " align=2^" + align + (uuid != null ? " uuid=" + uuid : "")
+				+ (buildVersion != null ? " " + buildVersion : "") + "]";
+	}
+
+	/**
+	 * Parses an image from the buffer that contains the Mach-O header and the load commands.
+	 */
+	static MachOImage parse(ByteBuffer header, boolean is64, long offset, long size, int fatalign, String source)
+			throws IOException {
+		int cputype = header.getInt(4);
+		int cpusubtype = header.getInt(8);
+		int filetype = header.getInt(12);
+		int ncmds = header.getInt(16);
+		int flags = header.getInt(24);
+		int headersize = is64 ? MACH_HEADER_64_SIZE : MACH_HEADER_SIZE;
+		if (ncmds < 0) {
+			throw new IOException("Malformed Mach-O load commands in: " + source);
+		}
+
+		List<MachOLoadCommand> loadcommands = new ArrayList<>(ncmds);
+		List<MachOSegment> segments = new ArrayList<>();
+		List<String> linkedlibs = new ArrayList<>();
+		UUID uuid = null;
+		MachOBuildVersion buildversion = null;
+		String installname = null;
+
+		int position = headersize;
+		for (int i = 0; i < ncmds; i++) {
+			if (position + 8 > header.limit()) {
+				throw new IOException("Malformed Mach-O load commands in: " + source);
+			}
+			int cmd = header.getInt(position);
+			int cmdsize = header.getInt(position + 4);
+			if (cmdsize < 8 || cmdsize > header.limit() - position) {
+				throw new IOException("Malformed Mach-O load commands in: " + source);
+			}
+			loadcommands.add(new MachOLoadCommand(cmd, offset + position, cmdsize));
+			switch (cmd) {
+				case LC_SEGMENT:
+				case LC_SEGMENT_64: {
+					if ((cmd == LC_SEGMENT_64) != is64) {
+						throw new IOException("Mismatched segment command in: " + source);
+					}
+					segments.add(MachOSegment.parse(header, position, cmdsize, is64, source));
+					break;
+				}
+				case LC_UUID: {
+					requireCommandSize(cmdsize, 24, source);
+					uuid = new UUID(getBigEndianLong(header, position + 8), getBigEndianLong(header, position + 16));
+					break;
+				}
+				case LC_BUILD_VERSION: {
+					requireCommandSize(cmdsize, 24, source);
+					buildversion = new MachOBuildVersion(header.getInt(position + 8), header.getInt(position + 12),
+							header.getInt(position + 16));
+					break;
+				}
+				case LC_VERSION_MIN_MACOSX:
+				case LC_VERSION_MIN_IPHONEOS:
+				case LC_VERSION_MIN_TVOS:
+				case LC_VERSION_MIN_WATCHOS: {
+					requireCommandSize(cmdsize, 16, source);
+					if (buildversion == null) {
+						buildversion = new MachOBuildVersion(getVersionMinPlatform(cmd), header.getInt(position + 8),
+								header.getInt(position + 12));
+					}
+					break;
+				}
+				case LC_ID_DYLIB: {
+					installname = readDylibName(header, position, cmdsize, source);
+					break;
+				}
+				case LC_LOAD_DYLIB:
+				case LC_LOAD_WEAK_DYLIB:
+				case LC_REEXPORT_DYLIB:
+				case LC_LAZY_LOAD_DYLIB:
+				case LC_LOAD_UPWARD_DYLIB: {
+					linkedlibs.add(readDylibName(header, position, cmdsize, source));
+					break;
+				}
+				default: {
+					break;
+				}
+			}
+			position += cmdsize;
+		}
+		int align = fatalign >= 0 ? fatalign : getLipoAlign(filetype, segments);
+		return new MachOImage(offset, size, align, is64, cputype, cpusubtype, filetype, flags,
+				ImmutableUtils.unmodifiableList(loadcommands), ImmutableUtils.unmodifiableList(segments), uuid,
+				buildversion, installname,
+				linkedlibs.isEmpty() ? Collections.emptyList() : ImmutableUtils.unmodifiableList(linkedlibs));
+	}
+
+	/**
+	 * Determines the alignment of a thin Mach-O file in the same way as <code>lipo</code>.
+	 * <p>
+	 * Object files are aligned to their largest section alignment, other files to the smallest alignment of the
+	 * segment addresses, as their paging alignment is assumed to be correct.
+	 */
+	private static int getLipoAlign(int filetype, List<MachOSegment> segments) {
+		if (filetype == MH_OBJECT) {
+			int result = 0;
+			for (MachOSegment seg : segments) {
+				result = Math.max(result, Math.min(seg.getMaxSectionAlign(), MachOFile.MAX_ALIGN));
+			}
+			return result;
+		}
+		int result = MachOFile.MAX_ALIGN;
+		for (MachOSegment seg : segments) {
+			result = Math.min(result, guessAlign(seg.getVmAddress()));
+		}
+		return result;
+	}
+
+	private static int guessAlign(long vmaddr) {
+		if (vmaddr == 0) {
+			return MachOFile.MAX_ALIGN;
+		}
+		int align = Long.numberOfTrailingZeros(vmaddr);
+		return Math.max(2, Math.min(align, MachOFile.MAX_ALIGN));
+	}
+
+	private static int getVersionMinPlatform(int cmd) {
+		switch (cmd) {
+			case LC_VERSION_MIN_MACOSX:
+				return MachOBuildVersion.PLATFORM_MACOS;
+			case LC_VERSION_MIN_IPHONEOS:
+				return MachOBuildVersion.PLATFORM_IOS;
+			case LC_VERSION_MIN_TVOS:
+				return MachOBuildVersion.PLATFORM_TVOS;
+			case LC_VERSION_MIN_WATCHOS:
+				return MachOBuildVersion.PLATFORM_WATCHOS;
+			default:
+				throw new IllegalArgumentException("Unknown version min command: " + cmd);
+		}
+	}
+
+	private static String readDylibName(ByteBuffer header, int position, int cmdsize, String source)
+			throws IOException {
+		//dylib_command: cmd, cmdsize, name offset, timestamp, current_version, compatibility_version
+		requireCommandSize(cmdsize, 24, source);
+		int nameoffset = header.getInt(position + 8);
+		if (nameoffset < 24 || nameoffset >= cmdsize) {
+			throw new IOException("Malformed dylib load command in: " + source);
+		}
+		int start = position + nameoffset;
+		int end = start;
+		int cmdend = position + cmdsize;
+		while (end < cmdend && header.get(end) != 0) {
+			++end;
+		}
+		byte[] name = new byte[end - start];
+		for (int i = 0; i < name.length; i++) {
+			name[i] = header.get(start + i);
+		}
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	private static long getBigEndianLong(ByteBuffer buf, int position) {
+		long result = 0;
+		for (int i = 0; i < 8; i++) {
+			result = (result << 8) | (buf.get(position + i) & 0xff);
+		}
+		return result;
+	}
+
+	private static void requireCommandSize(int cmdsize, int minsize, String source) throws IOException {
+		if (cmdsize < minsize) {
+			throw new IOException("Malformed Mach-O load command in: " + source);
+		}
+	}
+}
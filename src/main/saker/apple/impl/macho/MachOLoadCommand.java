@@ -0,0 +1,42 @@
+package saker.apple.impl.macho;
+
+/**
+ * A load command of a {@link MachOImage}.
+ * <p>
+ * Only the type and the location of the command is stored, the contents can be read from the file if needed.
+ */
+public final class MachOLoadCommand {
+	private final int command;
+	private final long offset;
+	private final int size;
+
+	MachOLoadCommand(int command, long offset, int size) {
+		this.command = command;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	/**
+	 * Gets the type of the load command. E.g. {@link MachOImage#LC_UUID}.
+	 */
+	public int getCommand() {
+		return command;
+	}
+
+	/**
+	 * Gets the offset of the load command in the file.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[cmd=0x" + Integer.toHexString(command) + " offset=" + offset + " size="
+				+ size + "]";
+	}
+}
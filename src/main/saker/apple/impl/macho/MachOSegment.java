@@ -0,0 +1,150 @@
+package saker.apple.impl.macho;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A segment of a {@link MachOImage} as declared by its <code>LC_SEGMENT</code> or <code>LC_SEGMENT_64</code> load
+ * command.
+ */
+public final class MachOSegment {
+	private static final int SEGMENT_COMMAND_SIZE = 56;
+	private static final int SEGMENT_COMMAND_64_SIZE = 72;
+	private static final int SECTION_SIZE = 68;
+	private static final int SECTION_64_SIZE = 80;
+
+	private final String name;
+	private final long vmAddress;
+	private final long vmSize;
+	private final long fileOffset;
+	private final long fileSize;
+	private final int maxProtection;
+	private final int initialProtection;
+	private final int sectionCount;
+	private final int flags;
+	private final int maxSectionAlign;
+
+	private MachOSegment(String name, long vmAddress, long vmSize, long fileOffset, long fileSize, int maxProtection,
+			int initialProtection, int sectionCount, int flags, int maxSectionAlign) {
+		this.name = name;
+		this.vmAddress = vmAddress;
+		this.vmSize = vmSize;
+		this.fileOffset = fileOffset;
+		this.fileSize = fileSize;
+		this.maxProtection = maxProtection;
+		this.initialProtection = initialProtection;
+		this.sectionCount = sectionCount;
+		this.flags = flags;
+		this.maxSectionAlign = maxSectionAlign;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getVmAddress() {
+		return vmAddress;
+	}
+
+	public long getVmSize() {
+		return vmSize;
+	}
+
+	/**
+	 * Gets the offset of the segment contents relative to the start of the image.
+	 */
+	public long getFileOffset() {
+		return fileOffset;
+	}
+
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	public int getMaxProtection() {
+		return maxProtection;
+	}
+
+	public int getInitialProtection() {
+		return initialProtection;
+	}
+
+	public int getSectionCount() {
+		return sectionCount;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	/**
+	 * Gets the largest alignment of the sections in the segment as a power of 2.
+	 */
+	public int getMaxSectionAlign() {
+		return maxSectionAlign;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + name + " vmaddr=0x" + Long.toHexString(vmAddress) + " vmsize=0x"
+				+ Long.toHexString(vmSize) + " fileoff=" + fileOffset + " filesize=" + fileSize + "]";
+	}
+
+	static MachOSegment parse(ByteBuffer header, int position, int cmdsize, boolean is64, String source)
+			throws IOException {
+		int cmdheadersize = is64 ? SEGMENT_COMMAND_64_SIZE : SEGMENT_COMMAND_SIZE;
+		if (cmdsize < cmdheadersize) {
+			throw new IOException("Malformed Mach-O segment command in: " + source);
+		}
+		String name = readName(header, position + 8);
+		long vmaddr;
+		long vmsize;
+		long fileoff;
+		long filesize;
+		int fieldspos;
+		if (is64) {
+			vmaddr = header.getLong(position + 24);
+			vmsize = header.getLong(position + 32);
+			fileoff = header.getLong(position + 40);
+			filesize = header.getLong(position + 48);
+			fieldspos = position + 56;
+		} else {
+			vmaddr = header.getInt(position + 24) & 0xffffffffL;
+			vmsize = header.getInt(position + 28) & 0xffffffffL;
+			fileoff = header.getInt(position + 32) & 0xffffffffL;
+			filesize = header.getInt(position + 36) & 0xffffffffL;
+			fieldspos = position + 40;
+		}
+		int maxprot = header.getInt(fieldspos);
+		int initprot = header.getInt(fieldspos + 4);
+		int nsects = header.getInt(fieldspos + 8);
+		int flags = header.getInt(fieldspos + 12);
+
+		int sectsize = is64 ? SECTION_64_SIZE : SECTION_SIZE;
+		if (nsects < 0 || cmdheadersize + (long) nsects * sectsize > cmdsize) {
+			throw new IOException("Malformed Mach-O segment command in: " + source);
+		}
+		//section: sectname[16], segname[16], addr, size, offset, align, ...
+		int alignoffset = is64 ? 52 : 44;
+		int maxalign = 0;
+		for (int i = 0; i < nsects; i++) {
+			int sectalign = header.getInt(position + cmdheadersize + i * sectsize + alignoffset);
+			maxalign = Math.max(maxalign, sectalign);
+		}
+		return new MachOSegment(name, vmaddr, vmsize, fileoff, filesize, maxprot, initprot, nsects, flags, maxalign);
+	}
+
+	private static String readName(ByteBuffer header, int position) {
+		byte[] bytes = new byte[16];
+		int len = 0;
+		while (len < bytes.length) {
+			byte b = header.get(position + len);
+			if (b == 0) {
+				break;
+			}
+			bytes[len++] = b;
+		}
+		return new String(bytes, 0, len, StandardCharsets.UTF_8);
+	}
+}
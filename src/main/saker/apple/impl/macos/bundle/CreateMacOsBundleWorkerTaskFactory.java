@@ -13,6 +13,7 @@ import saker.build.runtime.execution.ExecutionContext;
 import saker.build.task.Task;
 import saker.build.task.TaskContext;
 import saker.build.task.TaskFactory;
+import saker.build.task.identifier.TaskIdentifier;
 import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
 import saker.build.thirdparty.saker.util.ImmutableUtils;
 import saker.build.thirdparty.saker.util.SetTransformingNavigableMap;
@@ -26,6 +27,7 @@ public class CreateMacOsBundleWorkerTaskFactory implements TaskFactory<CreateMac
 	private static final long serialVersionUID = 1L;
 
 	private TaskFactory<? extends PrepareDirectoryWorkerTaskOutput> prepareTaskFactory;
+	private TaskIdentifier pkgInfoTaskId;
 
 	/**
 	 * For {@link Externalizable}.
@@ -42,6 +44,15 @@ public class CreateMacOsBundleWorkerTaskFactory implements TaskFactory<CreateMac
 		this.prepareTaskFactory = prepareTaskFactory;
 	}
 
+	/**
+	 * Sets the identifier of the task that generates the PkgInfo file of the bundle.
+	 * <p>
+	 * The task waits for the generator task before preparing the bundle contents.
+	 */
+	public void setPkgInfoTaskId(TaskIdentifier pkgInfoTaskId) {
+		this.pkgInfoTaskId = pkgInfoTaskId;
+	}
+
 	@Override
 	public Task<? extends CreateMacOsBundleWorkerTaskOutput> createTask(ExecutionContext executioncontext) {
 		return this;
@@ -51,6 +62,11 @@ public class CreateMacOsBundleWorkerTaskFactory implements TaskFactory<CreateMac
 	public CreateMacOsBundleWorkerTaskOutput run(TaskContext taskcontext) throws Exception {
 		CrateMacOsBundleWorkerTaskIdentifier taskid = (CrateMacOsBundleWorkerTaskIdentifier) taskcontext.getTaskId();
 
+		if (pkgInfoTaskId != null) {
+			//the generated PkgInfo is an input of the prepared directory
+			taskcontext.getTaskResult(pkgInfoTaskId);
+		}
+
 		PrepareDirectoryWorkerTaskOutput prepareout = taskcontext.getTaskUtilities().runTaskResult(
 				SakerStandardTaskUtils.createPrepareDirectoryTaskIdentifier(taskid.getOutputPath()),
 				prepareTaskFactory);
@@ -76,17 +92,20 @@ public class CreateMacOsBundleWorkerTaskFactory implements TaskFactory<CreateMac
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
 		out.writeObject(prepareTaskFactory);
+		out.writeObject(pkgInfoTaskId);
 	}
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		prepareTaskFactory = SerialUtils.readExternalObject(in);
+		pkgInfoTaskId = SerialUtils.readExternalObject(in);
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + ((pkgInfoTaskId == null) ? 0 : pkgInfoTaskId.hashCode());
 		result = prime * result + ((prepareTaskFactory == null) ? 0 : prepareTaskFactory.hashCode());
 		return result;
 	}
@@ -100,6 +119,11 @@ public class CreateMacOsBundleWorkerTaskFactory implements TaskFactory<CreateMac
 		if (getClass() != obj.getClass())
 			return false;
 		CreateMacOsBundleWorkerTaskFactory other = (CreateMacOsBundleWorkerTaskFactory) obj;
+		if (pkgInfoTaskId == null) {
+			if (other.pkgInfoTaskId != null)
+				return false;
+		} else if (!pkgInfoTaskId.equals(other.pkgInfoTaskId))
+			return false;
 		if (prepareTaskFactory == null) {
 			if (other.prepareTaskFactory != null)
 				return false;
@@ -0,0 +1,168 @@
+package saker.apple.impl.pkginfo;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+
+import saker.apple.impl.plist.PlistWorkerUtils;
+import saker.apple.impl.plist.PlistWorkerUtils.PlistInput;
+import saker.build.file.ByteArraySakerFile;
+import saker.build.file.SakerDirectory;
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.SakerPathFiles;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.Task;
+import saker.build.task.TaskContext;
+import saker.build.task.TaskFactory;
+import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+import saker.build.trace.BuildTrace;
+import saker.std.api.file.location.ExecutionFileLocation;
+import saker.std.api.file.location.FileLocation;
+
+/**
+ * Worker task that generates the PkgInfo file of an application bundle based on its Info.plist.
+ * <p>
+ * Only the <code>CFBundlePackageType</code> and <code>CFBundleSignature</code> entries are looked up from the
+ * Info.plist. The generated file is added to the build directory as an in-memory file at the output path of the task
+ * identifier.
+ * <p>
+ * The result of the task is the contents of the PkgInfo file. As the dependent tasks only compare the result for
+ * equality, modifying other entries of the Info.plist doesn't cause them to be rerun.
+ */
+public class GeneratePkgInfoWorkerTaskFactory implements TaskFactory<String>, Task<String>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The build directory relative path of the directory that contains the generated PkgInfo files.
+	 */
+	public static final SakerPath OUTPUT_DIRECTORY_PATH = SakerPath.valueOf("saker.apple.pkginfo");
+
+	private static final String PKGINFO_FILE_NAME = "PkgInfo";
+
+	private FileLocation infoPlist;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public GeneratePkgInfoWorkerTaskFactory() {
+	}
+
+	public GeneratePkgInfoWorkerTaskFactory(FileLocation infoPlist) {
+		this.infoPlist = infoPlist;
+	}
+
+	/**
+	 * Starts the PkgInfo generation for the application bundle at the given output path.
+	 *
+	 * @param taskcontext
+	 *            The task context.
+	 * @param infoplist
+	 *            The Info.plist of the application.
+	 * @param bundleoutputpath
+	 *            The build directory relative output path of the application bundle.
+	 * @return The identifier of the started task.
+	 */
+	public static GeneratePkgInfoWorkerTaskIdentifier startGeneratePkgInfo(TaskContext taskcontext,
+			FileLocation infoplist, SakerPath bundleoutputpath) {
+		GeneratePkgInfoWorkerTaskIdentifier taskid = new GeneratePkgInfoWorkerTaskIdentifier(
+				OUTPUT_DIRECTORY_PATH.resolve(bundleoutputpath).resolve(PKGINFO_FILE_NAME));
+		taskcontext.startTask(taskid, new GeneratePkgInfoWorkerTaskFactory(infoplist), null);
+		return taskid;
+	}
+
+	/**
+	 * Gets the location of the PkgInfo file that is generated by the task with the given identifier.
+	 */
+	public static FileLocation getOutputFileLocation(TaskContext taskcontext,
+			GeneratePkgInfoWorkerTaskIdentifier taskid) {
+		return ExecutionFileLocation.create(
+				SakerPathFiles.requireBuildDirectory(taskcontext).getSakerPath().resolve(taskid.getOutputPath()));
+	}
+
+	@Override
+	public Task<? extends String> createTask(ExecutionContext executioncontext) {
+		return this;
+	}
+
+	@Override
+	public String run(TaskContext taskcontext) throws Exception {
+		if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+			BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_WORKER);
+		}
+		GeneratePkgInfoWorkerTaskIdentifier taskid = (GeneratePkgInfoWorkerTaskIdentifier) taskcontext.getTaskId();
+		SakerPath outputpath = taskid.getOutputPath();
+
+		PlistInput input = PlistWorkerUtils.getInputReportDependency(taskcontext, infoPlist);
+		//only look up the required fields instead of decoding the whole plist
+		String pkgtype = getPlistStringField(input.lookup("CFBundlePackageType"), "CFBundlePackageType");
+		String sig = getPlistStringField(input.lookup("CFBundleSignature"), "CFBundleSignature");
+		String pkginfocontents = pkgtype + sig;
+		byte[] pkginfobytes = pkginfocontents.getBytes(StandardCharsets.UTF_8);
+		if (pkginfobytes.length != 4 + 4) {
+			throw new IllegalArgumentException("Invalid PkgInfo contents. Expected 8 bytes: " + pkginfocontents);
+		}
+
+		SakerDirectory outputdir = taskcontext.getTaskUtilities().resolveDirectoryAtRelativePathCreate(
+				SakerPathFiles.requireBuildDirectory(taskcontext), outputpath.getParent());
+		ByteArraySakerFile outputfile = new ByteArraySakerFile(outputpath.getFileName(), pkginfobytes);
+		outputdir.add(outputfile);
+		taskcontext.reportOutputFileDependency(null, outputfile.getSakerPath(), outputfile.getContentDescriptor());
+
+		taskcontext.reportSelfTaskOutputChangeDetector(new EqualityTaskOutputChangeDetector(pkginfocontents));
+		return pkginfocontents;
+	}
+
+	private static String getPlistStringField(Object value, String fname) {
+		if (value == null) {
+			throw new IllegalArgumentException("Info.plist " + fname + " field is missing.");
+		}
+		if (!(value instanceof String)) {
+			throw new IllegalArgumentException("Info.plist " + fname + " field is not a String.");
+		}
+		return (String) value;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeObject(infoPlist);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		infoPlist = SerialUtils.readExternalObject(in);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((infoPlist == null) ? 0 : infoPlist.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		GeneratePkgInfoWorkerTaskFactory other = (GeneratePkgInfoWorkerTaskFactory) obj;
+		if (infoPlist == null) {
+			if (other.infoPlist != null)
+				return false;
+		} else if (!infoPlist.equals(other.infoPlist))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + infoPlist + "]";
+	}
+
+}
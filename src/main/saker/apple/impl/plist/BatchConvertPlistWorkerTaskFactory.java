@@ -0,0 +1,272 @@
+package saker.apple.impl.plist;
+
+import java.io.BufferedInputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import saker.apple.api.plist.BatchConvertPlistWorkerTaskOutput;
+import saker.apple.impl.BatchFileStates;
+import saker.apple.impl.BatchFileStates.FileState;
+import saker.apple.impl.plist.PlistWorkerUtils.PlistInput;
+import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.XmlPlistStreamTransformer;
+import saker.apple.main.plist.BatchConvertPlistTaskFactory;
+import saker.build.file.DirectoryVisitPredicate;
+import saker.build.file.SakerDirectory;
+import saker.build.file.SakerFile;
+import saker.build.file.content.ContentDescriptor;
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.SakerPathFiles;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.Task;
+import saker.build.task.TaskContext;
+import saker.build.task.TaskExecutionUtilities;
+import saker.build.task.TaskFactory;
+import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+import saker.build.thirdparty.saker.util.thread.ThreadUtils;
+import saker.build.thirdparty.saker.util.thread.ThreadUtils.ThreadWorkPool;
+import saker.build.trace.BuildTrace;
+import saker.std.api.file.location.FileLocation;
+
+public class BatchConvertPlistWorkerTaskFactory implements TaskFactory<BatchConvertPlistWorkerTaskOutput>,
+		Task<BatchConvertPlistWorkerTaskOutput>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The maximum number of computation tokens that the task requests.
+	 * <p>
+	 * The conversions are performed on a thread pool that has the same number of threads as the requested tokens.
+	 */
+	private static final int MAX_COMPUTATION_TOKEN_COUNT = 4;
+
+	private static final String OUTPUT_TAG_CONVERSION_STATE = "conversion-state";
+
+	private NavigableMap<SakerPath, FileLocation> inputs;
+	private String format;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public BatchConvertPlistWorkerTaskFactory() {
+	}
+
+	public BatchConvertPlistWorkerTaskFactory(NavigableMap<SakerPath, FileLocation> inputs, String format) {
+		this.inputs = inputs;
+		this.format = format;
+	}
+
+	@Override
+	public int getRequestedComputationTokenCount() {
+		return Math.max(1, Math.min(inputs.size(), MAX_COMPUTATION_TOKEN_COUNT));
+	}
+
+	private int getPlistFormat() {
+		switch (format) {
+			case "binary1": {
+				return Plist.FORMAT_BINARY;
+			}
+			case "xml1": {
+				return Plist.FORMAT_XML;
+			}
+			default: {
+				throw new IllegalArgumentException("Unsupported format: " + format);
+			}
+		}
+	}
+
+	@Override
+	public BatchConvertPlistWorkerTaskOutput run(TaskContext taskcontext) throws Exception {
+		if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+			BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_WORKER);
+		}
+		taskcontext.setStandardOutDisplayIdentifier(BatchConvertPlistTaskFactory.TASK_NAME);
+
+		BatchConvertPlistWorkerTaskIdentifier taskid = (BatchConvertPlistWorkerTaskIdentifier) taskcontext
+				.getTaskId();
+
+		TaskExecutionUtilities taskutils = taskcontext.getTaskUtilities();
+		SakerDirectory outputdir = taskutils.resolveDirectoryAtRelativePathCreate(
+				SakerPathFiles.requireBuildDirectory(taskcontext), taskid.getRelativeOutput());
+
+		int outputformat = getPlistFormat();
+
+		BatchFileStates prevstate = taskcontext.getPreviousTaskOutput(OUTPUT_TAG_CONVERSION_STATE,
+				BatchFileStates.class);
+		//if the format changed, all files need to be converted again
+		NavigableMap<SakerPath, FileState> prevfilestates = BatchFileStates.getReusableFiles(prevstate, outputformat);
+
+		NavigableMap<SakerPath, ContentDescriptor> inputdependencies = new TreeMap<>();
+		NavigableMap<SakerPath, ContentDescriptor> outputdependencies = new TreeMap<>();
+		NavigableMap<SakerPath, FileState> filestates = new TreeMap<>();
+		NavigableMap<SakerPath, SakerPath> mappings = new TreeMap<>();
+
+		List<PendingConversion> pendingconversions = new ArrayList<>();
+		//relative parent directory paths to the local paths of the mirrored directories
+		Map<SakerPath, Path> mirroreddirectories = new HashMap<>();
+		PlistWorkerUtils.reportLocalInputDependencies(taskcontext, inputs.values());
+		for (Entry<SakerPath, FileLocation> entry : inputs.entrySet()) {
+			SakerPath relativepath = entry.getKey();
+			PlistInput plistinput = PlistWorkerUtils.getInputCollectDependency(taskcontext, entry.getValue(),
+					inputdependencies);
+			SakerPath relativeparent = relativepath.getParent();
+			SakerDirectory dir = relativeparent == null ? outputdir
+					: taskutils.resolveDirectoryAtRelativePathCreate(outputdir, relativeparent);
+			String filename = relativepath.getFileName();
+
+			FileState prevfilestate = prevfilestates.get(relativepath);
+			SakerFile existing = prevfilestate == null ? null : dir.get(filename);
+			if (BatchFileStates.isUpToDate(prevfilestate, plistinput.getContentDescriptor(),
+					existing == null ? null : existing.getContentDescriptor())) {
+				//the input and the output are unchanged, no need to convert again
+				SakerPath outputpath = existing.getSakerPath();
+				filestates.put(relativepath, prevfilestate);
+				outputdependencies.put(outputpath, prevfilestate.getOutputContents());
+				mappings.put(relativepath, outputpath);
+				continue;
+			}
+
+			Path localdir = mirroreddirectories.get(relativeparent);
+			if (localdir == null) {
+				localdir = taskcontext.mirror(dir, DirectoryVisitPredicate.synchronizeNothing());
+				mirroreddirectories.put(relativeparent, localdir);
+			}
+			pendingconversions.add(
+					new PendingConversion(relativepath, dir, filename, localdir.resolve(filename), plistinput));
+		}
+
+		if (!pendingconversions.isEmpty()) {
+			//the dependencies are already collected, and the output directories are mirrored
+			//only the conversions are performed concurrently, the files are added to the output directory afterwards
+			int threadcount = Math.min(pendingconversions.size(), getRequestedComputationTokenCount());
+			try (ThreadWorkPool pool = ThreadUtils.newFixedWorkPool(threadcount, "plist-convert-")) {
+				for (PendingConversion conversion : pendingconversions) {
+					pool.offer(() -> {
+						conversion.outputContents = convert(conversion.input, conversion.outputLocalPath,
+								outputformat);
+					});
+				}
+			}
+			for (PendingConversion conversion : pendingconversions) {
+				SakerFile outfile = PlistWorkerUtils.addLocalOutputFile(taskcontext, conversion.directory,
+						conversion.fileName, conversion.outputLocalPath, conversion.outputContents);
+				SakerPath outputpath = outfile.getSakerPath();
+				filestates.put(conversion.relativePath,
+						new FileState(conversion.input.getContentDescriptor(), conversion.outputContents));
+				outputdependencies.put(outputpath, conversion.outputContents);
+				mappings.put(conversion.relativePath, outputpath);
+			}
+		}
+		BatchFileStates.removeOutputsOfRemovedInputs(taskutils, outputdir, prevstate, inputs.keySet());
+		outputdir.synchronize();
+
+		taskutils.reportInputFileDependency(null, inputdependencies);
+		taskutils.reportOutputFileDependency(null, outputdependencies);
+		taskcontext.setTaskOutput(OUTPUT_TAG_CONVERSION_STATE, new BatchFileStates(outputformat, filestates));
+
+		BatchConvertPlistWorkerTaskOutputImpl result = new BatchConvertPlistWorkerTaskOutputImpl(
+				outputdir.getSakerPath(), ImmutableUtils.unmodifiableNavigableMap(mappings), format);
+		taskcontext.reportSelfTaskOutputChangeDetector(new EqualityTaskOutputChangeDetector(result));
+		return result;
+	}
+
+	private static ContentDescriptor convert(PlistInput plistinput, Path outputlocalpath, int outputformat)
+			throws IOException {
+		if (outputformat == Plist.FORMAT_XML) {
+			//XML to XML conversion can be streamed without reading the whole plist into memory
+			try (InputStream is = new BufferedInputStream(plistinput.openInputStream())) {
+				if (XmlPlistStreamTransformer.isXmlPlist(is)) {
+					return PlistWorkerUtils.writeStreamedXmlFile(outputlocalpath, is, null);
+				}
+			}
+		}
+		try (Plist plist = plistinput.readPlist()) {
+			return PlistWorkerUtils.writeSerializedFile(outputlocalpath, plist, outputformat);
+		}
+	}
+
+	@Override
+	public Task<? extends BatchConvertPlistWorkerTaskOutput> createTask(ExecutionContext executioncontext) {
+		return this;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		SerialUtils.writeExternalMap(out, inputs);
+		out.writeObject(format);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		inputs = SerialUtils.readExternalSortedImmutableNavigableMap(in);
+		format = SerialUtils.readExternalObject(in);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((inputs == null) ? 0 : inputs.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		BatchConvertPlistWorkerTaskFactory other = (BatchConvertPlistWorkerTaskFactory) obj;
+		if (format == null) {
+			if (other.format != null)
+				return false;
+		} else if (!format.equals(other.format))
+			return false;
+		if (inputs == null) {
+			if (other.inputs != null)
+				return false;
+		} else if (!inputs.equals(other.inputs))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + (inputs != null ? "inputs=" + inputs + ", " : "")
+				+ (format != null ? "format=" + format : "") + "]";
+	}
+
+	private static final class PendingConversion {
+		protected final SakerPath relativePath;
+		protected final SakerDirectory directory;
+		protected final String fileName;
+		protected final Path outputLocalPath;
+		protected final PlistInput input;
+
+		protected ContentDescriptor outputContents;
+
+		public PendingConversion(SakerPath relativePath, SakerDirectory directory, String fileName,
+				Path outputLocalPath, PlistInput input) {
+			this.relativePath = relativePath;
+			this.directory = directory;
+			this.fileName = fileName;
+			this.outputLocalPath = outputLocalPath;
+			this.input = input;
+		}
+	}
+
+}
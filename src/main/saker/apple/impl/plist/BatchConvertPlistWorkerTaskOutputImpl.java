@@ -0,0 +1,105 @@
+package saker.apple.impl.plist;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.NavigableMap;
+
+import saker.apple.api.plist.BatchConvertPlistWorkerTaskOutput;
+import saker.build.file.path.SakerPath;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+
+final class BatchConvertPlistWorkerTaskOutputImpl implements BatchConvertPlistWorkerTaskOutput, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private SakerPath outputDirectory;
+	private NavigableMap<SakerPath, SakerPath> mappings;
+	private String format;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public BatchConvertPlistWorkerTaskOutputImpl() {
+	}
+
+	public BatchConvertPlistWorkerTaskOutputImpl(SakerPath outputDirectory, NavigableMap<SakerPath, SakerPath> mappings,
+			String format) {
+		this.outputDirectory = outputDirectory;
+		this.mappings = mappings;
+		this.format = format;
+	}
+
+	@Override
+	public SakerPath getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	@Override
+	public NavigableMap<SakerPath, SakerPath> getMappings() {
+		return mappings;
+	}
+
+	@Override
+	public String getFormat() {
+		return format;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeObject(outputDirectory);
+		SerialUtils.writeExternalMap(out, mappings);
+		out.writeObject(format);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		outputDirectory = SerialUtils.readExternalObject(in);
+		mappings = SerialUtils.readExternalSortedImmutableNavigableMap(in);
+		format = SerialUtils.readExternalObject(in);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((outputDirectory == null) ? 0 : outputDirectory.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		BatchConvertPlistWorkerTaskOutputImpl other = (BatchConvertPlistWorkerTaskOutputImpl) obj;
+		if (format == null) {
+			if (other.format != null)
+				return false;
+		} else if (!format.equals(other.format))
+			return false;
+		if (mappings == null) {
+			if (other.mappings != null)
+				return false;
+		} else if (!mappings.equals(other.mappings))
+			return false;
+		if (outputDirectory == null) {
+			if (other.outputDirectory != null)
+				return false;
+		} else if (!outputDirectory.equals(other.outputDirectory))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "["
+				+ (outputDirectory != null ? "outputDirectory=" + outputDirectory + ", " : "")
+				+ (mappings != null ? "mappings=" + mappings + ", " : "") + (format != null ? "format=" + format : "")
+				+ "]";
+	}
+
+}
@@ -1,15 +1,21 @@
 package saker.apple.impl.plist;
 
+import java.io.BufferedInputStream;
 import java.io.Externalizable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Set;
 
 import saker.apple.api.plist.ConvertPlistWorkerTaskOutput;
+import saker.apple.impl.SakerAppleImplUtils;
+import saker.apple.impl.plist.PlistWorkerUtils.PlistInput;
 import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.XmlPlistStreamTransformer;
 import saker.apple.main.plist.ConvertPlistTaskFactory;
-import saker.build.file.ByteArraySakerFile;
 import saker.build.file.SakerDirectory;
+import saker.build.file.SakerFile;
 import saker.build.file.path.SakerPath;
 import saker.build.file.provider.SakerPathFiles;
 import saker.build.runtime.execution.ExecutionContext;
@@ -18,6 +24,7 @@ import saker.build.task.TaskContext;
 import saker.build.task.TaskExecutionUtilities;
 import saker.build.task.TaskFactory;
 import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
 import saker.build.thirdparty.saker.util.io.SerialUtils;
 import saker.build.trace.BuildTrace;
 import saker.std.api.file.location.FileLocation;
@@ -28,6 +35,7 @@ public class ConvertPlistWorkerTaskFactory
 
 	private FileLocation input;
 	private String format;
+	private boolean remoteDispatchable;
 
 	/**
 	 * For {@link Externalizable}.
@@ -40,6 +48,24 @@ public class ConvertPlistWorkerTaskFactory
 		this.format = format;
 	}
 
+	/**
+	 * Sets whether the task can be dispatched to build clusters.
+	 * <p>
+	 * Should only be set if the inputs are
+	 * {@linkplain SakerAppleImplUtils#isRemoteDispatchableInputs(Iterable) accessible on the clusters}.
+	 */
+	public void setRemoteDispatchable(boolean remoteDispatchable) {
+		this.remoteDispatchable = remoteDispatchable;
+	}
+
+	@Override
+	public Set<String> getCapabilities() {
+		if (remoteDispatchable) {
+			return ImmutableUtils.singletonNavigableSet(CAPABILITY_REMOTE_DISPATCHABLE);
+		}
+		return TaskFactory.super.getCapabilities();
+	}
+
 	@Override
 	public int getRequestedComputationTokenCount() {
 		return 1;
@@ -75,13 +101,24 @@ public class ConvertPlistWorkerTaskFactory
 
 		String outputfilename = relativeoutputpath.getFileName();
 
-		ByteArraySakerFile outfile;
-		try (Plist plist = InsertPlistWorkerTaskFactory.getPlistReportDependencyForFileLocation(taskcontext, input)) {
-			byte[] serialized = plist.serialize(getPlistFormat());
-			outfile = new ByteArraySakerFile(outputfilename, serialized);
+		int outputformat = getPlistFormat();
+		PlistInput plistinput = PlistWorkerUtils.getInputReportDependency(taskcontext, input);
+		SakerFile outfile = null;
+		if (outputformat == Plist.FORMAT_XML) {
+			//XML to XML conversion can be streamed without reading the whole plist into memory
+			try (InputStream is = new BufferedInputStream(plistinput.openInputStream())) {
+				if (XmlPlistStreamTransformer.isXmlPlist(is)) {
+					outfile = PlistWorkerUtils.createStreamedXmlOutputFile(taskcontext, outputdir, outputfilename, is,
+							null);
+				}
+			}
+		}
+		if (outfile == null) {
+			try (Plist plist = plistinput.readPlist()) {
+				outfile = PlistWorkerUtils.createSerializedOutputFile(taskcontext, outputdir, outputfilename, plist,
+						outputformat);
+			}
 		}
-
-		outputdir.add(outfile);
 		outfile.synchronize();
 
 		SakerPath outputsakerpath = outfile.getSakerPath();
@@ -101,12 +138,14 @@ public class ConvertPlistWorkerTaskFactory
 	public void writeExternal(ObjectOutput out) throws IOException {
 		out.writeObject(input);
 		out.writeObject(format);
+		out.writeBoolean(remoteDispatchable);
 	}
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		input = SerialUtils.readExternalObject(in);
 		format = SerialUtils.readExternalObject(in);
+		remoteDispatchable = in.readBoolean();
 	}
 
 	@Override
@@ -115,6 +154,7 @@ public class ConvertPlistWorkerTaskFactory
 		int result = 1;
 		result = prime * result + ((format == null) ? 0 : format.hashCode());
 		result = prime * result + ((input == null) ? 0 : input.hashCode());
+		result = prime * result + (remoteDispatchable ? 1231 : 1237);
 		return result;
 	}
 
@@ -137,6 +177,8 @@ public class ConvertPlistWorkerTaskFactory
 				return false;
 		} else if (!input.equals(other.input))
 			return false;
+		if (remoteDispatchable != other.remoteDispatchable)
+			return false;
 		return true;
 	}
 
@@ -1,5 +1,6 @@
 package saker.apple.impl.plist;
 
+import java.io.BufferedInputStream;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.InputStream;
@@ -10,29 +11,30 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.Set;
 import java.util.TreeMap;
-import java.util.UUID;
 
 import saker.apple.api.plist.InsertPlistWorkerTaskOutput;
+import saker.apple.impl.SakerAppleImplUtils;
+import saker.apple.impl.plist.PlistWorkerUtils.PlistInput;
 import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.PlistKeyPath;
+import saker.apple.impl.plist.lib.XmlPlistStreamTransformer;
 import saker.apple.main.plist.InsertPlistTaskFactory;
-import saker.build.file.ByteArraySakerFile;
 import saker.build.file.SakerDirectory;
 import saker.build.file.SakerFile;
-import saker.build.file.content.ContentDescriptor;
-import saker.build.file.content.DirectoryContentDescriptor;
 import saker.build.file.path.SakerPath;
-import saker.build.file.provider.LocalFileProvider;
 import saker.build.file.provider.SakerPathFiles;
 import saker.build.runtime.execution.ExecutionContext;
 import saker.build.task.Task;
 import saker.build.task.TaskContext;
+import saker.build.task.TaskExecutionEnvironmentSelector;
 import saker.build.task.TaskExecutionUtilities;
 import saker.build.task.TaskFactory;
 import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
 import saker.build.thirdparty.saker.util.ObjectUtils;
 import saker.build.thirdparty.saker.util.io.SerialUtils;
-import saker.build.thirdparty.saker.util.io.function.IOSupplier;
 import saker.build.trace.BuildTrace;
 import saker.sdk.support.api.SDKDescription;
 import saker.sdk.support.api.SDKPathReference;
@@ -40,11 +42,7 @@ import saker.sdk.support.api.SDKPropertyReference;
 import saker.sdk.support.api.SDKReference;
 import saker.sdk.support.api.SDKSupportUtils;
 import saker.sdk.support.api.exc.SDKPathNotFoundException;
-import saker.std.api.file.location.ExecutionFileLocation;
 import saker.std.api.file.location.FileLocation;
-import saker.std.api.file.location.FileLocationVisitor;
-import saker.std.api.file.location.LocalFileLocation;
-import saker.std.api.util.SakerStandardUtils;
 
 public class InsertPlistWorkerTaskFactory
 		implements TaskFactory<InsertPlistWorkerTaskOutput>, Task<InsertPlistWorkerTaskOutput>, Externalizable {
@@ -54,6 +52,8 @@ public class InsertPlistWorkerTaskFactory
 	private String format;
 	private NavigableMap<String, PlistValueOption> values;
 	private NavigableMap<String, SDKDescription> sdkDescriptions;
+	private boolean keyPaths;
+	private boolean remoteDispatchable;
 
 	/**
 	 * For {@link Externalizable}.
@@ -73,7 +73,39 @@ public class InsertPlistWorkerTaskFactory
 		this.sdkDescriptions = sdkdescriptions;
 	}
 
-	//TODO make cluster dispatchable
+	/**
+	 * Sets whether the keys of the values should be interpreted as {@linkplain PlistKeyPath key paths}.
+	 */
+	public void setKeyPaths(boolean keyPaths) {
+		this.keyPaths = keyPaths;
+	}
+
+	/**
+	 * Sets whether the task can be dispatched to build clusters.
+	 * <p>
+	 * Should only be set if the inputs are
+	 * {@linkplain SakerAppleImplUtils#isRemoteDispatchableInputs(Iterable) accessible on the clusters}.
+	 */
+	public void setRemoteDispatchable(boolean remoteDispatchable) {
+		this.remoteDispatchable = remoteDispatchable;
+	}
+
+	@Override
+	public Set<String> getCapabilities() {
+		if (remoteDispatchable) {
+			return ImmutableUtils.singletonNavigableSet(CAPABILITY_REMOTE_DISPATCHABLE);
+		}
+		return TaskFactory.super.getCapabilities();
+	}
+
+	@Override
+	public TaskExecutionEnvironmentSelector getExecutionEnvironmentSelector() {
+		if (remoteDispatchable && !ObjectUtils.isNullOrEmpty(sdkDescriptions)) {
+			//the build machine needs to have the used SDKs
+			return SDKSupportUtils.getSDKBasedClusterExecutionEnvironmentSelector(sdkDescriptions.values());
+		}
+		return TaskFactory.super.getExecutionEnvironmentSelector();
+	}
 
 	@Override
 	public int getRequestedComputationTokenCount() {
@@ -99,40 +131,7 @@ public class InsertPlistWorkerTaskFactory
 
 	public static Plist getPlistReportDependencyForFileLocation(TaskContext taskcontext, FileLocation input)
 			throws IOException {
-		@SuppressWarnings({ "unchecked", "rawtypes" })
-		IOSupplier<? extends Plist>[] plistsupplier = new IOSupplier[] { null };
-		input.accept(new FileLocationVisitor() {
-			@Override
-			public void visit(LocalFileLocation loc) {
-				SakerPath path = loc.getLocalPath();
-				ContentDescriptor cd = taskcontext.getTaskUtilities().getReportExecutionDependency(
-						SakerStandardUtils.createLocalFileContentDescriptorExecutionProperty(path, UUID.randomUUID()));
-				if (cd == null || cd instanceof DirectoryContentDescriptor) {
-					throw ObjectUtils.sneakyThrow(new NoSuchFieldError("Not a file: " + path));
-				}
-				plistsupplier[0] = () -> {
-					try (InputStream is = LocalFileProvider.getInstance().openInputStream(path)) {
-						return Plist.readFrom(is);
-					}
-				};
-			}
-
-			@Override
-			public void visit(ExecutionFileLocation loc) {
-				SakerPath path = loc.getPath();
-				SakerFile f = taskcontext.getTaskUtilities().resolveFileAtPath(path);
-				if (f == null) {
-					throw ObjectUtils.sneakyThrow(new NoSuchFieldError("Not a file: " + path));
-				}
-				taskcontext.reportInputFileDependency(null, path, f.getContentDescriptor());
-				plistsupplier[0] = () -> {
-					try (InputStream is = f.openInputStream()) {
-						return Plist.readFrom(is);
-					}
-				};
-			}
-		});
-		return plistsupplier[0].get();
+		return PlistWorkerUtils.getInputReportDependency(taskcontext, input).readPlist();
 	}
 
 	@Override
@@ -151,36 +150,68 @@ public class InsertPlistWorkerTaskFactory
 
 		NavigableMap<String, SDKReference> sdks = SDKSupportUtils.resolveSDKReferences(taskcontext, sdkDescriptions);
 
-		@SuppressWarnings({ "unchecked", "rawtypes" })
-		IOSupplier<? extends Plist>[] plistsupplier = new IOSupplier[] { null };
-		if (input == null) {
-			plistsupplier[0] = Plist::createEmpty;
+		NavigableMap<String, Object> modifications = new TreeMap<>();
+		//non-null if there are nested key path modifications
+		Map<PlistKeyPath, Object> keypathmodifications = null;
+		if (keyPaths) {
+			//applied in key path order, so the array indexes are handled numerically
+			Map<PlistKeyPath, Object> pathmods = new TreeMap<>();
+			boolean nested = false;
+			for (Entry<String, PlistValueOption> entry : values.entrySet()) {
+				PlistKeyPath path = PlistKeyPath.parse(entry.getKey());
+				if (path.getComponentCount() != 1 || path.isIndex(0)) {
+					nested = true;
+				}
+				PlistValueOption valoption = entry.getValue();
+				//null value is removal
+				pathmods.put(path, valoption == null ? null : toObject(valoption, sdks));
+			}
+			if (nested) {
+				keypathmodifications = pathmods;
+			} else {
+				//only top-level keys, can be handled the same way as without key paths
+				for (Entry<PlistKeyPath, Object> entry : pathmods.entrySet()) {
+					modifications.put(entry.getKey().getKey(0), entry.getValue());
+				}
+			}
 		} else {
-			plistsupplier[0] = () -> getPlistReportDependencyForFileLocation(taskcontext, input);
+			for (Entry<String, PlistValueOption> entry : values.entrySet()) {
+				PlistValueOption valoption = entry.getValue();
+				//null value is removal
+				modifications.put(entry.getKey(), valoption == null ? null : toObject(valoption, sdks));
+			}
 		}
 		String outputfilename = relativeoutputpath.getFileName();
 
-		ByteArraySakerFile outfile;
-		int outputformat;
-		try (Plist plist = plistsupplier[0].get()) {
-			for (Entry<String, PlistValueOption> entry : values.entrySet()) {
-				String key = entry.getKey();
-				PlistValueOption valoption = entry.getValue();
-				if (valoption == null) {
-					plist.remove(key);
-				} else {
-					Object valobj = toObject(valoption, sdks);
-					plist.set(key, valobj);
+		int outputformat = getPlistOutputFormat();
+		PlistInput plistinput = input == null ? null : PlistWorkerUtils.getInputReportDependency(taskcontext, input);
+		SakerFile outfile = null;
+		if (plistinput != null && outputformat != Plist.FORMAT_BINARY && keypathmodifications == null) {
+			//XML to XML modification can be streamed without reading the whole plist into memory
+			try (InputStream is = new BufferedInputStream(plistinput.openInputStream())) {
+				if (XmlPlistStreamTransformer.isXmlPlist(is)) {
+					outfile = PlistWorkerUtils.createStreamedXmlOutputFile(taskcontext, outputdir, outputfilename, is,
+							modifications);
+					outputformat = Plist.FORMAT_XML;
 				}
 			}
-			outputformat = getPlistOutputFormat();
-			byte[] serialized = plist.serialize(outputformat);
-			outfile = new ByteArraySakerFile(outputfilename, serialized);
-			if (outputformat == Plist.FORMAT_SAME_AS_INPUT) {
-				outputformat = plist.getFormat();
+		}
+		if (outfile == null) {
+			try (Plist plist = plistinput == null ? Plist.createEmpty(Plist.BACKEND_JAVA)
+					: plistinput.readPlist()) {
+				if (keypathmodifications != null) {
+					//only the addressed nested values are replaced
+					plist.applyKeyPathPatch(keypathmodifications);
+				} else {
+					plist.applyPatch(modifications);
+				}
+				if (outputformat == Plist.FORMAT_SAME_AS_INPUT) {
+					outputformat = plist.getFormat();
+				}
+				outfile = PlistWorkerUtils.createSerializedOutputFile(taskcontext, outputdir, outputfilename, plist,
+						outputformat);
 			}
 		}
-		outputdir.add(outfile);
 		outfile.synchronize();
 
 		SakerPath outputsakerpath = outfile.getSakerPath();
@@ -205,7 +236,12 @@ public class InsertPlistWorkerTaskFactory
 		return result;
 	}
 
-	private static Object toObject(PlistValueOption opt, Map<String, ? extends SDKReference> sdks) throws Exception {
+	/**
+	 * Converts the value option to the representation accepted by {@link Plist#set(String, Object)}.
+	 * <p>
+	 * The SDK references are resolved using the argument SDKs.
+	 */
+	public static Object toObject(PlistValueOption opt, Map<String, ? extends SDKReference> sdks) throws Exception {
 		Objects.requireNonNull(opt, "plist value");
 		Object val = opt.getValue();
 		if (val instanceof String) {
@@ -259,17 +295,20 @@ public class InsertPlistWorkerTaskFactory
 	public void writeExternal(ObjectOutput out) throws IOException {
 		out.writeObject(input);
 		out.writeObject(format);
-		SerialUtils.writeExternalMap(out, values);
-		SerialUtils.writeExternalMap(out, sdkDescriptions);
+		PlistValueOption.writeExternalValues(out, values);
+		SakerAppleImplUtils.writeExternalSDKDescriptions(out, sdkDescriptions);
+		out.writeBoolean(keyPaths);
+		out.writeBoolean(remoteDispatchable);
 	}
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		input = SerialUtils.readExternalObject(in);
 		format = SerialUtils.readExternalObject(in);
-		values = SerialUtils.readExternalSortedImmutableNavigableMap(in);
-		sdkDescriptions = SerialUtils.readExternalSortedImmutableNavigableMap(in,
-				SDKSupportUtils.getSDKNameComparator());
+		values = PlistValueOption.readExternalValues(in);
+		sdkDescriptions = SakerAppleImplUtils.readExternalSDKDescriptions(in);
+		keyPaths = in.readBoolean();
+		remoteDispatchable = in.readBoolean();
 	}
 
 	@Override
@@ -296,6 +335,10 @@ public class InsertPlistWorkerTaskFactory
 				return false;
 		} else if (!input.equals(other.input))
 			return false;
+		if (keyPaths != other.keyPaths)
+			return false;
+		if (remoteDispatchable != other.remoteDispatchable)
+			return false;
 		if (sdkDescriptions == null) {
 			if (other.sdkDescriptions != null)
 				return false;
@@ -0,0 +1,194 @@
+package saker.apple.impl.plist;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import saker.apple.api.plist.MergePlistWorkerTaskOutput;
+import saker.apple.impl.plist.PlistWorkerUtils.PlistInput;
+import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.PlistSnapshot;
+import saker.apple.main.plist.MergePlistTaskFactory;
+import saker.build.file.SakerDirectory;
+import saker.build.file.SakerFile;
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.SakerPathFiles;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.Task;
+import saker.build.task.TaskContext;
+import saker.build.task.TaskExecutionUtilities;
+import saker.build.task.TaskFactory;
+import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+import saker.build.thirdparty.saker.util.thread.ThreadUtils;
+import saker.build.trace.BuildTrace;
+import saker.std.api.file.location.FileLocation;
+
+public class MergePlistWorkerTaskFactory
+		implements TaskFactory<MergePlistWorkerTaskOutput>, Task<MergePlistWorkerTaskOutput>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private List<FileLocation> inputs;
+	private String format;
+	private boolean appendArrays;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public MergePlistWorkerTaskFactory() {
+	}
+
+	public MergePlistWorkerTaskFactory(List<FileLocation> inputs, String format, boolean appendArrays) {
+		this.inputs = inputs;
+		this.format = format;
+		this.appendArrays = appendArrays;
+	}
+
+	@Override
+	public int getRequestedComputationTokenCount() {
+		return 1;
+	}
+
+	private int getPlistOutputFormat() {
+		if (format == null) {
+			return Plist.FORMAT_SAME_AS_INPUT;
+		}
+		switch (format) {
+			case "binary1": {
+				return Plist.FORMAT_BINARY;
+			}
+			case "xml1": {
+				return Plist.FORMAT_XML;
+			}
+			default: {
+				throw new IllegalArgumentException("Unsupported format: " + format);
+			}
+		}
+	}
+
+	@Override
+	public MergePlistWorkerTaskOutput run(TaskContext taskcontext) throws Exception {
+		if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+			BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_WORKER);
+		}
+		taskcontext.setStandardOutDisplayIdentifier(MergePlistTaskFactory.TASK_NAME);
+
+		MergePlistWorkerTaskIdentifier taskid = (MergePlistWorkerTaskIdentifier) taskcontext.getTaskId();
+
+		SakerPath relativeoutputpath = taskid.getRelativeOutput();
+		TaskExecutionUtilities taskutils = taskcontext.getTaskUtilities();
+		SakerDirectory outputdir = taskutils.resolveDirectoryAtRelativePathCreate(
+				SakerPathFiles.requireBuildDirectory(taskcontext), relativeoutputpath.getParent());
+
+		String outputfilename = relativeoutputpath.getFileName();
+
+		int inputcount = inputs.size();
+		List<PlistInput> plistinputs = new ArrayList<>(inputcount);
+		List<Integer> inputindexes = new ArrayList<>(inputcount);
+		PlistWorkerUtils.reportLocalInputDependencies(taskcontext, inputs);
+		for (FileLocation in : inputs) {
+			inputindexes.add(plistinputs.size());
+			plistinputs.add(PlistWorkerUtils.getInputReportDependency(taskcontext, in));
+		}
+		//the dependencies are already reported, decode the inputs in parallel
+		PlistSnapshot[] snapshots = new PlistSnapshot[inputcount];
+		ThreadUtils.runParallelItems(inputindexes, i -> {
+			snapshots[i] = plistinputs.get(i).readSnapshot();
+		});
+		PlistSnapshot merged = PlistSnapshot.merge(Arrays.asList(snapshots), appendArrays);
+
+		int outputformat = getPlistOutputFormat();
+		if (outputformat == Plist.FORMAT_SAME_AS_INPUT) {
+			outputformat = merged.getFormat();
+		}
+		SakerFile outfile;
+		try (Plist plist = merged.open()) {
+			outfile = PlistWorkerUtils.createSerializedOutputFile(taskcontext, outputdir, outputfilename, plist,
+					outputformat);
+		}
+		outfile.synchronize();
+
+		SakerPath outputsakerpath = outfile.getSakerPath();
+		taskcontext.reportOutputFileDependency(null, outputsakerpath, outfile.getContentDescriptor());
+
+		String strformat;
+		switch (outputformat) {
+			case Plist.FORMAT_BINARY: {
+				strformat = "binary1";
+				break;
+			}
+			case Plist.FORMAT_XML: {
+				strformat = "xml1";
+				break;
+			}
+			default: {
+				throw new UnsupportedOperationException("Unrecognized plist format: " + outputformat);
+			}
+		}
+		MergePlistWorkerTaskOutputImpl result = new MergePlistWorkerTaskOutputImpl(outputsakerpath, strformat);
+		taskcontext.reportSelfTaskOutputChangeDetector(new EqualityTaskOutputChangeDetector(result));
+		return result;
+	}
+
+	@Override
+	public Task<? extends MergePlistWorkerTaskOutput> createTask(ExecutionContext executioncontext) {
+		return this;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		SerialUtils.writeExternalCollection(out, inputs);
+		out.writeObject(format);
+		out.writeBoolean(appendArrays);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		inputs = SerialUtils.readExternalImmutableList(in);
+		format = SerialUtils.readExternalObject(in);
+		appendArrays = in.readBoolean();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((inputs == null) ? 0 : inputs.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		MergePlistWorkerTaskFactory other = (MergePlistWorkerTaskFactory) obj;
+		if (appendArrays != other.appendArrays)
+			return false;
+		if (format == null) {
+			if (other.format != null)
+				return false;
+		} else if (!format.equals(other.format))
+			return false;
+		if (inputs == null) {
+			if (other.inputs != null)
+				return false;
+		} else if (!inputs.equals(other.inputs))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + (inputs != null ? "inputs=" + inputs + ", " : "")
+				+ (format != null ? "format=" + format + ", " : "") + "appendArrays=" + appendArrays + "]";
+	}
+
+}
@@ -0,0 +1,108 @@
+package saker.apple.impl.plist;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+import saker.apple.impl.plist.lib.Plist;
+import saker.build.file.content.ContentDescriptor;
+import saker.build.thirdparty.saker.util.StringUtils;
+
+/**
+ * Content descriptor of plist files that is based on the logical contents of the plist.
+ * <p>
+ * The descriptor consists of the serialization format and the {@linkplain Plist#getContentHash() content hash} of the
+ * plist. Serialization differences that don't affect the contents (e.g. the order of the dictionary keys) don't cause
+ * the dependent tasks to be rerun.
+ */
+public final class PlistContentDescriptor implements ContentDescriptor, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private int format;
+	private byte[] hash;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public PlistContentDescriptor() {
+	}
+
+	private PlistContentDescriptor(int format, byte[] hash) {
+		this.format = format;
+		this.hash = hash;
+	}
+
+	/**
+	 * Creates a content descriptor for the argument plist that is serialized in the given format.
+	 *
+	 * @param plist
+	 *            The plist.
+	 * @param format
+	 *            The serialization format. {@link Plist#FORMAT_XML} or {@link Plist#FORMAT_BINARY}.
+	 * @return The content descriptor.
+	 */
+	public static PlistContentDescriptor create(Plist plist, int format) {
+		return new PlistContentDescriptor(format, plist.getContentHash());
+	}
+
+	/**
+	 * Creates a content descriptor for a plist with the given content hash.
+	 *
+	 * @param contenthash
+	 *            The content hash of the plist, as returned by {@link Plist#getContentHash()}.
+	 * @param format
+	 *            The serialization format. {@link Plist#FORMAT_XML} or {@link Plist#FORMAT_BINARY}.
+	 * @return The content descriptor.
+	 */
+	public static PlistContentDescriptor createWithHash(byte[] contenthash, int format) {
+		return new PlistContentDescriptor(format, contenthash.clone());
+	}
+
+	@Override
+	public boolean isChanged(ContentDescriptor previouscontent) {
+		return !this.equals(previouscontent);
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeInt(format);
+		out.writeInt(hash.length);
+		out.write(hash);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		format = in.readInt();
+		hash = new byte[in.readInt()];
+		in.readFully(hash);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(hash);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PlistContentDescriptor other = (PlistContentDescriptor) obj;
+		if (format != other.format)
+			return false;
+		if (!Arrays.equals(hash, other.hash))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[format=" + format + ", hash=" + StringUtils.toHexString(hash) + "]";
+	}
+
+}
@@ -0,0 +1,286 @@
+package saker.apple.impl.plist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.PlistSnapshot;
+import saker.build.file.SakerFile;
+import saker.build.file.content.ContentDescriptor;
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.runtime.environment.SakerEnvironment;
+import saker.build.task.TaskContext;
+import saker.build.thirdparty.saker.util.io.ByteArrayRegion;
+import saker.build.thirdparty.saker.util.io.function.IOSupplier;
+import saker.build.trace.BuildTrace;
+
+/**
+ * Size bounded LRU cache of decoded plist snapshots.
+ * <p>
+ * The snapshots are keyed by the path and the content descriptor of the plist file, so a changed file is never served
+ * from the cache. The cache is scoped to the build environment, and is accessible via
+ * {@link #get(TaskContext)}.
+ */
+public final class PlistSnapshotCache {
+	/**
+	 * System property that specifies the maximum total size of the cached plists in bytes.
+	 */
+	public static final String PROPERTY_MAX_SIZE = "saker.apple.plist.cache.size";
+
+	private static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+	private final long maxSize;
+
+	//access ordered for LRU eviction, synchronized on itself
+	private final LinkedHashMap<CacheKey, PlistSnapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+	private long currentSize;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public PlistSnapshotCache(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public static long getDefaultMaxSize() {
+		return Long.getLong(PROPERTY_MAX_SIZE, DEFAULT_MAX_SIZE);
+	}
+
+	public static PlistSnapshotCache get(TaskContext taskcontext) {
+		SakerEnvironment environment = taskcontext.getExecutionContext().getEnvironment();
+		try {
+			return environment.getEnvironmentPropertyCurrentValue(PlistSnapshotCacheEnvironmentProperty.INSTANCE);
+		} catch (Exception e) {
+			//shouldn't happen, the computation doesn't throw
+			throw new RuntimeException("Failed to retrieve plist cache.", e);
+		}
+	}
+
+	/**
+	 * Opens a plist for the given file using the cached snapshot, or by loading it.
+	 * <p>
+	 * If the content descriptor is <code>null</code>, the snapshot is not cached.
+	 *
+	 * @param path
+	 *            The path of the plist file.
+	 * @param contentdescriptor
+	 *            The content descriptor of the file.
+	 * @param loader
+	 *            The loader that decodes the snapshot if it is not cached.
+	 * @return The opened plist.
+	 * @throws IOException
+	 *             If the loading fails.
+	 */
+	public Plist open(SakerPath path, ContentDescriptor contentdescriptor,
+			IOSupplier<? extends PlistSnapshot> loader) throws IOException {
+		return getSnapshot(path, contentdescriptor, loader).open();
+	}
+
+	/**
+	 * Opens the plist at the given local file system path.
+	 * <p>
+	 * The file is memory mapped if it is not found in the cache.
+	 */
+	public Plist openLocalFile(SakerPath localpath, ContentDescriptor contentdescriptor) throws IOException {
+		return getLocalFileSnapshot(localpath, contentdescriptor).open();
+	}
+
+	/**
+	 * Opens the plist in the argument file.
+	 * <p>
+	 * The contents of the file are retrieved by {@link SakerFile#getBytes()}, so in-memory files are decoded without
+	 * copying if it is not found in the cache.
+	 */
+	public Plist openFile(SakerFile file, ContentDescriptor contentdescriptor) throws IOException {
+		return getFileSnapshot(file, contentdescriptor).open();
+	}
+
+	/**
+	 * Gets the snapshot of the plist at the given local file system path.
+	 *
+	 * @see #openLocalFile(SakerPath, ContentDescriptor)
+	 */
+	public PlistSnapshot getLocalFileSnapshot(SakerPath localpath, ContentDescriptor contentdescriptor)
+			throws IOException {
+		try {
+			return getSnapshot(localpath, contentdescriptor,
+					() -> PlistSnapshot.readFrom(LocalFileProvider.toRealPath(localpath)));
+		} finally {
+			reportBuildTrace();
+		}
+	}
+
+	/**
+	 * Gets the snapshot of the plist in the argument file.
+	 *
+	 * @see #openFile(SakerFile, ContentDescriptor)
+	 */
+	public PlistSnapshot getFileSnapshot(SakerFile file, ContentDescriptor contentdescriptor) throws IOException {
+		try {
+			return getSnapshot(file.getSakerPath(), contentdescriptor, () -> {
+				ByteArrayRegion bytes = file.getBytes();
+				return PlistSnapshot.readFrom(ByteBuffer.wrap(bytes.getArray(), bytes.getOffset(), bytes.getLength()));
+			});
+		} finally {
+			reportBuildTrace();
+		}
+	}
+
+	/**
+	 * Looks up the value at the given key path in the plist at the given local file system path.
+	 * <p>
+	 * If the plist is already cached, the value is retrieved from the snapshot. Otherwise the file is memory mapped,
+	 * and only the requested value is decoded. The plist is not added to the cache in this case.
+	 *
+	 * @see Plist#lookup(ByteBuffer, String...)
+	 */
+	public Object lookupLocalFile(SakerPath localpath, ContentDescriptor contentdescriptor, String... keypath)
+			throws IOException {
+		try {
+			PlistSnapshot snapshot = getCachedSnapshot(localpath, contentdescriptor);
+			if (snapshot != null) {
+				return snapshot.lookup(keypath);
+			}
+			return Plist.lookup(LocalFileProvider.toRealPath(localpath), keypath);
+		} finally {
+			reportBuildTrace();
+		}
+	}
+
+	/**
+	 * Looks up the value at the given key path in the plist in the argument file.
+	 * <p>
+	 * If the plist is already cached, the value is retrieved from the snapshot. Otherwise only the requested value is
+	 * decoded from the contents of the file. The plist is not added to the cache in this case.
+	 *
+	 * @see Plist#lookup(ByteBuffer, String...)
+	 */
+	public Object lookupFile(SakerFile file, ContentDescriptor contentdescriptor, String... keypath)
+			throws IOException {
+		try {
+			PlistSnapshot snapshot = getCachedSnapshot(file.getSakerPath(), contentdescriptor);
+			if (snapshot != null) {
+				return snapshot.lookup(keypath);
+			}
+			ByteArrayRegion bytes = file.getBytes();
+			return Plist.lookup(ByteBuffer.wrap(bytes.getArray(), bytes.getOffset(), bytes.getLength()), keypath);
+		} finally {
+			reportBuildTrace();
+		}
+	}
+
+	public PlistSnapshot getSnapshot(SakerPath path, ContentDescriptor contentdescriptor,
+			IOSupplier<? extends PlistSnapshot> loader) throws IOException {
+		if (contentdescriptor == null) {
+			misses.incrementAndGet();
+			return loader.get();
+		}
+		CacheKey key = new CacheKey(path, contentdescriptor);
+		PlistSnapshot snapshot;
+		synchronized (snapshots) {
+			snapshot = snapshots.get(key);
+		}
+		if (snapshot != null) {
+			hits.incrementAndGet();
+			return snapshot;
+		}
+		misses.incrementAndGet();
+		//decode outside of the lock, concurrent loads of the same file are harmless
+		snapshot = loader.get();
+		long size = snapshot.getSize();
+		if (size > maxSize / 4) {
+			//don't let a single large plist flush the cache
+			return snapshot;
+		}
+		synchronized (snapshots) {
+			PlistSnapshot prev = snapshots.put(key, snapshot);
+			if (prev != null) {
+				currentSize -= prev.getSize();
+			}
+			currentSize += size;
+			Iterator<PlistSnapshot> it = snapshots.values().iterator();
+			while (currentSize > maxSize && it.hasNext()) {
+				currentSize -= it.next().getSize();
+				it.remove();
+			}
+		}
+		return snapshot;
+	}
+
+	private PlistSnapshot getCachedSnapshot(SakerPath path, ContentDescriptor contentdescriptor) {
+		if (contentdescriptor == null) {
+			return null;
+		}
+		PlistSnapshot snapshot;
+		synchronized (snapshots) {
+			snapshot = snapshots.get(new CacheKey(path, contentdescriptor));
+		}
+		if (snapshot != null) {
+			hits.incrementAndGet();
+		}
+		return snapshot;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Reports the current cache statistics to the build trace.
+	 */
+	public void reportBuildTrace() {
+		if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+			Map<String, Object> stats = new LinkedHashMap<>();
+			stats.put("Hits", hits.get());
+			stats.put("Misses", misses.get());
+			synchronized (snapshots) {
+				stats.put("Entries", snapshots.size());
+				stats.put("Size", currentSize);
+			}
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("Plist cache", stats);
+			BuildTrace.setValues(values, BuildTrace.VALUE_CATEGORY_ENVIRONMENT);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[hits=" + hits + ", misses=" + misses + "]";
+	}
+
+	private static final class CacheKey {
+		private final SakerPath path;
+		private final ContentDescriptor contentDescriptor;
+
+		public CacheKey(SakerPath path, ContentDescriptor contentDescriptor) {
+			this.path = path;
+			this.contentDescriptor = contentDescriptor;
+		}
+
+		@Override
+		public int hashCode() {
+			return path.hashCode() * 31 + contentDescriptor.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			CacheKey other = (CacheKey) obj;
+			return path.equals(other.path) && contentDescriptor.equals(other.contentDescriptor);
+		}
+	}
+}
@@ -1,20 +1,48 @@
 package saker.apple.impl.plist;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 import saker.build.thirdparty.saker.util.ImmutableUtils;
 import saker.build.thirdparty.saker.util.io.SerialUtils;
 import saker.sdk.support.api.SDKPathReference;
 import saker.sdk.support.api.SDKPropertyReference;
 
+/**
+ * Value of a plist entry that is specified by the user.
+ * <p>
+ * The values are externalized using a compact tagged encoding, as the value options are part of the worker task
+ * factories that are stored in the build database. The repeated strings and SDK references are only written once
+ * per externalized value, which significantly reduces the size of Info.plist values that use the same SDK references
+ * for multiple keys.
+ */
 public class PlistValueOption implements Externalizable {
 	private static final long serialVersionUID = 1L;
 
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_STRING = 1;
+	private static final byte TAG_TRUE = 2;
+	private static final byte TAG_FALSE = 3;
+	private static final byte TAG_LONG = 4;
+	private static final byte TAG_DOUBLE = 5;
+	private static final byte TAG_ARRAY = 6;
+	private static final byte TAG_DICTIONARY = 7;
+	private static final byte TAG_OBJECT = 8;
+	private static final byte TAG_OBJECT_REF = 9;
+
 	private Object value;
 
 	/**
@@ -71,14 +99,67 @@ public class PlistValueOption implements Externalizable {
 		return new PlistValueOption(ImmutableUtils.makeImmutableNavigableMap(dict));
 	}
 
+	/**
+	 * Writes the argument value map using the compact encoding of the plist values.
+	 * <p>
+	 * The repeated strings and SDK references in the map are only written once. The map may contain
+	 * <code>null</code> values. Read the map using {@link #readExternalValues(ObjectInput)}.
+	 *
+	 * @param out
+	 *            The output.
+	 * @param values
+	 *            The values to write. May be <code>null</code>.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public static void writeExternalValues(ObjectOutput out, Map<String, ? extends PlistValueOption> values)
+			throws IOException {
+		if (values == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, values.size() + 1);
+		ValueWriter writer = new ValueWriter(out);
+		for (Entry<String, ? extends PlistValueOption> entry : values.entrySet()) {
+			writer.writeString(entry.getKey());
+			writer.writeOption(entry.getValue());
+		}
+	}
+
+	/**
+	 * Reads a value map that was written using {@link #writeExternalValues(ObjectOutput, Map)}.
+	 *
+	 * @param in
+	 *            The input.
+	 * @return The unmodifiable map sorted by natural order, or <code>null</code> if <code>null</code> was written.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 * @throws ClassNotFoundException
+	 *             If a class of an SDK reference is not found.
+	 */
+	public static NavigableMap<String, PlistValueOption> readExternalValues(ObjectInput in)
+			throws IOException, ClassNotFoundException {
+		int count = readVarInt(in) - 1;
+		if (count < 0) {
+			return null;
+		}
+		ValueReader reader = new ValueReader(in);
+		TreeMap<String, PlistValueOption> result = new TreeMap<>();
+		for (int i = 0; i < count; i++) {
+			String key = reader.readString();
+			result.put(key, reader.readOption());
+		}
+		return ImmutableUtils.unmodifiableNavigableMap(result);
+	}
+
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeObject(value);
+		new ValueWriter(out).writeValue(value);
 	}
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		value = SerialUtils.readExternalObject(in);
+		value = new ValueReader(in).readValue();
 	}
 
 	@Override
@@ -111,4 +192,210 @@ public class PlistValueOption implements Externalizable {
 		return getClass().getSimpleName() + "[" + value + "]";
 	}
 
+	private static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInput in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("Malformed variable length integer.");
+	}
+
+	private static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInput in) throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("Malformed variable length integer.");
+	}
+
+	/**
+	 * Writer of the tagged value encoding.
+	 * <p>
+	 * The strings and other objects are assigned an index when they are first written, and are written as a
+	 * reference to the index afterwards.
+	 */
+	private static final class ValueWriter {
+		private final ObjectOutput out;
+		private final Map<String, Integer> strings = new HashMap<>();
+		private final Map<Object, Integer> objects = new HashMap<>();
+
+		public ValueWriter(ObjectOutput out) {
+			this.out = out;
+		}
+
+		/**
+		 * Writes a string without a tag. The index of the string is written as <code>index + 1</code>, or 0 followed
+		 * by the UTF-8 bytes of the string.
+		 */
+		public void writeString(String s) throws IOException {
+			Integer idx = strings.putIfAbsent(s, strings.size());
+			if (idx != null) {
+				writeVarInt(out, idx + 1);
+				return;
+			}
+			writeVarInt(out, 0);
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		}
+
+		public void writeOption(PlistValueOption option) throws IOException {
+			writeValue(option == null ? null : option.value);
+		}
+
+		public void writeValue(Object val) throws IOException {
+			if (val == null) {
+				out.writeByte(TAG_NULL);
+			} else if (val instanceof String) {
+				out.writeByte(TAG_STRING);
+				writeString((String) val);
+			} else if (val instanceof Boolean) {
+				out.writeByte(((Boolean) val) ? TAG_TRUE : TAG_FALSE);
+			} else if (val instanceof Long) {
+				long l = (Long) val;
+				out.writeByte(TAG_LONG);
+				//zigzag encoding so small negative numbers are short as well
+				writeVarLong(out, (l << 1) ^ (l >> 63));
+			} else if (val instanceof Double) {
+				out.writeByte(TAG_DOUBLE);
+				out.writeDouble((Double) val);
+			} else if (val instanceof List<?>) {
+				List<?> list = (List<?>) val;
+				out.writeByte(TAG_ARRAY);
+				writeVarInt(out, list.size());
+				for (Object o : list) {
+					writeOption((PlistValueOption) o);
+				}
+			} else if (val instanceof Map<?, ?>) {
+				Map<?, ?> map = (Map<?, ?>) val;
+				out.writeByte(TAG_DICTIONARY);
+				writeVarInt(out, map.size());
+				for (Entry<?, ?> entry : map.entrySet()) {
+					writeString((String) entry.getKey());
+					writeOption((PlistValueOption) entry.getValue());
+				}
+			} else {
+				//SDK references
+				Integer idx = objects.putIfAbsent(val, objects.size());
+				if (idx != null) {
+					out.writeByte(TAG_OBJECT_REF);
+					writeVarInt(out, idx);
+					return;
+				}
+				out.writeByte(TAG_OBJECT);
+				out.writeObject(val);
+			}
+		}
+	}
+
+	private static final class ValueReader {
+		private final ObjectInput in;
+		private final List<String> strings = new ArrayList<>();
+		private final List<Object> objects = new ArrayList<>();
+
+		public ValueReader(ObjectInput in) {
+			this.in = in;
+		}
+
+		public String readString() throws IOException {
+			int idx = readVarInt(in);
+			if (idx > 0) {
+				if (idx > strings.size()) {
+					throw new IOException("Invalid string reference: " + idx);
+				}
+				return strings.get(idx - 1);
+			}
+			byte[] bytes = new byte[readVarInt(in)];
+			in.readFully(bytes);
+			String result = new String(bytes, StandardCharsets.UTF_8);
+			strings.add(result);
+			return result;
+		}
+
+		public PlistValueOption readOption() throws IOException, ClassNotFoundException {
+			Object val = readValue();
+			return val == null ? null : new PlistValueOption(val);
+		}
+
+		public Object readValue() throws IOException, ClassNotFoundException {
+			byte tag = in.readByte();
+			switch (tag) {
+				case TAG_NULL: {
+					return null;
+				}
+				case TAG_STRING: {
+					return readString();
+				}
+				case TAG_TRUE: {
+					return Boolean.TRUE;
+				}
+				case TAG_FALSE: {
+					return Boolean.FALSE;
+				}
+				case TAG_LONG: {
+					long zigzag = readVarLong(in);
+					return (zigzag >>> 1) ^ -(zigzag & 1);
+				}
+				case TAG_DOUBLE: {
+					return in.readDouble();
+				}
+				case TAG_ARRAY: {
+					PlistValueOption[] array = new PlistValueOption[readVarInt(in)];
+					for (int i = 0; i < array.length; i++) {
+						array[i] = readOption();
+					}
+					return ImmutableUtils.unmodifiableArrayList(array);
+				}
+				case TAG_DICTIONARY: {
+					int count = readVarInt(in);
+					TreeMap<String, PlistValueOption> map = new TreeMap<>();
+					for (int i = 0; i < count; i++) {
+						String key = readString();
+						map.put(key, readOption());
+					}
+					return ImmutableUtils.unmodifiableNavigableMap(map);
+				}
+				case TAG_OBJECT: {
+					Object result = SerialUtils.readExternalObject(in);
+					objects.add(result);
+					return result;
+				}
+				case TAG_OBJECT_REF: {
+					int idx = readVarInt(in);
+					if (idx >= objects.size()) {
+						throw new IOException("Invalid object reference: " + idx);
+					}
+					return objects.get(idx);
+				}
+				default: {
+					throw new IOException("Unrecognized plist value tag: " + tag);
+				}
+			}
+		}
+	}
+
 }
@@ -0,0 +1,306 @@
+package saker.apple.impl.plist;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+
+import saker.apple.impl.LocalFileContentDescriptors;
+import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.PlistSnapshot;
+import saker.apple.impl.plist.lib.XmlPlistStreamTransformer;
+import saker.build.file.DirectoryVisitPredicate;
+import saker.build.file.SakerDirectory;
+import saker.build.file.SakerFile;
+import saker.build.file.content.ContentDescriptor;
+import saker.build.file.content.DirectoryContentDescriptor;
+import saker.build.file.path.ProviderHolderPathKey;
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.task.TaskContext;
+import saker.build.task.TaskExecutionUtilities;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.std.api.file.location.ExecutionFileLocation;
+import saker.std.api.file.location.FileLocation;
+import saker.std.api.file.location.FileLocationVisitor;
+import saker.std.api.file.location.LocalFileLocation;
+
+public final class PlistWorkerUtils {
+	private PlistWorkerUtils() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Input plist file that has its dependencies already reported.
+	 * <p>
+	 * The plists are read through the {@link PlistSnapshotCache} of the build environment.
+	 */
+	public static abstract class PlistInput {
+		PlistInput() {
+		}
+
+		public abstract InputStream openInputStream() throws IOException;
+
+		public abstract Plist readPlist() throws IOException;
+
+		public abstract PlistSnapshot readSnapshot() throws IOException;
+
+		/**
+		 * Looks up the value at the given key path without decoding the whole plist if possible.
+		 * 
+		 * @see Plist#lookup(ByteBuffer, String...)
+		 */
+		public abstract Object lookup(String... keypath) throws IOException;
+
+		public abstract ContentDescriptor getContentDescriptor();
+	}
+
+	public static PlistInput getInputReportDependency(TaskContext taskcontext, FileLocation input) {
+		return getInput(taskcontext, input, null);
+	}
+
+	/**
+	 * Gets the plist input for the given file location, and collects the input file dependency instead of reporting
+	 * it.
+	 * <p>
+	 * The execution file dependencies are put into the argument map, and they should be reported in bulk by the caller
+	 * using {@link TaskExecutionUtilities#reportInputFileDependency(Object, NavigableMap)}. The dependencies on local
+	 * files are reported right away.
+	 */
+	public static PlistInput getInputCollectDependency(TaskContext taskcontext, FileLocation input,
+			NavigableMap<SakerPath, ContentDescriptor> inputdependencies) {
+		return getInput(taskcontext, input, inputdependencies);
+	}
+
+	/**
+	 * Reports the dependencies on the local files among the inputs.
+	 * <p>
+	 * The local files are hashed in parallel, and the following
+	 * {@link #getInputReportDependency(TaskContext, FileLocation)} or
+	 * {@link #getInputCollectDependency(TaskContext, FileLocation, NavigableMap)} calls use the already calculated
+	 * content descriptors.
+	 */
+	public static void reportLocalInputDependencies(TaskContext taskcontext, Iterable<? extends FileLocation> inputs) {
+		List<SakerPath> localpaths = new ArrayList<>();
+		for (FileLocation fl : inputs) {
+			if (fl instanceof LocalFileLocation) {
+				localpaths.add(((LocalFileLocation) fl).getLocalPath());
+			}
+		}
+		LocalFileContentDescriptors.getReport(taskcontext, localpaths);
+	}
+
+	private static PlistInput getInput(TaskContext taskcontext, FileLocation input,
+			NavigableMap<SakerPath, ContentDescriptor> inputdependencies) {
+		PlistInput[] result = { null };
+		input.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(LocalFileLocation loc) {
+				SakerPath path = loc.getLocalPath();
+				ContentDescriptor cd = LocalFileContentDescriptors.getReport(taskcontext, path);
+				if (cd == null || cd instanceof DirectoryContentDescriptor) {
+					throw ObjectUtils.sneakyThrow(new NoSuchFieldError("Not a file: " + path));
+				}
+				result[0] = new LocalPlistInput(path, cd, PlistSnapshotCache.get(taskcontext));
+			}
+
+			@Override
+			public void visit(ExecutionFileLocation loc) {
+				SakerPath path = loc.getPath();
+				SakerFile f = taskcontext.getTaskUtilities().resolveFileAtPath(path);
+				if (f == null) {
+					throw ObjectUtils.sneakyThrow(new NoSuchFieldError("Not a file: " + path));
+				}
+				ContentDescriptor cd = f.getContentDescriptor();
+				if (inputdependencies == null) {
+					taskcontext.reportInputFileDependency(null, path, cd);
+				} else {
+					inputdependencies.put(path, cd);
+				}
+				result[0] = new ExecutionPlistInput(f, cd, PlistSnapshotCache.get(taskcontext));
+			}
+		});
+		return result[0];
+	}
+
+	/**
+	 * Gets the local file system path of an output file in the given output directory.
+	 * <p>
+	 * The output directory is mirrored, but none of its contents are synchronized. The output file should be added
+	 * using {@link #addLocalOutputFile(TaskContext, SakerDirectory, String, Path, ContentDescriptor)} after it has been written.
+	 */
+	public static Path getOutputFileLocalPath(TaskContext taskcontext, SakerDirectory outputdir,
+			String outputfilename) throws IOException {
+		return taskcontext.mirror(outputdir, DirectoryVisitPredicate.synchronizeNothing()).resolve(outputfilename);
+	}
+
+	/**
+	 * Adds the output file at the given local path to the output directory with the specified content descriptor.
+	 */
+	public static SakerFile addLocalOutputFile(TaskContext taskcontext, SakerDirectory outputdir,
+			String outputfilename, Path outputfilelocalpath, ContentDescriptor contentdescriptor) throws IOException {
+		ProviderHolderPathKey outputfilepathkey = LocalFileProvider.getInstance().getPathKey(outputfilelocalpath);
+		taskcontext.invalidate(outputfilepathkey);
+		SakerFile outfile = taskcontext.getTaskUtilities().createProviderPathFile(outputfilename, outputfilepathkey,
+				contentdescriptor);
+		outputdir.add(outfile);
+		return outfile;
+	}
+
+	/**
+	 * Streams the XML plist input to the specified output file, and applies the modifications on the fly.
+	 * <p>
+	 * The output is written directly to the mirrored location of the output directory, without keeping the contents
+	 * in memory. The created file is added to the output directory with a {@link PlistContentDescriptor}.
+	 *
+	 * @see XmlPlistStreamTransformer#transform(InputStream, OutputStream, NavigableMap)
+	 */
+	public static SakerFile createStreamedXmlOutputFile(TaskContext taskcontext, SakerDirectory outputdir,
+			String outputfilename, InputStream input, NavigableMap<String, ?> modifications) throws IOException {
+		Path outputfilelocalpath = getOutputFileLocalPath(taskcontext, outputdir, outputfilename);
+		ContentDescriptor cd = writeStreamedXmlFile(outputfilelocalpath, input, modifications);
+		return addLocalOutputFile(taskcontext, outputdir, outputfilename, outputfilelocalpath, cd);
+	}
+
+	/**
+	 * Streams the XML plist input to the given local file, and applies the modifications on the fly.
+	 * <p>
+	 * The method only writes the file, it can be called concurrently for different output files.
+	 * <p>
+	 * The dictionary keys are written in the order of the input, so unlike
+	 * {@link #writeSerializedFile(Path, Plist, int)}, the output bytes depend on the key order of the input. The
+	 * content hash is computed while streaming, and doesn't depend on the key order, so reordering the input keys
+	 * doesn't change the content descriptor.
+	 *
+	 * @return The {@link PlistContentDescriptor} of the written file.
+	 * @see #createStreamedXmlOutputFile(TaskContext, SakerDirectory, String, InputStream, NavigableMap)
+	 */
+	public static ContentDescriptor writeStreamedXmlFile(Path outputfilelocalpath, InputStream input,
+			NavigableMap<String, ?> modifications) throws IOException {
+		byte[] contenthash;
+		try (OutputStream os = Files.newOutputStream(outputfilelocalpath)) {
+			contenthash = XmlPlistStreamTransformer.transform(input, os, modifications);
+		}
+		return PlistContentDescriptor.createWithHash(contenthash, Plist.FORMAT_XML);
+	}
+
+	/**
+	 * Serializes the plist directly to the specified output file without creating an intermediate byte array.
+	 * <p>
+	 * The output is always written by the Java backend, as it serializes the dictionaries in sorted key order. Native
+	 * plists are converted to the Java backend first. The
+	 * output bytes only depend on the contents and the format of the plist. The created file is added to the output
+	 * directory with a {@link PlistContentDescriptor}.
+	 */
+	public static SakerFile createSerializedOutputFile(TaskContext taskcontext, SakerDirectory outputdir,
+			String outputfilename, Plist plist, int format) throws IOException {
+		Path outputfilelocalpath = getOutputFileLocalPath(taskcontext, outputdir, outputfilename);
+		ContentDescriptor cd = writeSerializedFile(outputfilelocalpath, plist, format);
+		return addLocalOutputFile(taskcontext, outputdir, outputfilename, outputfilelocalpath, cd);
+	}
+
+	/**
+	 * Serializes the plist to the given local file.
+	 * <p>
+	 * The method only writes the file, it can be called concurrently for different output files.
+	 *
+	 * @return The {@link PlistContentDescriptor} of the written file.
+	 * @see #createSerializedOutputFile(TaskContext, SakerDirectory, String, Plist, int)
+	 */
+	public static ContentDescriptor writeSerializedFile(Path outputfilelocalpath, Plist plist, int format)
+			throws IOException {
+		if (format == Plist.FORMAT_SAME_AS_INPUT) {
+			format = plist.getFormat();
+		}
+		try (Plist javaplist = plist.getBackend() == Plist.BACKEND_JAVA ? null
+				: Plist.readFrom(ByteBuffer.wrap(plist.serialize(Plist.FORMAT_BINARY)), Plist.BACKEND_JAVA)) {
+			Plist outplist = javaplist == null ? plist : javaplist;
+			try (FileChannel channel = FileChannel.open(outputfilelocalpath, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				outplist.serialize(format, channel);
+			}
+			return PlistContentDescriptor.create(outplist, format);
+		}
+	}
+
+	private static final class LocalPlistInput extends PlistInput {
+		private final SakerPath path;
+		private final ContentDescriptor contentDescriptor;
+		private final PlistSnapshotCache cache;
+
+		public LocalPlistInput(SakerPath path, ContentDescriptor contentDescriptor, PlistSnapshotCache cache) {
+			this.path = path;
+			this.contentDescriptor = contentDescriptor;
+			this.cache = cache;
+		}
+
+		@Override
+		public InputStream openInputStream() throws IOException {
+			return LocalFileProvider.getInstance().openInputStream(path);
+		}
+
+		@Override
+		public Plist readPlist() throws IOException {
+			return cache.openLocalFile(path, contentDescriptor);
+		}
+
+		@Override
+		public PlistSnapshot readSnapshot() throws IOException {
+			return cache.getLocalFileSnapshot(path, contentDescriptor);
+		}
+
+		@Override
+		public Object lookup(String... keypath) throws IOException {
+			return cache.lookupLocalFile(path, contentDescriptor, keypath);
+		}
+
+		@Override
+		public ContentDescriptor getContentDescriptor() {
+			return contentDescriptor;
+		}
+	}
+
+	private static final class ExecutionPlistInput extends PlistInput {
+		private final SakerFile file;
+		private final ContentDescriptor contentDescriptor;
+		private final PlistSnapshotCache cache;
+
+		public ExecutionPlistInput(SakerFile file, ContentDescriptor contentDescriptor, PlistSnapshotCache cache) {
+			this.file = file;
+			this.contentDescriptor = contentDescriptor;
+			this.cache = cache;
+		}
+
+		@Override
+		public InputStream openInputStream() throws IOException {
+			return file.openInputStream();
+		}
+
+		@Override
+		public Plist readPlist() throws IOException {
+			return cache.openFile(file, contentDescriptor);
+		}
+
+		@Override
+		public PlistSnapshot readSnapshot() throws IOException {
+			return cache.getFileSnapshot(file, contentDescriptor);
+		}
+
+		@Override
+		public Object lookup(String... keypath) throws IOException {
+			return cache.lookupFile(file, contentDescriptor, keypath);
+		}
+
+		@Override
+		public ContentDescriptor getContentDescriptor() {
+			return contentDescriptor;
+		}
+	}
+}
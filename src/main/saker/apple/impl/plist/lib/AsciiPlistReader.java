@@ -0,0 +1,494 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Reader for the ASCII (OpenStep) property list format.
+ * <p>
+ * The format is used by <code>.strings</code> localization files, Xcode project files and legacy plists. The reader
+ * supports quoted and unquoted strings, <code>&lt;hex&gt;</code> data, arrays, dictionaries, and <code>//</code> and
+ * <code>/* *&#47;</code> comments. A root dictionary without the enclosing braces is accepted as in
+ * <code>.strings</code> files, where a <code>"key";</code> entry maps the key to itself.
+ * <p>
+ * The input is decoded as UTF-8 or UTF-16 based on the byte order mark, or on the placement of zero bytes if there is
+ * none. The format has no typed scalars, so all scalar values are read as {@link String Strings}.
+ */
+public final class AsciiPlistReader {
+	/**
+	 * The maximum number of bytes that are examined when detecting the format.
+	 */
+	private static final int DETECT_HEADER_SIZE = 256;
+
+	private final char[] chars;
+	private final int start;
+	private final int end;
+	private int pos;
+
+	private AsciiPlistReader(char[] chars, int start, int end) {
+		this.chars = chars;
+		this.start = start;
+		this.end = end;
+		this.pos = start;
+	}
+
+	/**
+	 * Checks if the remaining bytes of the argument buffer contain an ASCII plist.
+	 * <p>
+	 * The check should be performed after the input is determined not to be a binary plist. XML plists are recognized
+	 * by their first non-whitespace character being <code>'&lt;'</code>. The position of the buffer is not modified.
+	 *
+	 * @param buffer
+	 *            The buffer.
+	 * @return <code>true</code> if the contents are an ASCII plist.
+	 */
+	public static boolean isAsciiPlist(ByteBuffer buffer) {
+		ByteBuffer dup = buffer.duplicate();
+		byte[] header = new byte[Math.min(dup.remaining(), DETECT_HEADER_SIZE)];
+		dup.get(header);
+		return isAsciiPlistHeader(header, header.length, header.length == buffer.remaining());
+	}
+
+	/**
+	 * Checks if the argument stream contains an ASCII plist.
+	 * <p>
+	 * The stream must support {@linkplain InputStream#markSupported() marking}. The position of the stream is not
+	 * modified.
+	 *
+	 * @param is
+	 *            The input.
+	 * @return <code>true</code> if the stream contains an ASCII plist.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 * @see #isAsciiPlist(ByteBuffer)
+	 */
+	public static boolean isAsciiPlist(InputStream is) throws IOException {
+		byte[] header = new byte[DETECT_HEADER_SIZE];
+		int len = 0;
+		is.mark(header.length);
+		try {
+			while (len < header.length) {
+				int read = is.read(header, len, header.length - len);
+				if (read < 0) {
+					return isAsciiPlistHeader(header, len, true);
+				}
+				len += read;
+			}
+			return isAsciiPlistHeader(header, len, false);
+		} finally {
+			is.reset();
+		}
+	}
+
+	/**
+	 * Decodes the ASCII plist from the remaining bytes of the argument buffer.
+	 * <p>
+	 * The position of the buffer is not modified.
+	 *
+	 * @param buffer
+	 *            The buffer.
+	 * @return The decoded root object in canonical representation.
+	 * @throws IOException
+	 *             If the plist is malformed or cannot be decoded with the detected charset.
+	 */
+	public static Object read(ByteBuffer buffer) throws IOException {
+		ByteBuffer dup = buffer.duplicate();
+		byte[] header = new byte[Math.min(dup.remaining(), 4)];
+		dup.get(header);
+		dup.position(buffer.position() + getByteOrderMarkLength(header, header.length));
+		CharBuffer decoded = detectCharset(header, header.length).newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT)
+				.decode(dup);
+		int offset = decoded.arrayOffset() + decoded.position();
+		return new AsciiPlistReader(decoded.array(), offset, offset + decoded.remaining()).readRoot();
+	}
+
+	private static boolean isAsciiPlistHeader(byte[] header, int len, boolean wholeinput) {
+		int bomlen = getByteOrderMarkLength(header, len);
+		CharBuffer decoded = detectCharset(header, len).decode(ByteBuffer.wrap(header, bomlen, len - bomlen));
+		while (decoded.hasRemaining()) {
+			char c = decoded.get();
+			if (!isWhitespace(c)) {
+				return c != '<';
+			}
+		}
+		//empty inputs are empty strings files
+		return wholeinput;
+	}
+
+	private static int getByteOrderMarkLength(byte[] header, int len) {
+		if (len >= 2) {
+			if ((header[0] == (byte) 0xFE && header[1] == (byte) 0xFF)
+					|| (header[0] == (byte) 0xFF && header[1] == (byte) 0xFE)) {
+				return 2;
+			}
+			if (len >= 3 && header[0] == (byte) 0xEF && header[1] == (byte) 0xBB && header[2] == (byte) 0xBF) {
+				return 3;
+			}
+		}
+		return 0;
+	}
+
+	private static Charset detectCharset(byte[] header, int len) {
+		if (len < 2) {
+			return StandardCharsets.UTF_8;
+		}
+		if (header[0] == (byte) 0xFE && header[1] == (byte) 0xFF) {
+			return StandardCharsets.UTF_16BE;
+		}
+		if (header[0] == (byte) 0xFF && header[1] == (byte) 0xFE) {
+			return StandardCharsets.UTF_16LE;
+		}
+		//no BOM, the first character is expected to be ASCII
+		if (header[0] == 0 && header[1] != 0) {
+			return StandardCharsets.UTF_16BE;
+		}
+		if (header[0] != 0 && header[1] == 0) {
+			return StandardCharsets.UTF_16LE;
+		}
+		return StandardCharsets.UTF_8;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B || c == '\uFEFF';
+	}
+
+	private static boolean isUnquotedStringChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$'
+				|| c == '+' || c == '/' || c == ':' || c == '.' || c == '-';
+	}
+
+	private static int hexValue(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+		if (c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
+		}
+		return -1;
+	}
+
+	private Object readRoot() throws IOException {
+		skipWhitespaceAndComments();
+		if (pos == end) {
+			return new TreeMap<String, Object>();
+		}
+		Object result = readValue();
+		skipWhitespaceAndComments();
+		if (pos == end) {
+			return result;
+		}
+		if (result instanceof String && (chars[pos] == '=' || chars[pos] == ';')) {
+			//strings file, the root dictionary has no braces
+			TreeMap<String, Object> dict = new TreeMap<>();
+			readDictionaryEntry(dict, (String) result);
+			while (true) {
+				skipWhitespaceAndComments();
+				if (pos == end) {
+					return dict;
+				}
+				readDictionaryEntry(dict, readKey());
+			}
+		}
+		throw error("Unexpected content after the root object.");
+	}
+
+	private Object readValue() throws IOException {
+		if (pos == end) {
+			throw error("Unexpected end of input.");
+		}
+		char c = chars[pos];
+		switch (c) {
+			case '{': {
+				++pos;
+				return readDictionary();
+			}
+			case '(': {
+				++pos;
+				return readArray();
+			}
+			case '<': {
+				++pos;
+				return readData();
+			}
+			case '"':
+			case '\'': {
+				++pos;
+				return readQuotedString(c);
+			}
+			default: {
+				if (isUnquotedStringChar(c)) {
+					return readUnquotedString();
+				}
+				throw error("Unexpected character: '" + c + "'");
+			}
+		}
+	}
+
+	private TreeMap<String, Object> readDictionary() throws IOException {
+		TreeMap<String, Object> dict = new TreeMap<>();
+		while (true) {
+			skipWhitespaceAndComments();
+			if (pos == end) {
+				throw error("Unterminated dictionary.");
+			}
+			if (chars[pos] == '}') {
+				++pos;
+				return dict;
+			}
+			readDictionaryEntry(dict, readKey());
+		}
+	}
+
+	private String readKey() throws IOException {
+		Object key = readValue();
+		if (!(key instanceof String)) {
+			throw error("Dictionary key is not a string.");
+		}
+		return (String) key;
+	}
+
+	private void readDictionaryEntry(TreeMap<String, Object> dict, String key) throws IOException {
+		skipWhitespaceAndComments();
+		Object value;
+		if (pos < end && chars[pos] == ';') {
+			//"key"; shorthand of strings files
+			value = key;
+		} else {
+			expect('=');
+			skipWhitespaceAndComments();
+			value = readValue();
+			skipWhitespaceAndComments();
+		}
+		expect(';');
+		dict.put(key, value);
+	}
+
+	private Object[] readArray() throws IOException {
+		List<Object> items = new ArrayList<>();
+		skipWhitespaceAndComments();
+		if (pos < end && chars[pos] == ')') {
+			++pos;
+			return items.toArray();
+		}
+		while (true) {
+			items.add(readValue());
+			skipWhitespaceAndComments();
+			if (pos == end) {
+				throw error("Unterminated array.");
+			}
+			char c = chars[pos++];
+			if (c == ')') {
+				return items.toArray();
+			}
+			if (c != ',') {
+				throw error("Expected ',' or ')' in array.");
+			}
+			skipWhitespaceAndComments();
+			//trailing comma
+			if (pos < end && chars[pos] == ')') {
+				++pos;
+				return items.toArray();
+			}
+		}
+	}
+
+	private byte[] readData() throws IOException {
+		byte[] result = new byte[16];
+		int len = 0;
+		int high = -1;
+		while (pos < end) {
+			char c = chars[pos++];
+			if (c == '>') {
+				if (high >= 0) {
+					throw error("Odd number of hexadecimal digits in data.");
+				}
+				return Arrays.copyOf(result, len);
+			}
+			if (isWhitespace(c)) {
+				continue;
+			}
+			int val = hexValue(c);
+			if (val < 0) {
+				throw error("Invalid character in data: '" + c + "'");
+			}
+			if (high < 0) {
+				high = val;
+				continue;
+			}
+			if (len == result.length) {
+				result = Arrays.copyOf(result, len * 2);
+			}
+			result[len++] = (byte) ((high << 4) | val);
+			high = -1;
+		}
+		throw error("Unterminated data.");
+	}
+
+	private String readQuotedString(char quote) throws IOException {
+		int strstart = pos;
+		//fast path for strings without escapes
+		while (pos < end) {
+			char c = chars[pos];
+			if (c == quote) {
+				return new String(chars, strstart, pos++ - strstart);
+			}
+			if (c == '\\') {
+				break;
+			}
+			++pos;
+		}
+		StringBuilder sb = new StringBuilder(pos - strstart + 16);
+		sb.append(chars, strstart, pos - strstart);
+		while (pos < end) {
+			char c = chars[pos++];
+			if (c == quote) {
+				return sb.toString();
+			}
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			if (pos == end) {
+				break;
+			}
+			c = chars[pos++];
+			switch (c) {
+				case 'a': {
+					sb.append('\u0007');
+					break;
+				}
+				case 'b': {
+					sb.append('\b');
+					break;
+				}
+				case 'f': {
+					sb.append('\f');
+					break;
+				}
+				case 'n': {
+					sb.append('\n');
+					break;
+				}
+				case 'r': {
+					sb.append('\r');
+					break;
+				}
+				case 't': {
+					sb.append('\t');
+					break;
+				}
+				case 'v': {
+					sb.append('\u000B');
+					break;
+				}
+				case 'U':
+				case 'u': {
+					int val = 0;
+					int digits = 0;
+					while (digits < 4 && pos < end && hexValue(chars[pos]) >= 0) {
+						val = (val << 4) | hexValue(chars[pos++]);
+						++digits;
+					}
+					if (digits == 0) {
+						throw error("Missing hexadecimal digits in unicode escape.");
+					}
+					sb.append((char) val);
+					break;
+				}
+				default: {
+					if (c >= '0' && c <= '7') {
+						int val = c - '0';
+						for (int digits = 1; digits < 3 && pos < end; digits++) {
+							char oc = chars[pos];
+							if (oc < '0' || oc > '7') {
+								break;
+							}
+							val = (val << 3) | (oc - '0');
+							++pos;
+						}
+						sb.append((char) val);
+					} else {
+						//quotes, backslash, newline, and unknown escapes
+						sb.append(c);
+					}
+					break;
+				}
+			}
+		}
+		throw error("Unterminated quoted string.");
+	}
+
+	private String readUnquotedString() {
+		int strstart = pos;
+		while (pos < end && isUnquotedStringChar(chars[pos])) {
+			++pos;
+		}
+		return new String(chars, strstart, pos - strstart);
+	}
+
+	private void skipWhitespaceAndComments() throws IOException {
+		while (pos < end) {
+			char c = chars[pos];
+			if (isWhitespace(c)) {
+				++pos;
+				continue;
+			}
+			if (c != '/' || pos + 1 == end) {
+				return;
+			}
+			char next = chars[pos + 1];
+			if (next == '/') {
+				pos += 2;
+				while (pos < end && chars[pos] != '\n' && chars[pos] != '\r') {
+					++pos;
+				}
+			} else if (next == '*') {
+				int commentstart = pos;
+				pos += 2;
+				while (true) {
+					if (pos + 1 >= end) {
+						pos = commentstart;
+						throw error("Unterminated comment.");
+					}
+					if (chars[pos] == '*' && chars[pos + 1] == '/') {
+						pos += 2;
+						break;
+					}
+					++pos;
+				}
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void expect(char c) throws IOException {
+		if (pos == end || chars[pos] != c) {
+			throw error("Expected '" + c + "'");
+		}
+		++pos;
+	}
+
+	private IOException error(String message) {
+		int line = 1;
+		for (int i = start; i < pos && i < end; i++) {
+			if (chars[i] == '\n') {
+				++line;
+			}
+		}
+		return new IOException("Malformed ASCII plist at line " + line + ": " + message);
+	}
+}
@@ -0,0 +1,402 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.TreeMap;
+
+/**
+ * Reader for the <code>bplist00</code> binary property list format.
+ * <p>
+ * The reader works on a {@link ByteBuffer} using absolute positioning, so the buffer may be a heap buffer, a direct
+ * buffer, or a memory mapped file.
+ */
+public final class BinaryPlistReader {
+	static final byte[] MAGIC = { 'b', 'p', 'l', 'i', 's', 't', '0', '0' };
+	static final int TRAILER_SIZE = 32;
+
+	/**
+	 * Seconds between the Unix epoch and the Core Foundation absolute time reference date. (2001-01-01T00:00:00Z)
+	 */
+	static final long CF_ABSOLUTE_TIME_EPOCH_OFFSET_SECONDS = 978307200L;
+
+	private final ByteBuffer buffer;
+	private final int base;
+	private final int length;
+
+	private final int offsetIntSize;
+	private final int objectRefSize;
+	private final int objectCount;
+	private final int topObject;
+	private final int offsetTableOffset;
+
+	/**
+	 * Cache for the immutable decoded objects, as strings and numbers are uniqued in the format.
+	 */
+	private final Object[] immutableCache;
+	/**
+	 * Flags for the containers that are currently being decoded to detect recursive references.
+	 */
+	private final boolean[] decoding;
+
+	private BinaryPlistReader(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		this.base = buffer.position();
+		this.length = buffer.remaining();
+		if (length < MAGIC.length + TRAILER_SIZE || !isBinaryPlist(buffer)) {
+			throw new IOException("Not a binary plist.");
+		}
+		int trailer = base + length - TRAILER_SIZE;
+		this.offsetIntSize = buffer.get(trailer + 6) & 0xFF;
+		this.objectRefSize = buffer.get(trailer + 7) & 0xFF;
+		long numobjects = this.buffer.getLong(trailer + 8);
+		long topobject = this.buffer.getLong(trailer + 16);
+		long offsettableoffset = this.buffer.getLong(trailer + 24);
+		if (offsetIntSize < 1 || offsetIntSize > 8 || objectRefSize < 1 || objectRefSize > 8) {
+			throw new IOException("Malformed binary plist: invalid trailer sizes.");
+		}
+		//each object takes at least one byte, bound the count before using it in calculations
+		if (numobjects < 1 || numobjects > length || topobject < 0 || topobject >= numobjects
+				|| offsettableoffset < MAGIC.length || offsettableoffset > length) {
+			throw new IOException("Malformed binary plist: invalid trailer.");
+		}
+		long offsettableend;
+		try {
+			offsettableend = Math.addExact(offsettableoffset, Math.multiplyExact(numobjects, offsetIntSize));
+		} catch (ArithmeticException e) {
+			throw new IOException("Malformed binary plist: offset table out of bounds.", e);
+		}
+		if (offsettableend > length - TRAILER_SIZE) {
+			throw new IOException("Malformed binary plist: offset table out of bounds.");
+		}
+		this.objectCount = (int) numobjects;
+		this.topObject = (int) topobject;
+		this.offsetTableOffset = (int) offsettableoffset;
+		this.immutableCache = new Object[objectCount];
+		this.decoding = new boolean[objectCount];
+	}
+
+	/**
+	 * Checks if the remaining bytes of the argument buffer start with the binary plist header.
+	 * <p>
+	 * The position of the buffer is not modified.
+	 *
+	 * @param buffer
+	 *            The buffer.
+	 * @return <code>true</code> if the contents are a binary plist.
+	 */
+	public static boolean isBinaryPlist(ByteBuffer buffer) {
+		int pos = buffer.position();
+		if (buffer.remaining() < MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (buffer.get(pos + i) != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes the binary plist in the remaining bytes of the argument buffer.
+	 * <p>
+	 * The position of the buffer is not modified.
+	 *
+	 * @param buffer
+	 *            The buffer.
+	 * @return The decoded root object in canonical representation.
+	 * @throws IOException
+	 *             If the plist is malformed.
+	 */
+	public static Object read(ByteBuffer buffer) throws IOException {
+		BinaryPlistReader reader = new BinaryPlistReader(buffer);
+		return reader.readObject(reader.topObject);
+	}
+
+	/**
+	 * Looks up the value at the given key path in the binary plist without decoding the whole object graph.
+	 * <p>
+	 * The object offset table is used to seek to the objects along the path. Only the keys of the dictionaries along
+	 * the path are decoded, and the value at the end of the path is materialized. Array elements can be addressed by
+	 * their decimal index.
+	 * <p>
+	 * The position of the buffer is not modified.
+	 *
+	 * @param buffer
+	 *            The buffer.
+	 * @param keypath
+	 *            The key path to look up. If empty, the whole plist is decoded.
+	 * @return The value in canonical representation, or <code>null</code> if not found.
+	 * @throws IOException
+	 *             If the plist is malformed.
+	 */
+	public static Object lookup(ByteBuffer buffer, String... keypath) throws IOException {
+		BinaryPlistReader reader = new BinaryPlistReader(buffer);
+		int ref = reader.topObject;
+		for (String key : keypath) {
+			ref = reader.findChildRef(ref, key);
+			if (ref < 0) {
+				return null;
+			}
+		}
+		return reader.readObject(ref);
+	}
+
+	/**
+	 * Finds the reference of the child object in the container with the given key.
+	 *
+	 * @return The reference, or -1 if not found.
+	 */
+	private int findChildRef(int ref, String key) throws IOException {
+		int offset = objectOffset(ref);
+		int marker = getByte(offset);
+		int info = marker & 0x0F;
+		switch (marker >>> 4) {
+			case 0xA: {
+				int idx = PlistValues.parseArrayIndex(key);
+				if (idx < 0) {
+					return -1;
+				}
+				int[] countoffset = readCount(offset, info);
+				if (idx >= countoffset[0]) {
+					return -1;
+				}
+				return readRef(checkRange(countoffset[1] + idx * objectRefSize, objectRefSize));
+			}
+			case 0xD: {
+				int[] countoffset = readCount(offset, info);
+				int count = countoffset[0];
+				int keystart = checkRange(countoffset[1], (long) count * objectRefSize * 2);
+				for (int i = 0; i < count; i++) {
+					if (key.equals(readObject(readRef(keystart + i * objectRefSize)))) {
+						return readRef(keystart + (count + i) * objectRefSize);
+					}
+				}
+				return -1;
+			}
+			default: {
+				return -1;
+			}
+		}
+	}
+
+	private Object readObject(int ref) throws IOException {
+		if (ref < 0 || ref >= objectCount) {
+			throw new IOException("Malformed binary plist: object reference out of bounds: " + ref);
+		}
+		Object cached = immutableCache[ref];
+		if (cached != null) {
+			return cached;
+		}
+		int offset = objectOffset(ref);
+		int marker = getByte(offset);
+		int type = marker >>> 4;
+		int info = marker & 0x0F;
+		switch (type) {
+			case 0x0: {
+				switch (info) {
+					case 0x8: {
+						return cache(ref, Boolean.FALSE);
+					}
+					case 0x9: {
+						return cache(ref, Boolean.TRUE);
+					}
+					default: {
+						throw new IOException("Unsupported binary plist object marker: 0x" + Integer.toHexString(marker));
+					}
+				}
+			}
+			case 0x1: {
+				return cache(ref, readInt(offset + 1, info));
+			}
+			case 0x2: {
+				return cache(ref, readReal(offset + 1, info));
+			}
+			case 0x3: {
+				if (info != 0x3) {
+					throw new IOException("Malformed binary plist date marker: 0x" + Integer.toHexString(marker));
+				}
+				double secs = Double.longBitsToDouble(getSized(offset + 1, 8));
+				return new Date(Math.round((secs + CF_ABSOLUTE_TIME_EPOCH_OFFSET_SECONDS) * 1000d));
+			}
+			case 0x4: {
+				int[] countoffset = readCount(offset, info);
+				int count = countoffset[0];
+				int start = checkRange(countoffset[1], count);
+				byte[] data = new byte[count];
+				for (int i = 0; i < count; i++) {
+					data[i] = buffer.get(base + start + i);
+				}
+				return data;
+			}
+			case 0x5: {
+				int[] countoffset = readCount(offset, info);
+				int count = countoffset[0];
+				int start = checkRange(countoffset[1], count);
+				byte[] bytes = new byte[count];
+				for (int i = 0; i < count; i++) {
+					bytes[i] = buffer.get(base + start + i);
+				}
+				return cache(ref, new String(bytes, StandardCharsets.ISO_8859_1));
+			}
+			case 0x6: {
+				int[] countoffset = readCount(offset, info);
+				int count = countoffset[0];
+				int start = checkRange(countoffset[1], count * 2L);
+				char[] chars = new char[count];
+				for (int i = 0; i < count; i++) {
+					chars[i] = buffer.getChar(base + start + i * 2);
+				}
+				return cache(ref, new String(chars));
+			}
+			case 0x8: {
+				TreeMap<String, Object> uid = new TreeMap<>();
+				uid.put(PlistValues.KEY_CF_UID, getSized(checkRange(offset + 1, info + 1), info + 1));
+				return uid;
+			}
+			case 0xA:
+			case 0xC: {
+				int[] countoffset = readCount(offset, info);
+				int count = countoffset[0];
+				int refstart = checkRange(countoffset[1], (long) count * objectRefSize);
+				Object[] result = new Object[count];
+				startDecoding(ref);
+				for (int i = 0; i < count; i++) {
+					result[i] = readObject(readRef(refstart + i * objectRefSize));
+				}
+				decoding[ref] = false;
+				return result;
+			}
+			case 0xD: {
+				int[] countoffset = readCount(offset, info);
+				int count = countoffset[0];
+				int keystart = checkRange(countoffset[1], (long) count * objectRefSize * 2);
+				int valstart = keystart + count * objectRefSize;
+				TreeMap<String, Object> result = new TreeMap<>();
+				startDecoding(ref);
+				for (int i = 0; i < count; i++) {
+					Object key = readObject(readRef(keystart + i * objectRefSize));
+					if (!(key instanceof String)) {
+						throw new IOException("Non-string key found in binary plist dictionary.");
+					}
+					Object val = readObject(readRef(valstart + i * objectRefSize));
+					result.put((String) key, val);
+				}
+				decoding[ref] = false;
+				return result;
+			}
+			default: {
+				throw new IOException("Unsupported binary plist object marker: 0x" + Integer.toHexString(marker));
+			}
+		}
+	}
+
+	private void startDecoding(int ref) throws IOException {
+		if (decoding[ref]) {
+			throw new IOException("Malformed binary plist: recursive object reference.");
+		}
+		decoding[ref] = true;
+	}
+
+	private Object cache(int ref, Object value) {
+		immutableCache[ref] = value;
+		return value;
+	}
+
+	private int objectOffset(int ref) throws IOException {
+		long offset = getSized(offsetTableOffset + ref * offsetIntSize, offsetIntSize);
+		if (offset < MAGIC.length || offset >= offsetTableOffset) {
+			throw new IOException("Malformed binary plist: object offset out of bounds: " + offset);
+		}
+		return (int) offset;
+	}
+
+	private int readRef(int offset) throws IOException {
+		long ref = getSized(offset, objectRefSize);
+		if (ref < 0 || ref >= objectCount) {
+			throw new IOException("Malformed binary plist: object reference out of bounds: " + ref);
+		}
+		return (int) ref;
+	}
+
+	/**
+	 * Reads the count of a variable length object.
+	 *
+	 * @return An array of the count and the offset of the object contents.
+	 */
+	private int[] readCount(int offset, int info) throws IOException {
+		if (info != 0x0F) {
+			return new int[] { info, offset + 1 };
+		}
+		int intmarker = getByte(offset + 1);
+		if ((intmarker >>> 4) != 0x1) {
+			throw new IOException("Malformed binary plist: invalid count marker: 0x" + Integer.toHexString(intmarker));
+		}
+		int intinfo = intmarker & 0x0F;
+		long count = readInt(offset + 2, intinfo);
+		if (count < 0 || count > Integer.MAX_VALUE) {
+			throw new IOException("Malformed binary plist: invalid object count: " + count);
+		}
+		return new int[] { (int) count, offset + 2 + (1 << intinfo) };
+	}
+
+	private Long readInt(int offset, int info) throws IOException {
+		switch (info) {
+			case 0:
+			case 1:
+			case 2:
+			case 3: {
+				int bytes = 1 << info;
+				return getSized(checkRange(offset, bytes), bytes);
+			}
+			case 4: {
+				//128 bit integer, use the lower 64 bits
+				return getSized(checkRange(offset, 16) + 8, 8);
+			}
+			default: {
+				throw new IOException("Malformed binary plist: invalid integer size: " + info);
+			}
+		}
+	}
+
+	private Double readReal(int offset, int info) throws IOException {
+		switch (info) {
+			case 2: {
+				return (double) Float.intBitsToFloat((int) getSized(checkRange(offset, 4), 4));
+			}
+			case 3: {
+				return Double.longBitsToDouble(getSized(checkRange(offset, 8), 8));
+			}
+			default: {
+				throw new IOException("Malformed binary plist: invalid real size: " + info);
+			}
+		}
+	}
+
+	private int checkRange(int offset, long count) throws IOException {
+		if (count < 0 || offset < 0 || (long) offset + count > length - TRAILER_SIZE) {
+			throw new IOException("Malformed binary plist: object out of bounds.");
+		}
+		return offset;
+	}
+
+	private int getByte(int offset) throws IOException {
+		checkRange(offset, 1);
+		return buffer.get(base + offset) & 0xFF;
+	}
+
+	private long getSized(int offset, int size) throws IOException {
+		if (offset < 0 || (long) offset + size > length) {
+			throw new IOException("Malformed binary plist: read out of bounds.");
+		}
+		long result = 0;
+		int idx = base + offset;
+		for (int i = 0; i < size; i++) {
+			result = (result << 8) | (buffer.get(idx + i) & 0xFF);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,324 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayOutputStream;
+
+/**
+ * Writer for the <code>bplist00</code> binary property list format.
+ * <p>
+ * The writer uniques the immutable objects (strings, numbers, booleans, dates and data) so each distinct value is
+ * only written once, and uses the smallest integer widths for the object references and offset table entries that
+ * can represent the output.
+ * <p>
+ * The argument objects are expected to be in the canonical representation of {@link PlistValues}.
+ */
+public final class BinaryPlistWriter {
+	/**
+	 * The flattened objects. Collections are represented by their reference arrays in {@link #collectionRefs}.
+	 */
+	private final List<Object> objects = new ArrayList<>();
+	private final List<int[]> collectionRefs = new ArrayList<>();
+	private final Map<Object, Integer> uniqueIndices = new HashMap<>();
+
+	private BinaryPlistWriter() {
+	}
+
+	public static byte[] toBytes(Object root) {
+		UnsyncByteArrayOutputStream out = new UnsyncByteArrayOutputStream();
+		try {
+			write(root, out);
+		} catch (IOException e) {
+			//shouldn't happen, we're writing to memory
+			throw new RuntimeException(e);
+		}
+		return out.toByteArray();
+	}
+
+	public static void write(Object root, OutputStream os) throws IOException {
+		BinaryPlistWriter writer = new BinaryPlistWriter();
+		writer.flatten(root);
+		writer.writeTo(os);
+	}
+
+	private int flatten(Object o) {
+		if (o instanceof Map<?, ?>) {
+			Map<?, ?> map = (Map<?, ?>) o;
+			Long uid = PlistValues.getUID(map);
+			if (uid != null) {
+				return addUnique(new UID(uid));
+			}
+			int idx = addCollection(o);
+			int size = map.size();
+			int[] refs = new int[size * 2];
+			int i = 0;
+			for (Object key : map.keySet()) {
+				refs[i++] = flatten(key);
+			}
+			for (Object val : map.values()) {
+				refs[i++] = flatten(val);
+			}
+			collectionRefs.set(idx, refs);
+			return idx;
+		}
+		if (o instanceof Object[]) {
+			Object[] array = (Object[]) o;
+			int idx = addCollection(o);
+			int[] refs = new int[array.length];
+			for (int i = 0; i < array.length; i++) {
+				refs[i] = flatten(array[i]);
+			}
+			collectionRefs.set(idx, refs);
+			return idx;
+		}
+		if (o instanceof byte[]) {
+			return addUnique(ByteBuffer.wrap((byte[]) o));
+		}
+		if (o instanceof String || o instanceof Long || o instanceof Double || o instanceof Boolean
+				|| o instanceof Date) {
+			return addUnique(o);
+		}
+		if (o == null) {
+			throw new NullPointerException("Null plist element.");
+		}
+		throw new IllegalArgumentException("Unrecognized Java plist type: " + o.getClass().getName());
+	}
+
+	private int addCollection(Object o) {
+		int idx = objects.size();
+		objects.add(o);
+		collectionRefs.add(null);
+		return idx;
+	}
+
+	private int addUnique(Object o) {
+		Integer present = uniqueIndices.get(o);
+		if (present != null) {
+			return present;
+		}
+		int idx = objects.size();
+		objects.add(o);
+		collectionRefs.add(null);
+		uniqueIndices.put(o, idx);
+		return idx;
+	}
+
+	private void writeTo(OutputStream os) throws IOException {
+		int count = objects.size();
+		int refsize = bytesNeeded(count - 1);
+		long[] offsets = new long[count];
+
+		CountingOutput out = new CountingOutput(os);
+		out.write(BinaryPlistReader.MAGIC);
+		for (int i = 0; i < count; i++) {
+			offsets[i] = out.count;
+			writeObject(out, objects.get(i), collectionRefs.get(i), refsize);
+		}
+		long offsettableoffset = out.count;
+		int offsetsize = bytesNeeded(offsettableoffset);
+		for (int i = 0; i < count; i++) {
+			out.writeSized(offsets[i], offsetsize);
+		}
+		//trailer: 5 unused bytes, sort version, offset int size, object ref size, object count, top object, offset table offset
+		for (int i = 0; i < 6; i++) {
+			out.write(0);
+		}
+		out.write(offsetsize);
+		out.write(refsize);
+		out.writeSized(count, 8);
+		out.writeSized(0, 8);
+		out.writeSized(offsettableoffset, 8);
+		out.flush();
+	}
+
+	private static void writeObject(CountingOutput out, Object o, int[] refs, int refsize) throws IOException {
+		if (refs != null) {
+			if (o instanceof Map<?, ?>) {
+				writeMarker(out, 0xD0, refs.length / 2);
+			} else {
+				writeMarker(out, 0xA0, refs.length);
+			}
+			for (int ref : refs) {
+				out.writeSized(ref, refsize);
+			}
+			return;
+		}
+		if (o instanceof String) {
+			String s = (String) o;
+			int len = s.length();
+			if (isAscii(s)) {
+				writeMarker(out, 0x50, len);
+				for (int i = 0; i < len; i++) {
+					out.write(s.charAt(i));
+				}
+			} else {
+				writeMarker(out, 0x60, len);
+				for (int i = 0; i < len; i++) {
+					out.writeSized(s.charAt(i), 2);
+				}
+			}
+		} else if (o instanceof Long) {
+			writeInt(out, (Long) o);
+		} else if (o instanceof Double) {
+			out.write(0x23);
+			out.writeSized(Double.doubleToRawLongBits((Double) o), 8);
+		} else if (o instanceof Boolean) {
+			out.write(((Boolean) o) ? 0x09 : 0x08);
+		} else if (o instanceof Date) {
+			double secs = ((Date) o).getTime() / 1000d - BinaryPlistReader.CF_ABSOLUTE_TIME_EPOCH_OFFSET_SECONDS;
+			out.write(0x33);
+			out.writeSized(Double.doubleToRawLongBits(secs), 8);
+		} else if (o instanceof ByteBuffer) {
+			ByteBuffer data = (ByteBuffer) o;
+			writeMarker(out, 0x40, data.remaining());
+			out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+		} else if (o instanceof UID) {
+			long uid = ((UID) o).value;
+			int size = bytesNeeded(uid);
+			out.write(0x80 | (size - 1));
+			out.writeSized(uid, size);
+		} else {
+			throw new AssertionError("Unrecognized flattened plist object: " + o);
+		}
+	}
+
+	private static void writeMarker(CountingOutput out, int type, int count) throws IOException {
+		if (count < 0x0F) {
+			out.write(type | count);
+		} else {
+			out.write(type | 0x0F);
+			writeInt(out, count);
+		}
+	}
+
+	private static void writeInt(CountingOutput out, long value) throws IOException {
+		if (value < 0) {
+			out.write(0x13);
+			out.writeSized(value, 8);
+			return;
+		}
+		int size = bytesNeeded(value);
+		switch (size) {
+			case 1: {
+				out.write(0x10);
+				break;
+			}
+			case 2: {
+				out.write(0x11);
+				break;
+			}
+			case 4: {
+				out.write(0x12);
+				break;
+			}
+			default: {
+				out.write(0x13);
+				break;
+			}
+		}
+		out.writeSized(value, size);
+	}
+
+	/**
+	 * Gets the number of bytes required to represent the argument non-negative value. The result is 1, 2, 4, or 8.
+	 */
+	static int bytesNeeded(long value) {
+		if (value < 0) {
+			return 8;
+		}
+		if (value <= 0xFFL) {
+			return 1;
+		}
+		if (value <= 0xFFFFL) {
+			return 2;
+		}
+		if (value <= 0xFFFFFFFFL) {
+			return 4;
+		}
+		return 8;
+	}
+
+	private static boolean isAscii(String s) {
+		for (int i = 0, len = s.length(); i < len; i++) {
+			if (s.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class UID {
+		final long value;
+
+		UID(long value) {
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(value);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof UID && ((UID) obj).value == value;
+		}
+	}
+
+	private static final class CountingOutput {
+		private final OutputStream os;
+		private final byte[] buf = new byte[8192];
+		private int bufCount;
+		long count;
+
+		CountingOutput(OutputStream os) {
+			this.os = os;
+		}
+
+		void write(int b) throws IOException {
+			if (bufCount == buf.length) {
+				flush();
+			}
+			buf[bufCount++] = (byte) b;
+			++count;
+		}
+
+		void write(byte[] b) throws IOException {
+			write(b, 0, b.length);
+		}
+
+		void write(byte[] b, int off, int len) throws IOException {
+			if (len > buf.length - bufCount) {
+				flush();
+				if (len > buf.length) {
+					os.write(b, off, len);
+					count += len;
+					return;
+				}
+			}
+			System.arraycopy(b, off, buf, bufCount, len);
+			bufCount += len;
+			count += len;
+		}
+
+		void writeSized(long value, int size) throws IOException {
+			for (int i = size - 1; i >= 0; i--) {
+				write((int) (value >>> (i * 8)));
+			}
+		}
+
+		void flush() throws IOException {
+			if (bufCount > 0) {
+				os.write(buf, 0, bufCount);
+				bufCount = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading the remaining bytes of a {@link ByteBuffer}.
+ * <p>
+ * The position of the buffer is advanced as the stream is read. Not thread safe.
+ */
+final class ByteBufferInputStream extends InputStream {
+	private final ByteBuffer buffer;
+	private int mark = -1;
+
+	ByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int read() {
+		if (!buffer.hasRemaining()) {
+			return -1;
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		int rem = buffer.remaining();
+		if (rem == 0) {
+			return -1;
+		}
+		int count = Math.min(rem, len);
+		buffer.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) {
+		if (n <= 0) {
+			return 0;
+		}
+		int count = (int) Math.min(buffer.remaining(), n);
+		buffer.position(buffer.position() + count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		mark = buffer.position();
+	}
+
+	@Override
+	public synchronized void reset() {
+		if (mark >= 0) {
+			buffer.position(mark);
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+final class JavaPlist extends Plist {
+	private NavigableMap<String, Object> root;
+	private final int format;
+	private volatile boolean closed;
+	/**
+	 * <code>true</code> if the root is shared with a {@link PlistSnapshot}, and should be copied before modification.
+	 * <p>
+	 * Only the root needs to be copied, as the nested values are never modified in place.
+	 */
+	private boolean shared;
+
+	private JavaPlist(NavigableMap<String, Object> root, int format) {
+		this.root = root;
+		this.format = format;
+	}
+
+	static JavaPlist copyOnWrite(NavigableMap<String, Object> root, int format) {
+		JavaPlist result = new JavaPlist(root, format);
+		result.shared = true;
+		return result;
+	}
+
+	static JavaPlist empty() {
+		return new JavaPlist(new TreeMap<>(), FORMAT_XML);
+	}
+
+	static JavaPlist withContents(Map<String, ?> dictionary) {
+		return new JavaPlist(PlistValues.copyDictionary(dictionary), FORMAT_XML);
+	}
+
+	static JavaPlist fromBytes(byte[] bytes, int offset, int length) throws IOException {
+		return fromBuffer(ByteBuffer.wrap(bytes, offset, length));
+	}
+
+	static JavaPlist fromBuffer(ByteBuffer buffer) throws IOException {
+		if (BinaryPlistReader.isBinaryPlist(buffer)) {
+			return new JavaPlist(requireDictionary(BinaryPlistReader.read(buffer)), FORMAT_BINARY);
+		}
+		if (AsciiPlistReader.isAsciiPlist(buffer)) {
+			//ASCII plists can't be written, the XML format is used when serialized in the same format as the input
+			return new JavaPlist(requireDictionary(AsciiPlistReader.read(buffer)), FORMAT_XML);
+		}
+		try (ByteBufferInputStream is = new ByteBufferInputStream(buffer.duplicate())) {
+			return new JavaPlist(requireDictionary(XmlPlistReader.read(is)), FORMAT_XML);
+		}
+	}
+
+	NavigableMap<String, Object> getRoot() {
+		return root;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static NavigableMap<String, Object> requireDictionary(Object root) {
+		if (!(root instanceof NavigableMap)) {
+			throw new IllegalArgumentException("Plist content is not a dictionary.");
+		}
+		return (NavigableMap<String, Object>) root;
+	}
+
+	@Override
+	public int getBackend() {
+		return BACKEND_JAVA;
+	}
+
+	@Override
+	public int getFormat() {
+		checkOpen();
+		return format;
+	}
+
+	@Override
+	public Object get(String key) {
+		Objects.requireNonNull(key, "key");
+		checkOpen();
+		Object val = root.get(key);
+		if (val == null) {
+			return null;
+		}
+		return PlistValues.copy(val);
+	}
+
+	@Override
+	public void set(String key, String value) {
+		Objects.requireNonNull(key, "key");
+		Objects.requireNonNull(value, "value");
+		checkOpen();
+		writableRoot().put(key, value);
+	}
+
+	@Override
+	public void set(String key, boolean value) {
+		Objects.requireNonNull(key, "key");
+		checkOpen();
+		writableRoot().put(key, value);
+	}
+
+	@Override
+	public void set(String key, long value) {
+		Objects.requireNonNull(key, "key");
+		checkOpen();
+		writableRoot().put(key, value);
+	}
+
+	@Override
+	public void set(String key, double value) {
+		Objects.requireNonNull(key, "key");
+		checkOpen();
+		writableRoot().put(key, value);
+	}
+
+	@Override
+	public void set(String key, Object[] value) {
+		Objects.requireNonNull(key, "key");
+		Objects.requireNonNull(value, "value");
+		checkOpen();
+		writableRoot().put(key, PlistValues.copy(value));
+	}
+
+	@Override
+	public void set(String key, Object value) {
+		Objects.requireNonNull(key, "key");
+		Objects.requireNonNull(value, "value");
+		checkOpen();
+		writableRoot().put(key, PlistValues.copy(value));
+	}
+
+	@Override
+	public void remove(String key) {
+		Objects.requireNonNull(key, "key");
+		checkOpen();
+		writableRoot().remove(key);
+	}
+
+	@Override
+	public void applyPatch(Map<String, ?> modifications) {
+		Objects.requireNonNull(modifications, "modifications");
+		checkOpen();
+		//copy first so the plist is not modified if a value is invalid
+		Map<String, Object> copied = new TreeMap<>();
+		for (Entry<String, ?> entry : modifications.entrySet()) {
+			String key = Objects.requireNonNull(entry.getKey(), "key");
+			Object val = entry.getValue();
+			copied.put(key, val == null ? null : PlistValues.copy(val));
+		}
+		NavigableMap<String, Object> root = writableRoot();
+		for (Entry<String, Object> entry : copied.entrySet()) {
+			Object val = entry.getValue();
+			if (val == null) {
+				root.remove(entry.getKey());
+			} else {
+				root.put(entry.getKey(), val);
+			}
+		}
+	}
+
+	@Override
+	public void applyKeyPathPatch(Map<PlistKeyPath, ?> modifications) {
+		Objects.requireNonNull(modifications, "modifications");
+		checkOpen();
+		//copy first so the plist is not modified if a value is invalid
+		Map<PlistKeyPath, Object> copied = new LinkedHashMap<>();
+		for (Entry<PlistKeyPath, ?> entry : modifications.entrySet()) {
+			PlistKeyPath path = PlistValues.requireRootKeyPath(entry.getKey());
+			Object val = entry.getValue();
+			copied.put(path, val == null ? null : PlistValues.copy(val));
+		}
+		if (copied.isEmpty()) {
+			return;
+		}
+		NavigableMap<String, Object> root = writableRoot();
+		for (Entry<PlistKeyPath, Object> entry : copied.entrySet()) {
+			PlistValues.applyKeyPath(root, entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public byte[] getContentHash() {
+		checkOpen();
+		return PlistValues.contentHash(root);
+	}
+
+	@Override
+	public byte[] serialize(int format) {
+		checkOpen();
+		if (format == FORMAT_SAME_AS_INPUT) {
+			format = this.format;
+		}
+		switch (format) {
+			case FORMAT_XML: {
+				return XmlPlistWriter.toBytes(root);
+			}
+			case FORMAT_BINARY: {
+				return BinaryPlistWriter.toBytes(root);
+			}
+			default: {
+				throw new IllegalArgumentException("Invalid plist format specified: " + format);
+			}
+		}
+	}
+
+	@Override
+	public void serialize(int format, WritableByteChannel channel) throws IOException {
+		checkOpen();
+		//not closed, as that would close the channel
+		OutputStream os = Channels.newOutputStream(channel);
+		if (format == FORMAT_SAME_AS_INPUT) {
+			format = this.format;
+		}
+		switch (format) {
+			case FORMAT_XML: {
+				XmlPlistWriter.write(root, os);
+				break;
+			}
+			case FORMAT_BINARY: {
+				BinaryPlistWriter.write(root, os);
+				break;
+			}
+			default: {
+				throw new IllegalArgumentException("Invalid plist format specified: " + format);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	private NavigableMap<String, Object> writableRoot() {
+		if (shared) {
+			root = new TreeMap<>(root);
+			shared = false;
+		}
+		return root;
+	}
+
+	private void checkOpen() throws IllegalStateException {
+		if (closed) {
+			throw new IllegalStateException("Closed.");
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+final class NativePlist extends Plist {
+	private static final AtomicIntegerFieldUpdater<NativePlist> AIFU_useCounter = AtomicIntegerFieldUpdater
+			.newUpdater(NativePlist.class, "useCounter");
+	private volatile int useCounter = 1;
+
+	private static final AtomicIntegerFieldUpdater<NativePlist> AIFU_closed = AtomicIntegerFieldUpdater
+			.newUpdater(NativePlist.class, "closed");
+	private volatile int closed;
+
+	private final long ptr;
+
+	NativePlist(long ptr) {
+		this.ptr = ptr;
+	}
+
+	@Override
+	public int getBackend() {
+		return BACKEND_NATIVE;
+	}
+
+	@Override
+	public int getFormat() {
+		use();
+		try {
+			return getFormat(ptr);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public Object get(String key) {
+		Objects.requireNonNull(key, "key");
+		use();
+		try {
+			return getValue(ptr, key);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public void set(String key, String value) {
+		Objects.requireNonNull(key, "key");
+		Objects.requireNonNull(value, "value");
+		use();
+		try {
+			setStringKeyValue(ptr, key, value);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public void set(String key, boolean value) {
+		Objects.requireNonNull(key, "key");
+		use();
+		try {
+			setBooleanKeyValue(ptr, key, value);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public void set(String key, long value) {
+		Objects.requireNonNull(key, "key");
+		use();
+		try {
+			setLongKeyValue(ptr, key, value);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public void set(String key, double value) {
+		Objects.requireNonNull(key, "key");
+		use();
+		try {
+			setDoubleKeyValue(ptr, key, value);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public void set(String key, Object[] value) {
+		Objects.requireNonNull(key, "key");
+		Objects.requireNonNull(value, "value");
+		use();
+		try {
+			setArrayKeyValue(ptr, key, value);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public void set(String key, Object value) {
+		Objects.requireNonNull(key, "key");
+		Objects.requireNonNull(value, "value");
+		use();
+		try {
+			setObjectKeyValue(ptr, key, value);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public void remove(String key) {
+		Objects.requireNonNull(key, "key");
+		use();
+		try {
+			removeValue(ptr, key);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public void applyPatch(Map<String, ?> modifications) {
+		Objects.requireNonNull(modifications, "modifications");
+		if (modifications.isEmpty()) {
+			return;
+		}
+		byte[] patch = PlistValues.encodePatch(modifications);
+		use();
+		try {
+			applyPatch(ptr, patch, 0, patch.length);
+		} catch (IOException e) {
+			//shouldn't happen, we encoded the patch
+			throw new IllegalArgumentException("Failed to apply plist patch.", e);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public void applyKeyPathPatch(Map<PlistKeyPath, ?> modifications) {
+		Objects.requireNonNull(modifications, "modifications");
+		if (modifications.isEmpty()) {
+			return;
+		}
+		byte[] patch = PlistValues.encodeKeyPathPatch(modifications);
+		use();
+		try {
+			applyPatch(ptr, patch, 0, patch.length);
+		} catch (IOException e) {
+			//shouldn't happen, we encoded the patch
+			throw new IllegalArgumentException("Failed to apply plist patch.", e);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public byte[] getContentHash() {
+		byte[] bytes = serialize(FORMAT_BINARY);
+		try {
+			return PlistValues.contentHash(BinaryPlistReader.read(ByteBuffer.wrap(bytes)));
+		} catch (IOException e) {
+			//shouldn't happen, the plist was serialized by the native implementation
+			throw new IllegalStateException("Failed to decode serialized plist.", e);
+		}
+	}
+
+	@Override
+	public byte[] serialize(int format) {
+		use();
+		try {
+			return serialize(ptr, format);
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public void serialize(int format, WritableByteChannel channel) throws IOException {
+		Objects.requireNonNull(channel, "channel");
+		ByteBuffer data = ByteBuffer.wrap(serialize(format));
+		while (data.hasRemaining()) {
+			channel.write(data);
+		}
+	}
+
+	private void use() throws IllegalStateException {
+		AIFU_useCounter.updateAndGet(this, c -> {
+			if (c <= 0) {
+				throw new IllegalStateException("Closed.");
+			}
+			return c + 1;
+		});
+	}
+
+	private void release() {
+		int c = AIFU_useCounter.decrementAndGet(this);
+		if (c == 0) {
+			release(ptr);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (!AIFU_closed.compareAndSet(this, 0, 1)) {
+			//already closed
+			return;
+		}
+		release();
+	}
+
+}
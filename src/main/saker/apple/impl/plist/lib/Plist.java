@@ -3,14 +3,36 @@ package saker.apple.impl.plist.lib;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Native;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import saker.build.thirdparty.saker.util.io.ByteArrayRegion;
 import saker.build.thirdparty.saker.util.io.StreamUtils;
 
-public class Plist implements AutoCloseable {
+/**
+ * Mutable property list with a dictionary root.
+ * <p>
+ * The plist is backed either by the native CoreFoundation based library or by the pure Java implementation in this
+ * package. The backend is selected automatically based on the availability of the native library, but it can be
+ * overridden by the {@value #PROPERTY_BACKEND} system property, or by using the factory methods that take a
+ * <code>BACKEND_*</code> argument.
+ * <p>
+ * Plist values are represented as {@link String}, {@link Boolean}, {@link Long}, {@link Double}, <code>Object[]</code>
+ * for arrays and {@link Map} for dictionaries. The Java backend additionally supports <code>byte[]</code> for data and
+ * {@link java.util.Date} for date values.
+ * <p>
+ * Besides the XML and binary formats, the Java backend also reads ASCII (OpenStep) plists, such as <code>.strings</code>
+ * files. The ASCII format is not supported for output.
+ */
+public abstract class Plist implements AutoCloseable {
 	@Native
 	public static final int FORMAT_SAME_AS_INPUT = 0;
 	@Native
@@ -18,191 +40,388 @@ public class Plist implements AutoCloseable {
 	@Native
 	public static final int FORMAT_BINARY = 2;
 
-	private static final AtomicIntegerFieldUpdater<Plist> AIFU_useCounter = AtomicIntegerFieldUpdater
-			.newUpdater(Plist.class, "useCounter");
-	private volatile int useCounter = 1;
+	/**
+	 * Backend selection based on the {@value #PROPERTY_BACKEND} system property and the availability of the native
+	 * library.
+	 */
+	public static final int BACKEND_DEFAULT = 0;
+	/**
+	 * Backend that uses the CoreFoundation functions through the native library.
+	 */
+	public static final int BACKEND_NATIVE = 1;
+	/**
+	 * Pure Java backend that is available on all platforms.
+	 */
+	public static final int BACKEND_JAVA = 2;
 
-	private static final AtomicIntegerFieldUpdater<Plist> AIFU_closed = AtomicIntegerFieldUpdater
-			.newUpdater(Plist.class, "closed");
-	private volatile int closed;
+	/**
+	 * System property that can be used to force the backend selection. The value should be <code>native</code> or
+	 * <code>java</code>.
+	 * <p>
+	 * Unrecognized values are ignored, and the backend is selected based on the availability of the native library
+	 * in that case.
+	 */
+	public static final String PROPERTY_BACKEND = "saker.apple.plist.backend";
 
-	private final long ptr;
+	private static final int DEFAULT_BACKEND = determineDefaultBackend();
 
-	private Plist(long ptr) {
-		this.ptr = ptr;
+	Plist() {
 	}
 
 	public static Plist createEmpty() {
-		checkLoaded();
-		return new Plist(createEmptyPlist());
+		return createEmpty(BACKEND_DEFAULT);
+	}
+
+	public static Plist createEmpty(int backend) {
+		switch (resolveBackend(backend)) {
+			case BACKEND_NATIVE: {
+				checkLoaded();
+				return new NativePlist(createEmptyPlist());
+			}
+			case BACKEND_JAVA: {
+				return JavaPlist.empty();
+			}
+			default: {
+				throw new IllegalArgumentException("Invalid plist backend: " + backend);
+			}
+		}
 	}
 
 	public static Plist createWithContents(Map<String, ?> dictionary) {
+		return createWithContents(dictionary, BACKEND_DEFAULT);
+	}
+
+	public static Plist createWithContents(Map<String, ?> dictionary, int backend) {
 		Objects.requireNonNull(dictionary, "dictionary");
-		checkLoaded();
-		return new Plist(createContentPlist(dictionary));
+		switch (resolveBackend(backend)) {
+			case BACKEND_NATIVE: {
+				checkLoaded();
+				return new NativePlist(createContentPlist(dictionary));
+			}
+			case BACKEND_JAVA: {
+				return JavaPlist.withContents(dictionary);
+			}
+			default: {
+				throw new IllegalArgumentException("Invalid plist backend: " + backend);
+			}
+		}
 	}
 
 	public static Plist readFrom(InputStream is) throws IOException {
-		checkLoaded();
-		ByteArrayRegion bytes = StreamUtils.readStreamFully(is);
-		return new Plist(createFromBytes(bytes.getArray(), bytes.getOffset(), bytes.getLength()));
+		return readFrom(is, BACKEND_DEFAULT);
 	}
 
-	public int getFormat() {
-		use();
-		try {
-			return getFormat(ptr);
-		} finally {
-			release();
+	public static Plist readFrom(InputStream is, int backend) throws IOException {
+		int resolved = resolveBackend(backend);
+		ByteArrayRegion bytes = StreamUtils.readStreamFully(is);
+		switch (resolved) {
+			case BACKEND_NATIVE: {
+				checkLoaded();
+				return new NativePlist(createFromBytes(bytes.getArray(), bytes.getOffset(), bytes.getLength()));
+			}
+			case BACKEND_JAVA: {
+				return JavaPlist.fromBytes(bytes.getArray(), bytes.getOffset(), bytes.getLength());
+			}
+			default: {
+				throw new IllegalArgumentException("Invalid plist backend: " + backend);
+			}
 		}
 	}
 
-	public Object get(String key) {
-		Objects.requireNonNull(key, "key");
-		use();
-		try {
-			return getValue(ptr, key);
-		} finally {
-			release();
-		}
+	public static Plist readFrom(ByteBuffer buffer) throws IOException {
+		return readFrom(buffer, BACKEND_DEFAULT);
 	}
 
-	public void set(String key, String value) {
-		Objects.requireNonNull(key, "key");
-		Objects.requireNonNull(value, "value");
-		use();
-		try {
-			setStringKeyValue(ptr, key, value);
-		} finally {
-			release();
+	/**
+	 * Reads a plist from the remaining bytes of the argument buffer.
+	 * <p>
+	 * Direct buffers are passed to the decoder without copying them to the Java heap. The buffer is only accessed
+	 * during this call, and its position is not modified.
+	 *
+	 * @param buffer
+	 *            The buffer containing the plist.
+	 * @param backend
+	 *            The backend to use.
+	 * @return The read plist.
+	 * @throws IOException
+	 *             If the plist is malformed.
+	 */
+	public static Plist readFrom(ByteBuffer buffer, int backend) throws IOException {
+		Objects.requireNonNull(buffer, "buffer");
+		switch (resolveBackend(backend)) {
+			case BACKEND_NATIVE: {
+				checkLoaded();
+				if (buffer.isDirect()) {
+					return new NativePlist(createFromDirectBuffer(buffer, buffer.position(), buffer.remaining()));
+				}
+				if (buffer.hasArray()) {
+					return new NativePlist(createFromBytes(buffer.array(), buffer.arrayOffset() + buffer.position(),
+							buffer.remaining()));
+				}
+				//read-only heap buffer, no access to the array
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.duplicate().get(bytes);
+				return new NativePlist(createFromBytes(bytes, 0, bytes.length));
+			}
+			case BACKEND_JAVA: {
+				return JavaPlist.fromBuffer(buffer);
+			}
+			default: {
+				throw new IllegalArgumentException("Invalid plist backend: " + backend);
+			}
 		}
 	}
 
-	public void set(String key, boolean value) {
-		Objects.requireNonNull(key, "key");
-		use();
-		try {
-			setBooleanKeyValue(ptr, key, value);
-		} finally {
-			release();
-		}
+	public static Plist readFrom(Path path) throws IOException {
+		return readFrom(path, BACKEND_DEFAULT);
 	}
 
-	public void set(String key, long value) {
-		Objects.requireNonNull(key, "key");
-		use();
-		try {
-			setLongKeyValue(ptr, key, value);
-		} finally {
-			release();
-		}
+	/**
+	 * Reads a plist from the file at the given path.
+	 * <p>
+	 * The file is memory mapped, and the mapped buffer is passed to the decoder, so the file contents are not copied
+	 * to the Java heap.
+	 *
+	 * @param path
+	 *            The path of the plist file.
+	 * @param backend
+	 *            The backend to use.
+	 * @return The read plist.
+	 * @throws IOException
+	 *             If the file cannot be read or the plist is malformed.
+	 */
+	public static Plist readFrom(Path path, int backend) throws IOException {
+		Objects.requireNonNull(path, "path");
+		return readFrom(mapFile(path), backend);
 	}
 
-	public void set(String key, double value) {
-		Objects.requireNonNull(key, "key");
-		use();
-		try {
-			setDoubleKeyValue(ptr, key, value);
-		} finally {
-			release();
+	/**
+	 * Looks up the value at the given key path in the plist contained in the remaining bytes of the argument buffer.
+	 * <p>
+	 * The plist is not decoded as a whole. For binary plists, the object offset table is used to seek directly to the
+	 * objects along the path. XML plists are streamed until the value is found. Only the found value is materialized,
+	 * so the cost of the lookup doesn't depend on the size of unrelated entries. ASCII plists are decoded as a whole.
+	 * Array elements can be addressed by their decimal index.
+	 * <p>
+	 * The lookup always uses the Java implementation. The position of the buffer is not modified.
+	 *
+	 * @param buffer
+	 *            The buffer containing the plist.
+	 * @param keypath
+	 *            The key path to look up.
+	 * @return The found value in the Java representation, or <code>null</code> if not found.
+	 * @throws IOException
+	 *             If the plist is malformed.
+	 */
+	public static Object lookup(ByteBuffer buffer, String... keypath) throws IOException {
+		Objects.requireNonNull(buffer, "buffer");
+		Objects.requireNonNull(keypath, "keypath");
+		if (BinaryPlistReader.isBinaryPlist(buffer)) {
+			return BinaryPlistReader.lookup(buffer, keypath);
 		}
-	}
-
-	public void set(String key, Object[] value) {
-		Objects.requireNonNull(key, "key");
-		Objects.requireNonNull(value, "value");
-		use();
-		try {
-			setArrayKeyValue(ptr, key, value);
-		} finally {
-			release();
+		if (AsciiPlistReader.isAsciiPlist(buffer)) {
+			//the ASCII format has no structural index, and is usually small
+			return PlistValues.getPath(AsciiPlistReader.read(buffer), keypath);
+		}
+		try (ByteBufferInputStream is = new ByteBufferInputStream(buffer.duplicate())) {
+			return XmlPlistReader.lookup(is, keypath);
 		}
 	}
 
-	public void set(String key, Object value) {
-		Objects.requireNonNull(key, "key");
-		Objects.requireNonNull(value, "value");
-		use();
-		try {
-			setObjectKeyValue(ptr, key, value);
-		} finally {
-			release();
-		}
+	/**
+	 * Looks up the value at the given key path in the plist file at the given path.
+	 * <p>
+	 * The file is memory mapped.
+	 *
+	 * @see #lookup(ByteBuffer, String...)
+	 */
+	public static Object lookup(Path path, String... keypath) throws IOException {
+		Objects.requireNonNull(path, "path");
+		return lookup(mapFile(path), keypath);
 	}
 
-	public void remove(String key) {
-		Objects.requireNonNull(key, "key");
-		use();
-		try {
-			removeValue(ptr, key);
-		} finally {
-			release();
-		}
+	/**
+	 * Gets the backend that is used when {@link #BACKEND_DEFAULT} is specified.
+	 *
+	 * @return {@link #BACKEND_NATIVE} or {@link #BACKEND_JAVA}.
+	 */
+	public static int getDefaultBackend() {
+		return DEFAULT_BACKEND;
 	}
 
+	/**
+	 * Gets the backend of this plist instance.
+	 *
+	 * @return {@link #BACKEND_NATIVE} or {@link #BACKEND_JAVA}.
+	 */
+	public abstract int getBackend();
+
+	public abstract int getFormat();
+
+	public abstract Object get(String key);
+
+	public abstract void set(String key, String value);
+
+	public abstract void set(String key, boolean value);
+
+	public abstract void set(String key, long value);
+
+	public abstract void set(String key, double value);
+
+	public abstract void set(String key, Object[] value);
+
+	public abstract void set(String key, Object value);
+
+	public abstract void remove(String key);
+
+	/**
+	 * Applies the argument modifications to the root dictionary in a single operation.
+	 * <p>
+	 * The keys that are mapped to <code>null</code> are removed, other values are set the same way as
+	 * {@link #set(String, Object)} does. The native backend receives the modifications in a single encoded buffer, so
+	 * the number of native calls doesn't depend on the number or complexity of the values.
+	 *
+	 * @param modifications
+	 *            The modifications to apply.
+	 * @throws NullPointerException
+	 *             If the argument or any of the keys are <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             If a value has an unsupported type.
+	 */
+	public abstract void applyPatch(Map<String, ?> modifications)
+			throws NullPointerException, IllegalArgumentException;
+
+	/**
+	 * Applies the argument key path modifications in a single operation.
+	 * <p>
+	 * The modifications are applied in the iteration order of the argument map. The key paths that are mapped to
+	 * <code>null</code> are removed, other values are set at the given path. Only the addressed nested values are
+	 * replaced, the rest of the containers along the path are kept as is.
+	 * <p>
+	 * When a value is set, the missing dictionaries and arrays along the path are created. An array index may address
+	 * an existing element, or be the same as the length of the array to append to it. Removing a path that doesn't
+	 * exist has no effect. Removing an array element shifts the subsequent elements.
+	 * <p>
+	 * If a modification cannot be applied, the plist may be partially modified.
+	 *
+	 * @param modifications
+	 *            The modifications to apply.
+	 * @throws NullPointerException
+	 *             If the argument or any of the key paths are <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             If a value has an unsupported type, or if a value cannot be set at the given path due to a type
+	 *             mismatch or out of bounds array index.
+	 */
+	public abstract void applyKeyPathPatch(Map<PlistKeyPath, ?> modifications)
+			throws NullPointerException, IllegalArgumentException;
+
+	/**
+	 * Computes a hash of the logical contents of the plist.
+	 * <p>
+	 * The hash doesn't depend on the serialization format, the order of the dictionary keys, or any other
+	 * serialization details. Two plists have the same hash if they contain the same values.
+	 *
+	 * @return The SHA-256 hash of the canonical encoding of the contents.
+	 */
+	public abstract byte[] getContentHash();
+
 	/**
 	 * Serializes the plist in the specified format.
-	 * 
+	 *
 	 * @param format
 	 *            One of the <code>FORMAT_*</code> constants.
 	 * @return The serialized bytes.
 	 */
-	public byte[] serialize(int format) {
-		return serialize(ptr, format);
-	}
+	public abstract byte[] serialize(int format);
+
+	/**
+	 * Serializes the plist in the specified format to the argument channel.
+	 * <p>
+	 * The Java backend writes the serialized bytes directly to the channel without allocating an intermediate array
+	 * for the whole output. The native backend serializes to an array first. The channel is not closed by this method.
+	 *
+	 * @param format
+	 *            One of the <code>FORMAT_*</code> constants.
+	 * @param channel
+	 *            The channel to write the output to.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public abstract void serialize(int format, WritableByteChannel channel) throws IOException;
+
+	@Override
+	public abstract void close();
+
+	static native long createEmptyPlist();
+
+	static native long createContentPlist(Map<String, ?> dictionary);
 
-	private static native long createEmptyPlist();
+	static native long createFromBytes(byte[] bytes, int offset, int length) throws IOException;
 
-	private static native long createContentPlist(Map<String, ?> dictionary);
+	static native long createFromDirectBuffer(ByteBuffer buffer, int offset, int length) throws IOException;
 
-	private static native long createFromBytes(byte[] bytes, int offset, int length) throws IOException;
+	static native void release(long ptr);
 
-	private static native void release(long ptr);
+	static native byte[] serialize(long ptr, int format);
 
-	private static native byte[] serialize(long ptr, int format);
+	static native void setStringKeyValue(long ptr, String key, String value);
 
-	private static native void setStringKeyValue(long ptr, String key, String value);
+	static native void setBooleanKeyValue(long ptr, String key, boolean value);
 
-	private static native void setBooleanKeyValue(long ptr, String key, boolean value);
+	static native void setLongKeyValue(long ptr, String key, long value);
 
-	private static native void setLongKeyValue(long ptr, String key, long value);
+	static native void setDoubleKeyValue(long ptr, String key, double value);
 
-	private static native void setDoubleKeyValue(long ptr, String key, double value);
+	static native void setArrayKeyValue(long ptr, String key, Object[] value);
 
-	private static native void setArrayKeyValue(long ptr, String key, Object[] value);
+	static native void setObjectKeyValue(long ptr, String key, Object value);
 
-	private static native void setObjectKeyValue(long ptr, String key, Object value);
+	static native Object getValue(long ptr, String key);
 
-	private static native Object getValue(long ptr, String key);
+	static native void removeValue(long ptr, String key);
 
-	private static native void removeValue(long ptr, String key);
+	/**
+	 * Applies the patch encoded by {@link PlistValues#encodePatch(Map)}.
+	 */
+	static native void applyPatch(long ptr, byte[] patch, int offset, int length) throws IOException;
 
-	private static native int getFormat(long ptr);
+	static native int getFormat(long ptr);
 
-	private void use() throws IllegalStateException {
-		AIFU_useCounter.updateAndGet(this, c -> {
-			if (c <= 0) {
-				throw new IllegalStateException("Closed.");
+	static MappedByteBuffer mapFile(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Plist file is too large: " + path + " (" + size + " bytes)");
 			}
-			return c + 1;
-		});
+			//the mapping stays valid after the channel is closed
+			return channel.map(MapMode.READ_ONLY, 0, size);
+		}
 	}
 
-	private void release() {
-		int c = AIFU_useCounter.decrementAndGet(this);
-		if (c == 0) {
-			release(ptr);
+	private static int resolveBackend(int backend) {
+		if (backend == BACKEND_DEFAULT) {
+			return DEFAULT_BACKEND;
 		}
+		return backend;
 	}
 
-	@Override
-	public void close() {
-		if (!AIFU_closed.compareAndSet(this, 0, 1)) {
-			//already closed
-			return;
+	private static int determineDefaultBackend() {
+		String prop = System.getProperty(PROPERTY_BACKEND);
+		if (prop != null) {
+			switch (prop.toLowerCase(Locale.ENGLISH)) {
+				case "native": {
+					return BACKEND_NATIVE;
+				}
+				case "java": {
+					return BACKEND_JAVA;
+				}
+				default: {
+					//unrecognized, select automatically
+					break;
+				}
+			}
 		}
-		release();
+		return PlatformLib.LOADED ? BACKEND_NATIVE : BACKEND_JAVA;
 	}
 
 	private static void checkLoaded() {
@@ -0,0 +1,209 @@
+package saker.apple.impl.plist.lib;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Computes the content hash of a plist value incrementally.
+ * <p>
+ * The value can be passed as a complete object tree, or as a sequence of structural events in the same way as
+ * {@link XmlPlistWriter} receives them. The result is the same for both, so a plist that is streamed has the same hash
+ * as when it is fully read into memory.
+ * <p>
+ * The hash is the SHA-256 digest of a canonical encoding of the value. The entries of a dictionary are encoded in
+ * sorted key order, each with the separate digest of its value. Only these digests are kept in memory for the
+ * dictionaries that are being streamed, not the values themselves. Arrays are encoded in order, followed by their
+ * length.
+ */
+final class PlistContentHasher {
+	private static final class Frame {
+		/**
+		 * The digest that the values of an array, or the encoded dictionary are written to.
+		 */
+		final MessageDigest target;
+		/**
+		 * The value digests of the dictionary entries, or <code>null</code> for arrays and the root.
+		 */
+		final TreeMap<String, byte[]> entries;
+		String key;
+		long count;
+
+		Frame(MessageDigest target, TreeMap<String, byte[]> entries) {
+			this.target = target;
+			this.entries = entries;
+		}
+	}
+
+	private final ByteBuffer scratch = ByteBuffer.allocate(Long.BYTES + 1);
+	/**
+	 * The digests used for the values of dictionary entries, indexed by the depth of the dictionary.
+	 */
+	private final List<MessageDigest> digests = new ArrayList<>();
+	private final Deque<Frame> frames = new ArrayDeque<>();
+
+	public PlistContentHasher() {
+		frames.push(new Frame(getDigest(0), null));
+	}
+
+	/**
+	 * Gets the hash of the value that was added to the hasher.
+	 * <p>
+	 * The hasher shouldn't be used after this call.
+	 *
+	 * @return The SHA-256 hash.
+	 * @throws IllegalStateException
+	 *             If a dictionary or array is not ended.
+	 */
+	public byte[] getHash() throws IllegalStateException {
+		if (frames.size() != 1) {
+			throw new IllegalStateException("Unterminated plist container.");
+		}
+		return frames.peek().target.digest();
+	}
+
+	public void startDict() {
+		frames.push(new Frame(beginValue(), new TreeMap<>()));
+	}
+
+	public void endDict() {
+		Frame frame = frames.pop();
+		if (frame.entries == null) {
+			throw new IllegalStateException("Not in a dictionary.");
+		}
+		MessageDigest digest = frame.target;
+		digestHeader(digest, 'M', frame.entries.size());
+		for (Entry<String, byte[]> entry : frame.entries.entrySet()) {
+			digestString(digest, entry.getKey());
+			digest.update(entry.getValue());
+		}
+		endValue(digest);
+	}
+
+	public void startArray() {
+		frames.push(new Frame(beginValue(), null));
+	}
+
+	public void endArray() {
+		Frame frame = frames.pop();
+		if (frame.entries != null || frames.isEmpty()) {
+			throw new IllegalStateException("Not in an array.");
+		}
+		digestHeader(frame.target, 'A', frame.count);
+		endValue(frame.target);
+	}
+
+	/**
+	 * Sets the key of the next value in the current dictionary.
+	 */
+	public void key(String key) {
+		Frame frame = frames.peek();
+		if (frame.entries == null) {
+			throw new IllegalStateException("Not in a dictionary.");
+		}
+		frame.key = key;
+	}
+
+	/**
+	 * Adds a complete value in canonical representation.
+	 */
+	public void value(Object value) {
+		if (value instanceof Map<?, ?>) {
+			startDict();
+			for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				key((String) entry.getKey());
+				value(entry.getValue());
+			}
+			endDict();
+		} else if (value instanceof Object[]) {
+			startArray();
+			for (Object o : (Object[]) value) {
+				value(o);
+			}
+			endArray();
+		} else {
+			MessageDigest digest = beginValue();
+			digestScalar(digest, value);
+			endValue(digest);
+		}
+	}
+
+	private MessageDigest beginValue() {
+		Frame frame = frames.peek();
+		if (frame.entries == null) {
+			return frame.target;
+		}
+		if (frame.key == null) {
+			throw new IllegalStateException("Missing dictionary key.");
+		}
+		//separate digest for the entry value, as the entries are encoded in sorted order
+		MessageDigest digest = getDigest(frames.size());
+		digest.reset();
+		return digest;
+	}
+
+	private void endValue(MessageDigest digest) {
+		Frame frame = frames.peek();
+		if (frame.entries == null) {
+			++frame.count;
+			return;
+		}
+		frame.entries.put(frame.key, digest.digest());
+		frame.key = null;
+	}
+
+	private MessageDigest getDigest(int depth) {
+		while (digests.size() <= depth) {
+			try {
+				digests.add(MessageDigest.getInstance("SHA-256"));
+			} catch (NoSuchAlgorithmException e) {
+				//SHA-256 is required to be supported by every Java platform
+				throw new AssertionError(e);
+			}
+		}
+		return digests.get(depth);
+	}
+
+	private void digestScalar(MessageDigest digest, Object value) {
+		if (value instanceof String) {
+			digestString(digest, (String) value);
+		} else if (value instanceof Boolean) {
+			digestHeader(digest, 'B', ((Boolean) value) ? 1 : 0);
+		} else if (value instanceof Long) {
+			digestHeader(digest, 'I', (Long) value);
+		} else if (value instanceof Double) {
+			digestHeader(digest, 'R', Double.doubleToLongBits((Double) value));
+		} else if (value instanceof Date) {
+			digestHeader(digest, 'T', ((Date) value).getTime());
+		} else if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			digestHeader(digest, 'X', bytes.length);
+			digest.update(bytes);
+		} else {
+			throw new IllegalArgumentException("Unrecognized Java plist type: " + value);
+		}
+	}
+
+	private void digestString(MessageDigest digest, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		digestHeader(digest, 'S', bytes.length);
+		digest.update(bytes);
+	}
+
+	private void digestHeader(MessageDigest digest, char tag, long value) {
+		scratch.clear();
+		scratch.put((byte) tag);
+		scratch.putLong(value);
+		scratch.flip();
+		digest.update(scratch);
+	}
+}
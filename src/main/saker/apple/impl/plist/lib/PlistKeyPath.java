@@ -0,0 +1,285 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Path that addresses a nested value in a plist.
+ * <p>
+ * A key path consists of dictionary key and array index components. The string representation separates the
+ * dictionary keys with <code>'.'</code>, and the array indexes are specified in brackets. E.g.
+ * <code>"CFBundleURLTypes[0].CFBundleURLSchemes"</code>. The <code>'\'</code> character escapes the next character in
+ * a key, so keys that contain the special characters can be specified as
+ * <code>"NSAppTransportSecurity.NSExceptionDomains.example\.com"</code>.
+ * <p>
+ * The key paths are ordered component-wise. The array indexes are compared numerically, and precede the dictionary
+ * keys at the same position. A path precedes the paths that it is a prefix of.
+ */
+public final class PlistKeyPath implements Comparable<PlistKeyPath>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The components of the path. {@link String} for dictionary keys, and {@link Integer} for array indexes.
+	 */
+	private Object[] components;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public PlistKeyPath() {
+	}
+
+	private PlistKeyPath(Object[] components) {
+		this.components = components;
+	}
+
+	/**
+	 * Creates a key path that consists of a single dictionary key.
+	 * <p>
+	 * The argument is not parsed.
+	 *
+	 * @param key
+	 *            The key.
+	 * @return The key path.
+	 */
+	public static PlistKeyPath key(String key) {
+		Objects.requireNonNull(key, "key");
+		return new PlistKeyPath(new Object[] { key });
+	}
+
+	/**
+	 * Parses the argument key path.
+	 *
+	 * @param path
+	 *            The key path string.
+	 * @return The parsed key path.
+	 * @throws IllegalArgumentException
+	 *             If the format of the key path is invalid.
+	 */
+	public static PlistKeyPath parse(String path) throws IllegalArgumentException {
+		Objects.requireNonNull(path, "path");
+		List<Object> components = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		//true if a new component is expected. (at the start and after a '.')
+		boolean componentstart = true;
+		boolean inkey = false;
+		int len = path.length();
+		for (int i = 0; i < len; i++) {
+			char c = path.charAt(i);
+			switch (c) {
+				case '.': {
+					if (componentstart) {
+						throw new IllegalArgumentException("Empty component in plist key path: " + path);
+					}
+					if (inkey) {
+						components.add(sb.toString());
+						sb.setLength(0);
+						inkey = false;
+					}
+					componentstart = true;
+					break;
+				}
+				case '[': {
+					if (inkey) {
+						components.add(sb.toString());
+						sb.setLength(0);
+						inkey = false;
+					}
+					int end = path.indexOf(']', i + 1);
+					if (end < 0) {
+						throw new IllegalArgumentException("Unterminated array index in plist key path: " + path);
+					}
+					int idx = PlistValues.parseArrayIndex(path.substring(i + 1, end));
+					if (idx < 0) {
+						throw new IllegalArgumentException("Invalid array index in plist key path: " + path);
+					}
+					components.add(idx);
+					componentstart = false;
+					i = end;
+					break;
+				}
+				default: {
+					if (!componentstart && !inkey) {
+						throw new IllegalArgumentException(
+								"Expected '.' or '[' after array index in plist key path: " + path);
+					}
+					if (c == '\\') {
+						if (++i == len) {
+							throw new IllegalArgumentException("Unterminated escape in plist key path: " + path);
+						}
+						c = path.charAt(i);
+					}
+					sb.append(c);
+					inkey = true;
+					componentstart = false;
+					break;
+				}
+			}
+		}
+		if (componentstart) {
+			throw new IllegalArgumentException("Empty component in plist key path: " + path);
+		}
+		if (inkey) {
+			components.add(sb.toString());
+		}
+		return new PlistKeyPath(components.toArray());
+	}
+
+	public int getComponentCount() {
+		return components.length;
+	}
+
+	/**
+	 * Checks if the component at the given position is an array index.
+	 *
+	 * @param index
+	 *            The position of the component.
+	 * @return <code>true</code> if it is an array index, <code>false</code> if it is a dictionary key.
+	 */
+	public boolean isIndex(int index) {
+		return components[index] instanceof Integer;
+	}
+
+	/**
+	 * Gets the dictionary key at the given position.
+	 *
+	 * @throws ClassCastException
+	 *             If the component is an array index.
+	 */
+	public String getKey(int index) throws ClassCastException {
+		return (String) components[index];
+	}
+
+	/**
+	 * Gets the array index at the given position.
+	 *
+	 * @throws ClassCastException
+	 *             If the component is a dictionary key.
+	 */
+	public int getIndex(int index) throws ClassCastException {
+		return (Integer) components[index];
+	}
+
+	/**
+	 * Gets the components of the path in the representation used for encoded patches.
+	 * <p>
+	 * The dictionary keys are {@link String Strings} and the array indexes are {@link Long Longs}.
+	 */
+	Object[] toPatchComponents() {
+		Object[] result = new Object[components.length];
+		for (int i = 0; i < result.length; i++) {
+			Object c = components[i];
+			result[i] = c instanceof Integer ? (Object) ((Integer) c).longValue() : c;
+		}
+		return result;
+	}
+
+	@Override
+	public int compareTo(PlistKeyPath o) {
+		Object[] ocomponents = o.components;
+		int len = Math.min(components.length, ocomponents.length);
+		for (int i = 0; i < len; i++) {
+			Object c = components[i];
+			Object oc = ocomponents[i];
+			int cmp;
+			if (c instanceof Integer) {
+				if (!(oc instanceof Integer)) {
+					return -1;
+				}
+				cmp = Integer.compare((Integer) c, (Integer) oc);
+			} else {
+				if (oc instanceof Integer) {
+					return 1;
+				}
+				cmp = ((String) c).compareTo((String) oc);
+			}
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(components.length, ocomponents.length);
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeInt(components.length);
+		for (Object c : components) {
+			if (c instanceof Integer) {
+				out.writeBoolean(true);
+				out.writeInt((Integer) c);
+			} else {
+				out.writeBoolean(false);
+				out.writeUTF((String) c);
+			}
+		}
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		int len = in.readInt();
+		Object[] components = new Object[len];
+		for (int i = 0; i < len; i++) {
+			if (in.readBoolean()) {
+				components[i] = in.readInt();
+			} else {
+				components[i] = in.readUTF();
+			}
+		}
+		this.components = components;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(components);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PlistKeyPath other = (PlistKeyPath) obj;
+		if (!Arrays.equals(components, other.components))
+			return false;
+		return true;
+	}
+
+	/**
+	 * Gets the string representation of the key path that can be {@linkplain #parse(String) parsed}.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < components.length; i++) {
+			Object c = components[i];
+			if (c instanceof Integer) {
+				sb.append('[');
+				sb.append(c);
+				sb.append(']');
+				continue;
+			}
+			if (i > 0) {
+				sb.append('.');
+			}
+			String key = (String) c;
+			int len = key.length();
+			for (int j = 0; j < len; j++) {
+				char kc = key.charAt(j);
+				if (kc == '.' || kc == '[' || kc == ']' || kc == '\\') {
+					sb.append('\\');
+				}
+				sb.append(kc);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,150 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Immutable decoded plist that can be opened multiple times without decoding it again.
+ * <p>
+ * The plists opened from the snapshot share the decoded contents, and copy them lazily when they are first modified.
+ * Opening a snapshot is cheap, and the snapshot can be used concurrently from multiple threads.
+ * <p>
+ * The snapshots always use the pure Java backend.
+ */
+public final class PlistSnapshot {
+	private final NavigableMap<String, Object> root;
+	private final int format;
+	private final long size;
+
+	private PlistSnapshot(NavigableMap<String, Object> root, int format, long size) {
+		this.root = root;
+		this.format = format;
+		this.size = size;
+	}
+
+	/**
+	 * Decodes a snapshot from the remaining bytes of the argument buffer.
+	 * <p>
+	 * The position of the buffer is not modified.
+	 *
+	 * @param buffer
+	 *            The buffer.
+	 * @return The snapshot.
+	 * @throws IOException
+	 *             If the plist is malformed.
+	 */
+	public static PlistSnapshot readFrom(ByteBuffer buffer) throws IOException {
+		Objects.requireNonNull(buffer, "buffer");
+		long size = buffer.remaining();
+		JavaPlist plist = JavaPlist.fromBuffer(buffer);
+		return new PlistSnapshot(plist.getRoot(), plist.getFormat(), size);
+	}
+
+	/**
+	 * Decodes a snapshot from the memory mapped contents of the given file.
+	 *
+	 * @param path
+	 *            The path of the plist file.
+	 * @return The snapshot.
+	 * @throws IOException
+	 *             If the file cannot be read or the plist is malformed.
+	 */
+	public static PlistSnapshot readFrom(Path path) throws IOException {
+		Objects.requireNonNull(path, "path");
+		return readFrom(Plist.mapFile(path));
+	}
+
+	/**
+	 * Deep merges the argument snapshots into a new snapshot.
+	 * <p>
+	 * The snapshots are merged in iteration order, so the later ones override the values of the preceding ones. The
+	 * dictionaries are merged recursively. Arrays are concatenated if <code>appendarrays</code> is <code>true</code>,
+	 * and replaced otherwise. Other values, and values with different types are replaced.
+	 * <p>
+	 * The merged snapshot shares the unmodified nested values with the arguments. Its format is the same as the format
+	 * of the first snapshot.
+	 *
+	 * @param snapshots
+	 *            The snapshots to merge.
+	 * @param appendarrays
+	 *            <code>true</code> to concatenate arrays instead of replacing them.
+	 * @return The merged snapshot.
+	 * @throws IllegalArgumentException
+	 *             If the argument is empty.
+	 */
+	public static PlistSnapshot merge(Iterable<? extends PlistSnapshot> snapshots, boolean appendarrays)
+			throws IllegalArgumentException {
+		Objects.requireNonNull(snapshots, "snapshots");
+		Iterator<? extends PlistSnapshot> it = snapshots.iterator();
+		if (!it.hasNext()) {
+			throw new IllegalArgumentException("No plists to merge.");
+		}
+		PlistSnapshot first = it.next();
+		TreeMap<String, Object> root = new TreeMap<>(first.root);
+		long size = first.size;
+		while (it.hasNext()) {
+			PlistSnapshot snapshot = it.next();
+			PlistValues.mergeInto(root, snapshot.root, appendarrays);
+			size += snapshot.size;
+		}
+		return new PlistSnapshot(root, first.format, size);
+	}
+
+	/**
+	 * Opens a new plist that has the contents of this snapshot.
+	 * <p>
+	 * The returned plist can be modified without affecting the snapshot.
+	 *
+	 * @return The opened plist.
+	 */
+	public Plist open() {
+		return JavaPlist.copyOnWrite(root, format);
+	}
+
+	/**
+	 * Looks up the value at the given key path.
+	 * <p>
+	 * Array elements can be addressed by their decimal index.
+	 *
+	 * @param keypath
+	 *            The key path.
+	 * @return A copy of the found value, or <code>null</code> if not found.
+	 */
+	public Object lookup(String... keypath) {
+		Object result = PlistValues.getPath(root, keypath);
+		if (result == null) {
+			return null;
+		}
+		return PlistValues.copy(result);
+	}
+
+	/**
+	 * Gets the format of the plist the snapshot was decoded from.
+	 *
+	 * @return {@link Plist#FORMAT_XML} or {@link Plist#FORMAT_BINARY}.
+	 */
+	public int getFormat() {
+		return format;
+	}
+
+	/**
+	 * Gets the size of the encoded plist the snapshot was decoded from.
+	 * <p>
+	 * The size can be used as an estimate for the memory use of the snapshot.
+	 *
+	 * @return The size in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[format=" + format + ", size=" + size + "]";
+	}
+}
@@ -0,0 +1,435 @@
+package saker.apple.impl.plist.lib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Utility functions for the Java representation of plist values.
+ * <p>
+ * The canonical representation uses {@link String}, {@link Boolean}, {@link Long}, {@link Double},
+ * <code>byte[]</code>, {@link Date}, <code>Object[]</code> for arrays and {@link TreeMap} for dictionaries.
+ */
+final class PlistValues {
+	/**
+	 * The dictionary key that represents an archiver UID in the XML format.
+	 */
+	public static final String KEY_CF_UID = "CF$UID";
+
+	/**
+	 * Key of the dictionary in an encoded patch that contains the values to set.
+	 */
+	public static final String PATCH_KEY_SET = "set";
+	/**
+	 * Key of the array in an encoded patch that contains the keys to remove.
+	 */
+	public static final String PATCH_KEY_REMOVE = "remove";
+	/**
+	 * Key of the array in an encoded patch that contains the key path modifications.
+	 * <p>
+	 * The elements are dictionaries with the {@link #PATCH_KEY_PATH} and the optional {@link #PATCH_KEY_VALUE}
+	 * entries. The value is missing for removals.
+	 */
+	public static final String PATCH_KEY_PATHS = "paths";
+	/**
+	 * Key of the key path components array in a key path modification.
+	 */
+	public static final String PATCH_KEY_PATH = "path";
+	/**
+	 * Key of the value to set in a key path modification.
+	 */
+	public static final String PATCH_KEY_VALUE = "value";
+
+	private PlistValues() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Validates and deep copies the argument object to the canonical plist representation.
+	 *
+	 * @param value
+	 *            The value.
+	 * @return The copied value.
+	 * @throws NullPointerException
+	 *             If the value or any of its elements are <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             If the value has an unsupported type.
+	 */
+	public static Object copy(Object value) throws NullPointerException, IllegalArgumentException {
+		if (value == null) {
+			throw new NullPointerException("Null plist element.");
+		}
+		if (value instanceof String || value instanceof Boolean || value instanceof Long
+				|| value instanceof Double) {
+			return value;
+		}
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).longValue();
+		}
+		if (value instanceof Float) {
+			return ((Float) value).doubleValue();
+		}
+		if (value instanceof Object[]) {
+			Object[] array = (Object[]) value;
+			Object[] result = new Object[array.length];
+			for (int i = 0; i < array.length; i++) {
+				result[i] = copy(array[i]);
+			}
+			return result;
+		}
+		if (value instanceof Collection<?>) {
+			Collection<?> coll = (Collection<?>) value;
+			Object[] result = new Object[coll.size()];
+			int i = 0;
+			for (Object o : coll) {
+				result[i++] = copy(o);
+			}
+			return result;
+		}
+		if (value instanceof Map<?, ?>) {
+			return copyDictionary((Map<?, ?>) value);
+		}
+		if (value instanceof byte[]) {
+			return ((byte[]) value).clone();
+		}
+		if (value instanceof Date) {
+			return new Date(((Date) value).getTime());
+		}
+		throw new IllegalArgumentException("Unrecognized Java plist type: " + value.getClass().getName());
+	}
+
+	public static NavigableMap<String, Object> copyDictionary(Map<?, ?> map)
+			throws NullPointerException, IllegalArgumentException {
+		TreeMap<String, Object> result = new TreeMap<>();
+		for (Entry<?, ?> entry : map.entrySet()) {
+			Object key = entry.getKey();
+			if (key == null) {
+				throw new NullPointerException("Null key.");
+			}
+			if (!(key instanceof String)) {
+				throw new IllegalArgumentException("Non-string key in plist dictionary: " + key);
+			}
+			Object val = entry.getValue();
+			if (val == null) {
+				throw new NullPointerException("Null value for key: " + key);
+			}
+			result.put((String) key, copy(val));
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if the argument dictionary represents an archiver UID. (A dictionary with a single
+	 * {@value #KEY_CF_UID} key that has an integer value.)
+	 *
+	 * @param map
+	 *            The dictionary.
+	 * @return The UID value or <code>null</code> if the dictionary is not an UID.
+	 */
+	public static Long getUID(Map<?, ?> map) {
+		if (map.size() != 1) {
+			return null;
+		}
+		Object uid = map.get(KEY_CF_UID);
+		if (uid instanceof Long) {
+			return (Long) uid;
+		}
+		return null;
+	}
+
+	/**
+	 * Computes the content hash of the argument canonical plist value.
+	 * <p>
+	 * The hash is the SHA-256 digest of a canonical encoding of the value. The dictionary entries are encoded in
+	 * sorted key order, so the hash only depends on the logical contents.
+	 *
+	 * @param value
+	 *            The value.
+	 * @return The hash.
+	 * @see Plist#getContentHash()
+	 * @see PlistContentHasher
+	 */
+	public static byte[] contentHash(Object value) {
+		PlistContentHasher hasher = new PlistContentHasher();
+		hasher.value(value);
+		return hasher.getHash();
+	}
+
+	/**
+	 * Encodes the argument modifications into a single binary plist.
+	 * <p>
+	 * The root of the encoded plist is a dictionary that contains the values to set under the {@link #PATCH_KEY_SET}
+	 * key, and the array of keys to remove under the {@link #PATCH_KEY_REMOVE} key. The keys with <code>null</code>
+	 * values in the argument are removed.
+	 *
+	 * @param modifications
+	 *            The modifications.
+	 * @return The encoded patch.
+	 * @see Plist#applyPatch(Map)
+	 */
+	public static byte[] encodePatch(Map<String, ?> modifications) {
+		TreeMap<String, Object> set = new TreeMap<>();
+		List<String> remove = new ArrayList<>();
+		for (Entry<String, ?> entry : modifications.entrySet()) {
+			String key = entry.getKey();
+			if (key == null) {
+				throw new NullPointerException("Null plist key.");
+			}
+			Object val = entry.getValue();
+			if (val == null) {
+				remove.add(key);
+			} else {
+				set.put(key, copy(val));
+			}
+		}
+		TreeMap<String, Object> patch = new TreeMap<>();
+		patch.put(PATCH_KEY_SET, set);
+		patch.put(PATCH_KEY_REMOVE, remove.toArray());
+		return BinaryPlistWriter.toBytes(patch);
+	}
+
+	/**
+	 * Encodes the argument key path modifications into a single binary plist.
+	 * <p>
+	 * The root of the encoded plist is a dictionary that contains the modifications in iteration order under the
+	 * {@link #PATCH_KEY_PATHS} key.
+	 *
+	 * @param modifications
+	 *            The modifications.
+	 * @return The encoded patch.
+	 * @see Plist#applyKeyPathPatch(Map)
+	 */
+	public static byte[] encodeKeyPathPatch(Map<PlistKeyPath, ?> modifications) {
+		Object[] paths = new Object[modifications.size()];
+		int i = 0;
+		for (Entry<PlistKeyPath, ?> entry : modifications.entrySet()) {
+			PlistKeyPath path = requireRootKeyPath(entry.getKey());
+			TreeMap<String, Object> mod = new TreeMap<>();
+			mod.put(PATCH_KEY_PATH, path.toPatchComponents());
+			Object val = entry.getValue();
+			if (val != null) {
+				mod.put(PATCH_KEY_VALUE, copy(val));
+			}
+			paths[i++] = mod;
+		}
+		TreeMap<String, Object> patch = new TreeMap<>();
+		patch.put(PATCH_KEY_PATHS, paths);
+		return BinaryPlistWriter.toBytes(patch);
+	}
+
+	/**
+	 * Checks that the argument key path can be applied to the root dictionary of a plist.
+	 */
+	public static PlistKeyPath requireRootKeyPath(PlistKeyPath path) {
+		if (path == null) {
+			throw new NullPointerException("Null plist key path.");
+		}
+		if (path.getComponentCount() == 0 || path.isIndex(0)) {
+			throw new IllegalArgumentException("Plist key path doesn't start with a dictionary key: " + path);
+		}
+		return path;
+	}
+
+	/**
+	 * Sets or removes the value at the given key path in the root dictionary.
+	 * <p>
+	 * The nested containers along the path are copied rather than modified in place. The missing containers are
+	 * created when a value is set.
+	 *
+	 * @param root
+	 *            The root dictionary that is modified.
+	 * @param path
+	 *            The key path.
+	 * @param value
+	 *            The value in canonical representation, or <code>null</code> to remove the value.
+	 * @throws IllegalArgumentException
+	 *             If the value cannot be set at the given path.
+	 */
+	public static void applyKeyPath(NavigableMap<String, Object> root, PlistKeyPath path, Object value)
+			throws IllegalArgumentException {
+		requireRootKeyPath(path);
+		String key = path.getKey(0);
+		Object child = root.get(key);
+		Object updated = path.getComponentCount() == 1 ? value : updateKeyPath(child, path, 1, value);
+		if (updated == child) {
+			return;
+		}
+		if (updated == null) {
+			root.remove(key);
+		} else {
+			root.put(key, updated);
+		}
+	}
+
+	/**
+	 * Updates the node at the given position of the key path.
+	 *
+	 * @return The updated node, or the same node if there were no changes.
+	 */
+	private static Object updateKeyPath(Object node, PlistKeyPath path, int i, Object value) {
+		if (node == null) {
+			if (value == null) {
+				//nothing to remove
+				return null;
+			}
+			node = path.isIndex(i) ? new Object[0] : new TreeMap<String, Object>();
+		}
+		boolean last = i + 1 == path.getComponentCount();
+		if (path.isIndex(i)) {
+			if (!(node instanceof Object[])) {
+				if (value == null) {
+					return node;
+				}
+				throw new IllegalArgumentException("Plist value is not an array in key path: " + path);
+			}
+			Object[] array = (Object[]) node;
+			int index = path.getIndex(i);
+			if (index >= array.length) {
+				if (value == null) {
+					return node;
+				}
+				if (index > array.length) {
+					throw new IllegalArgumentException(
+							"Array index out of bounds in plist key path: " + path + " (length: " + array.length + ")");
+				}
+			}
+			if (last && value == null) {
+				Object[] result = new Object[array.length - 1];
+				System.arraycopy(array, 0, result, 0, index);
+				System.arraycopy(array, index + 1, result, index, result.length - index);
+				return result;
+			}
+			Object child = index < array.length ? array[index] : null;
+			Object updated = last ? value : updateKeyPath(child, path, i + 1, value);
+			if (updated == child) {
+				return node;
+			}
+			Object[] result = Arrays.copyOf(array, Math.max(array.length, index + 1));
+			result[index] = updated;
+			return result;
+		}
+		if (!(node instanceof Map<?, ?>)) {
+			if (value == null) {
+				return node;
+			}
+			throw new IllegalArgumentException("Plist value is not a dictionary in key path: " + path);
+		}
+		@SuppressWarnings("unchecked")
+		Map<String, Object> map = (Map<String, Object>) node;
+		String key = path.getKey(i);
+		Object child = map.get(key);
+		Object updated = last ? value : updateKeyPath(child, path, i + 1, value);
+		if (updated == child) {
+			return node;
+		}
+		TreeMap<String, Object> result = new TreeMap<>(map);
+		if (updated == null) {
+			result.remove(key);
+		} else {
+			result.put(key, updated);
+		}
+		return result;
+	}
+
+	/**
+	 * Deep merges the overlay value into the base value.
+	 * <p>
+	 * Dictionaries are merged recursively, arrays are concatenated if <code>appendarrays</code> is
+	 * <code>true</code>, and the overlay replaces the base value otherwise.
+	 * <p>
+	 * The arguments are not modified. The result may share nested values with the arguments, as the canonical values
+	 * are never modified in place.
+	 *
+	 * @param base
+	 *            The base value. May be <code>null</code>.
+	 * @param overlay
+	 *            The overlay value.
+	 * @param appendarrays
+	 *            <code>true</code> to concatenate arrays instead of replacing them.
+	 * @return The merged value.
+	 */
+	public static Object merge(Object base, Object overlay, boolean appendarrays) {
+		if (base instanceof Map<?, ?> && overlay instanceof Map<?, ?>) {
+			@SuppressWarnings("unchecked")
+			TreeMap<String, Object> result = new TreeMap<>((Map<String, Object>) base);
+			mergeInto(result, (Map<?, ?>) overlay, appendarrays);
+			return result;
+		}
+		if (appendarrays && base instanceof Object[] && overlay instanceof Object[]) {
+			Object[] basearray = (Object[]) base;
+			Object[] overlayarray = (Object[]) overlay;
+			Object[] result = Arrays.copyOf(basearray, basearray.length + overlayarray.length);
+			System.arraycopy(overlayarray, 0, result, basearray.length, overlayarray.length);
+			return result;
+		}
+		return overlay;
+	}
+
+	/**
+	 * Deep merges the overlay dictionary into the argument writable dictionary.
+	 *
+	 * @see #merge(Object, Object, boolean)
+	 */
+	public static void mergeInto(NavigableMap<String, Object> dictionary, Map<?, ?> overlay, boolean appendarrays) {
+		for (Entry<?, ?> entry : overlay.entrySet()) {
+			String key = (String) entry.getKey();
+			dictionary.put(key, merge(dictionary.get(key), entry.getValue(), appendarrays));
+		}
+	}
+
+	/**
+	 * Parses an array index in a key path.
+	 *
+	 * @param key
+	 *            The key path element.
+	 * @return The index, or -1 if the argument is not a non-negative decimal integer.
+	 */
+	public static int parseArrayIndex(String key) {
+		int len = key.length();
+		if (len == 0 || len > 9) {
+			return -1;
+		}
+		int result = 0;
+		for (int i = 0; i < len; i++) {
+			char c = key.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the value at the given key path in the argument canonical object.
+	 *
+	 * @return The value, or <code>null</code> if not found. The value is not copied.
+	 */
+	public static Object getPath(Object root, String... keypath) {
+		Object current = root;
+		for (String key : keypath) {
+			if (current instanceof Map<?, ?>) {
+				current = ((Map<?, ?>) current).get(key);
+			} else if (current instanceof Object[]) {
+				Object[] array = (Object[]) current;
+				int idx = parseArrayIndex(key);
+				if (idx < 0 || idx >= array.length) {
+					return null;
+				}
+				current = array[idx];
+			} else {
+				return null;
+			}
+			if (current == null) {
+				return null;
+			}
+		}
+		return current;
+	}
+}
@@ -0,0 +1,324 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reader for the XML property list format.
+ * <p>
+ * The reader uses the StAX API to decode the document, therefore no intermediate DOM is created. The DTD of the
+ * document is not resolved.
+ */
+public final class XmlPlistReader {
+	private static final XMLInputFactory INPUT_FACTORY;
+	static {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		INPUT_FACTORY = factory;
+	}
+
+	private XmlPlistReader() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Creates a new stream reader for the argument input that is configured for reading plists.
+	 *
+	 * @param is
+	 *            The input.
+	 * @return The created stream reader.
+	 * @throws XMLStreamException
+	 *             If the creation fails.
+	 */
+	public static XMLStreamReader createStreamReader(InputStream is) throws XMLStreamException {
+		//the factory is not guaranteed to be thread safe
+		synchronized (INPUT_FACTORY) {
+			return INPUT_FACTORY.createXMLStreamReader(is);
+		}
+	}
+
+	/**
+	 * Decodes the XML plist from the argument stream.
+	 *
+	 * @param is
+	 *            The input.
+	 * @return The decoded root object in canonical representation.
+	 * @throws IOException
+	 *             If the plist is malformed or an I/O error occurs.
+	 */
+	public static Object read(InputStream is) throws IOException {
+		try {
+			XMLStreamReader reader = createStreamReader(is);
+			try {
+				moveToRootElement(reader);
+				Object result;
+				if ("plist".equals(reader.getLocalName())) {
+					reader.nextTag();
+					result = readValue(reader);
+					reader.nextTag();
+					reader.require(XMLStreamConstants.END_ELEMENT, null, "plist");
+				} else {
+					//lenient, allow documents without the plist root element
+					result = readValue(reader);
+				}
+				return result;
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to parse XML plist.", e);
+		}
+	}
+
+	/**
+	 * Looks up the value at the given key path in the XML plist.
+	 * <p>
+	 * The document is read until the value is found, and only the value at the end of the path is materialized. Other
+	 * values are skipped without decoding them. Array elements can be addressed by their decimal index.
+	 *
+	 * @param is
+	 *            The input.
+	 * @param keypath
+	 *            The key path to look up. If empty, the whole plist is decoded.
+	 * @return The value in canonical representation, or <code>null</code> if not found.
+	 * @throws IOException
+	 *             If the plist is malformed or an I/O error occurs.
+	 */
+	public static Object lookup(InputStream is, String... keypath) throws IOException {
+		try {
+			XMLStreamReader reader = createStreamReader(is);
+			try {
+				moveToRootElement(reader);
+				if ("plist".equals(reader.getLocalName())) {
+					reader.nextTag();
+				}
+				for (String key : keypath) {
+					if (!moveToChild(reader, key)) {
+						return null;
+					}
+				}
+				return readValue(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to parse XML plist.", e);
+		}
+	}
+
+	/**
+	 * Skips the value at the current start element of the argument reader.
+	 * <p>
+	 * When this method returns, the reader is positioned on the end element of the value.
+	 *
+	 * @param reader
+	 *            The reader.
+	 * @throws XMLStreamException
+	 *             If the document is malformed.
+	 */
+	public static void skipValue(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT: {
+					++depth;
+					break;
+				}
+				case XMLStreamConstants.END_ELEMENT: {
+					--depth;
+					break;
+				}
+				default: {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves the reader from the start element of a container to the start element of the child value with the given
+	 * key.
+	 */
+	private static boolean moveToChild(XMLStreamReader reader, String key) throws XMLStreamException {
+		reader.require(XMLStreamConstants.START_ELEMENT, null, null);
+		switch (reader.getLocalName()) {
+			case "dict": {
+				while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					reader.require(XMLStreamConstants.START_ELEMENT, null, "key");
+					String elemkey = reader.getElementText();
+					if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+						throw new XMLStreamException("Missing value for key: " + elemkey, reader.getLocation());
+					}
+					if (key.equals(elemkey)) {
+						return true;
+					}
+					skipValue(reader);
+				}
+				return false;
+			}
+			case "array": {
+				int idx = PlistValues.parseArrayIndex(key);
+				if (idx < 0) {
+					return false;
+				}
+				for (int i = 0; reader.nextTag() == XMLStreamConstants.START_ELEMENT; i++) {
+					if (i == idx) {
+						return true;
+					}
+					skipValue(reader);
+				}
+				return false;
+			}
+			default: {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Moves the argument reader to the first start element of the document, skipping the prolog and the DTD.
+	 *
+	 * @param reader
+	 *            The reader.
+	 * @throws XMLStreamException
+	 *             If the document has no root element.
+	 */
+	public static void moveToRootElement(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+			if (!reader.hasNext()) {
+				throw new XMLStreamException("No root element found in plist.", reader.getLocation());
+			}
+			reader.next();
+		}
+	}
+
+	/**
+	 * Reads the value at the current start element of the argument reader.
+	 * <p>
+	 * When this method returns, the reader is positioned on the end element of the value.
+	 *
+	 * @param reader
+	 *            The reader.
+	 * @return The value in canonical representation.
+	 * @throws XMLStreamException
+	 *             If the value is malformed.
+	 */
+	public static Object readValue(XMLStreamReader reader) throws XMLStreamException {
+		reader.require(XMLStreamConstants.START_ELEMENT, null, null);
+		String name = reader.getLocalName();
+		switch (name) {
+			case "dict": {
+				TreeMap<String, Object> result = new TreeMap<>();
+				while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					reader.require(XMLStreamConstants.START_ELEMENT, null, "key");
+					String key = reader.getElementText();
+					if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+						throw new XMLStreamException("Missing value for key: " + key, reader.getLocation());
+					}
+					result.put(key, readValue(reader));
+				}
+				return result;
+			}
+			case "array": {
+				List<Object> result = new ArrayList<>();
+				while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					result.add(readValue(reader));
+				}
+				return result.toArray();
+			}
+			case "string": {
+				return reader.getElementText();
+			}
+			case "true": {
+				reader.getElementText();
+				return Boolean.TRUE;
+			}
+			case "false": {
+				reader.getElementText();
+				return Boolean.FALSE;
+			}
+			case "integer": {
+				return parseInteger(reader.getElementText().trim(), reader);
+			}
+			case "real": {
+				return parseReal(reader.getElementText().trim(), reader);
+			}
+			case "date": {
+				String text = reader.getElementText().trim();
+				try {
+					return Date.from(Instant.parse(text));
+				} catch (DateTimeParseException e) {
+					throw new XMLStreamException("Invalid plist date: " + text, reader.getLocation(), e);
+				}
+			}
+			case "data": {
+				String text = reader.getElementText();
+				try {
+					return Base64.getMimeDecoder().decode(text);
+				} catch (IllegalArgumentException e) {
+					throw new XMLStreamException("Invalid plist data.", reader.getLocation(), e);
+				}
+			}
+			default: {
+				throw new XMLStreamException("Unrecognized plist element: " + name, reader.getLocation());
+			}
+		}
+	}
+
+	private static Long parseInteger(String text, XMLStreamReader reader) throws XMLStreamException {
+		try {
+			if (text.startsWith("0x") || text.startsWith("0X")) {
+				return new BigInteger(text.substring(2), 16).longValue();
+			}
+			if (text.startsWith("-0x") || text.startsWith("-0X")) {
+				return new BigInteger(text.substring(3), 16).negate().longValue();
+			}
+			//BigInteger to support unsigned 64 bit values
+			return new BigInteger(text).longValue();
+		} catch (NumberFormatException e) {
+			throw new XMLStreamException("Invalid plist integer: " + text, reader.getLocation(), e);
+		}
+	}
+
+	private static Double parseReal(String text, XMLStreamReader reader) throws XMLStreamException {
+		switch (text.toLowerCase(Locale.ENGLISH)) {
+			case "nan": {
+				return Double.NaN;
+			}
+			case "inf":
+			case "infinity":
+			case "+inf":
+			case "+infinity": {
+				return Double.POSITIVE_INFINITY;
+			}
+			case "-inf":
+			case "-infinity": {
+				return Double.NEGATIVE_INFINITY;
+			}
+			default: {
+				try {
+					return Double.valueOf(text);
+				} catch (NumberFormatException e) {
+					throw new XMLStreamException("Invalid plist real: " + text, reader.getLocation(), e);
+				}
+			}
+		}
+	}
+}
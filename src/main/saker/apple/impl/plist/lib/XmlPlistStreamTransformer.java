@@ -0,0 +1,239 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming transformer for XML plists.
+ * <p>
+ * The transformer copies the input plist to the output while reading the XML events of the input, and applies the
+ * specified modifications to the top-level keys of the root dictionary. Only a single scalar value is held in memory
+ * at a time, so the memory use doesn't depend on the size of the input.
+ * <p>
+ * Modified keys that are not present in the input are written right before the first input key that is greater than
+ * them, or at the end of the root dictionary if there is no such key. If the input keys are sorted, this is the sorted
+ * position of the key. Otherwise the position depends on the order of the input keys.
+ * <p>
+ * The {@linkplain Plist#getContentHash() content hash} of the output is computed while it is written, so the output
+ * doesn't need to be read again to get it. The hash doesn't depend on the order of the keys.
+ */
+public final class XmlPlistStreamTransformer {
+	private XmlPlistStreamTransformer() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Checks if the argument stream contains a binary plist.
+	 * <p>
+	 * The stream must support {@linkplain InputStream#markSupported() marking}. The position of the stream is not
+	 * modified.
+	 *
+	 * @param is
+	 *            The input.
+	 * @return <code>true</code> if the stream starts with the binary plist header.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public static boolean isBinaryPlist(InputStream is) throws IOException {
+		byte[] magic = BinaryPlistReader.MAGIC;
+		is.mark(magic.length);
+		try {
+			for (int i = 0; i < magic.length; i++) {
+				if (is.read() != (magic[i] & 0xFF)) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			is.reset();
+		}
+	}
+
+	/**
+	 * Checks if the argument stream contains an XML plist, and therefore can be transformed.
+	 * <p>
+	 * The stream must support {@linkplain InputStream#markSupported() marking}. The position of the stream is not
+	 * modified.
+	 *
+	 * @param is
+	 *            The input.
+	 * @return <code>true</code> if the stream is neither a binary nor an ASCII plist.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public static boolean isXmlPlist(InputStream is) throws IOException {
+		return !isBinaryPlist(is) && !AsciiPlistReader.isAsciiPlist(is);
+	}
+
+	/**
+	 * Copies the XML plist from the input to the output, and applies the specified top-level modifications.
+	 * <p>
+	 * A <code>null</code> value in the modifications map causes the associated key to be removed. The non-
+	 * <code>null</code> values should be in a representation that is accepted by {@link Plist#set(String, Object)}.
+	 * <p>
+	 * The output stream is not closed by this method.
+	 *
+	 * @param is
+	 *            The XML plist input.
+	 * @param os
+	 *            The output to write the XML plist to.
+	 * @param modifications
+	 *            The modifications to apply to the root dictionary. May be <code>null</code> or empty.
+	 * @return The content hash of the output plist. Same as {@link Plist#getContentHash()} for the output.
+	 * @throws IOException
+	 *             If the input is malformed or an I/O error occurs.
+	 * @throws IllegalArgumentException
+	 *             If the root of the input is not a dictionary.
+	 */
+	public static byte[] transform(InputStream is, OutputStream os, NavigableMap<String, ?> modifications)
+			throws IOException, IllegalArgumentException {
+		if (modifications == null) {
+			modifications = Collections.emptyNavigableMap();
+		}
+		try {
+			XMLStreamReader reader = XmlPlistReader.createStreamReader(is);
+			try {
+				XmlPlistReader.moveToRootElement(reader);
+				boolean plistroot = "plist".equals(reader.getLocalName());
+				if (plistroot) {
+					reader.nextTag();
+				}
+				reader.require(XMLStreamConstants.START_ELEMENT, null, null);
+				if (!"dict".equals(reader.getLocalName())) {
+					throw new IllegalArgumentException("Plist content is not a dictionary.");
+				}
+				XmlPlistWriter writer = new XmlPlistWriter(os);
+				PlistContentHasher hasher = new PlistContentHasher();
+				writer.writeHeader();
+				writer.startDict();
+				hasher.startDict();
+				transformRootEntries(reader, writer, hasher, modifications);
+				writer.endDict();
+				hasher.endDict();
+				writer.writeFooter();
+				writer.flush();
+				if (plistroot) {
+					reader.nextTag();
+					reader.require(XMLStreamConstants.END_ELEMENT, null, "plist");
+				}
+				return hasher.getHash();
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to parse XML plist.", e);
+		}
+	}
+
+	private static void transformRootEntries(XMLStreamReader reader, XmlPlistWriter writer,
+			PlistContentHasher hasher, NavigableMap<String, ?> modifications) throws XMLStreamException, IOException {
+		Iterator<? extends Entry<String, ?>> modit = modifications.entrySet().iterator();
+		Entry<String, ?> nextmod = modit.hasNext() ? modit.next() : null;
+		//the last key in the modifications that was already handled
+		String handledmodlimit = null;
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			reader.require(XMLStreamConstants.START_ELEMENT, null, "key");
+			String key = reader.getElementText();
+			if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+				throw new XMLStreamException("Missing value for key: " + key, reader.getLocation());
+			}
+			//write the modifications that precede the current key
+			while (nextmod != null && nextmod.getKey().compareTo(key) < 0) {
+				writeModification(writer, hasher, nextmod);
+				handledmodlimit = nextmod.getKey();
+				nextmod = modit.hasNext() ? modit.next() : null;
+			}
+			if (nextmod != null && nextmod.getKey().equals(key)) {
+				writeModification(writer, hasher, nextmod);
+				handledmodlimit = key;
+				nextmod = modit.hasNext() ? modit.next() : null;
+				XmlPlistReader.skipValue(reader);
+				continue;
+			}
+			if (handledmodlimit != null && handledmodlimit.compareTo(key) >= 0 && modifications.containsKey(key)) {
+				//the input is not sorted, and the modification for this key was already written
+				XmlPlistReader.skipValue(reader);
+				continue;
+			}
+			writer.writeKey(key);
+			hasher.key(key);
+			copyValue(reader, writer, hasher);
+		}
+		while (nextmod != null) {
+			writeModification(writer, hasher, nextmod);
+			nextmod = modit.hasNext() ? modit.next() : null;
+		}
+	}
+
+	private static void writeModification(XmlPlistWriter writer, PlistContentHasher hasher, Entry<String, ?> mod)
+			throws IOException {
+		Object val = mod.getValue();
+		if (val == null) {
+			//removal
+			return;
+		}
+		Object copied = PlistValues.copy(val);
+		writer.writeKey(mod.getKey());
+		writer.writeValue(copied);
+		hasher.key(mod.getKey());
+		hasher.value(copied);
+	}
+
+	private static void copyValue(XMLStreamReader reader, XmlPlistWriter writer, PlistContentHasher hasher)
+			throws XMLStreamException, IOException {
+		switch (reader.getLocalName()) {
+			case "dict": {
+				if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+					writer.writeValue(Collections.emptyMap());
+					hasher.value(Collections.emptyMap());
+					return;
+				}
+				writer.startDict();
+				hasher.startDict();
+				do {
+					reader.require(XMLStreamConstants.START_ELEMENT, null, "key");
+					String key = reader.getElementText();
+					if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+						throw new XMLStreamException("Missing value for key: " + key, reader.getLocation());
+					}
+					writer.writeKey(key);
+					hasher.key(key);
+					copyValue(reader, writer, hasher);
+				} while (reader.nextTag() == XMLStreamConstants.START_ELEMENT);
+				writer.endDict();
+				hasher.endDict();
+				return;
+			}
+			case "array": {
+				if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+					writer.writeValue(new Object[0]);
+					hasher.value(new Object[0]);
+					return;
+				}
+				writer.startArray();
+				hasher.startArray();
+				do {
+					copyValue(reader, writer, hasher);
+				} while (reader.nextTag() == XMLStreamConstants.START_ELEMENT);
+				writer.endArray();
+				hasher.endArray();
+				return;
+			}
+			default: {
+				Object value = XmlPlistReader.readValue(reader);
+				writer.writeValue(value);
+				hasher.value(value);
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package saker.apple.impl.plist.lib;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayOutputStream;
+
+/**
+ * Writer for the XML property list format.
+ * <p>
+ * The output has the same layout as the one produced by Core Foundation. The writer can be used to write a complete
+ * object tree, or incrementally by using the <code>start*</code> and <code>end*</code> methods.
+ */
+public final class XmlPlistWriter implements Flushable, Closeable {
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<!DOCTYPE plist PUBLIC \"-//Apple//DTD PLIST 1.0//EN\" \"http://www.apple.com/DTDs/PropertyList-1.0.dtd\">\n"
+			+ "<plist version=\"1.0\">\n";
+	private static final String FOOTER = "</plist>\n";
+
+	private static final int DATA_LINE_LENGTH = 76;
+
+	private final Writer writer;
+	private int indent;
+
+	public XmlPlistWriter(OutputStream os) {
+		this.writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+	}
+
+	public static byte[] toBytes(Object root) {
+		UnsyncByteArrayOutputStream out = new UnsyncByteArrayOutputStream();
+		try (XmlPlistWriter writer = new XmlPlistWriter(out)) {
+			writer.writeDocument(root);
+		} catch (IOException e) {
+			//shouldn't happen, we're writing to memory
+			throw new RuntimeException(e);
+		}
+		return out.toByteArray();
+	}
+
+	public static void write(Object root, OutputStream os) throws IOException {
+		XmlPlistWriter writer = new XmlPlistWriter(os);
+		writer.writeDocument(root);
+		writer.flush();
+	}
+
+	public void writeDocument(Object root) throws IOException {
+		writeHeader();
+		writeValue(root);
+		writeFooter();
+	}
+
+	public void writeHeader() throws IOException {
+		writer.write(HEADER);
+	}
+
+	public void writeFooter() throws IOException {
+		writer.write(FOOTER);
+	}
+
+	public void startDict() throws IOException {
+		writeIndent();
+		writer.write("<dict>\n");
+		++indent;
+	}
+
+	public void endDict() throws IOException {
+		--indent;
+		writeIndent();
+		writer.write("</dict>\n");
+	}
+
+	public void startArray() throws IOException {
+		writeIndent();
+		writer.write("<array>\n");
+		++indent;
+	}
+
+	public void endArray() throws IOException {
+		--indent;
+		writeIndent();
+		writer.write("</array>\n");
+	}
+
+	public void writeKey(String key) throws IOException {
+		writeIndent();
+		writer.write("<key>");
+		writeEscaped(key);
+		writer.write("</key>\n");
+	}
+
+	public void writeValue(Object value) throws IOException {
+		if (value instanceof String) {
+			writeIndent();
+			writer.write("<string>");
+			writeEscaped((String) value);
+			writer.write("</string>\n");
+		} else if (value instanceof Boolean) {
+			writeIndent();
+			writer.write(((Boolean) value) ? "<true/>\n" : "<false/>\n");
+		} else if (value instanceof Long) {
+			writeIndent();
+			writer.write("<integer>");
+			writer.write(value.toString());
+			writer.write("</integer>\n");
+		} else if (value instanceof Double) {
+			writeIndent();
+			writer.write("<real>");
+			writer.write(formatReal((Double) value));
+			writer.write("</real>\n");
+		} else if (value instanceof Date) {
+			writeIndent();
+			writer.write("<date>");
+			writer.write(Instant.ofEpochMilli(((Date) value).getTime()).truncatedTo(ChronoUnit.SECONDS).toString());
+			writer.write("</date>\n");
+		} else if (value instanceof byte[]) {
+			writeData((byte[]) value);
+		} else if (value instanceof Object[]) {
+			Object[] array = (Object[]) value;
+			if (array.length == 0) {
+				writeIndent();
+				writer.write("<array/>\n");
+				return;
+			}
+			startArray();
+			for (Object o : array) {
+				writeValue(o);
+			}
+			endArray();
+		} else if (value instanceof Map<?, ?>) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			if (map.isEmpty()) {
+				writeIndent();
+				writer.write("<dict/>\n");
+				return;
+			}
+			startDict();
+			for (Entry<?, ?> entry : map.entrySet()) {
+				writeKey((String) entry.getKey());
+				writeValue(entry.getValue());
+			}
+			endDict();
+		} else if (value == null) {
+			throw new NullPointerException("Null plist element.");
+		} else {
+			throw new IllegalArgumentException("Unrecognized Java plist type: " + value.getClass().getName());
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	private void writeData(byte[] data) throws IOException {
+		String encoded = Base64.getEncoder().encodeToString(data);
+		writeIndent();
+		writer.write("<data>\n");
+		for (int i = 0, len = encoded.length(); i < len; i += DATA_LINE_LENGTH) {
+			writeIndent();
+			writer.write(encoded, i, Math.min(DATA_LINE_LENGTH, len - i));
+			writer.write('\n');
+		}
+		writeIndent();
+		writer.write("</data>\n");
+	}
+
+	private void writeIndent() throws IOException {
+		for (int i = 0; i < indent; i++) {
+			writer.write('\t');
+		}
+	}
+
+	private void writeEscaped(String s) throws IOException {
+		int len = s.length();
+		int start = 0;
+		for (int i = 0; i < len; i++) {
+			String replacement;
+			switch (s.charAt(i)) {
+				case '&': {
+					replacement = "&amp;";
+					break;
+				}
+				case '<': {
+					replacement = "&lt;";
+					break;
+				}
+				case '>': {
+					replacement = "&gt;";
+					break;
+				}
+				default: {
+					continue;
+				}
+			}
+			writer.write(s, start, i - start);
+			writer.write(replacement);
+			start = i + 1;
+		}
+		writer.write(s, start, len - start);
+	}
+
+	private static String formatReal(double value) {
+		if (Double.isNaN(value)) {
+			return "nan";
+		}
+		if (Double.isInfinite(value)) {
+			return value > 0 ? "+infinity" : "-infinity";
+		}
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			//integral values are written without a fraction part
+			return Long.toString((long) value);
+		}
+		return Double.toString(value);
+	}
+}
@@ -0,0 +1,381 @@
+package saker.apple.impl.strip;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import saker.apple.api.strip.BatchStripWorkerTaskOutput;
+import saker.apple.impl.BatchFileStates;
+import saker.apple.impl.BatchFileStates.FileState;
+import saker.apple.impl.LocalFileContentDescriptors;
+import saker.apple.impl.SakerAppleImplUtils;
+import saker.apple.impl.macho.MachOArchitectureIndex;
+import saker.apple.impl.macho.MachOFile;
+import saker.apple.impl.macho.MachOFileCache;
+import saker.apple.main.strip.BatchStripTaskFactory;
+import saker.build.file.DirectoryVisitPredicate;
+import saker.build.file.SakerDirectory;
+import saker.build.file.SakerFile;
+import saker.build.file.content.ContentDescriptor;
+import saker.build.file.content.DirectoryContentDescriptor;
+import saker.build.file.path.ProviderHolderPathKey;
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.file.provider.SakerPathFiles;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.CommonTaskContentDescriptors;
+import saker.build.task.Task;
+import saker.build.task.TaskContext;
+import saker.build.task.TaskExecutionEnvironmentSelector;
+import saker.build.task.TaskExecutionUtilities;
+import saker.build.task.TaskFactory;
+import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+import saker.build.thirdparty.saker.util.thread.ThreadUtils;
+import saker.build.thirdparty.saker.util.thread.ThreadUtils.ThreadWorkPool;
+import saker.build.trace.BuildTrace;
+import saker.sdk.support.api.SDKDescription;
+import saker.sdk.support.api.SDKSupportUtils;
+import saker.std.api.file.location.ExecutionFileLocation;
+import saker.std.api.file.location.FileLocation;
+import saker.std.api.file.location.FileLocationVisitor;
+import saker.std.api.file.location.LocalFileLocation;
+
+public class BatchStripWorkerTaskFactory
+		implements TaskFactory<BatchStripWorkerTaskOutput>, Task<BatchStripWorkerTaskOutput>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The maximum number of computation tokens that the task requests.
+	 * <p>
+	 * The strip processes are started on a thread pool that has the same number of threads as the requested tokens.
+	 */
+	private static final int MAX_COMPUTATION_TOKEN_COUNT = 4;
+
+	private static final String OUTPUT_TAG_STRIP_STATE = "strip-state";
+
+	private NavigableMap<SakerPath, FileLocation> inputs;
+
+	private NavigableMap<String, ? extends SDKDescription> sdkDescriptions;
+	private boolean remoteDispatchable;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public BatchStripWorkerTaskFactory() {
+	}
+
+	public BatchStripWorkerTaskFactory(NavigableMap<SakerPath, FileLocation> inputs) {
+		this.inputs = inputs;
+	}
+
+	public void setSDKDescriptions(NavigableMap<String, ? extends SDKDescription> sdkdescriptions) {
+		ObjectUtils.requireComparator(sdkdescriptions, SDKSupportUtils.getSDKNameComparator());
+		this.sdkDescriptions = sdkdescriptions;
+	}
+
+	/**
+	 * Sets whether the task can be dispatched to build clusters.
+	 * <p>
+	 * Should only be set if the inputs are
+	 * {@linkplain SakerAppleImplUtils#isRemoteDispatchableInputs(Iterable) accessible on the clusters}.
+	 */
+	public void setRemoteDispatchable(boolean remoteDispatchable) {
+		this.remoteDispatchable = remoteDispatchable;
+	}
+
+	@Override
+	public Set<String> getCapabilities() {
+		if (remoteDispatchable) {
+			return ImmutableUtils.singletonNavigableSet(CAPABILITY_REMOTE_DISPATCHABLE);
+		}
+		return TaskFactory.super.getCapabilities();
+	}
+
+	@Override
+	public TaskExecutionEnvironmentSelector getExecutionEnvironmentSelector() {
+		if (remoteDispatchable && !ObjectUtils.isNullOrEmpty(sdkDescriptions)) {
+			//the build machine needs to have the used SDKs
+			return SDKSupportUtils.getSDKBasedClusterExecutionEnvironmentSelector(sdkDescriptions.values());
+		}
+		return TaskFactory.super.getExecutionEnvironmentSelector();
+	}
+
+	@Override
+	public int getRequestedComputationTokenCount() {
+		return Math.max(1, Math.min(inputs.size(), MAX_COMPUTATION_TOKEN_COUNT));
+	}
+
+	@Override
+	public BatchStripWorkerTaskOutput run(TaskContext taskcontext) throws Exception {
+		if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+			BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_WORKER);
+		}
+		taskcontext.setStandardOutDisplayIdentifier(BatchStripTaskFactory.TASK_NAME);
+
+		BatchStripWorkerTaskIdentifier taskid = (BatchStripWorkerTaskIdentifier) taskcontext.getTaskId();
+
+		TaskExecutionUtilities taskutils = taskcontext.getTaskUtilities();
+		SakerDirectory outputdir = taskutils.resolveDirectoryAtRelativePathCreate(
+				SakerPathFiles.requireBuildDirectory(taskcontext), taskid.getRelativeOutput());
+
+		//the SDK is resolved once for all inputs
+		SakerPath exepath = StripWorkerTaskFactory.getStripExecutablePath(taskcontext, this.sdkDescriptions);
+
+		BatchFileStates prevstate = taskcontext.getPreviousTaskOutput(OUTPUT_TAG_STRIP_STATE, BatchFileStates.class);
+		//if the strip tool changed, all files need to be stripped again
+		NavigableMap<SakerPath, FileState> prevfilestates = BatchFileStates.getReusableFiles(prevstate, exepath);
+
+		List<SakerPath> localinputpaths = new ArrayList<>();
+		for (FileLocation fl : inputs.values()) {
+			if (fl instanceof LocalFileLocation) {
+				localinputpaths.add(((LocalFileLocation) fl).getLocalPath());
+			}
+		}
+		//hash the local inputs in parallel
+		NavigableMap<SakerPath, ContentDescriptor> localinputcontents = LocalFileContentDescriptors
+				.getReport(taskcontext, localinputpaths);
+
+		NavigableMap<SakerPath, ContentDescriptor> inputdependencies = new TreeMap<>();
+		NavigableMap<SakerPath, ContentDescriptor> outputdependencies = new TreeMap<>();
+		NavigableMap<SakerPath, FileState> filestates = new TreeMap<>();
+		NavigableMap<SakerPath, SakerPath> mappings = new TreeMap<>();
+
+		MachOFileCache machocache = MachOFileCache.get(taskcontext);
+		List<PendingStrip> pendingstrips = new ArrayList<>();
+		//relative parent directory paths to the local paths of the mirrored directories
+		Map<SakerPath, Path> mirroreddirectories = new HashMap<>();
+		for (Entry<SakerPath, FileLocation> entry : inputs.entrySet()) {
+			SakerPath relativepath = entry.getKey();
+			FileLocation inputlocation = entry.getValue();
+			StripInput input = getInput(taskcontext, inputlocation, localinputcontents, inputdependencies);
+			SakerPath relativeparent = relativepath.getParent();
+			SakerDirectory dir = relativeparent == null ? outputdir
+					: taskutils.resolveDirectoryAtRelativePathCreate(outputdir, relativeparent);
+			String filename = relativepath.getFileName();
+
+			FileState prevfilestate = prevfilestates.get(relativepath);
+			SakerFile existing = prevfilestate == null ? null : dir.get(filename);
+			if (BatchFileStates.isUpToDate(prevfilestate, input.contents,
+					existing == null ? null : existing.getContentDescriptor())) {
+				//the input and the output are unchanged, no need to strip again
+				SakerPath outputpath = existing.getSakerPath();
+				filestates.put(relativepath, prevfilestate);
+				outputdependencies.put(outputpath, prevfilestate.getOutputContents());
+				mappings.put(relativepath, outputpath);
+				continue;
+			}
+
+			Path inputlocalpath = input.getLocalPath(taskcontext);
+			//fail early for malformed Mach-O inputs, before running strip
+			MachOFile machofile = machocache.getLocalFile(inputlocalpath, input.contents);
+			if (machofile != null) {
+				MachOArchitectureIndex.validate(inputlocation, machofile);
+			}
+
+			Path localdir = mirroreddirectories.get(relativeparent);
+			if (localdir == null) {
+				localdir = taskcontext.mirror(dir, DirectoryVisitPredicate.synchronizeNothing());
+				mirroreddirectories.put(relativeparent, localdir);
+			}
+			pendingstrips.add(new PendingStrip(relativepath, dir, filename, inputlocalpath,
+					localdir.resolve(filename), input.contents));
+		}
+
+		if (!pendingstrips.isEmpty()) {
+			//the dependencies are already collected, and the output directories are mirrored
+			//only the strip processes are run concurrently, the files are added to the output directory afterwards
+			int threadcount = Math.min(pendingstrips.size(), getRequestedComputationTokenCount());
+			try (ThreadWorkPool pool = ThreadUtils.newFixedWorkPool(threadcount, "strip-")) {
+				for (PendingStrip strip : pendingstrips) {
+					pool.offer(() -> {
+						StripWorkerTaskFactory.runStrip(taskcontext, exepath, strip.inputLocalPath,
+								strip.outputLocalPath);
+					});
+				}
+			}
+		}
+		List<SakerFile> outputfiles = new ArrayList<>(pendingstrips.size());
+		for (PendingStrip strip : pendingstrips) {
+			ProviderHolderPathKey outputfilepathkey = LocalFileProvider.getInstance().getPathKey(strip.outputLocalPath);
+			if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_013) {
+				taskutils.invalidateWithPosixFilePermissions(outputfilepathkey);
+			} else {
+				taskcontext.invalidate(outputfilepathkey);
+			}
+			SakerFile outfile = taskutils.createProviderPathFile(strip.fileName, outputfilepathkey);
+			strip.directory.add(outfile);
+			outputfiles.add(outfile);
+		}
+		BatchFileStates.removeOutputsOfRemovedInputs(taskutils, outputdir, prevstate, inputs.keySet());
+		outputdir.synchronize();
+
+		for (int i = 0; i < pendingstrips.size(); i++) {
+			PendingStrip strip = pendingstrips.get(i);
+			SakerFile outfile = outputfiles.get(i);
+			SakerPath outputpath = outfile.getSakerPath();
+			ContentDescriptor outputcontents = outfile.getContentDescriptor();
+			filestates.put(strip.relativePath, new FileState(strip.inputContents, outputcontents));
+			outputdependencies.put(outputpath, outputcontents);
+			mappings.put(strip.relativePath, outputpath);
+		}
+
+		taskutils.reportInputFileDependency(null, inputdependencies);
+		taskutils.reportOutputFileDependency(null, outputdependencies);
+		taskcontext.setTaskOutput(OUTPUT_TAG_STRIP_STATE, new BatchFileStates(exepath, filestates));
+
+		BatchStripWorkerTaskOutputImpl result = new BatchStripWorkerTaskOutputImpl(outputdir.getSakerPath(),
+				ImmutableUtils.unmodifiableNavigableMap(mappings));
+		taskcontext.reportSelfTaskOutputChangeDetector(new EqualityTaskOutputChangeDetector(result));
+		return result;
+	}
+
+	/**
+	 * Gets the input for the given file location, and collects the execution file dependency into the argument map.
+	 * <p>
+	 * The execution inputs are not mirrored until they need to be stripped.
+	 */
+	private static StripInput getInput(TaskContext taskcontext, FileLocation inputlocation,
+			NavigableMap<SakerPath, ContentDescriptor> localinputcontents,
+			NavigableMap<SakerPath, ContentDescriptor> inputdependencies) {
+		StripInput[] result = { null };
+		inputlocation.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(ExecutionFileLocation loc) {
+				SakerPath inputpath = loc.getPath();
+				SakerFile f = taskcontext.getTaskUtilities().resolveFileAtPath(inputpath);
+				if (f == null) {
+					inputdependencies.put(inputpath, CommonTaskContentDescriptors.IS_NOT_FILE);
+					taskcontext.getTaskUtilities().reportInputFileDependency(null, inputdependencies);
+					throw ObjectUtils.sneakyThrow(new NoSuchFileException(loc.toString()));
+				}
+				ContentDescriptor cd = f.getContentDescriptor();
+				inputdependencies.put(inputpath, cd);
+				result[0] = new StripInput(f, null, cd);
+			}
+
+			@Override
+			public void visit(LocalFileLocation loc) {
+				SakerPath inputpath = loc.getLocalPath();
+				ContentDescriptor cd = localinputcontents.get(inputpath);
+				if (cd == null || cd instanceof DirectoryContentDescriptor) {
+					throw ObjectUtils.sneakyThrow(new NoSuchFileException(inputpath + " is not a file."));
+				}
+				result[0] = new StripInput(null, LocalFileProvider.toRealPath(inputpath), cd);
+			}
+		});
+		return result[0];
+	}
+
+	@Override
+	public Task<? extends BatchStripWorkerTaskOutput> createTask(ExecutionContext executioncontext) {
+		return this;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		SerialUtils.writeExternalMap(out, inputs);
+
+		SakerAppleImplUtils.writeExternalSDKDescriptions(out, sdkDescriptions);
+		out.writeBoolean(remoteDispatchable);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		inputs = SerialUtils.readExternalSortedImmutableNavigableMap(in);
+
+		sdkDescriptions = SakerAppleImplUtils.readExternalSDKDescriptions(in);
+		remoteDispatchable = in.readBoolean();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((inputs == null) ? 0 : inputs.hashCode());
+		result = prime * result + (remoteDispatchable ? 1231 : 1237);
+		result = prime * result + ((sdkDescriptions == null) ? 0 : sdkDescriptions.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		BatchStripWorkerTaskFactory other = (BatchStripWorkerTaskFactory) obj;
+		if (inputs == null) {
+			if (other.inputs != null)
+				return false;
+		} else if (!inputs.equals(other.inputs))
+			return false;
+		if (remoteDispatchable != other.remoteDispatchable)
+			return false;
+		if (sdkDescriptions == null) {
+			if (other.sdkDescriptions != null)
+				return false;
+		} else if (!sdkDescriptions.equals(other.sdkDescriptions))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + (inputs != null ? "inputs=" + inputs : "") + "]";
+	}
+
+	private static final class StripInput {
+		protected final SakerFile executionFile;
+		protected Path localPath;
+		protected final ContentDescriptor contents;
+
+		public StripInput(SakerFile executionFile, Path localPath, ContentDescriptor contents) {
+			this.executionFile = executionFile;
+			this.localPath = localPath;
+			this.contents = contents;
+		}
+
+		public Path getLocalPath(TaskContext taskcontext) throws IOException {
+			if (localPath == null) {
+				localPath = taskcontext.mirror(executionFile);
+			}
+			return localPath;
+		}
+	}
+
+	private static final class PendingStrip {
+		protected final SakerPath relativePath;
+		protected final SakerDirectory directory;
+		protected final String fileName;
+		protected final Path inputLocalPath;
+		protected final Path outputLocalPath;
+		protected final ContentDescriptor inputContents;
+
+		public PendingStrip(SakerPath relativePath, SakerDirectory directory, String fileName, Path inputLocalPath,
+				Path outputLocalPath, ContentDescriptor inputContents) {
+			this.relativePath = relativePath;
+			this.directory = directory;
+			this.fileName = fileName;
+			this.inputLocalPath = inputLocalPath;
+			this.outputLocalPath = outputLocalPath;
+			this.inputContents = inputContents;
+		}
+	}
+
+}
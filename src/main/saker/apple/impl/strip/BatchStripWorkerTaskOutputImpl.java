@@ -0,0 +1,89 @@
+package saker.apple.impl.strip;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.NavigableMap;
+
+import saker.apple.api.strip.BatchStripWorkerTaskOutput;
+import saker.build.file.path.SakerPath;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+
+final class BatchStripWorkerTaskOutputImpl implements BatchStripWorkerTaskOutput, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private SakerPath outputDirectory;
+	private NavigableMap<SakerPath, SakerPath> mappings;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public BatchStripWorkerTaskOutputImpl() {
+	}
+
+	public BatchStripWorkerTaskOutputImpl(SakerPath outputDirectory, NavigableMap<SakerPath, SakerPath> mappings) {
+		this.outputDirectory = outputDirectory;
+		this.mappings = mappings;
+	}
+
+	@Override
+	public SakerPath getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	@Override
+	public NavigableMap<SakerPath, SakerPath> getMappings() {
+		return mappings;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeObject(outputDirectory);
+		SerialUtils.writeExternalMap(out, mappings);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		outputDirectory = SerialUtils.readExternalObject(in);
+		mappings = SerialUtils.readExternalSortedImmutableNavigableMap(in);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((outputDirectory == null) ? 0 : outputDirectory.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		BatchStripWorkerTaskOutputImpl other = (BatchStripWorkerTaskOutputImpl) obj;
+		if (mappings == null) {
+			if (other.mappings != null)
+				return false;
+		} else if (!mappings.equals(other.mappings))
+			return false;
+		if (outputDirectory == null) {
+			if (other.outputDirectory != null)
+				return false;
+		} else if (!outputDirectory.equals(other.outputDirectory))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "["
+				+ (outputDirectory != null ? "outputDirectory=" + outputDirectory + ", " : "")
+				+ (mappings != null ? "mappings=" + mappings : "") + "]";
+	}
+
+}
@@ -7,10 +7,15 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.nio.file.Path;
 import java.util.NavigableMap;
-import java.util.UUID;
+import java.util.Set;
 
 import saker.apple.api.SakerAppleUtils;
 import saker.apple.api.strip.StripWorkerTaskOutput;
+import saker.apple.impl.LocalFileContentDescriptors;
+import saker.apple.impl.SakerAppleImplUtils;
+import saker.apple.impl.macho.MachOArchitectureIndex;
+import saker.apple.impl.macho.MachOFile;
+import saker.apple.impl.macho.MachOFileCache;
 import saker.apple.main.strip.StripTaskFactory;
 import saker.build.file.DirectoryVisitPredicate;
 import saker.build.file.SakerDirectory;
@@ -21,15 +26,15 @@ import saker.build.file.path.SakerPath;
 import saker.build.file.provider.LocalFileProvider;
 import saker.build.file.provider.SakerPathFiles;
 import saker.build.runtime.execution.ExecutionContext;
-import saker.build.runtime.execution.ExecutionProperty;
 import saker.build.task.CommonTaskContentDescriptors;
 import saker.build.task.Task;
 import saker.build.task.TaskContext;
+import saker.build.task.TaskExecutionEnvironmentSelector;
 import saker.build.task.TaskExecutionUtilities.MirroredFileContents;
 import saker.build.task.TaskFactory;
 import saker.build.thirdparty.saker.util.ImmutableUtils;
 import saker.build.thirdparty.saker.util.ObjectUtils;
-import saker.build.thirdparty.saker.util.io.SerialUtils;
+import saker.build.thirdparty.saker.util.io.ByteSink;
 import saker.build.trace.BuildTrace;
 import saker.process.api.CollectingProcessIOConsumer;
 import saker.process.api.SakerProcess;
@@ -42,7 +47,6 @@ import saker.std.api.file.location.ExecutionFileLocation;
 import saker.std.api.file.location.FileLocation;
 import saker.std.api.file.location.FileLocationVisitor;
 import saker.std.api.file.location.LocalFileLocation;
-import saker.std.api.util.SakerStandardUtils;
 
 public class StripWorkerTaskFactory
 		implements TaskFactory<StripWorkerTaskOutput>, Task<StripWorkerTaskOutput>, Externalizable {
@@ -53,6 +57,7 @@ public class StripWorkerTaskFactory
 	private FileLocation inputFile;
 
 	private NavigableMap<String, ? extends SDKDescription> sdkDescriptions;
+	private boolean remoteDispatchable;
 
 	/**
 	 * For {@link Externalizable}.
@@ -69,6 +74,33 @@ public class StripWorkerTaskFactory
 		this.sdkDescriptions = sdkdescriptions;
 	}
 
+	/**
+	 * Sets whether the task can be dispatched to build clusters.
+	 * <p>
+	 * Should only be set if the inputs are
+	 * {@linkplain SakerAppleImplUtils#isRemoteDispatchableInputs(Iterable) accessible on the clusters}.
+	 */
+	public void setRemoteDispatchable(boolean remoteDispatchable) {
+		this.remoteDispatchable = remoteDispatchable;
+	}
+
+	@Override
+	public Set<String> getCapabilities() {
+		if (remoteDispatchable) {
+			return ImmutableUtils.singletonNavigableSet(CAPABILITY_REMOTE_DISPATCHABLE);
+		}
+		return TaskFactory.super.getCapabilities();
+	}
+
+	@Override
+	public TaskExecutionEnvironmentSelector getExecutionEnvironmentSelector() {
+		if (remoteDispatchable && !ObjectUtils.isNullOrEmpty(sdkDescriptions)) {
+			//the build machine needs to have the used SDKs
+			return SDKSupportUtils.getSDKBasedClusterExecutionEnvironmentSelector(sdkDescriptions.values());
+		}
+		return TaskFactory.super.getExecutionEnvironmentSelector();
+	}
+
 	@Override
 	public int getRequestedComputationTokenCount() {
 		return 1;
@@ -86,6 +118,7 @@ public class StripWorkerTaskFactory
 		taskcontext.setStandardOutDisplayIdentifier("strip:" + fname);
 
 		Path[] inputfilelocalpath = { null };
+		ContentDescriptor[] inputfilecontents = { null };
 		inputFile.accept(new FileLocationVisitor() {
 			@Override
 			public void visit(ExecutionFileLocation loc) {
@@ -102,48 +135,33 @@ public class StripWorkerTaskFactory
 				}
 				taskcontext.reportInputFileDependency(null, inputpath, mirroredinputfile.getContents());
 				inputfilelocalpath[0] = mirroredinputfile.getPath();
+				inputfilecontents[0] = mirroredinputfile.getContents();
 			}
 
 			@Override
 			public void visit(LocalFileLocation loc) {
 				SakerPath inputpath = loc.getLocalPath();
-				ExecutionProperty<? extends ContentDescriptor> envprop = SakerStandardUtils
-						.createLocalFileContentDescriptorExecutionProperty(inputpath, UUID.randomUUID());
 				inputfilelocalpath[0] = LocalFileProvider.toRealPath(inputpath);
-				taskcontext.getTaskUtilities().getReportExecutionDependency(envprop);
+				inputfilecontents[0] = LocalFileContentDescriptors.getReport(taskcontext, inputpath);
 			}
 		});
 
+		//fail early for malformed Mach-O inputs, before resolving the SDK and running strip
+		MachOFile machofile = MachOFileCache.get(taskcontext).getLocalFile(inputfilelocalpath[0],
+				inputfilecontents[0]);
+		if (machofile != null) {
+			MachOArchitectureIndex.validate(inputFile, machofile);
+		}
+
 		SakerDirectory outputdir = taskcontext.getTaskUtilities().resolveDirectoryAtRelativePathCreate(
 				SakerPathFiles.requireBuildDirectory(taskcontext), outputpath.getParent());
 
-		NavigableMap<String, SDKReference> sdkrefs = SDKSupportUtils.resolveSDKReferences(taskcontext,
-				this.sdkDescriptions);
-		SDKReference stripsdk = SDKSupportUtils.requireSDK(sdkrefs, SakerAppleUtils.SDK_NAME_STRIP);
-		SakerPath exepath = stripsdk.getPath(SakerAppleUtils.SDK_XCODE_EXECUTABLE_PATH_EXECUTABLE);
-		if (exepath == null) {
-			throw new SDKPathNotFoundException("strip executable SDK path not found in: " + stripsdk);
-		}
+		SakerPath exepath = getStripExecutablePath(taskcontext, this.sdkDescriptions);
 
 		Path outputfilelocalpath = taskcontext.mirror(outputdir, DirectoryVisitPredicate.synchronizeNothing())
 				.resolve(fname);
 
-		SakerProcessBuilder pb = SakerProcessBuilder.create();
-		//TODO other flags
-		pb.setCommand(ImmutableUtils.asUnmodifiableArrayList(exepath.toString(), "-o", outputfilelocalpath.toString(),
-				inputfilelocalpath[0].toString()));
-		pb.setStandardErrorMerge(true);
-		CollectingProcessIOConsumer outconsumer = new CollectingProcessIOConsumer();
-		pb.setStandardOutputConsumer(outconsumer);
-		try (SakerProcess proc = pb.start()) {
-			proc.processIO();
-			int ec = proc.waitFor();
-			if (ec != 0) {
-				throw new IOException("strip failed: " + ec);
-			}
-		} finally {
-			taskcontext.getStandardOut().write(outconsumer.getByteArrayRegion());
-		}
+		runStrip(taskcontext, exepath, inputfilelocalpath[0], outputfilelocalpath);
 
 		ProviderHolderPathKey outputfilepathkey = LocalFileProvider.getInstance().getPathKey(outputfilelocalpath);
 		if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_013) {
@@ -162,6 +180,46 @@ public class StripWorkerTaskFactory
 		return new StripTaskOutputImpl(outputabsolutepath);
 	}
 
+	static SakerPath getStripExecutablePath(TaskContext taskcontext,
+			NavigableMap<String, ? extends SDKDescription> sdkdescriptions) throws Exception {
+		NavigableMap<String, SDKReference> sdkrefs = SDKSupportUtils.resolveSDKReferences(taskcontext,
+				sdkdescriptions);
+		SDKReference stripsdk = SDKSupportUtils.requireSDK(sdkrefs, SakerAppleUtils.SDK_NAME_STRIP);
+		SakerPath exepath = stripsdk.getPath(SakerAppleUtils.SDK_XCODE_EXECUTABLE_PATH_EXECUTABLE);
+		if (exepath == null) {
+			throw new SDKPathNotFoundException("strip executable SDK path not found in: " + stripsdk);
+		}
+		return exepath;
+	}
+
+	/**
+	 * Runs the strip tool for the given input and output.
+	 * <p>
+	 * The output of the process is written to the standard output of the task. It may be called concurrently for the
+	 * same task.
+	 */
+	static void runStrip(TaskContext taskcontext, SakerPath exepath, Path input, Path output) throws Exception {
+		SakerProcessBuilder pb = SakerProcessBuilder.create();
+		//TODO other flags
+		pb.setCommand(ImmutableUtils.asUnmodifiableArrayList(exepath.toString(), "-o", output.toString(),
+				input.toString()));
+		pb.setStandardErrorMerge(true);
+		CollectingProcessIOConsumer outconsumer = new CollectingProcessIOConsumer();
+		pb.setStandardOutputConsumer(outconsumer);
+		try (SakerProcess proc = pb.start()) {
+			proc.processIO();
+			int ec = proc.waitFor();
+			if (ec != 0) {
+				throw new IOException("strip failed: " + ec);
+			}
+		} finally {
+			ByteSink stdout = taskcontext.getStandardOut();
+			synchronized (stdout) {
+				stdout.write(outconsumer.getByteArrayRegion());
+			}
+		}
+	}
+
 	@Override
 	public Task<? extends StripWorkerTaskOutput> createTask(ExecutionContext executioncontext) {
 		return this;
@@ -171,15 +229,16 @@ public class StripWorkerTaskFactory
 	public void writeExternal(ObjectOutput out) throws IOException {
 		out.writeObject(inputFile);
 
-		SerialUtils.writeExternalMap(out, sdkDescriptions);
+		SakerAppleImplUtils.writeExternalSDKDescriptions(out, sdkDescriptions);
+		out.writeBoolean(remoteDispatchable);
 	}
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		inputFile = (FileLocation) in.readObject();
 
-		sdkDescriptions = SerialUtils.readExternalSortedImmutableNavigableMap(in,
-				SDKSupportUtils.getSDKNameComparator());
+		sdkDescriptions = SakerAppleImplUtils.readExternalSDKDescriptions(in);
+		remoteDispatchable = in.readBoolean();
 	}
 
 	@Override
@@ -187,6 +246,7 @@ public class StripWorkerTaskFactory
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((inputFile == null) ? 0 : inputFile.hashCode());
+		result = prime * result + (remoteDispatchable ? 1231 : 1237);
 		result = prime * result + ((sdkDescriptions == null) ? 0 : sdkDescriptions.hashCode());
 		return result;
 	}
@@ -205,6 +265,8 @@ public class StripWorkerTaskFactory
 				return false;
 		} else if (!inputFile.equals(other.inputFile))
 			return false;
+		if (remoteDispatchable != other.remoteDispatchable)
+			return false;
 		if (sdkDescriptions == null) {
 			if (other.sdkDescriptions != null)
 				return false;
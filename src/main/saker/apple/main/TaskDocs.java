@@ -40,6 +40,33 @@ public class TaskDocs {
 	public static class DocConvertPlistWorkerTaskOutput {
 	}
 
+	@NestTypeInformation(qualifiedName = "MergePlistWorkerTaskOutput")
+	@NestInformation("Output of the plist merging task.")
+	@NestFieldInformation(value = "Path",
+			type = @NestTypeUsage(SakerPath.class),
+			info = @NestInformation("The output path of the merged plist."))
+	@NestFieldInformation(value = "Format",
+			type = @NestTypeUsage(PlistFormatTaskOption.class),
+			info = @NestInformation("The output format of the plist."))
+	public static class DocMergePlistWorkerTaskOutput {
+	}
+
+	@NestTypeInformation(qualifiedName = "BatchConvertPlistWorkerTaskOutput")
+	@NestInformation("Output of the batch plist converting task.")
+	@NestFieldInformation(value = "OutputDirectory",
+			type = @NestTypeUsage(SakerPath.class),
+			info = @NestInformation("The path of the output directory that contains the converted plists."))
+	@NestFieldInformation(value = "Mappings",
+			type = @NestTypeUsage(value = Map.class, elementTypes = { SakerPath.class, SakerPath.class }),
+			info = @NestInformation("The mappings of the converted plists.\n"
+					+ "The field contains relative keys which represent the path of a file in the output directory. The "
+					+ "associated values are the absolute execution paths of the converted files."))
+	@NestFieldInformation(value = "Format",
+			type = @NestTypeUsage(PlistFormatTaskOption.class),
+			info = @NestInformation("The output format of the plists."))
+	public static class DocBatchConvertPlistWorkerTaskOutput {
+	}
+
 	@NestTypeInformation(qualifiedName = "LipoCreateWorkerTaskOutput")
 	@NestInformation("Output of the creation operation using the lipo tool.")
 	@NestFieldInformation(value = "Path",
@@ -48,6 +75,17 @@ public class TaskDocs {
 	public static class DocLipoCreateWorkerTaskOutput {
 	}
 
+	@NestTypeInformation(qualifiedName = "LipoThinWorkerTaskOutput")
+	@NestInformation("Output of the architecture extraction from an universal file.")
+	@NestFieldInformation(value = "OutputDirectory",
+			type = @NestTypeUsage(SakerPath.class),
+			info = @NestInformation("The path of the output directory that contains the extracted files."))
+	@NestFieldInformation(value = "Paths",
+			type = @NestTypeUsage(value = Map.class, elementTypes = { DocAppleArchitecture.class, SakerPath.class }),
+			info = @NestInformation("The output paths of the extracted thin files mapped to their architectures."))
+	public static class DocLipoThinWorkerTaskOutput {
+	}
+
 	@NestTypeInformation(qualifiedName = "AppleOptionsPreset")
 	@NestInformation("Output configuration for creating applications for Apple platforms.")
 	@NestFieldInformation(value = "InfoPlistValues",
@@ -122,6 +160,19 @@ public class TaskDocs {
 	public static class DocStripWorkerTaskOutput {
 	}
 
+	@NestTypeInformation(qualifiedName = "BatchStripWorkerTaskOutput")
+	@NestInformation("Output of the batch strip task.")
+	@NestFieldInformation(value = "OutputDirectory",
+			type = @NestTypeUsage(SakerPath.class),
+			info = @NestInformation("The path of the output directory that contains the stripped binaries."))
+	@NestFieldInformation(value = "Mappings",
+			type = @NestTypeUsage(value = Map.class, elementTypes = { SakerPath.class, SakerPath.class }),
+			info = @NestInformation("The mappings of the stripped binaries.\n"
+					+ "The field contains relative keys which represent the path of a file in the output directory. The "
+					+ "associated values are the absolute execution paths of the stripped files."))
+	public static class DocBatchStripWorkerTaskOutput {
+	}
+
 	@NestTypeInformation(qualifiedName = "CreateIphoneOsBundleWorkerTaskOutput")
 	@NestInformation("Output of the iPhone application bundle creation task.")
 	@NestFieldInformation(value = "AppDirectory",
@@ -5,9 +5,10 @@ import java.util.NavigableMap;
 
 import saker.apple.impl.iphoneos.bundle.CreateIphoneOsBundleWorkerTaskFactory;
 import saker.apple.impl.iphoneos.bundle.CreateIphoneOsBundleWorkerTaskIdentifier;
+import saker.apple.impl.pkginfo.GeneratePkgInfoWorkerTaskFactory;
+import saker.apple.impl.pkginfo.GeneratePkgInfoWorkerTaskIdentifier;
 import saker.apple.main.TaskDocs.DocCreateIphoneOsBundleWorkerTaskOutput;
 import saker.apple.main.iphoneos.sign.SignIphoneOsTaskFactory;
-import saker.apple.main.macos.bundle.CreateMacOsBundleTaskFactory;
 import saker.build.file.path.SakerPath;
 import saker.build.runtime.execution.ExecutionContext;
 import saker.build.task.ParameterizableTask;
@@ -82,28 +83,32 @@ public class CreateIphoneOsBundleTaskFactory extends FrontendTaskFactory<Object>
 				NavigableMap<SakerPath, FileLocation> inputmappings = RelativeContentsTaskOption.toInputMap(taskcontext,
 						contentsOption, null);
 
+				SakerPath outputpath;
+				if (outputOption != null) {
+					TaskOptionUtils.requireForwardRelativePathWithFileName(outputOption, "Output");
+					outputpath = SakerPath.valueOf(TASK_NAME).resolve(outputOption);
+				} else {
+					outputpath = SakerPath.valueOf(TASK_NAME).resolve("default.app");
+				}
+
+				GeneratePkgInfoWorkerTaskIdentifier pkginfotaskid = null;
 				if (Boolean.TRUE.equals(generatePkgInfoOption)) {
 					if (!inputmappings.containsKey(PATH_PKGINFO)) {
 						FileLocation plist = inputmappings.get(PATH_INFOPLIST);
 						if (plist != null) {
-							inputmappings.put(PATH_PKGINFO, CreateMacOsBundleTaskFactory
-									.getPkgInfoFileLocationBasedOnInfoPlist(taskcontext, plist));
+							pkginfotaskid = GeneratePkgInfoWorkerTaskFactory.startGeneratePkgInfo(taskcontext, plist,
+									outputpath);
+							inputmappings.put(PATH_PKGINFO,
+									GeneratePkgInfoWorkerTaskFactory.getOutputFileLocation(taskcontext, pkginfotaskid));
 						}
 						//else don't auto generate the pkginfo as we don't have an info.plist
 					}
 				}
 
-				SakerPath outputpath;
-				if (outputOption != null) {
-					TaskOptionUtils.requireForwardRelativePathWithFileName(outputOption, "Output");
-					outputpath = SakerPath.valueOf(TASK_NAME).resolve(outputOption);
-				} else {
-					outputpath = SakerPath.valueOf(TASK_NAME).resolve("default.app");
-				}
-
 				TaskIdentifier workertaskid = new CreateIphoneOsBundleWorkerTaskIdentifier(outputpath);
 				CreateIphoneOsBundleWorkerTaskFactory workertask = new CreateIphoneOsBundleWorkerTaskFactory(
 						inputmappings);
+				workertask.setPkgInfoTaskId(pkginfotaskid);
 				taskcontext.startTask(workertaskid, workertask, null);
 
 				SimpleStructuredObjectTaskResult result = new SimpleStructuredObjectTaskResult(workertaskid);
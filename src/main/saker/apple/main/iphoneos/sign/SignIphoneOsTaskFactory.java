@@ -23,6 +23,7 @@ import saker.nest.scriptinfo.reflection.annot.NestTaskInformation;
 import saker.nest.scriptinfo.reflection.annot.NestTypeUsage;
 import saker.nest.utils.FrontendTaskFactory;
 import saker.std.api.file.location.FileLocation;
+import saker.std.api.file.location.LocalFileLocation;
 import saker.std.main.file.option.FileLocationTaskOption;
 import saker.std.main.file.utils.TaskOptionUtils;
 
@@ -40,17 +41,17 @@ import saker.std.main.file.utils.TaskOptionUtils;
 		info = @NestInformation("Specifies the application that should be signed."))
 @NestParameterInformation(value = "SigningIdentity",
 		type = @NestTypeUsage(String.class),
-		required = true,
 		info = @NestInformation("The signing identity to be used when performing the operation.\n"
 				+ "The signing identity is used to determine the certificate for the signature.\n"
 				+ "This parameter is passed as the --sign argument for the codesign tool.\n"
 				+ "It is recommended that the value of this parameter is exactly 40 hexadecimal digits "
 				+ "that corresponds to a valid signing identity. You can list the signing identities using the\n"
 				+ "security find-identity -v -p codesigning\n"
-				+ "command. Look for the hash value at the start of the listed identities."))
+				+ "command. Look for the hash value at the start of the listed identities.\n"
+				+ "If not specified, the identity is selected automatically from the valid code signing identities "
+				+ "based on the certificates that are allowed by the provisioning profile."))
 @NestParameterInformation(value = "ProvisioningProfile",
 		type = @NestTypeUsage(FileLocationTaskOption.class),
-		required = true,
 		info = @NestInformation("Specifies the provisioning profile that should be embedded in the application.\n"
 				+ "The provisioning profile specifies the entitlements of the application.\n"
 				+ "The specified provisioning profile will be part of the application "
@@ -58,7 +59,9 @@ import saker.std.main.file.utils.TaskOptionUtils;
 				+ "The entitlements of the profile will be extracted and passed as the "
 				+ "--entitlements option for the codesign tool.\n"
 				+ "The provisioning profiles managed by Xcode usually reside in the "
-				+ "/Users/<YOUR_USERNAME>/Library/MobileDevice/Provisioning Profiles/ directory."))
+				+ "/Users/<YOUR_USERNAME>/Library/MobileDevice/Provisioning Profiles/ directory.\n"
+				+ "If not specified, a valid profile is selected automatically from that directory based on the "
+				+ "CFBundleIdentifier in the Info.plist of the application."))
 @NestParameterInformation(value = "Output",
 		type = @NestTypeUsage(SakerPath.class),
 		info = @NestInformation("A forward relative output path that specifies the output location of the signed application contents.\n"
@@ -95,19 +98,14 @@ public class SignIphoneOsTaskFactory extends FrontendTaskFactory<Object> {
 				FileLocation provisioningprofilefl = TaskOptionUtils.toFileLocation(provisioningProfileOption,
 						taskcontext);
 				String signingidentity = signingIdentityOption;
-				if (provisioningprofilefl == null) {
-					//TODO search for a provisioning profile in the 
-					//     ~/Library/MobileDevice/Provisioning Profiles/ directory
-					//and select one based on the bundle name in Info.plist and application-identifier in the xcent
-					throw new MissingRequiredParameterException("ProvisioningProfile parameter is missing.",
-							taskcontext.getTaskId());
-				}
-				if (signingidentity == null) {
-					//TODO select one by listing using
-					// security find-identity -v -p codesigning
-					throw new MissingRequiredParameterException("SigningIdentity parameter is missing.",
+				if (signingidentity == null && provisioningprofilefl != null
+						&& !(provisioningprofilefl instanceof LocalFileLocation)) {
+					throw new MissingRequiredParameterException("SigningIdentity parameter is missing. "
+							+ "It can only be selected automatically for local provisioning profiles.",
 							taskcontext.getTaskId());
 				}
+				//the missing profile or identity is selected by the worker, so the frontend doesn't depend on the
+				//contents of the Info.plist
 
 				SakerPath outputpath;
 				if (outputOption != null) {
@@ -6,6 +6,7 @@ import java.util.Map;
 import java.util.NavigableMap;
 
 import saker.apple.api.SakerAppleUtils;
+import saker.apple.impl.SakerAppleImplUtils;
 import saker.apple.impl.lipo.LipoCreateWorkerTaskFactory;
 import saker.apple.impl.lipo.LipoCreateWorkerTaskIdentifier;
 import saker.apple.impl.sdk.VersionsXcodeSDKDescription;
@@ -36,7 +37,9 @@ import saker.std.main.file.utils.TaskOptionUtils;
 @NestTypeInformation(relatedTypes = @NestTypeUsage(DocLipoCreateWorkerTaskOutput.class))
 @NestInformation("Create an universal file from the inputs using the lipo tool.\n"
 		+ "The task takes multiple input files and packs them into an universal file. "
-		+ "It is generally used to create an universal executable that contains code for multiple architectures.")
+		+ "It is generally used to create an universal executable that contains code for multiple architectures.\n"
+		+ "If all inputs are Mach-O files, the universal file is created by the build task itself without "
+		+ "invoking the lipo tool. Otherwise the lipo tool is used.")
 
 @NestParameterInformation(value = "Input",
 		aliases = { "" },
@@ -47,6 +50,12 @@ import saker.std.main.file.utils.TaskOptionUtils;
 		type = @NestTypeUsage(SakerPath.class),
 		info = @NestInformation("A forward relative output path that specifies the output location of the universal file.\n"
 				+ "It can be used to have a better output location than the automatically generated one."))
+@NestParameterInformation(value = "UseLipoTool",
+		type = @NestTypeUsage(boolean.class),
+		info = @NestInformation("Specifies whether the lipo tool should always be used to create the universal file.\n"
+				+ "By default the build task writes the universal file itself if all inputs are Mach-O files, and only "
+				+ "uses the lipo tool for other inputs (e.g. static libraries).\n"
+				+ "The default is false."))
 @NestParameterInformation(value = "SDKs",
 		type = @NestTypeUsage(value = Map.class,
 				elementTypes = { saker.sdk.support.main.TaskDocs.DocSdkNameOption.class,
@@ -68,6 +77,9 @@ public class LipoCreateTaskFactory extends FrontendTaskFactory<Object> {
 			@SakerInput(value = "Output")
 			public SakerPath outputOption;
 
+			@SakerInput(value = "UseLipoTool")
+			public boolean useLipoToolOption;
+
 			@SakerInput(value = { "SDKs" })
 			public Map<String, SDKDescriptionTaskOption> sdksOption;
 
@@ -99,6 +111,8 @@ public class LipoCreateTaskFactory extends FrontendTaskFactory<Object> {
 				LipoCreateWorkerTaskIdentifier workertaskid = new LipoCreateWorkerTaskIdentifier(outputpath);
 				LipoCreateWorkerTaskFactory workertask = new LipoCreateWorkerTaskFactory(inputfiles);
 				workertask.setSDKDescriptions(sdkdescriptions);
+				workertask.setRemoteDispatchable(SakerAppleImplUtils.isRemoteDispatchableInputs(inputfiles));
+				workertask.setUseLipoTool(useLipoToolOption);
 
 				taskcontext.startTask(workertaskid, workertask, null);
 
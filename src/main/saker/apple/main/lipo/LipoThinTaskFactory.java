@@ -0,0 +1,152 @@
+package saker.apple.main.lipo;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
+
+import saker.apple.api.SakerAppleUtils;
+import saker.apple.impl.SakerAppleImplUtils;
+import saker.apple.impl.lipo.LipoThinWorkerTaskFactory;
+import saker.apple.impl.lipo.LipoThinWorkerTaskIdentifier;
+import saker.apple.impl.sdk.VersionsXcodeSDKDescription;
+import saker.apple.main.TaskDocs;
+import saker.apple.main.TaskDocs.DocAppleArchitecture;
+import saker.apple.main.TaskDocs.DocLipoThinWorkerTaskOutput;
+import saker.build.file.path.SakerPath;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.ParameterizableTask;
+import saker.build.task.TaskContext;
+import saker.build.task.utils.SimpleStructuredObjectTaskResult;
+import saker.build.task.utils.annot.SakerInput;
+import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.trace.BuildTrace;
+import saker.nest.scriptinfo.reflection.annot.NestInformation;
+import saker.nest.scriptinfo.reflection.annot.NestParameterInformation;
+import saker.nest.scriptinfo.reflection.annot.NestTaskInformation;
+import saker.nest.scriptinfo.reflection.annot.NestTypeUsage;
+import saker.nest.utils.FrontendTaskFactory;
+import saker.sdk.support.api.SDKDescription;
+import saker.sdk.support.main.SDKSupportFrontendUtils;
+import saker.sdk.support.main.option.SDKDescriptionTaskOption;
+import saker.std.api.file.location.FileLocation;
+import saker.std.api.util.SakerStandardUtils;
+import saker.std.main.file.option.FileLocationTaskOption;
+import saker.std.main.file.utils.TaskOptionUtils;
+
+@NestTaskInformation(returnType = @NestTypeUsage(DocLipoThinWorkerTaskOutput.class))
+@NestInformation("Extracts the specified architectures from an universal file.\n"
+		+ "The task creates a thin file for each specified architecture. It can be used to create single architecture "
+		+ "binaries from universal ones, e.g. an arm64 only executable for devices.\n"
+		+ "Multiple architectures can be extracted in a single task, in which case the input is only read once.\n"
+		+ "If the input is a Mach-O file, the architectures are extracted by the build task itself without "
+		+ "invoking the lipo tool. Otherwise the lipo tool is used.")
+
+@NestParameterInformation(value = "Input",
+		aliases = { "" },
+		required = true,
+		type = @NestTypeUsage(FileLocationTaskOption.class),
+		info = @NestInformation("The input universal file."))
+@NestParameterInformation(value = "Architectures",
+		aliases = { "Architecture" },
+		required = true,
+		type = @NestTypeUsage(value = Collection.class, elementTypes = { DocAppleArchitecture.class }),
+		info = @NestInformation("Specifies the architectures to extract.\n"
+				+ "A thin file is created for each architecture in a subdirectory of the output with the same name as "
+				+ "the architecture."))
+@NestParameterInformation(value = "Output",
+		type = @NestTypeUsage(SakerPath.class),
+		info = @NestInformation("A forward relative output path that specifies the output directory of the extracted files.\n"
+				+ "It can be used to have a better output location than the automatically generated one."))
+@NestParameterInformation(value = "UseLipoTool",
+		type = @NestTypeUsage(boolean.class),
+		info = @NestInformation("Specifies whether the lipo tool should always be used to extract the architectures.\n"
+				+ "By default the build task extracts the architectures itself if the input is a Mach-O file, and only "
+				+ "uses the lipo tool for other inputs (e.g. static libraries).\n"
+				+ "The default is false."))
+@NestParameterInformation(value = "SDKs",
+		type = @NestTypeUsage(value = Map.class,
+				elementTypes = { saker.sdk.support.main.TaskDocs.DocSdkNameOption.class,
+						SDKDescriptionTaskOption.class }),
+		info = @NestInformation(TaskDocs.SDKS))
+public class LipoThinTaskFactory extends FrontendTaskFactory<Object> {
+	private static final long serialVersionUID = 1L;
+
+	public static final String TASK_NAME = "saker.apple.lipo.thin";
+
+	@Override
+	public ParameterizableTask<? extends Object> createTask(ExecutionContext executioncontext) {
+		return new ParameterizableTask<Object>() {
+			@SakerInput(value = { "", "Input" }, required = true)
+			public FileLocationTaskOption inputOption;
+
+			@SakerInput(value = { "Architectures", "Architecture" }, required = true)
+			public Collection<String> architecturesOption;
+
+			@SakerInput(value = "Output")
+			public SakerPath outputOption;
+
+			@SakerInput(value = "UseLipoTool")
+			public boolean useLipoToolOption;
+
+			@SakerInput(value = { "SDKs" })
+			public Map<String, SDKDescriptionTaskOption> sdksOption;
+
+			@Override
+			public Object run(TaskContext taskcontext) throws Exception {
+				if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+					BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_FRONTEND);
+				}
+				FileLocation inputfilelocation = TaskOptionUtils.toFileLocation(inputOption, taskcontext);
+
+				Set<String> architectures = new TreeSet<>();
+				if (architecturesOption != null) {
+					for (String arch : architecturesOption) {
+						if (ObjectUtils.isNullOrEmpty(arch)) {
+							taskcontext.abortExecution(new IllegalArgumentException("Empty architecture specified."));
+							return null;
+						}
+						architectures.add(arch);
+					}
+				}
+				if (architectures.isEmpty()) {
+					taskcontext.abortExecution(new IllegalArgumentException("No architectures specified."));
+					return null;
+				}
+
+				NavigableMap<String, SDKDescription> sdkdescriptions = SDKSupportFrontendUtils
+						.toSDKDescriptionMap(sdksOption);
+
+				sdkdescriptions.putIfAbsent(SakerAppleUtils.SDK_NAME_LIPO,
+						VersionsXcodeSDKDescription.create(null).getLipoSDK());
+
+				SakerPath outputpath;
+				if (outputOption != null) {
+					TaskOptionUtils.requireForwardRelativePathWithFileName(outputOption, "Output");
+					outputpath = SakerPath.valueOf(TASK_NAME).resolve(outputOption);
+				} else {
+					outputpath = SakerPath.valueOf(TASK_NAME)
+							.resolve(SakerStandardUtils.getFileLocationFileName(inputfilelocation));
+				}
+
+				LipoThinWorkerTaskIdentifier workertaskid = new LipoThinWorkerTaskIdentifier(outputpath);
+				LipoThinWorkerTaskFactory workertask = new LipoThinWorkerTaskFactory(inputfilelocation,
+						architectures);
+				workertask.setSDKDescriptions(sdkdescriptions);
+				workertask.setRemoteDispatchable(
+						SakerAppleImplUtils.isRemoteDispatchableInputs(Collections.singleton(inputfilelocation)));
+				workertask.setUseLipoTool(useLipoToolOption);
+
+				taskcontext.startTask(workertaskid, workertask, null);
+
+				SimpleStructuredObjectTaskResult result = new SimpleStructuredObjectTaskResult(workertaskid);
+				taskcontext.reportSelfTaskOutputChangeDetector(new EqualityTaskOutputChangeDetector(result));
+				return result;
+			}
+		};
+	}
+
+}
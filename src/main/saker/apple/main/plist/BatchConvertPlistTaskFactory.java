@@ -0,0 +1,98 @@
+package saker.apple.main.plist;
+
+import java.util.Collection;
+import java.util.NavigableMap;
+
+import saker.apple.impl.plist.BatchConvertPlistWorkerTaskFactory;
+import saker.apple.impl.plist.BatchConvertPlistWorkerTaskIdentifier;
+import saker.apple.main.TaskDocs.DocBatchConvertPlistWorkerTaskOutput;
+import saker.build.file.path.SakerPath;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.ParameterizableTask;
+import saker.build.task.TaskContext;
+import saker.build.task.utils.SimpleStructuredObjectTaskResult;
+import saker.build.task.utils.annot.SakerInput;
+import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.trace.BuildTrace;
+import saker.nest.scriptinfo.reflection.annot.NestInformation;
+import saker.nest.scriptinfo.reflection.annot.NestParameterInformation;
+import saker.nest.scriptinfo.reflection.annot.NestTaskInformation;
+import saker.nest.scriptinfo.reflection.annot.NestTypeUsage;
+import saker.nest.utils.FrontendTaskFactory;
+import saker.std.api.file.location.FileLocation;
+import saker.std.main.dir.prepare.RelativeContentsTaskOption;
+import saker.std.main.file.utils.TaskOptionUtils;
+
+@NestTaskInformation(returnType = @NestTypeUsage(DocBatchConvertPlistWorkerTaskOutput.class))
+@NestInformation("Converts multiple property list (plist) files to the specified format.\n"
+		+ "The task can be used to convert all plists of a resource directory in a single task. The conversions "
+		+ "are performed concurrently.\n"
+		+ "The task works incrementally. When some of the inputs change, only the changed files are converted "
+		+ "again.")
+
+@NestParameterInformation(value = "Input",
+		aliases = { "" },
+		required = true,
+		type = @NestTypeUsage(value = Collection.class, elementTypes = { RelativeContentsTaskOption.class }),
+		info = @NestInformation("Specifies the input plist files to convert.\n"
+				+ "The relative paths of the inputs determine their location in the output directory."))
+@NestParameterInformation(value = "Format",
+		type = @NestTypeUsage(PlistFormatTaskOption.class),
+		info = @NestInformation("Specifies the output format of the plists.\n" + "It is "
+				+ PlistFormatTaskOption.FORMAT_BINARY1 + " by default."))
+@NestParameterInformation(value = "Output",
+		type = @NestTypeUsage(SakerPath.class),
+		info = @NestInformation("A forward relative output path that specifies the output directory of the converted plists.\n"
+				+ "It can be used to have a better output location than the automatically generated one."))
+public class BatchConvertPlistTaskFactory extends FrontendTaskFactory<Object> {
+	private static final long serialVersionUID = 1L;
+
+	public static final String TASK_NAME = "saker.plist.convert.batch";
+
+	@Override
+	public ParameterizableTask<? extends Object> createTask(ExecutionContext executioncontext) {
+		return new ParameterizableTask<Object>() {
+
+			@SakerInput(value = { "", "Input" }, required = true)
+			public Collection<RelativeContentsTaskOption> inputOption;
+
+			@SakerInput(value = "Format")
+			public PlistFormatTaskOption formatOption = PlistFormatTaskOption.INSTANCE_BINARY1;
+
+			@SakerInput(value = "Output")
+			public SakerPath outputOption;
+
+			@Override
+			public Object run(TaskContext taskcontext) throws Exception {
+				if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+					BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_FRONTEND);
+				}
+
+				inputOption = ObjectUtils.cloneArrayList(inputOption, RelativeContentsTaskOption::clone);
+				NavigableMap<SakerPath, FileLocation> inputmappings = RelativeContentsTaskOption.toInputMap(taskcontext,
+						inputOption, null);
+
+				SakerPath outputpath;
+				if (outputOption != null) {
+					TaskOptionUtils.requireForwardRelativePathWithFileName(outputOption, "Output");
+					outputpath = SakerPath.valueOf(TASK_NAME).resolve(outputOption);
+				} else {
+					outputpath = SakerPath.valueOf(TASK_NAME).resolve("default");
+				}
+
+				BatchConvertPlistWorkerTaskIdentifier workertaskid = new BatchConvertPlistWorkerTaskIdentifier(
+						outputpath);
+				BatchConvertPlistWorkerTaskFactory workertask = new BatchConvertPlistWorkerTaskFactory(
+						ImmutableUtils.unmodifiableNavigableMap(inputmappings), formatOption.getFormat());
+				taskcontext.startTask(workertaskid, workertask, null);
+
+				SimpleStructuredObjectTaskResult result = new SimpleStructuredObjectTaskResult(workertaskid);
+				taskcontext.reportSelfTaskOutputChangeDetector(new EqualityTaskOutputChangeDetector(result));
+				return result;
+			}
+		};
+	}
+
+}
@@ -1,5 +1,8 @@
 package saker.apple.main.plist;
 
+import java.util.Collections;
+
+import saker.apple.impl.SakerAppleImplUtils;
 import saker.apple.impl.plist.ConvertPlistWorkerTaskFactory;
 import saker.apple.impl.plist.ConvertPlistWorkerTaskIdentifier;
 import saker.apple.main.TaskDocs.DocConvertPlistWorkerTaskOutput;
@@ -76,6 +79,8 @@ public class ConvertPlistTaskFactory extends FrontendTaskFactory<Object> {
 				ConvertPlistWorkerTaskIdentifier workertaskid = new ConvertPlistWorkerTaskIdentifier(outputpath);
 				ConvertPlistWorkerTaskFactory workertask = new ConvertPlistWorkerTaskFactory(inputfl,
 						formatOption.getFormat());
+				workertask.setRemoteDispatchable(
+						SakerAppleImplUtils.isRemoteDispatchableInputs(Collections.singleton(inputfl)));
 				taskcontext.startTask(workertaskid, workertask, null);
 
 				SimpleStructuredObjectTaskResult result = new SimpleStructuredObjectTaskResult(workertaskid);
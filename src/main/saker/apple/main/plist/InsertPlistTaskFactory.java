@@ -9,6 +9,7 @@ import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 
+import saker.apple.impl.SakerAppleImplUtils;
 import saker.apple.impl.plist.InsertPlistWorkerTaskFactory;
 import saker.apple.impl.plist.InsertPlistWorkerTaskIdentifier;
 import saker.apple.impl.plist.PlistValueOption;
@@ -63,7 +64,23 @@ import saker.std.main.file.utils.TaskOptionUtils;
 				+ "may be lists (array), maps (dictionaries), numbers, booleans and strings.\n"
 				+ "The values may also be SDK paths and property references in which case they will "
 				+ "be resolved against the specified SDKs.\n"
-				+ "If a value of the parameter is null, the associated key will be removed."))
+				+ "If a value of the parameter is null, the associated key will be removed.\n"
+				+ "If KeyPaths is set to true, the keys are interpreted as key paths that address nested values."))
+@NestParameterInformation(value = "KeyPaths",
+		type = @NestTypeUsage(boolean.class),
+		info = @NestInformation("Specifies whether the keys in Values should be interpreted as key paths.\n"
+				+ "Key paths can be used to set or remove nested values in the plist without specifying the "
+				+ "enclosing dictionaries or arrays as a whole. The dictionary keys are separated by '.' characters, "
+				+ "and array elements are addressed with the index in brackets. The '\\' character escapes "
+				+ "the next character in a key. E.g.:\n"
+				+ "NSAppTransportSecurity.NSExceptionDomains.example\\.com\n"
+				+ "CFBundleURLTypes[0].CFBundleURLSchemes[1]\n"
+				+ "The missing dictionaries and arrays along a path are created. An array index may be the same "
+				+ "as the length of the array to append an element.\n"
+				+ "The modifications are applied in the order of the key paths, which are compared component-wise. "
+				+ "The array indexes are compared numerically, so CFBundleURLSchemes[2] is applied before "
+				+ "CFBundleURLSchemes[10].\n"
+				+ "False by default, in which case the keys are used as is."))
 @NestParameterInformation(value = "Output",
 		type = @NestTypeUsage(SakerPath.class),
 		info = @NestInformation("A forward relative output path that specifies the output location of the output plist.\n"
@@ -90,6 +107,9 @@ public class InsertPlistTaskFactory extends FrontendTaskFactory<Object> {
 			@SakerInput(value = { "Values" })
 			public Map<String, PlistValueTaskOption> valuesOption;
 
+			@SakerInput(value = "KeyPaths")
+			public boolean keyPathsOption;
+
 			@SakerInput(value = "Output")
 			public SakerPath outputOption;
 
@@ -203,6 +223,9 @@ public class InsertPlistTaskFactory extends FrontendTaskFactory<Object> {
 				InsertPlistWorkerTaskFactory workertask = new InsertPlistWorkerTaskFactory(inputfl,
 						formatOption == null ? null : formatOption.getFormat(), values);
 				workertask.setSdkDescriptions(sdks);
+				workertask.setKeyPaths(keyPathsOption);
+				workertask.setRemoteDispatchable(
+						SakerAppleImplUtils.isRemoteDispatchableInputs(Collections.singleton(inputfl)));
 				taskcontext.startTask(workertaskid, workertask, null);
 
 				SimpleStructuredObjectTaskResult result = new SimpleStructuredObjectTaskResult(workertaskid);
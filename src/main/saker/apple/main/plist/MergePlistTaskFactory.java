@@ -0,0 +1,115 @@
+package saker.apple.main.plist;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import saker.apple.impl.plist.MergePlistWorkerTaskFactory;
+import saker.apple.impl.plist.MergePlistWorkerTaskIdentifier;
+import saker.apple.main.TaskDocs.DocMergePlistWorkerTaskOutput;
+import saker.build.file.path.SakerPath;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.ParameterizableTask;
+import saker.build.task.TaskContext;
+import saker.build.task.utils.SimpleStructuredObjectTaskResult;
+import saker.build.task.utils.annot.SakerInput;
+import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.trace.BuildTrace;
+import saker.nest.scriptinfo.reflection.annot.NestInformation;
+import saker.nest.scriptinfo.reflection.annot.NestParameterInformation;
+import saker.nest.scriptinfo.reflection.annot.NestTaskInformation;
+import saker.nest.scriptinfo.reflection.annot.NestTypeUsage;
+import saker.nest.utils.FrontendTaskFactory;
+import saker.std.api.file.location.FileLocation;
+import saker.std.api.util.SakerStandardUtils;
+import saker.std.main.file.option.FileLocationTaskOption;
+import saker.std.main.file.utils.TaskOptionUtils;
+
+@NestTaskInformation(returnType = @NestTypeUsage(DocMergePlistWorkerTaskOutput.class))
+@NestInformation("Merges multiple property lists (plist) into a single one.\n"
+		+ "The task parses the inputs in parallel, deep merges them in the specified order, and serializes "
+		+ "the result once. It can be used to assemble a plist from fragments, such as a base plist and "
+		+ "configuration specific overrides.\n"
+		+ "The values in later inputs override the values in the preceding ones. Dictionaries are merged "
+		+ "recursively, arrays are replaced unless AppendArrays is set to true. Values with different types "
+		+ "are replaced.")
+
+@NestParameterInformation(value = "Input",
+		aliases = { "" },
+		required = true,
+		type = @NestTypeUsage(value = Collection.class, elementTypes = { FileLocationTaskOption.class }),
+		info = @NestInformation("Specifies the input plist files to merge.\n"
+				+ "The inputs are merged in the specified order, the later inputs override the earlier ones."))
+@NestParameterInformation(value = "Format",
+		type = @NestTypeUsage(PlistFormatTaskOption.class),
+		info = @NestInformation("Specifies the output format of the plist.\n"
+				+ "It is the same as the format of the first input by default."))
+@NestParameterInformation(value = "AppendArrays",
+		type = @NestTypeUsage(boolean.class),
+		info = @NestInformation("Specifies whether the arrays in the inputs should be concatenated.\n"
+				+ "If set to true, the elements of an array in a later input are appended to the array "
+				+ "with the same key path in the preceding inputs.\n"
+				+ "False by default, in which case the arrays are replaced."))
+@NestParameterInformation(value = "Output",
+		type = @NestTypeUsage(SakerPath.class),
+		info = @NestInformation("A forward relative output path that specifies the output location of the merged plist.\n"
+				+ "It can be used to have a better output location than the automatically generated one."))
+public class MergePlistTaskFactory extends FrontendTaskFactory<Object> {
+	private static final long serialVersionUID = 1L;
+
+	public static final String TASK_NAME = "saker.plist.merge";
+
+	@Override
+	public ParameterizableTask<? extends Object> createTask(ExecutionContext executioncontext) {
+		return new ParameterizableTask<Object>() {
+			@SakerInput(value = { "", "Input" }, required = true)
+			public Collection<FileLocationTaskOption> inputOption;
+
+			@SakerInput(value = "Format")
+			public PlistFormatTaskOption formatOption;
+
+			@SakerInput(value = "AppendArrays")
+			public boolean appendArraysOption;
+
+			@SakerInput(value = "Output")
+			public SakerPath outputOption;
+
+			@Override
+			public Object run(TaskContext taskcontext) throws Exception {
+				if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+					BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_FRONTEND);
+				}
+				if (ObjectUtils.isNullOrEmpty(inputOption)) {
+					taskcontext.abortExecution(new IllegalArgumentException("No input plists specified."));
+					return null;
+				}
+				List<FileLocation> inputfls = new ArrayList<>();
+				for (FileLocationTaskOption in : inputOption) {
+					inputfls.add(TaskOptionUtils.toFileLocation(in, taskcontext));
+				}
+
+				SakerPath outputpath;
+				if (outputOption != null) {
+					TaskOptionUtils.requireForwardRelativePathWithFileName(outputOption, "Output");
+					outputpath = SakerPath.valueOf(TASK_NAME).resolve(outputOption);
+				} else {
+					outputpath = SakerPath.valueOf(TASK_NAME)
+							.resolve(SakerStandardUtils.getFileLocationFileName(inputfls.get(0)));
+				}
+
+				MergePlistWorkerTaskIdentifier workertaskid = new MergePlistWorkerTaskIdentifier(outputpath);
+				MergePlistWorkerTaskFactory workertask = new MergePlistWorkerTaskFactory(
+						ImmutableUtils.unmodifiableList(inputfls),
+						formatOption == null ? null : formatOption.getFormat(), appendArraysOption);
+				taskcontext.startTask(workertaskid, workertask, null);
+
+				SimpleStructuredObjectTaskResult result = new SimpleStructuredObjectTaskResult(workertaskid);
+				taskcontext.reportSelfTaskOutputChangeDetector(new EqualityTaskOutputChangeDetector(result));
+				return result;
+			}
+		};
+	}
+
+}
@@ -16,6 +16,7 @@ import java.util.Set;
 import java.util.TreeMap;
 
 import saker.apple.api.SakerAppleUtils;
+import saker.apple.impl.SakerAppleImplUtils;
 import saker.apple.impl.plist.PlistValueOption;
 import saker.apple.impl.sdk.VersionsXcodeSDKDescription;
 import saker.apple.main.TaskDocs.DocAppleArchitecture;
@@ -44,7 +45,6 @@ import saker.nest.utils.FrontendTaskFactory;
 import saker.sdk.support.api.SDKDescription;
 import saker.sdk.support.api.SDKPathReference;
 import saker.sdk.support.api.SDKPropertyReference;
-import saker.sdk.support.api.SDKSupportUtils;
 import saker.sdk.support.main.SDKSupportFrontendUtils;
 import saker.sdk.support.main.option.SDKDescriptionTaskOption;
 
@@ -646,15 +646,15 @@ public class AppleOptionsPresetTaskFactory extends FrontendTaskFactory<Object> {
 		@Override
 		public void writeExternal(ObjectOutput out) throws IOException {
 			out.writeObject(clangPresetTaskOption);
-			SerialUtils.writeExternalMap(out, infoPlistValues);
-			SerialUtils.writeExternalMap(out, sdks);
+			PlistValueOption.writeExternalValues(out, infoPlistValues);
+			SakerAppleImplUtils.writeExternalSDKDescriptions(out, sdks);
 		}
 
 		@Override
 		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 			clangPresetTaskOption = SerialUtils.readExternalObject(in);
-			infoPlistValues = SerialUtils.readExternalSortedImmutableNavigableMap(in);
-			sdks = SerialUtils.readExternalSortedImmutableNavigableMap(in, SDKSupportUtils.getSDKNameComparator());
+			infoPlistValues = PlistValueOption.readExternalValues(in);
+			sdks = SakerAppleImplUtils.readExternalSDKDescriptions(in);
 		}
 
 		@Override
@@ -0,0 +1,135 @@
+package saker.apple.main.strings;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import saker.apple.impl.plist.BatchConvertPlistWorkerTaskFactory;
+import saker.apple.impl.plist.BatchConvertPlistWorkerTaskIdentifier;
+import saker.apple.main.TaskDocs.DocBatchConvertPlistWorkerTaskOutput;
+import saker.apple.main.iphoneos.bundle.CreateIphoneOsBundleTaskFactory;
+import saker.apple.main.plist.PlistFormatTaskOption;
+import saker.build.file.SakerFile;
+import saker.build.file.path.SakerPath;
+import saker.build.file.path.WildcardPath;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.ParameterizableTask;
+import saker.build.task.TaskContext;
+import saker.build.task.utils.SimpleStructuredObjectTaskResult;
+import saker.build.task.utils.annot.SakerInput;
+import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.task.utils.dependencies.WildcardFileCollectionStrategy;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.trace.BuildTrace;
+import saker.nest.scriptinfo.reflection.annot.NestInformation;
+import saker.nest.scriptinfo.reflection.annot.NestParameterInformation;
+import saker.nest.scriptinfo.reflection.annot.NestTaskInformation;
+import saker.nest.scriptinfo.reflection.annot.NestTypeUsage;
+import saker.nest.utils.FrontendTaskFactory;
+import saker.std.api.file.location.ExecutionFileLocation;
+import saker.std.api.file.location.FileLocation;
+import saker.std.main.file.utils.TaskOptionUtils;
+
+@NestTaskInformation(returnType = @NestTypeUsage(DocBatchConvertPlistWorkerTaskOutput.class))
+@NestInformation("Compiles the localization files of an application to binary property lists.\n"
+		+ "The task collects the .strings and .stringsdict files in the .lproj directories under the specified "
+		+ "directories, and converts them to the binary plist format. The .strings files may be encoded in "
+		+ "UTF-8 or UTF-16.\n"
+		+ "The outputs are placed in the output directory using the same relative paths as in the input "
+		+ "directories, so the .lproj directories can be passed as is to the Contents of the "
+		+ CreateIphoneOsBundleTaskFactory.TASK_NAME + "() task.\n"
+		+ "The files are compiled concurrently, and only the changed files are compiled again in incremental builds.")
+
+@NestParameterInformation(value = "Directory",
+		aliases = { "" },
+		required = true,
+		type = @NestTypeUsage(value = Collection.class, elementTypes = { SakerPath.class }),
+		info = @NestInformation("Specifies the directories that contain the .lproj localization directories.\n"
+				+ "The .lproj directories are searched recursively. Relative paths are resolved against the "
+				+ "working directory of the task."))
+@NestParameterInformation(value = "Output",
+		type = @NestTypeUsage(SakerPath.class),
+		info = @NestInformation("A forward relative output path that specifies the output directory of the compiled files.\n"
+				+ "It can be used to have a better output location than the automatically generated one."))
+public class CompileStringsTaskFactory extends FrontendTaskFactory<Object> {
+	private static final long serialVersionUID = 1L;
+
+	public static final String TASK_NAME = "saker.apple.strings.compile";
+
+	private static final WildcardPath WILDCARD_LPROJ_FILES = WildcardPath.valueOf("**/*.lproj/*");
+
+	@Override
+	public ParameterizableTask<? extends Object> createTask(ExecutionContext executioncontext) {
+		return new ParameterizableTask<Object>() {
+
+			@SakerInput(value = { "", "Directory" }, required = true)
+			public Collection<SakerPath> directoryOption;
+
+			@SakerInput(value = "Output")
+			public SakerPath outputOption;
+
+			@Override
+			public Object run(TaskContext taskcontext) throws Exception {
+				if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+					BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_FRONTEND);
+				}
+				if (ObjectUtils.isNullOrEmpty(directoryOption)) {
+					taskcontext.abortExecution(new IllegalArgumentException("No input directories specified."));
+					return null;
+				}
+
+				NavigableMap<SakerPath, FileLocation> inputmappings = new TreeMap<>();
+				SakerPath workingdir = taskcontext.getTaskWorkingDirectoryPath();
+				for (SakerPath dir : directoryOption) {
+					SakerPath absdir = workingdir.tryResolve(dir);
+					NavigableMap<SakerPath, SakerFile> files = taskcontext.getTaskUtilities()
+							.collectFilesReportAdditionDependency(null,
+									WildcardFileCollectionStrategy.create(absdir, WILDCARD_LPROJ_FILES));
+					for (Entry<SakerPath, SakerFile> entry : files.entrySet()) {
+						SakerPath filepath = entry.getKey();
+						if (!isLocalizationFileName(filepath.getFileName())) {
+							continue;
+						}
+						SakerPath relativepath = absdir.relativize(filepath);
+						FileLocation prev = inputmappings.putIfAbsent(relativepath,
+								ExecutionFileLocation.create(filepath));
+						if (prev != null) {
+							taskcontext.abortExecution(new IllegalArgumentException(
+									"Multiple localization files found for: " + relativepath + " (" + prev
+											+ " and " + filepath + ")"));
+							return null;
+						}
+					}
+				}
+
+				SakerPath outputpath;
+				if (outputOption != null) {
+					TaskOptionUtils.requireForwardRelativePathWithFileName(outputOption, "Output");
+					outputpath = SakerPath.valueOf(TASK_NAME).resolve(outputOption);
+				} else {
+					outputpath = SakerPath.valueOf(TASK_NAME).resolve("default");
+				}
+
+				//the compilation is the same as the batch conversion of the localization files to binary plists
+				BatchConvertPlistWorkerTaskIdentifier workertaskid = new BatchConvertPlistWorkerTaskIdentifier(
+						outputpath);
+				BatchConvertPlistWorkerTaskFactory workertask = new BatchConvertPlistWorkerTaskFactory(
+						ImmutableUtils.unmodifiableNavigableMap(inputmappings), PlistFormatTaskOption.FORMAT_BINARY1);
+				taskcontext.startTask(workertaskid, workertask, null);
+
+				SimpleStructuredObjectTaskResult result = new SimpleStructuredObjectTaskResult(workertaskid);
+				taskcontext.reportSelfTaskOutputChangeDetector(new EqualityTaskOutputChangeDetector(result));
+				return result;
+			}
+		};
+	}
+
+	private static boolean isLocalizationFileName(String filename) {
+		String lower = filename.toLowerCase(Locale.ENGLISH);
+		return lower.endsWith(".strings") || lower.endsWith(".stringsdict");
+	}
+
+}
@@ -0,0 +1,114 @@
+package saker.apple.main.strip;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import saker.apple.api.SakerAppleUtils;
+import saker.apple.impl.SakerAppleImplUtils;
+import saker.apple.impl.sdk.VersionsXcodeSDKDescription;
+import saker.apple.impl.strip.BatchStripWorkerTaskFactory;
+import saker.apple.impl.strip.BatchStripWorkerTaskIdentifier;
+import saker.apple.main.TaskDocs;
+import saker.apple.main.TaskDocs.DocBatchStripWorkerTaskOutput;
+import saker.build.file.path.SakerPath;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.ParameterizableTask;
+import saker.build.task.TaskContext;
+import saker.build.task.utils.SimpleStructuredObjectTaskResult;
+import saker.build.task.utils.annot.SakerInput;
+import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.trace.BuildTrace;
+import saker.nest.scriptinfo.reflection.annot.NestInformation;
+import saker.nest.scriptinfo.reflection.annot.NestParameterInformation;
+import saker.nest.scriptinfo.reflection.annot.NestTaskInformation;
+import saker.nest.scriptinfo.reflection.annot.NestTypeUsage;
+import saker.nest.utils.FrontendTaskFactory;
+import saker.sdk.support.api.SDKDescription;
+import saker.sdk.support.main.SDKSupportFrontendUtils;
+import saker.sdk.support.main.option.SDKDescriptionTaskOption;
+import saker.std.api.file.location.FileLocation;
+import saker.std.main.dir.prepare.RelativeContentsTaskOption;
+import saker.std.main.file.utils.TaskOptionUtils;
+
+@NestTaskInformation(returnType = @NestTypeUsage(DocBatchStripWorkerTaskOutput.class))
+@NestInformation("Invokes the strip tool for multiple binaries in a single task.\n"
+		+ "The task can be used to strip all executables, frameworks and plugins of an application. The strip "
+		+ "processes are run concurrently.\n"
+		+ "The task works incrementally. When some of the inputs change, only the changed files are stripped again.")
+
+@NestParameterInformation(value = "Input",
+		aliases = { "" },
+		required = true,
+		type = @NestTypeUsage(value = Collection.class, elementTypes = { RelativeContentsTaskOption.class }),
+		info = @NestInformation("Specifies the input files to strip.\n"
+				+ "The relative paths of the inputs determine their location in the output directory."))
+@NestParameterInformation(value = "Output",
+		type = @NestTypeUsage(SakerPath.class),
+		info = @NestInformation("A forward relative output path that specifies the output directory of the stripped binaries.\n"
+				+ "It can be used to have a better output location than the automatically generated one."))
+@NestParameterInformation(value = "SDKs",
+		type = @NestTypeUsage(value = Map.class,
+				elementTypes = { saker.sdk.support.main.TaskDocs.DocSdkNameOption.class,
+						SDKDescriptionTaskOption.class }),
+		info = @NestInformation(TaskDocs.SDKS))
+public class BatchStripTaskFactory extends FrontendTaskFactory<Object> {
+	private static final long serialVersionUID = 1L;
+
+	public static final String TASK_NAME = "saker.apple.strip.batch";
+
+	@Override
+	public ParameterizableTask<? extends Object> createTask(ExecutionContext executioncontext) {
+		return new ParameterizableTask<Object>() {
+			@SakerInput(value = { "", "Input" }, required = true)
+			public Collection<RelativeContentsTaskOption> inputOption;
+
+			@SakerInput(value = "Output")
+			public SakerPath outputOption;
+
+			@SakerInput(value = { "SDKs" })
+			public Map<String, SDKDescriptionTaskOption> sdksOption;
+
+			@Override
+			public Object run(TaskContext taskcontext) throws Exception {
+				if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
+					BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_FRONTEND);
+				}
+
+				inputOption = ObjectUtils.cloneArrayList(inputOption, RelativeContentsTaskOption::clone);
+				NavigableMap<SakerPath, FileLocation> inputmappings = RelativeContentsTaskOption.toInputMap(taskcontext,
+						inputOption, null);
+
+				NavigableMap<String, SDKDescription> sdkdescriptions = SDKSupportFrontendUtils
+						.toSDKDescriptionMap(sdksOption);
+
+				sdkdescriptions.putIfAbsent(SakerAppleUtils.SDK_NAME_STRIP,
+						VersionsXcodeSDKDescription.create(null).getStripSDK());
+
+				SakerPath outputpath;
+				if (outputOption != null) {
+					TaskOptionUtils.requireForwardRelativePathWithFileName(outputOption, "Output");
+					outputpath = SakerPath.valueOf(TASK_NAME).resolve(outputOption);
+				} else {
+					outputpath = SakerPath.valueOf(TASK_NAME).resolve("default");
+				}
+
+				BatchStripWorkerTaskIdentifier workertaskid = new BatchStripWorkerTaskIdentifier(outputpath);
+				BatchStripWorkerTaskFactory workertask = new BatchStripWorkerTaskFactory(
+						ImmutableUtils.unmodifiableNavigableMap(inputmappings));
+				workertask.setSDKDescriptions(sdkdescriptions);
+				workertask.setRemoteDispatchable(
+						SakerAppleImplUtils.isRemoteDispatchableInputs(inputmappings.values()));
+
+				taskcontext.startTask(workertaskid, workertask, null);
+
+				SimpleStructuredObjectTaskResult result = new SimpleStructuredObjectTaskResult(workertaskid);
+				taskcontext.reportSelfTaskOutputChangeDetector(new EqualityTaskOutputChangeDetector(result));
+				return result;
+			}
+		};
+	}
+
+}
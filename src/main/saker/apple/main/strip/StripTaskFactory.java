@@ -1,9 +1,11 @@
 package saker.apple.main.strip;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.NavigableMap;
 
 import saker.apple.api.SakerAppleUtils;
+import saker.apple.impl.SakerAppleImplUtils;
 import saker.apple.impl.sdk.VersionsXcodeSDKDescription;
 import saker.apple.impl.strip.StripWorkerTaskFactory;
 import saker.apple.impl.strip.StripWorkerTaskIdentifier;
@@ -90,6 +92,8 @@ public class StripTaskFactory extends FrontendTaskFactory<Object> {
 				StripWorkerTaskIdentifier workertaskid = new StripWorkerTaskIdentifier(outputpath);
 				StripWorkerTaskFactory workertask = new StripWorkerTaskFactory(inputfilelocation);
 				workertask.setSDKDescriptions(sdkdescriptions);
+				workertask.setRemoteDispatchable(
+						SakerAppleImplUtils.isRemoteDispatchableInputs(Collections.singleton(inputfilelocation)));
 
 				taskcontext.startTask(workertaskid, workertask, null);
 
@@ -324,19 +324,10 @@ JNIEXPORT jlong JNICALL Java_saker_apple_impl_plist_lib_Plist_createContentPlist
 	return reinterpret_cast<jlong>(new PlistImpl((CFPropertyListRef) ref, kCFPropertyListXMLFormat_v1_0));
 }
 
-JNIEXPORT jlong JNICALL Java_saker_apple_impl_plist_lib_Plist_createFromBytes(JNIEnv *env, jclass clazz,
-		jbyteArray bytes, jint offset, jint length) {
-	jbyte* nativebytes = env->GetByteArrayElements(bytes, NULL);
-	if (nativebytes == NULL) {
-		javaException(env, "java/io/IOException", "Failed to retrieve pointer to byte array.");
-		return NULL;
-	}
-	CFDataRef cfdata = CFDataCreateWithBytesNoCopy(NULL, reinterpret_cast<const UInt8*>(nativebytes + offset), length,
-			kCFAllocatorNull);
-	//abort is used because we don't need to copy bytes back as we didn't modify them
-	env->ReleaseByteArrayElements(bytes, nativebytes, JNI_ABORT);
-	if (cfdata == NULL) {
-		javaException(env, "java/io/IOException", "Failed to create CFData for the byte array.");
+static jlong createPlistFromData(JNIEnv *env, const UInt8* bytes, jint length) {
+	CFReference<CFDataRef> cfdata = CFDataCreateWithBytesNoCopy(NULL, bytes, length, kCFAllocatorNull);
+	if (cfdata == nullptr) {
+		javaException(env, "java/io/IOException", "Failed to create CFData for the plist bytes.");
 		return NULL;
 	}
 	CFPropertyListFormat format;
@@ -357,6 +348,31 @@ JNIEXPORT jlong JNICALL Java_saker_apple_impl_plist_lib_Plist_createFromBytes(JN
 	return reinterpret_cast<jlong>(new PlistImpl(proplistref, format));
 }
 
+JNIEXPORT jlong JNICALL Java_saker_apple_impl_plist_lib_Plist_createFromBytes(JNIEnv *env, jclass clazz,
+		jbyteArray bytes, jint offset, jint length) {
+	jbyte* nativebytes = env->GetByteArrayElements(bytes, NULL);
+	if (nativebytes == NULL) {
+		javaException(env, "java/io/IOException", "Failed to retrieve pointer to byte array.");
+		return NULL;
+	}
+	//the mutable containers and leaves option causes the contents to be copied, so the bytes
+	//can be released after the plist has been created
+	jlong result = createPlistFromData(env, reinterpret_cast<const UInt8*>(nativebytes + offset), length);
+	//abort is used because we don't need to copy bytes back as we didn't modify them
+	env->ReleaseByteArrayElements(bytes, nativebytes, JNI_ABORT);
+	return result;
+}
+
+JNIEXPORT jlong JNICALL Java_saker_apple_impl_plist_lib_Plist_createFromDirectBuffer(JNIEnv *env, jclass clazz,
+		jobject buffer, jint offset, jint length) {
+	void* address = env->GetDirectBufferAddress(buffer);
+	if (address == NULL) {
+		javaException(env, "java/lang/IllegalArgumentException", "Failed to retrieve address of direct buffer.");
+		return NULL;
+	}
+	return createPlistFromData(env, reinterpret_cast<const UInt8*>(address) + offset, length);
+}
+
 JNIEXPORT jbyteArray JNICALL Java_saker_apple_impl_plist_lib_Plist_serialize(JNIEnv *env, jclass clazz, jlong ptr,
 		jint format) {
 	PlistImpl& plist = *reinterpret_cast<PlistImpl*>(ptr);
@@ -591,6 +607,166 @@ JNIEXPORT void JNICALL Java_saker_apple_impl_plist_lib_Plist_removeValue(JNIEnv*
 
 	CFDictionaryRemoveValue((CFMutableDictionaryRef) plist.propertyList.ref(), toCFString(env, key));
 }
+static void applyPatchSetValue(const void *key, const void *value, void *context) {
+	CFDictionarySetValue((CFMutableDictionaryRef) context, key, value);
+}
+static bool isPathIndexComponent(CFTypeRef component) {
+	return CFGetTypeID(component) == CFNumberGetTypeID();
+}
+//creates the container that the argument key path component addresses
+static CFTypeRef createPathContainer(CFTypeRef component) {
+	if (isPathIndexComponent(component)) {
+		return CFArrayCreateMutable(NULL, 0, &kCFTypeArrayCallBacks);
+	}
+	return CFDictionaryCreateMutable(NULL, 0, &kCFTypeDictionaryKeyCallBacks, &kCFTypeDictionaryValueCallBacks);
+}
+//sets or removes (if value is NULL) the value at the given key path
+//the containers of the plist are mutable, so the nested values are modified in place
+//returns false if a java exception was thrown
+static bool applyPatchPath(JNIEnv *env, CFMutableDictionaryRef root, CFArrayRef path, CFTypeRef value) {
+	CFIndex count = CFArrayGetCount(path);
+	if (count == 0) {
+		javaException(env, "java/lang/IllegalArgumentException", "Empty plist key path.");
+		return false;
+	}
+	CFTypeRef node = root;
+	for (CFIndex i = 0; i < count; ++i) {
+		CFTypeRef component = CFArrayGetValueAtIndex(path, i);
+		bool last = i + 1 == count;
+		CFTypeRef child;
+		if (isPathIndexComponent(component)) {
+			if (CFGetTypeID(node) != CFArrayGetTypeID()) {
+				if (value == NULL) {
+					return true;
+				}
+				javaException(env, "java/lang/IllegalArgumentException", "Plist value is not an array in key path.");
+				return false;
+			}
+			CFMutableArrayRef array = (CFMutableArrayRef) node;
+			CFIndex index = 0;
+			CFNumberGetValue((CFNumberRef) component, kCFNumberCFIndexType, &index);
+			CFIndex len = CFArrayGetCount(array);
+			if (index < 0 || index >= len) {
+				if (value == NULL) {
+					return true;
+				}
+				if (index < 0 || index > len) {
+					javaException(env, "java/lang/IllegalArgumentException",
+							"Array index out of bounds in plist key path.");
+					return false;
+				}
+			}
+			if (last) {
+				if (value == NULL) {
+					CFArrayRemoveValueAtIndex(array, index);
+				} else if (index == len) {
+					CFArrayAppendValue(array, value);
+				} else {
+					CFArraySetValueAtIndex(array, index, value);
+				}
+				return true;
+			}
+			if (index == len) {
+				CFReference<CFTypeRef> created(createPathContainer(CFArrayGetValueAtIndex(path, i + 1)));
+				CFArrayAppendValue(array, created);
+				//retained by the array
+				child = created;
+			} else {
+				child = CFArrayGetValueAtIndex(array, index);
+			}
+		} else {
+			if (CFGetTypeID(node) != CFDictionaryGetTypeID()) {
+				if (value == NULL) {
+					return true;
+				}
+				javaException(env, "java/lang/IllegalArgumentException",
+						"Plist value is not a dictionary in key path.");
+				return false;
+			}
+			CFMutableDictionaryRef dict = (CFMutableDictionaryRef) node;
+			if (last) {
+				if (value == NULL) {
+					CFDictionaryRemoveValue(dict, component);
+				} else {
+					CFDictionarySetValue(dict, component, value);
+				}
+				return true;
+			}
+			child = CFDictionaryGetValue(dict, component);
+			if (child == NULL) {
+				if (value == NULL) {
+					return true;
+				}
+				CFReference<CFTypeRef> created(createPathContainer(CFArrayGetValueAtIndex(path, i + 1)));
+				CFDictionarySetValue(dict, component, created);
+				//retained by the dictionary
+				child = created;
+			}
+		}
+		node = child;
+	}
+	return true;
+}
+
+JNIEXPORT void JNICALL Java_saker_apple_impl_plist_lib_Plist_applyPatch(JNIEnv* env, jclass clazz, jlong ptr,
+		jbyteArray bytes, jint offset, jint length) {
+	PlistImpl& plist = *reinterpret_cast<PlistImpl*>(ptr);
+
+	jbyte* nativebytes = env->GetByteArrayElements(bytes, NULL);
+	if (nativebytes == NULL) {
+		javaException(env, "java/io/IOException", "Failed to retrieve pointer to byte array.");
+		return;
+	}
+	CFPropertyListRef patchref = NULL;
+	{
+		CFReference<CFDataRef> cfdata = CFDataCreateWithBytesNoCopy(NULL,
+				reinterpret_cast<const UInt8*>(nativebytes + offset), length, kCFAllocatorNull);
+		if (cfdata != nullptr) {
+			CFReference<CFErrorRef> error;
+			patchref = CFPropertyListCreateWithData(NULL, cfdata, kCFPropertyListMutableContainersAndLeaves, NULL,
+					&error);
+		}
+	}
+	CFReference<CFPropertyListRef> patch(patchref);
+	//abort is used because we don't need to copy bytes back as we didn't modify them
+	env->ReleaseByteArrayElements(bytes, nativebytes, JNI_ABORT);
+	if (patch == nullptr || CFGetTypeID(patch) != CFDictionaryGetTypeID()) {
+		javaException(env, "java/io/IOException", "Failed to parse plist patch.");
+		return;
+	}
+	CFMutableDictionaryRef root = (CFMutableDictionaryRef) plist.propertyList.ref();
+
+	//keys should be in sync with PlistValues.PATCH_KEY_*
+	CFArrayRef removals = (CFArrayRef) CFDictionaryGetValue((CFDictionaryRef) patch.ref(), CFSTR("remove"));
+	if (removals != NULL && CFGetTypeID(removals) == CFArrayGetTypeID()) {
+		CFIndex count = CFArrayGetCount(removals);
+		for (CFIndex i = 0; i < count; ++i) {
+			CFDictionaryRemoveValue(root, CFArrayGetValueAtIndex(removals, i));
+		}
+	}
+	CFDictionaryRef sets = (CFDictionaryRef) CFDictionaryGetValue((CFDictionaryRef) patch.ref(), CFSTR("set"));
+	if (sets != NULL && CFGetTypeID(sets) == CFDictionaryGetTypeID()) {
+		CFDictionaryApplyFunction(sets, applyPatchSetValue, root);
+	}
+	CFArrayRef paths = (CFArrayRef) CFDictionaryGetValue((CFDictionaryRef) patch.ref(), CFSTR("paths"));
+	if (paths != NULL && CFGetTypeID(paths) == CFArrayGetTypeID()) {
+		CFIndex count = CFArrayGetCount(paths);
+		for (CFIndex i = 0; i < count; ++i) {
+			CFDictionaryRef mod = (CFDictionaryRef) CFArrayGetValueAtIndex(paths, i);
+			if (CFGetTypeID(mod) != CFDictionaryGetTypeID()) {
+				continue;
+			}
+			CFArrayRef path = (CFArrayRef) CFDictionaryGetValue(mod, CFSTR("path"));
+			if (path == NULL || CFGetTypeID(path) != CFArrayGetTypeID()) {
+				continue;
+			}
+			if (!applyPatchPath(env, root, path, CFDictionaryGetValue(mod, CFSTR("value")))) {
+				return;
+			}
+		}
+	}
+}
+
 JNIEXPORT jint JNICALL Java_saker_apple_impl_plist_lib_Plist_getFormat(JNIEnv *env, jclass clazz, jlong ptr) {
 	PlistImpl& plist = *reinterpret_cast<PlistImpl*>(ptr);
 	switch (plist.format) {
@@ -0,0 +1,119 @@
+package testing.saker.apple.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * Minimal benchmark harness that measures the average time and the allocated bytes of an operation.
+ * <p>
+ * Each benchmark is warmed up for a fixed duration, then measured in several iterations. The operations are executed
+ * in batches so the timer overhead is negligible even for fast operations. The allocation rates are only reported if
+ * the JVM supports thread allocation measurement.
+ */
+final class BenchmarkRunner {
+	public interface Operation {
+		public Object run() throws Exception;
+	}
+
+	private static final long WARMUP_NANOS = Long.getLong("saker.apple.bench.warmup.millis", 1000) * 1_000_000L;
+	private static final long ITERATION_NANOS = Long.getLong("saker.apple.bench.iteration.millis", 1000)
+			* 1_000_000L;
+	private static final int ITERATION_COUNT = Integer.getInteger("saker.apple.bench.iterations", 5);
+
+	private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN;
+	static {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocbean = null;
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			allocbean = (com.sun.management.ThreadMXBean) bean;
+			if (!allocbean.isThreadAllocatedMemorySupported()) {
+				allocbean = null;
+			} else if (!allocbean.isThreadAllocatedMemoryEnabled()) {
+				allocbean.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+		ALLOCATION_BEAN = allocbean;
+	}
+
+	private final String[] filters;
+
+	/**
+	 * Sink for the results of the operations so they are not optimized away.
+	 */
+	private int sink;
+
+	public BenchmarkRunner(String[] filters) {
+		this.filters = filters;
+	}
+
+	public boolean isIncluded(String name) {
+		if (filters.length == 0) {
+			return true;
+		}
+		for (String f : filters) {
+			if (name.contains(f)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void run(String name, Operation op) throws Exception {
+		if (!isIncluded(name)) {
+			return;
+		}
+		//warmup, and determine the batch size so a batch takes about a millisecond
+		int batch = 1;
+		long warmupend = System.nanoTime() + WARMUP_NANOS;
+		while (System.nanoTime() < warmupend) {
+			long start = System.nanoTime();
+			runBatch(op, batch);
+			if (System.nanoTime() - start < 1_000_000L && batch < (1 << 24)) {
+				batch *= 2;
+			}
+		}
+		double bestnanosperop = Double.MAX_VALUE;
+		double bytesperop = -1;
+		for (int i = 0; i < ITERATION_COUNT; i++) {
+			long ops = 0;
+			long allocstart = getAllocatedBytes();
+			long start = System.nanoTime();
+			long end = start + ITERATION_NANOS;
+			long now;
+			do {
+				runBatch(op, batch);
+				ops += batch;
+				now = System.nanoTime();
+			} while (now < end);
+			long allocend = getAllocatedBytes();
+			bestnanosperop = Math.min(bestnanosperop, (now - start) / (double) ops);
+			if (allocstart >= 0) {
+				bytesperop = (allocend - allocstart) / (double) ops;
+			}
+		}
+		System.out.println(String.format(Locale.ENGLISH, "%-48s %14.1f ns/op %14s", name, bestnanosperop,
+				bytesperop < 0 ? "n/a" : String.format(Locale.ENGLISH, "%.0f B/op", bytesperop)));
+	}
+
+	private void runBatch(Operation op, int batch) throws Exception {
+		for (int i = 0; i < batch; i++) {
+			Object result = op.run();
+			if (result != null) {
+				sink += System.identityHashCode(result);
+			}
+		}
+	}
+
+	private static long getAllocatedBytes() {
+		if (ALLOCATION_BEAN == null) {
+			return -1;
+		}
+		return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[sink=" + sink + "]";
+	}
+}
@@ -0,0 +1,96 @@
+package testing.saker.apple.bench;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import saker.apple.impl.plist.lib.PlatformLib;
+import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.PlistKeyPath;
+
+/**
+ * Benchmarks of the plist parsing, lookup, mutation and serialization for all available backends.
+ * <p>
+ * The benchmarks run on a generated corpus of small, medium and huge plists in both XML and binary formats. The
+ * native backend is only benchmarked if the native library is loaded. The time and the allocated bytes per operation
+ * are printed to the standard output.
+ * <p>
+ * Run with the test and main class directories on the classpath. The arguments are optional name filters, e.g.:
+ *
+ * <pre>
+ * java -cp &lt;classpath&gt; testing.saker.apple.bench.PlistBenchmarks parse/ serialize/
+ * </pre>
+ */
+public class PlistBenchmarks {
+	private static final int BULK_SET_COUNT = 100;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkRunner runner = new BenchmarkRunner(args);
+
+		List<Integer> backends = new ArrayList<>();
+		if (PlatformLib.LOADED) {
+			backends.add(Plist.BACKEND_NATIVE);
+		}
+		backends.add(Plist.BACKEND_JAVA);
+
+		String nestedpath = PlistCorpus.getNestedKeyPath();
+		Map<PlistKeyPath, Object> nestedpatch = Collections.singletonMap(PlistKeyPath.parse(nestedpath), "modified");
+		String[] nestedcomponents = nestedpath.split("\\.");
+
+		String[] bulkkeys = new String[BULK_SET_COUNT];
+		for (int i = 0; i < bulkkeys.length; i++) {
+			bulkkeys[i] = "BulkKey" + i;
+		}
+
+		for (String size : PlistCorpus.SIZES) {
+			String lookupkey = PlistCorpus.getLookupKey(size);
+			for (int format : new int[] { Plist.FORMAT_XML, Plist.FORMAT_BINARY }) {
+				String formatname = format == Plist.FORMAT_XML ? "xml" : "binary";
+				ByteBuffer bytes = ByteBuffer.wrap(PlistCorpus.serialize(size, format));
+				ByteBuffer directbytes = ByteBuffer.allocateDirect(bytes.remaining());
+				directbytes.put(bytes.duplicate());
+				directbytes.flip();
+
+				//the lazy lookup is independent of the backend
+				runner.run("lookup/" + formatname + "/" + size, () -> Plist.lookup(bytes, lookupkey));
+				runner.run("lookup-nested/" + formatname + "/" + size,
+						() -> Plist.lookup(bytes, nestedcomponents));
+
+				for (int backend : backends) {
+					String suffix = "/" + formatname + "/" + size + "/" + getBackendName(backend);
+					runner.run("parse" + suffix, () -> {
+						try (Plist plist = Plist.readFrom(bytes, backend)) {
+							return plist;
+						}
+					});
+					runner.run("parse-direct" + suffix, () -> {
+						try (Plist plist = Plist.readFrom(directbytes, backend)) {
+							return plist;
+						}
+					});
+					try (Plist plist = Plist.readFrom(bytes, backend)) {
+						runner.run("get" + suffix, () -> plist.get(lookupkey));
+						runner.run("set-bulk" + suffix, () -> {
+							for (int i = 0; i < bulkkeys.length; i++) {
+								plist.set(bulkkeys[i], (long) i);
+							}
+							return plist;
+						});
+						runner.run("set-nested" + suffix, () -> {
+							plist.applyKeyPathPatch(nestedpatch);
+							return plist;
+						});
+						runner.run("serialize" + suffix, () -> plist.serialize(format));
+					}
+				}
+			}
+		}
+		System.out.println(runner);
+	}
+
+	private static String getBackendName(int backend) {
+		return backend == Plist.BACKEND_NATIVE ? "native" : "java";
+	}
+}
@@ -0,0 +1,117 @@
+package testing.saker.apple.bench;
+
+import java.util.TreeMap;
+
+import saker.apple.impl.plist.lib.Plist;
+
+/**
+ * Deterministically generated plist contents for the benchmarks.
+ */
+final class PlistCorpus {
+	public static final String SIZE_SMALL = "small";
+	public static final String SIZE_MEDIUM = "medium";
+	public static final String SIZE_HUGE = "huge";
+
+	public static final String[] SIZES = { SIZE_SMALL, SIZE_MEDIUM, SIZE_HUGE };
+
+	/**
+	 * The depth of the nested dictionary chain under the {@link #KEY_NESTED} key.
+	 */
+	public static final int NESTED_DEPTH = 8;
+	public static final String KEY_NESTED = "Nested";
+
+	private PlistCorpus() {
+		throw new UnsupportedOperationException();
+	}
+
+	public static int getEntryCount(String size) {
+		switch (size) {
+			case SIZE_SMALL: {
+				//a typical Info.plist
+				return 24;
+			}
+			case SIZE_MEDIUM: {
+				return 1_000;
+			}
+			case SIZE_HUGE: {
+				return 50_000;
+			}
+			default: {
+				throw new IllegalArgumentException(size);
+			}
+		}
+	}
+
+	public static String getKey(int index) {
+		return "Key" + index;
+	}
+
+	/**
+	 * Gets a key that is present in the generated plist of the given size.
+	 */
+	public static String getLookupKey(String size) {
+		return getKey(getEntryCount(size) / 2);
+	}
+
+	public static TreeMap<String, Object> createContents(String size) {
+		int count = getEntryCount(size);
+		TreeMap<String, Object> result = new TreeMap<>();
+		for (int i = 0; i < count; i++) {
+			result.put(getKey(i), createValue(i));
+		}
+		TreeMap<String, Object> nested = new TreeMap<>();
+		nested.put("Value", "leaf");
+		for (int i = NESTED_DEPTH - 1; i > 0; i--) {
+			TreeMap<String, Object> parent = new TreeMap<>();
+			parent.put("Level" + i, nested);
+			nested = parent;
+		}
+		result.put(KEY_NESTED, nested);
+		return result;
+	}
+
+	/**
+	 * Gets the key path components to the leaf of the nested dictionary chain.
+	 */
+	public static String getNestedKeyPath() {
+		StringBuilder sb = new StringBuilder(KEY_NESTED);
+		for (int i = 1; i < NESTED_DEPTH; i++) {
+			sb.append(".Level");
+			sb.append(i);
+		}
+		sb.append(".Value");
+		return sb.toString();
+	}
+
+	public static byte[] serialize(String size, int format) {
+		try (Plist plist = Plist.createWithContents(createContents(size), Plist.BACKEND_JAVA)) {
+			return plist.serialize(format);
+		}
+	}
+
+	private static Object createValue(int index) {
+		switch (index % 6) {
+			case 0: {
+				return "com.example.value." + index;
+			}
+			case 1: {
+				return (long) index * 31;
+			}
+			case 2: {
+				return (index & 8) == 0;
+			}
+			case 3: {
+				return index / 7.0;
+			}
+			case 4: {
+				return new Object[] { "first" + index, "second" + index, (long) index };
+			}
+			default: {
+				TreeMap<String, Object> dict = new TreeMap<>();
+				dict.put("Name", "Item" + index);
+				dict.put("Index", (long) index);
+				return dict;
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package testing.saker.apple.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.apple.impl.plist.InsertPlistWorkerTaskFactory;
+import saker.apple.impl.plist.PlistValueOption;
+
+/**
+ * Benchmarks of the conversion of the plist values specified for the insertion task to the plist value
+ * representation.
+ * <p>
+ * Run the same way as {@link PlistBenchmarks}.
+ */
+public class PlistValueConversionBenchmarks {
+	public static void main(String[] args) throws Exception {
+		BenchmarkRunner runner = new BenchmarkRunner(args);
+		for (String size : PlistCorpus.SIZES) {
+			PlistValueOption option = createOption(PlistCorpus.getEntryCount(size));
+			runner.run("to-object/" + size, () -> InsertPlistWorkerTaskFactory.toObject(option, Collections.emptyMap()));
+		}
+		System.out.println(runner);
+	}
+
+	private static PlistValueOption createOption(int count) {
+		Map<String, PlistValueOption> dict = new TreeMap<>();
+		for (int i = 0; i < count; i++) {
+			PlistValueOption val;
+			switch (i % 4) {
+				case 0: {
+					val = PlistValueOption.create("com.example.value." + i);
+					break;
+				}
+				case 1: {
+					val = PlistValueOption.create((long) i);
+					break;
+				}
+				case 2: {
+					val = PlistValueOption.create((i & 8) == 0);
+					break;
+				}
+				default: {
+					List<PlistValueOption> list = new ArrayList<>();
+					list.add(PlistValueOption.create("first" + i));
+					list.add(PlistValueOption.create(i / 7.0));
+					val = PlistValueOption.create(list);
+					break;
+				}
+			}
+			dict.put(PlistCorpus.getKey(i), val);
+		}
+		return PlistValueOption.create(dict);
+	}
+}
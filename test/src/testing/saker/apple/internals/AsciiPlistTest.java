@@ -0,0 +1,98 @@
+package testing.saker.apple.internals;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import saker.apple.impl.plist.lib.AsciiPlistReader;
+import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.XmlPlistStreamTransformer;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class AsciiPlistTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		String strings = "/* Localizable.strings */\n" //
+				+ "\"Hello\" = \"Szia\";\n" //
+				+ "// line comment\n" //
+				+ "\"Quote\" = \"say \\\"hi\\\"\\n\\U00e9\\101\";\n" //
+				+ "\"Same\";\n";
+		byte[] utf16 = strings.getBytes(StandardCharsets.UTF_16LE);
+		byte[] withbom = new byte[utf16.length + 2];
+		withbom[0] = (byte) 0xFF;
+		withbom[1] = (byte) 0xFE;
+		System.arraycopy(utf16, 0, withbom, 2, utf16.length);
+		for (byte[] bytes : new byte[][] { strings.getBytes(StandardCharsets.UTF_8), withbom,
+				strings.getBytes(StandardCharsets.UTF_16BE) }) {
+			assertTrue(AsciiPlistReader.isAsciiPlist(ByteBuffer.wrap(bytes)));
+			try (Plist plist = Plist.readFrom(ByteBuffer.wrap(bytes), Plist.BACKEND_JAVA)) {
+				assertEquals(plist.get("Hello"), "Szia");
+				assertEquals(plist.get("Quote"), "say \"hi\"\n\u00e9A");
+				assertEquals(plist.get("Same"), "Same");
+			}
+		}
+		assertEquals(Plist.lookup(ByteBuffer.wrap(withbom), "Hello"), "Szia");
+
+		String project = "// !$*UTF8*$!\n" //
+				+ "{\n" //
+				+ "\tarchiveVersion = 1;\n" //
+				+ "\tobjects = {\n" //
+				+ "\t\t13B07F961A680F5B00A75B9A /* App.app */ = {isa = PBXFileReference; path = App.app; };\n" //
+				+ "\t};\n" //
+				+ "\tlist = (a, \"b c\", ( ), {}, );\n" //
+				+ "\tdata = <0fA1 ff\n00>;\n" //
+				+ "}\n";
+		try (Plist plist = Plist.readFrom(ByteBuffer.wrap(project.getBytes(StandardCharsets.UTF_8)),
+				Plist.BACKEND_JAVA)) {
+			assertEquals(plist.getFormat(), Plist.FORMAT_XML);
+			assertEquals(plist.get("archiveVersion"), "1");
+			Map<?, ?> obj = (Map<?, ?>) ((Map<?, ?>) plist.get("objects")).get("13B07F961A680F5B00A75B9A");
+			assertEquals(obj.get("isa"), "PBXFileReference");
+			assertEquals(obj.get("path"), "App.app");
+			Object[] list = (Object[]) plist.get("list");
+			assertEquals(list.length, 4);
+			assertEquals(list[1], "b c");
+			assertEquals(((Object[]) list[2]).length, 0);
+			assertTrue(((Map<?, ?>) list[3]).isEmpty());
+			assertTrue(Arrays.equals((byte[]) plist.get("data"), new byte[] { 0x0f, (byte) 0xa1, (byte) 0xff, 0 }));
+
+			//can be converted to the other formats
+			byte[] binary = plist.serialize(Plist.FORMAT_BINARY);
+			try (Plist read = Plist.readFrom(ByteBuffer.wrap(binary), Plist.BACKEND_JAVA)) {
+				assertTrue(Arrays.equals(read.getContentHash(), plist.getContentHash()));
+			}
+		}
+
+		try (Plist plist = Plist.readFrom(ByteBuffer.wrap(new byte[0]), Plist.BACKEND_JAVA)) {
+			assertEquals(plist.get("x"), null);
+		}
+
+		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<plist version=\"1.0\"><dict/></plist>";
+		try (InputStream is = new BufferedInputStream(
+				new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))) {
+			assertTrue(XmlPlistStreamTransformer.isXmlPlist(is));
+			assertEquals(is.read(), (int) '<');
+		}
+		try (InputStream is = new BufferedInputStream(new ByteArrayInputStream(withbom))) {
+			assertFalse(XmlPlistStreamTransformer.isXmlPlist(is));
+		}
+
+		for (String invalid : new String[] { "{ a = b }", "{ a = b;", "( a b )", "{ a = <0g>; }", "{ a = \"b; }",
+				"/* a", "{ (a) = b; }", "a = b; c", "{} x" }) {
+			try {
+				AsciiPlistReader.read(ByteBuffer.wrap(invalid.getBytes(StandardCharsets.UTF_8)));
+				fail("Parsed: " + invalid);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package testing.saker.apple.internals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import saker.apple.impl.BatchFileStates;
+import saker.apple.impl.BatchFileStates.FileState;
+import saker.build.file.content.ContentDescriptor;
+import saker.build.file.content.HashContentDescriptor;
+import saker.build.file.path.SakerPath;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+/**
+ * Tests the incremental bookkeeping of the batch worker tasks.
+ */
+@SakerTest
+public class BatchFileStatesTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		SakerPath a = SakerPath.valueOf("a.plist");
+		SakerPath b = SakerPath.valueOf("dir/b.plist");
+		ContentDescriptor ain = contents(1);
+		ContentDescriptor aout = contents(2);
+		ContentDescriptor bin = contents(3);
+		ContentDescriptor bout = contents(4);
+
+		NavigableMap<SakerPath, FileState> files = new TreeMap<>();
+		files.put(a, new FileState(ain, aout));
+		files.put(b, new FileState(bin, bout));
+		BatchFileStates prevstate = new BatchFileStates(1, files);
+
+		//no previous build
+		assertTrue(BatchFileStates.getReusableFiles(null, 1).isEmpty());
+		assertTrue(BatchFileStates.getRemovedFiles(null, Collections.emptySet()).isEmpty());
+
+		//the files are reprocessed if the configuration changes
+		assertEquals(BatchFileStates.getReusableFiles(prevstate, 1), files);
+		assertTrue(BatchFileStates.getReusableFiles(prevstate, 0).isEmpty());
+		assertTrue(BatchFileStates.getReusableFiles(prevstate, null).isEmpty());
+
+		FileState astate = BatchFileStates.getReusableFiles(prevstate, 1).get(a);
+		//unchanged
+		assertTrue(BatchFileStates.isUpToDate(astate, contents(1), contents(2)));
+		//modified input
+		assertFalse(BatchFileStates.isUpToDate(astate, contents(5), contents(2)));
+		//modified or deleted output
+		assertFalse(BatchFileStates.isUpToDate(astate, contents(1), contents(5)));
+		assertFalse(BatchFileStates.isUpToDate(astate, contents(1), null));
+		//new input
+		assertFalse(BatchFileStates.isUpToDate(null, contents(1), contents(2)));
+
+		//the outputs of the removed inputs are deleted even if the configuration changed
+		assertEquals(BatchFileStates.getRemovedFiles(prevstate, new TreeSet<>(Arrays.asList(a, b))),
+				Collections.emptySortedSet());
+		assertEquals(BatchFileStates.getRemovedFiles(prevstate, Collections.singleton(a)),
+				new TreeSet<>(Collections.singleton(b)));
+		assertEquals(BatchFileStates.getRemovedFiles(prevstate, Collections.singleton(SakerPath.valueOf("c.plist"))),
+				new TreeSet<>(Arrays.asList(a, b)));
+
+		//the state is kept between builds
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeObject(prevstate);
+		}
+		BatchFileStates readstate;
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+			readstate = (BatchFileStates) ois.readObject();
+		}
+		assertEquals(readstate.getConfiguration(), 1);
+		assertEquals(readstate.getFiles().keySet(), files.keySet());
+		assertTrue(BatchFileStates.isUpToDate(BatchFileStates.getReusableFiles(readstate, 1).get(b), contents(3),
+				contents(4)));
+	}
+
+	private static ContentDescriptor contents(int value) {
+		return HashContentDescriptor.createWithHash(new byte[] { (byte) value });
+	}
+}
@@ -0,0 +1,129 @@
+package testing.saker.apple.internals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+
+import saker.apple.impl.iphoneos.sign.CmsSignedData;
+import saker.apple.impl.plist.lib.Plist;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+import testing.saker.build.tests.EnvironmentTestCase;
+
+@SakerTest
+public class CmsSignedDataTest extends SakerTestCase {
+	private static final byte[] OID_SIGNED_DATA = { 0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d,
+			0x01, 0x07, 0x02 };
+	private static final byte[] OID_DATA = { 0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01,
+			0x07, 0x01 };
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		testSignedProfile();
+		testBerEncoding();
+		testMalformed();
+	}
+
+	private void testSignedProfile() throws Throwable {
+		//test.mobileprovision is a plist signed with a self-signed test certificate using:
+		//openssl cms -sign -nodetach -binary -outform DER -md sha256
+		byte[] bytes = Files.readAllBytes(getWorkingDirectory().resolve("test.mobileprovision"));
+		CmsSignedData signeddata = CmsSignedData.decode(ByteBuffer.wrap(bytes));
+
+		Object entitlements = Plist.lookup(ByteBuffer.wrap(signeddata.getContent()), "Entitlements");
+		assertTrue(entitlements instanceof Map);
+		assertEquals(((Map<?, ?>) entitlements).get("application-identifier"), "TEAMID.com.example.app");
+		assertEquals(((Map<?, ?>) entitlements).get("get-task-allow"), true);
+		assertEquals(Plist.lookup(ByteBuffer.wrap(signeddata.getContent()), "Name"), "Test Profile");
+
+		List<X509Certificate> certs = signeddata.getCertificates();
+		assertEquals(certs.size(), 1);
+		assertTrue(certs.get(0).getSubjectX500Principal().getName().contains("saker.apple test signer"));
+	}
+
+	private void testBerEncoding() throws Throwable {
+		//indefinite lengths and a constructed octet string
+		byte[] content = "<plist version=\"1.0\"><string>abc</string></plist>".getBytes(StandardCharsets.UTF_8);
+		int half = content.length / 2;
+		byte[] octets = indefinite(0x24, der(0x04, slice(content, 0, half)),
+				der(0x04, slice(content, half, content.length)));
+		byte[] encapcontentinfo = indefinite(0x30, OID_DATA, indefinite(0xa0, octets));
+		byte[] signeddata = indefinite(0x30, der(0x02, new byte[] { 1 }), der(0x31, new byte[0]), encapcontentinfo,
+				der(0x31, new byte[0]));
+		byte[] contentinfo = indefinite(0x30, OID_SIGNED_DATA, indefinite(0xa0, signeddata));
+
+		CmsSignedData decoded = CmsSignedData.decode(ByteBuffer.wrap(contentinfo));
+		assertEquals(new String(decoded.getContent(), StandardCharsets.UTF_8),
+				new String(content, StandardCharsets.UTF_8));
+		assertTrue(decoded.getCertificateEncodings().isEmpty());
+
+		//detached content
+		byte[] detached = der(0x30, OID_SIGNED_DATA, der(0xa0, der(0x30, der(0x02, new byte[] { 1 }),
+				der(0x31, new byte[0]), der(0x30, OID_DATA), der(0xa0, der(0x30, new byte[0])), der(0x31, new byte[0]))));
+		CmsSignedData detacheddecoded = CmsSignedData.decode(ByteBuffer.wrap(detached));
+		assertNull(detacheddecoded.getContent());
+		assertEquals(detacheddecoded.getCertificateEncodings().size(), 1);
+	}
+
+	private static void testMalformed() throws Throwable {
+		byte[][] inputs = { {}, { 0x30 }, { 0x30, 0x05, 0x06 }, der(0x30, OID_DATA, der(0xa0, der(0x30))),
+				der(0x31, OID_SIGNED_DATA), { 0x30, (byte) 0x80, 0x06, 0x01 }, };
+		for (byte[] input : inputs) {
+			try {
+				CmsSignedData.decode(ByteBuffer.wrap(input));
+				fail("Decoded malformed input of length: " + input.length);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private static byte[] der(int tag, byte[]... contents) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for (byte[] c : contents) {
+			body.write(c);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(tag);
+		int len = body.size();
+		if (len < 0x80) {
+			out.write(len);
+		} else if (len < 0x100) {
+			out.write(0x81);
+			out.write(len);
+		} else {
+			out.write(0x82);
+			out.write(len >>> 8);
+			out.write(len);
+		}
+		body.writeTo(out);
+		return out.toByteArray();
+	}
+
+	private static byte[] indefinite(int tag, byte[]... contents) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(tag);
+		out.write(0x80);
+		for (byte[] c : contents) {
+			out.write(c);
+		}
+		out.write(0);
+		out.write(0);
+		return out.toByteArray();
+	}
+
+	private static byte[] slice(byte[] array, int start, int end) {
+		byte[] result = new byte[end - start];
+		System.arraycopy(array, start, result, 0, result.length);
+		return result;
+	}
+
+	private Path getWorkingDirectory() {
+		return EnvironmentTestCase.getTestingBaseWorkingDirectory().resolve(getClass().getName().replace('.', '/'));
+	}
+}
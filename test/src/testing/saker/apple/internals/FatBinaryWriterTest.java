@@ -0,0 +1,276 @@
+package testing.saker.apple.internals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import saker.apple.impl.lipo.FatBinaryWriter;
+import saker.apple.impl.lipo.FatBinaryWriter.Slice;
+import saker.apple.impl.macho.MachOFile;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class FatBinaryWriterTest extends SakerTestCase {
+	private static final int CPU_TYPE_X86 = 7;
+	private static final int CPU_TYPE_X86_64 = 0x01000007;
+	private static final int CPU_TYPE_ARM64 = 0x0100000c;
+
+	private static final int MH_OBJECT = 1;
+	private static final int MH_EXECUTE = 2;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path dir = Files.createTempDirectory("saker.apple-fat");
+		try {
+			runTest(dir);
+		} finally {
+			try (Stream<Path> files = Files.walk(dir)) {
+				for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(p);
+				}
+			}
+		}
+	}
+
+	private static void runTest(Path dir) throws Exception {
+		Path x8664 = write(dir, "x86_64", createMachO(true, CPU_TYPE_X86_64, 3, MH_EXECUTE, 5000, 0,
+				0x100000000L, 0x100001000L));
+		Path arm64 = write(dir, "arm64", createMachO(true, CPU_TYPE_ARM64, 0, MH_EXECUTE, 7000, 0, 0x100000000L,
+				0x100004000L));
+		Path i386 = write(dir, "i386", createMachO(false, CPU_TYPE_X86, 3, MH_EXECUTE, 3000, 0x1000));
+		Path arm64obj = write(dir, "arm64.o", createObject(CPU_TYPE_ARM64, 0, 2, 4, 3));
+
+		assertEquals(readSingle(x8664).getAlign(), 12);
+		assertEquals(readSingle(arm64).getAlign(), 14);
+		assertEquals(readSingle(i386).getAlign(), 12);
+		assertEquals(readSingle(arm64obj).getAlign(), 4);
+		assertEquals(readSingle(i386).getCpuType(), CPU_TYPE_X86);
+
+		assertNull(FatBinaryWriter.readSlices(write(dir, "text", "not a binary file".getBytes())));
+		//java class file
+		assertNull(FatBinaryWriter.readSlices(write(dir, "class",
+				new byte[] { (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 0, 0, 52, 0, 0 })));
+
+		Path fat = dir.resolve("fat");
+		List<Slice> inputs = new ArrayList<>();
+		inputs.add(readSingle(arm64));
+		inputs.add(readSingle(x8664));
+		inputs.add(readSingle(i386));
+		List<Slice> written = FatBinaryWriter.write(inputs, fat);
+
+		//ordered by alignment, stable for the same alignments
+		assertEquals(written.get(0).getCpuType(), CPU_TYPE_X86_64);
+		assertEquals(written.get(1).getCpuType(), CPU_TYPE_X86);
+		assertEquals(written.get(2).getCpuType(), CPU_TYPE_ARM64);
+
+		List<Slice> read = FatBinaryWriter.readSlices(fat);
+		assertEquals(read.size(), 3);
+		for (int i = 0; i < read.size(); i++) {
+			Slice s = read.get(i);
+			assertEquals(s.getOffset(), written.get(i).getOffset());
+			assertEquals(s.getSize(), written.get(i).getSize());
+			assertEquals(s.getAlign(), written.get(i).getAlign());
+			assertEquals(s.getOffset() % (1 << s.getAlign()), 0L);
+		}
+		byte[] fatbytes = Files.readAllBytes(fat);
+		assertEquals(ByteBuffer.wrap(fatbytes).getInt(), MachOFile.FAT_MAGIC);
+		assertSliceContents(fatbytes, read.get(0), x8664);
+		assertSliceContents(fatbytes, read.get(1), i386);
+		assertSliceContents(fatbytes, read.get(2), arm64);
+		//padding is zero
+		for (int i = 8 + 3 * 20; i < read.get(0).getOffset(); i++) {
+			assertEquals(fatbytes[i], (byte) 0);
+		}
+
+		//extract slices back to thin files
+		Map<Path, Slice> extracts = new LinkedHashMap<>();
+		extracts.put(dir.resolve("extract-arm64"), read.get(2));
+		extracts.put(dir.resolve("extract-i386"), read.get(1));
+		FatBinaryWriter.extract(fat, extracts);
+		assertTrue(Arrays.equals(Files.readAllBytes(dir.resolve("extract-arm64")), Files.readAllBytes(arm64)));
+		assertTrue(Arrays.equals(Files.readAllBytes(dir.resolve("extract-i386")), Files.readAllBytes(i386)));
+
+		//fat inputs are split into their slices
+		Path fat2 = dir.resolve("fat2");
+		List<Slice> fatinputs = new ArrayList<>(FatBinaryWriter.readSlices(fat));
+		fatinputs.remove(2);
+		fatinputs.add(readSingle(arm64obj));
+		FatBinaryWriter.write(fatinputs, fat2);
+		List<Slice> read2 = FatBinaryWriter.readSlices(fat2);
+		assertEquals(read2.size(), 3);
+		assertEquals(read2.get(0).getCpuType(), CPU_TYPE_ARM64);
+		assertSliceContents(Files.readAllBytes(fat2), read2.get(0), arm64obj);
+
+		//duplicate architectures
+		List<Slice> duplicates = new ArrayList<>(FatBinaryWriter.readSlices(fat));
+		duplicates.add(readSingle(arm64obj));
+		try {
+			FatBinaryWriter.write(duplicates, dir.resolve("dup"));
+			fail("Duplicate architectures were accepted.");
+		} catch (IllegalArgumentException e) {
+		}
+
+		//in place update of the changed slices
+		Path upd = dir.resolve("upd");
+		List<Slice> updslices = FatBinaryWriter.write(Arrays.asList(readSingle(arm64), readSingle(x8664)), upd);
+		Path x8664big = write(dir, "x86_64-big", createMachO(true, CPU_TYPE_X86_64, 3, MH_EXECUTE, 6000, 0,
+				0x100000000L, 0x100001000L));
+		BitSet firstchanged = new BitSet();
+		firstchanged.set(0);
+		List<Slice> updated = FatBinaryWriter.update(upd, updslices, sorted(x8664big, arm64), firstchanged);
+		assertNonNull(updated);
+		assertEquals(updated.get(0).getOffset(), updslices.get(0).getOffset());
+		assertEquals(updated.get(1).getOffset(), updslices.get(1).getOffset());
+		assertEquals(FatBinaryWriter.readSlices(upd).get(0).getSize(), 6000L);
+		byte[] updbytes = Files.readAllBytes(upd);
+		assertSliceContents(updbytes, updated.get(0), x8664big);
+		assertSliceContents(updbytes, updated.get(1), arm64);
+
+		//the gap after a shrunk slice is zero filled
+		updated = FatBinaryWriter.update(upd, updated, sorted(x8664, arm64), firstchanged);
+		assertNonNull(updated);
+		updbytes = Files.readAllBytes(upd);
+		assertSliceContents(updbytes, updated.get(0), x8664);
+		assertSliceContents(updbytes, updated.get(1), arm64);
+		for (long i = updated.get(0).getOffset() + updated.get(0).getSize(); i < updated.get(1).getOffset(); i++) {
+			assertEquals(updbytes[(int) i], (byte) 0);
+		}
+
+		//doesn't fit before the next slice
+		Path x8664huge = write(dir, "x86_64-huge", createMachO(true, CPU_TYPE_X86_64, 3, MH_EXECUTE, 13000, 0,
+				0x100000000L, 0x100001000L));
+		assertNull(FatBinaryWriter.update(upd, updated, sorted(x8664huge, arm64), firstchanged));
+		assertTrue(Arrays.equals(Files.readAllBytes(upd), updbytes));
+
+		//the last slice can grow and shrink
+		Path arm64big = write(dir, "arm64-big", createMachO(true, CPU_TYPE_ARM64, 0, MH_EXECUTE, 9000, 0,
+				0x100000000L, 0x100004000L));
+		BitSet lastchanged = new BitSet();
+		lastchanged.set(1);
+		updated = FatBinaryWriter.update(upd, updated, sorted(x8664, arm64big), lastchanged);
+		assertNonNull(updated);
+		updbytes = Files.readAllBytes(upd);
+		assertEquals((long) updbytes.length, updated.get(1).getOffset() + 9000);
+		assertSliceContents(updbytes, updated.get(1), arm64big);
+		updated = FatBinaryWriter.update(upd, updated, sorted(x8664, arm64), lastchanged);
+		assertNonNull(updated);
+		//same as a clean write
+		Path clean = dir.resolve("clean");
+		FatBinaryWriter.write(Arrays.asList(readSingle(x8664), readSingle(arm64)), clean);
+		assertTrue(Arrays.equals(Files.readAllBytes(upd), Files.readAllBytes(clean)));
+
+		//modified output
+		write(dir, "upd", Arrays.copyOf(Files.readAllBytes(upd), (int) Files.size(upd) + 1));
+		assertNull(FatBinaryWriter.update(upd, updated, sorted(x8664big, arm64), firstchanged));
+
+		//truncated load commands
+		byte[] truncated = Arrays.copyOf(Files.readAllBytes(x8664), 40);
+		try {
+			FatBinaryWriter.readSlices(write(dir, "truncated", truncated));
+			fail("Truncated file was accepted.");
+		} catch (IOException e) {
+		}
+	}
+
+	private static void assertSliceContents(byte[] fatbytes, Slice slice, Path input) throws IOException {
+		byte[] expected = Files.readAllBytes(input);
+		assertEquals(slice.getSize(), (long) expected.length);
+		assertTrue(Arrays.equals(Arrays.copyOfRange(fatbytes, (int) slice.getOffset(),
+				(int) (slice.getOffset() + slice.getSize())), expected));
+	}
+
+	private static List<Slice> sorted(Path... paths) throws IOException {
+		List<Slice> result = new ArrayList<>();
+		for (Path p : paths) {
+			result.add(readSingle(p));
+		}
+		return FatBinaryWriter.sort(result);
+	}
+
+	private static Slice readSingle(Path path) throws IOException {
+		List<Slice> slices = FatBinaryWriter.readSlices(path);
+		assertEquals(slices.size(), 1);
+		return slices.get(0);
+	}
+
+	private static Path write(Path dir, String name, byte[] contents) throws IOException {
+		Path result = dir.resolve(name);
+		Files.write(result, contents);
+		return result;
+	}
+
+	/**
+	 * Creates a little endian Mach-O file with segments at the given addresses.
+	 */
+	private static byte[] createMachO(boolean is64, int cputype, int cpusubtype, int filetype, int size,
+			long... segmentaddresses) {
+		int segsize = is64 ? 72 : 56;
+		int headersize = is64 ? 32 : 28;
+		ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(is64 ? MachOFile.MH_MAGIC_64 : MachOFile.MH_MAGIC);
+		buf.putInt(cputype);
+		buf.putInt(cpusubtype);
+		buf.putInt(filetype);
+		buf.putInt(segmentaddresses.length);
+		buf.putInt(segmentaddresses.length * segsize);
+		buf.putInt(0);
+		buf.position(headersize);
+		for (long addr : segmentaddresses) {
+			int start = buf.position();
+			buf.putInt(is64 ? 0x19 : 0x1);
+			buf.putInt(segsize);
+			buf.position(start + 24);
+			if (is64) {
+				buf.putLong(addr);
+			} else {
+				buf.putInt((int) addr);
+			}
+			buf.position(start + segsize);
+		}
+		fillRemaining(buf);
+		return buf.array();
+	}
+
+	/**
+	 * Creates a little endian 64 bit object file with sections of the given alignments.
+	 */
+	private static byte[] createObject(int cputype, int cpusubtype, int... sectionaligns) {
+		int cmdsize = 72 + sectionaligns.length * 80;
+		ByteBuffer buf = ByteBuffer.allocate(32 + cmdsize + 500).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(MachOFile.MH_MAGIC_64);
+		buf.putInt(cputype);
+		buf.putInt(cpusubtype);
+		buf.putInt(MH_OBJECT);
+		buf.putInt(1);
+		buf.putInt(cmdsize);
+		buf.putInt(0);
+		buf.putInt(0);
+		buf.putInt(0x19);
+		buf.putInt(cmdsize);
+		buf.position(32 + 64);
+		buf.putInt(sectionaligns.length);
+		for (int i = 0; i < sectionaligns.length; i++) {
+			buf.putInt(32 + 72 + i * 80 + 52, sectionaligns[i]);
+		}
+		buf.position(32 + cmdsize);
+		fillRemaining(buf);
+		return buf.array();
+	}
+
+	private static void fillRemaining(ByteBuffer buf) {
+		for (int i = 0; buf.hasRemaining(); i++) {
+			buf.put((byte) (i * 31 + 7));
+		}
+	}
+}
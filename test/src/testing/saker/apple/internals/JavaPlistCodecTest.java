@@ -0,0 +1,153 @@
+package testing.saker.apple.internals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.PlistSnapshot;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class JavaPlistCodecTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		TreeMap<String, Object> nested = new TreeMap<>();
+		nested.put("str", "value");
+		nested.put("unicode", "h\u00e9llo \u2713");
+		nested.put("escaped", "<a & b>");
+
+		TreeMap<String, Object> contents = new TreeMap<>();
+		contents.put("CFBundleName", "App");
+		contents.put("int", 42L);
+		contents.put("negative", -5L);
+		contents.put("big", 1L << 40);
+		contents.put("real", 1.5d);
+		contents.put("bool", true);
+		contents.put("array", new Object[] { "a", "b", "a", 1L, new Object[0] });
+		contents.put("dict", nested);
+		contents.put("data", new byte[] { 0, 1, 2, 3 });
+
+		try (Plist plist = Plist.createWithContents(contents, Plist.BACKEND_JAVA)) {
+			byte[] binary = plist.serialize(Plist.FORMAT_BINARY);
+			byte[] xml = plist.serialize(Plist.FORMAT_XML);
+			assertEquals(new String(binary, 0, 8, "US-ASCII"), "bplist00");
+
+			try (Plist binplist = Plist.readFrom(new ByteArrayInputStream(binary), Plist.BACKEND_JAVA)) {
+				assertEquals(binplist.getFormat(), Plist.FORMAT_BINARY);
+				assertContents(binplist, nested);
+				//serializing the same contents again should yield the same bytes
+				assertEquals(Arrays.toString(binplist.serialize(Plist.FORMAT_SAME_AS_INPUT)),
+						Arrays.toString(binary));
+			}
+			try (Plist xmlplist = Plist.readFrom(new ByteArrayInputStream(xml), Plist.BACKEND_JAVA)) {
+				assertEquals(xmlplist.getFormat(), Plist.FORMAT_XML);
+				assertContents(xmlplist, nested);
+				assertEquals(new String(xmlplist.serialize(Plist.FORMAT_SAME_AS_INPUT), "UTF-8"),
+						new String(xml, "UTF-8"));
+			}
+
+			//direct buffer input and channel output
+			ByteBuffer direct = ByteBuffer.allocateDirect(binary.length);
+			direct.put(binary).flip();
+			try (Plist bufplist = Plist.readFrom(direct, Plist.BACKEND_JAVA)) {
+				assertEquals(direct.position(), 0);
+				assertContents(bufplist, nested);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				bufplist.serialize(Plist.FORMAT_XML, Channels.newChannel(out));
+				assertEquals(new String(out.toByteArray(), "UTF-8"), new String(xml, "UTF-8"));
+			}
+
+			//the content hash doesn't depend on the format
+			try (Plist binplist = Plist.readFrom(ByteBuffer.wrap(binary), Plist.BACKEND_JAVA);
+					Plist xmlplist = Plist.readFrom(ByteBuffer.wrap(xml), Plist.BACKEND_JAVA)) {
+				assertEquals(Arrays.toString(binplist.getContentHash()), Arrays.toString(plist.getContentHash()));
+				assertEquals(Arrays.toString(xmlplist.getContentHash()), Arrays.toString(plist.getContentHash()));
+				xmlplist.set("real", 2.5d);
+				assertFalse(Arrays.equals(xmlplist.getContentHash(), plist.getContentHash()));
+			}
+			//nor on the order of the keys in the input
+			String reordered = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><plist version=\"1.0\"><dict>"
+					+ "<key>b</key><integer>1</integer><key>a</key><array><string>x</string></array></dict></plist>";
+			TreeMap<String, Object> sorted = new TreeMap<>();
+			sorted.put("a", new Object[] { "x" });
+			sorted.put("b", 1L);
+			try (Plist reorderedplist = Plist.readFrom(new ByteArrayInputStream(reordered.getBytes("UTF-8")),
+					Plist.BACKEND_JAVA);
+					Plist sortedplist = Plist.createWithContents(sorted, Plist.BACKEND_JAVA)) {
+				assertEquals(Arrays.toString(reorderedplist.getContentHash()),
+						Arrays.toString(sortedplist.getContentHash()));
+				assertEquals(new String(reorderedplist.serialize(Plist.FORMAT_XML), "UTF-8"),
+						new String(sortedplist.serialize(Plist.FORMAT_XML), "UTF-8"));
+			}
+
+			//object count in the trailer that would overflow the offset table bounds check
+			byte[] malformed = binary.clone();
+			ByteBuffer.wrap(malformed).putLong(malformed.length - 32 + 8, Long.MAX_VALUE / 2 + 1);
+			try (Plist p = Plist.readFrom(ByteBuffer.wrap(malformed), Plist.BACKEND_JAVA)) {
+				fail("Malformed plist was accepted.");
+			} catch (IOException e) {
+			}
+
+			//lazy lookups
+			for (byte[] encoded : new byte[][] { binary, xml }) {
+				ByteBuffer buf = ByteBuffer.wrap(encoded);
+				assertEquals(Plist.lookup(buf, "CFBundleName"), "App");
+				assertEquals(Plist.lookup(buf, "dict", "escaped"), "<a & b>");
+				assertEquals(Plist.lookup(buf, "dict"), nested);
+				assertEquals(Plist.lookup(buf, "array", "3"), 1L);
+				assertEquals(Plist.lookup(buf, "array", "5"), null);
+				assertEquals(Plist.lookup(buf, "array", "x"), null);
+				assertEquals(Plist.lookup(buf, "CFBundleName", "x"), null);
+				assertEquals(Plist.lookup(buf, "nonexistent"), null);
+				assertEquals(buf.position(), 0);
+			}
+
+			//snapshot handles are independent
+			PlistSnapshot snapshot = PlistSnapshot.readFrom(ByteBuffer.wrap(binary));
+			try (Plist first = snapshot.open();
+					Plist second = snapshot.open()) {
+				first.set("CFBundleName", "Modified");
+				first.remove("int");
+				assertEquals(first.get("CFBundleName"), "Modified");
+				assertEquals(first.get("int"), null);
+				assertContents(second, nested);
+			}
+			try (Plist third = snapshot.open()) {
+				assertContents(third, nested);
+			}
+			assertEquals(snapshot.lookup("dict", "str"), "value");
+			assertEquals(snapshot.lookup("array", "1"), "b");
+
+			TreeMap<String, Object> patch = new TreeMap<>();
+			patch.put("CFBundleName", "Patched");
+			patch.put("int", null);
+			patch.put("added", new Object[] { nested });
+			plist.applyPatch(patch);
+			assertEquals(plist.get("CFBundleName"), "Patched");
+			assertEquals(plist.get("int"), null);
+			assertEquals(((Object[]) plist.get("added"))[0], nested);
+		}
+	}
+
+	private static void assertContents(Plist plist, Map<String, Object> nested) {
+		assertEquals(plist.get("CFBundleName"), "App");
+		assertEquals(plist.get("int"), 42L);
+		assertEquals(plist.get("negative"), -5L);
+		assertEquals(plist.get("big"), 1L << 40);
+		assertEquals(plist.get("real"), 1.5d);
+		assertEquals(plist.get("bool"), true);
+		assertEquals(Arrays.deepToString((Object[]) plist.get("array")), "[a, b, a, 1, []]");
+		assertEquals(plist.get("dict"), nested);
+		assertEquals(Arrays.toString((byte[]) plist.get("data")), "[0, 1, 2, 3]");
+		assertEquals(plist.get("nonexistent"), null);
+	}
+
+}
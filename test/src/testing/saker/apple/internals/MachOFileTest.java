@@ -0,0 +1,249 @@
+package testing.saker.apple.internals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import saker.apple.impl.lipo.FatBinaryWriter;
+import saker.apple.impl.macho.MachOArchitectureIndex;
+import saker.apple.impl.macho.MachOArchitectures;
+import saker.apple.impl.macho.MachOBuildVersion;
+import saker.apple.impl.macho.MachOFile;
+import saker.apple.impl.macho.MachOImage;
+import saker.apple.impl.macho.MachOSegment;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class MachOFileTest extends SakerTestCase {
+	private static final UUID DYLIB_UUID = UUID.fromString("01234567-89ab-cdef-0011-223344556677");
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path dir = Files.createTempDirectory("saker.apple-macho");
+		try {
+			runTest(dir);
+		} finally {
+			try (Stream<Path> files = Files.walk(dir)) {
+				for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(p);
+				}
+			}
+		}
+	}
+
+	private static void runTest(Path dir) throws Exception {
+		byte[] arm64bytes = createDylib(MachOArchitectures.CPU_TYPE_ARM64, 0);
+		Path arm64 = write(dir, "arm64", arm64bytes);
+		Path x8664 = write(dir, "x86_64", createDylib(MachOArchitectures.CPU_TYPE_X86_64, 3));
+		Path armv7 = write(dir, "armv7", createExecutable32(MachOArchitectures.CPU_TYPE_ARM, 9));
+
+		MachOFile arm64file = MachOFile.read(arm64);
+		assertFalse(arm64file.isFat());
+		assertEquals(arm64file.getArchitectures(), Arrays.asList("arm64"));
+		MachOImage img = arm64file.getImages().get(0);
+		assertTrue(img.is64());
+		assertEquals(img.getFileType(), MachOImage.MH_DYLIB);
+		assertEquals(img.getOffset(), 0L);
+		assertEquals(img.getSize(), (long) arm64bytes.length);
+		assertEquals(img.getAlign(), 14);
+		assertEquals(img.getUUID(), DYLIB_UUID);
+		assertEquals(img.getInstallName(), "@rpath/libtest.dylib");
+		assertEquals(img.getLinkedLibraries(),
+				Arrays.asList("/usr/lib/libSystem.B.dylib", "/System/Library/Frameworks/UIKit.framework/UIKit"));
+		assertEquals(img.getLoadCommands().size(), 6);
+		assertEquals(img.getLoadCommands().get(1).getCommand(), MachOImage.LC_UUID);
+
+		MachOBuildVersion buildversion = img.getBuildVersion();
+		assertEquals(buildversion.getPlatform(), MachOBuildVersion.PLATFORM_IOS);
+		assertEquals(buildversion.getPlatformName(), "ios");
+		assertEquals(buildversion.getMinOsVersionString(), "14.2.0");
+		assertEquals(buildversion.getSdkVersionString(), "17.0.1");
+
+		MachOSegment text = img.getSegment("__TEXT");
+		assertEquals(text.getVmAddress(), 0x4000L);
+		assertEquals(text.getSectionCount(), 2);
+		assertEquals(text.getMaxSectionAlign(), 4);
+		assertNull(img.getSegment("__DATA"));
+
+		//the same result from memory
+		MachOImage memimg = MachOFile.parse(ByteBuffer.wrap(arm64bytes)).getImages().get(0);
+		assertEquals(memimg.getUUID(), DYLIB_UUID);
+		assertEquals(memimg.getLinkedLibraries(), img.getLinkedLibraries());
+
+		MachOImage armv7img = MachOFile.read(armv7).getImages().get(0);
+		assertEquals(armv7img.getArchitecture(), "armv7");
+		assertFalse(armv7img.is64());
+		assertNull(armv7img.getUUID());
+		assertEquals(armv7img.getBuildVersion(),
+				new MachOBuildVersion(MachOBuildVersion.PLATFORM_IOS, 0x0a0300, 0x0b0000));
+		assertEquals(armv7img.getAlign(), 12);
+
+		//universal
+		Path fat = dir.resolve("fat");
+		FatBinaryWriter.write(Arrays.asList(FatBinaryWriter.readSlices(x8664).get(0),
+				FatBinaryWriter.readSlices(arm64).get(0)), fat);
+		MachOFile fatfile = MachOFile.read(fat);
+		assertTrue(fatfile.isFat());
+		assertFalse(fatfile.isFat64());
+		assertEquals(fatfile.getArchitectures(), Arrays.asList("x86_64", "arm64"));
+		MachOImage fatarm64 = fatfile.getImage("arm64");
+		assertEquals(fatarm64.getOffset(), 0x8000L);
+		assertEquals(fatarm64.getUUID(), DYLIB_UUID);
+		assertEquals(fatarm64.getLoadCommands().get(1).getOffset(), 0x8000L + 32 + 72 + 2 * 80);
+		assertNull(fatfile.getImage("i386"));
+
+		//universal static libraries are not handled
+		byte[] fatarchive = Files.readAllBytes(fat);
+		System.arraycopy("!<arch>\n".getBytes(StandardCharsets.US_ASCII), 0, fatarchive, 0x8000, 8);
+		assertNull(MachOFile.read(write(dir, "fatarchive", fatarchive)));
+		assertNull(MachOFile.read(write(dir, "text", "not a Mach-O file".getBytes(StandardCharsets.US_ASCII))));
+
+		//mismatched slice header
+		byte[] fatmismatch = Files.readAllBytes(fat);
+		ByteBuffer.wrap(fatmismatch).putInt(8, MachOArchitectures.CPU_TYPE_X86);
+		try {
+			MachOFile.read(write(dir, "fatmismatch", fatmismatch));
+			fail("Mismatched slice was accepted.");
+		} catch (IOException e) {
+		}
+
+		//architecture index
+		MachOArchitectureIndex index = new MachOArchitectureIndex();
+		index.add(arm64, arm64file);
+		index.add(x8664, MachOFile.read(x8664));
+		assertEquals(index.getArchitectures().size(), 2);
+		assertEquals(index.getImage("arm64"), img);
+		//duplicate
+		try {
+			index.add(fat, fatfile);
+			fail("Duplicate architecture was accepted.");
+		} catch (IllegalArgumentException e) {
+		}
+		//executable with dylibs
+		MachOArchitectureIndex mismatchindex = new MachOArchitectureIndex();
+		mismatchindex.add(arm64, arm64file);
+		try {
+			mismatchindex.add(armv7, MachOFile.read(armv7));
+			fail("Mismatched file type was accepted.");
+		} catch (IllegalArgumentException e) {
+		}
+		MachOArchitectureIndex.validate(fat, fatfile);
+		MachOArchitectureIndex.validate(armv7, MachOFile.read(armv7));
+
+		assertEquals(MachOArchitectures.getArchitectureName(MachOArchitectures.CPU_TYPE_ARM64, 0x80000002),
+				"arm64e");
+		assertEquals(MachOArchitectures.getArchitectureName(123, 4), "cputype(123)_cpusubtype(4)");
+	}
+
+	private static Path write(Path dir, String name, byte[] contents) throws IOException {
+		Path result = dir.resolve(name);
+		Files.write(result, contents);
+		return result;
+	}
+
+	/**
+	 * Creates a little endian 64 bit iOS dynamic library.
+	 */
+	private static byte[] createDylib(int cputype, int cpusubtype) {
+		byte[] installname = "@rpath/libtest.dylib".getBytes(StandardCharsets.UTF_8);
+		byte[] libsystem = "/usr/lib/libSystem.B.dylib".getBytes(StandardCharsets.UTF_8);
+		byte[] uikit = "/System/Library/Frameworks/UIKit.framework/UIKit".getBytes(StandardCharsets.UTF_8);
+
+		ByteBuffer buf = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+		buf.position(32);
+		int segstart = buf.position();
+		buf.putInt(MachOImage.LC_SEGMENT_64);
+		buf.putInt(72 + 2 * 80);
+		buf.put(Arrays.copyOf("__TEXT".getBytes(StandardCharsets.US_ASCII), 16));
+		buf.putLong(0x4000);
+		buf.putLong(0x1000);
+		buf.putLong(0);
+		buf.putLong(0x1000);
+		buf.putInt(5);
+		buf.putInt(5);
+		buf.putInt(2);
+		buf.putInt(0);
+		for (int align : new int[] { 2, 4 }) {
+			int sectstart = buf.position();
+			buf.putInt(sectstart + 52, align);
+			buf.position(sectstart + 80);
+		}
+		assertEquals(buf.position() - segstart, 72 + 2 * 80);
+
+		buf.putInt(MachOImage.LC_UUID);
+		buf.putInt(24);
+		buf.order(ByteOrder.BIG_ENDIAN);
+		buf.putLong(DYLIB_UUID.getMostSignificantBits());
+		buf.putLong(DYLIB_UUID.getLeastSignificantBits());
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+
+		buf.putInt(MachOImage.LC_BUILD_VERSION);
+		buf.putInt(24);
+		buf.putInt(MachOBuildVersion.PLATFORM_IOS);
+		buf.putInt(0x0e0200);
+		buf.putInt(0x110001);
+		buf.putInt(0);
+
+		putDylibCommand(buf, MachOImage.LC_ID_DYLIB, installname);
+		putDylibCommand(buf, MachOImage.LC_LOAD_DYLIB, libsystem);
+		putDylibCommand(buf, MachOImage.LC_LOAD_WEAK_DYLIB, uikit);
+		int sizeofcmds = buf.position() - 32;
+
+		buf.putInt(0, MachOFile.MH_MAGIC_64);
+		buf.putInt(4, cputype);
+		buf.putInt(8, cpusubtype);
+		buf.putInt(12, MachOImage.MH_DYLIB);
+		buf.putInt(16, 6);
+		buf.putInt(20, sizeofcmds);
+		return buf.array();
+	}
+
+	/**
+	 * Creates a little endian 32 bit executable with a minimum iOS version command.
+	 */
+	private static byte[] createExecutable32(int cputype, int cpusubtype) {
+		ByteBuffer buf = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(MachOFile.MH_MAGIC);
+		buf.putInt(cputype);
+		buf.putInt(cpusubtype);
+		buf.putInt(MachOImage.MH_EXECUTE);
+		buf.putInt(2);
+		buf.putInt(56 + 16);
+		buf.putInt(0);
+
+		buf.putInt(MachOImage.LC_SEGMENT);
+		buf.putInt(56);
+		buf.put(Arrays.copyOf("__TEXT".getBytes(StandardCharsets.US_ASCII), 16));
+		buf.putInt(0x1000);
+		buf.position(buf.position() + 56 - 28);
+
+		buf.putInt(MachOImage.LC_VERSION_MIN_IPHONEOS);
+		buf.putInt(16);
+		buf.putInt(0x0a0300);
+		buf.putInt(0x0b0000);
+		return buf.array();
+	}
+
+	private static void putDylibCommand(ByteBuffer buf, int cmd, byte[] name) {
+		//pad the name with at least one terminating zero to 8 bytes
+		int cmdsize = (24 + name.length + 8) & ~7;
+		int start = buf.position();
+		buf.putInt(cmd);
+		buf.putInt(cmdsize);
+		buf.putInt(24);
+		buf.putInt(2);
+		buf.putInt(0x10000);
+		buf.putInt(0x10000);
+		buf.put(name);
+		buf.position(start + cmdsize);
+	}
+}
@@ -0,0 +1,104 @@
+package testing.saker.apple.internals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.PlistKeyPath;
+import saker.apple.impl.plist.lib.PlistSnapshot;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class PlistKeyPathTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		PlistKeyPath domain = PlistKeyPath.parse("NSAppTransportSecurity.NSExceptionDomains.example\\.com");
+		assertEquals(domain.getComponentCount(), 3);
+		assertEquals(domain.getKey(2), "example.com");
+		assertEquals(domain.toString(), "NSAppTransportSecurity.NSExceptionDomains.example\\.com");
+
+		PlistKeyPath scheme = PlistKeyPath.parse("CFBundleURLTypes[0].CFBundleURLSchemes[12]");
+		assertEquals(scheme.getComponentCount(), 4);
+		assertTrue(scheme.isIndex(1));
+		assertEquals(scheme.getIndex(1), 0);
+		assertEquals(scheme.getKey(2), "CFBundleURLSchemes");
+		assertEquals(scheme.getIndex(3), 12);
+		assertEquals(PlistKeyPath.parse(scheme.toString()), scheme);
+		assertEquals(PlistKeyPath.parse("a\\[b"), PlistKeyPath.key("a[b"));
+
+		for (String invalid : new String[] { "", ".", "a.", ".a", "a..b", "a[", "a[x]", "a[-1]", "a[0]b", "a\\" }) {
+			try {
+				PlistKeyPath.parse(invalid);
+				fail("Parsed: " + invalid);
+			} catch (IllegalArgumentException e) {
+			}
+		}
+
+		//array indexes are ordered numerically
+		assertTrue(PlistKeyPath.parse("A[2]").compareTo(PlistKeyPath.parse("A[10]")) < 0);
+		assertTrue(PlistKeyPath.parse("A[10]").compareTo(PlistKeyPath.parse("A[2].b")) > 0);
+		assertTrue(PlistKeyPath.parse("A").compareTo(PlistKeyPath.parse("A[0]")) < 0);
+		assertTrue(PlistKeyPath.parse("A[0]").compareTo(PlistKeyPath.parse("A.b")) < 0);
+		assertTrue(PlistKeyPath.parse("A.b").compareTo(PlistKeyPath.parse("B")) < 0);
+		assertEquals(PlistKeyPath.parse("A[1].b").compareTo(PlistKeyPath.parse("A[1].b")), 0);
+
+		TreeMap<String, Object> urltype = new TreeMap<>();
+		urltype.put("CFBundleURLSchemes", new Object[] { "first", "second" });
+		TreeMap<String, Object> contents = new TreeMap<>();
+		contents.put("CFBundleName", "App");
+		contents.put("CFBundleURLTypes", new Object[] { urltype });
+
+		PlistSnapshot snapshot;
+		try (Plist plist = Plist.createWithContents(contents, Plist.BACKEND_JAVA)) {
+			snapshot = PlistSnapshot.readFrom(ByteBuffer.wrap(plist.serialize(Plist.FORMAT_BINARY)));
+		}
+		try (Plist plist = snapshot.open()) {
+			Map<PlistKeyPath, Object> patch = new LinkedHashMap<>();
+			patch.put(domain, true);
+			patch.put(PlistKeyPath.parse("CFBundleURLTypes[0].CFBundleURLSchemes[0]"), null);
+			patch.put(PlistKeyPath.parse("CFBundleURLTypes[0].CFBundleURLSchemes[1]"), "appended");
+			patch.put(PlistKeyPath.parse("CFBundleURLTypes[1].CFBundleURLName"), "created");
+			patch.put(PlistKeyPath.parse("Missing.Nested"), null);
+			plist.applyKeyPathPatch(patch);
+
+			assertEquals(plist.get("CFBundleName"), "App");
+			assertEquals(((Map<?, ?>) ((Map<?, ?>) plist.get("NSAppTransportSecurity")).get("NSExceptionDomains"))
+					.get("example.com"), true);
+			Object[] urltypes = (Object[]) plist.get("CFBundleURLTypes");
+			assertEquals(urltypes.length, 2);
+			assertEquals(Arrays.toString((Object[]) ((Map<?, ?>) urltypes[0]).get("CFBundleURLSchemes")),
+					"[second, appended]");
+			assertEquals(((Map<?, ?>) urltypes[1]).get("CFBundleURLName"), "created");
+			assertEquals(plist.get("Missing"), null);
+
+			//type mismatch and out of bounds index
+			for (String invalid : new String[] { "CFBundleName.x", "CFBundleURLTypes[3]", "CFBundleURLTypes.x" }) {
+				try {
+					plist.applyKeyPathPatch(Collections.singletonMap(PlistKeyPath.parse(invalid), 1L));
+					fail("Applied: " + invalid);
+				} catch (IllegalArgumentException e) {
+				}
+			}
+		}
+		//consecutive appends in key path order
+		try (Plist plist = Plist.createWithContents(Collections.singletonMap("A", new Object[] { 0L, 1L }),
+				Plist.BACKEND_JAVA)) {
+			Map<PlistKeyPath, Object> patch = new TreeMap<>();
+			for (long i = 2; i <= 11; i++) {
+				patch.put(PlistKeyPath.parse("A[" + i + "]"), i);
+			}
+			plist.applyKeyPathPatch(patch);
+			assertEquals(Arrays.toString((Object[]) plist.get("A")), "[0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11]");
+		}
+		//the snapshot is not modified
+		assertEquals(snapshot.lookup("CFBundleURLTypes", "0", "CFBundleURLSchemes", "0"), "first");
+		assertEquals(snapshot.lookup("NSAppTransportSecurity"), null);
+	}
+
+}
@@ -0,0 +1,65 @@
+package testing.saker.apple.internals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.PlistSnapshot;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class PlistMergeTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		TreeMap<String, Object> basenested = new TreeMap<>();
+		basenested.put("kept", "base");
+		basenested.put("overridden", "base");
+		TreeMap<String, Object> base = new TreeMap<>();
+		base.put("CFBundleName", "App");
+		base.put("array", new Object[] { "a" });
+		base.put("nested", basenested);
+		base.put("type", "string");
+
+		TreeMap<String, Object> overlaynested = new TreeMap<>();
+		overlaynested.put("overridden", "overlay");
+		overlaynested.put("added", 1L);
+		TreeMap<String, Object> overlay = new TreeMap<>();
+		overlay.put("array", new Object[] { "b" });
+		overlay.put("nested", overlaynested);
+		overlay.put("type", new Object[0]);
+
+		PlistSnapshot basesnapshot = snapshot(base, Plist.FORMAT_XML);
+		PlistSnapshot overlaysnapshot = snapshot(overlay, Plist.FORMAT_BINARY);
+
+		PlistSnapshot replaced = PlistSnapshot.merge(Arrays.asList(basesnapshot, overlaysnapshot), false);
+		assertEquals(replaced.getFormat(), Plist.FORMAT_XML);
+		assertEquals(replaced.lookup("CFBundleName"), "App");
+		assertEquals(Arrays.toString((Object[]) replaced.lookup("array")), "[b]");
+		assertEquals(replaced.lookup("nested", "kept"), "base");
+		assertEquals(replaced.lookup("nested", "overridden"), "overlay");
+		assertEquals(replaced.lookup("nested", "added"), 1L);
+		assertEquals(Arrays.toString((Object[]) replaced.lookup("type")), "[]");
+
+		PlistSnapshot appended = PlistSnapshot.merge(Arrays.asList(basesnapshot, overlaysnapshot), true);
+		assertEquals(Arrays.toString((Object[]) appended.lookup("array")), "[a, b]");
+
+		//the inputs are not modified
+		assertEquals(Arrays.toString((Object[]) basesnapshot.lookup("array")), "[a]");
+		assertEquals(basesnapshot.lookup("nested"), basenested);
+		try (Plist plist = appended.open()) {
+			plist.set("CFBundleName", "Modified");
+		}
+		assertEquals(basesnapshot.lookup("CFBundleName"), "App");
+	}
+
+	private static PlistSnapshot snapshot(Map<String, Object> contents, int format) throws Exception {
+		try (Plist plist = Plist.createWithContents(contents, Plist.BACKEND_JAVA)) {
+			return PlistSnapshot.readFrom(ByteBuffer.wrap(plist.serialize(format)));
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package testing.saker.apple.internals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import saker.apple.impl.plist.PlistValueOption;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class PlistValueOptionSerializationTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Map<String, PlistValueOption> nested = new TreeMap<>();
+		nested.put("CFBundleURLName", PlistValueOption.create("com.example"));
+		nested.put("Negative", PlistValueOption.create(-123456789012L));
+
+		TreeMap<String, PlistValueOption> values = new TreeMap<>();
+		values.put("CFBundleName", PlistValueOption.create("com.example"));
+		values.put("LSRequiresIPhoneOS", PlistValueOption.create(true));
+		values.put("Disabled", PlistValueOption.create(false));
+		values.put("Number", PlistValueOption.create(Long.MIN_VALUE));
+		values.put("Double", PlistValueOption.create(1.5));
+		values.put("Array", PlistValueOption.create(Arrays.asList(PlistValueOption.create("com.example"),
+				PlistValueOption.create(nested), PlistValueOption.create(Arrays.asList()))));
+		values.put("Removed", null);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			PlistValueOption.writeExternalValues(oos, values);
+			PlistValueOption.writeExternalValues(oos, null);
+			oos.writeObject(values.get("Array"));
+		}
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+			NavigableMap<String, PlistValueOption> read = PlistValueOption.readExternalValues(ois);
+			assertEquals(read, values);
+			assertTrue(read.containsKey("Removed"));
+			assertEquals(PlistValueOption.readExternalValues(ois), null);
+			assertEquals(ois.readObject(), values.get("Array"));
+		}
+	}
+
+}
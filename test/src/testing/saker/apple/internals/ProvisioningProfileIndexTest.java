@@ -0,0 +1,113 @@
+package testing.saker.apple.internals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import saker.apple.impl.iphoneos.sign.ProvisioningProfileIndex;
+import saker.apple.impl.iphoneos.sign.SigningIndex;
+import saker.apple.impl.iphoneos.sign.SigningSelection;
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+import testing.saker.build.tests.EnvironmentTestCase;
+
+@SakerTest
+public class ProvisioningProfileIndexTest extends SakerTestCase {
+	private static final String FINGERPRINT_TEST = "66794743EDC8BBB86D0E7C03096E96AE93C930BF";
+	private static final String FINGERPRINT_OTHER = "010DD0620280D49F0B454BA60D768393C5EECAA4";
+
+	//2025-01-01T00:00:00Z
+	private static final long CURRENT_TIME = 1735689600000L;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path workingdir = getWorkingDirectory();
+
+		NavigableMap<String, String> identities = SigningIndex.parseFindIdentityOutput(
+				LocalFileProvider.getInstance().getAllBytes(workingdir.resolve("find-identity-output")));
+		assertEquals(identities.size(), 2);
+		assertEquals(identities.get(FINGERPRINT_TEST), "Apple Development: saker.apple test signer (TEAMID)");
+		assertEquals(identities.get("0123456789ABCDEF0123456789ABCDEF01234567"),
+				"Apple Distribution: Example (TEAMID)");
+
+		assertEquals(ProvisioningProfileIndex.getBundleIdentifierMatchSpecificity("TEAMID.*", "com.example.app"), 0);
+		assertEquals(ProvisioningProfileIndex.getBundleIdentifierMatchSpecificity("TEAMID.com.example.*",
+				"com.example.app"), "com.example.".length());
+		assertEquals(ProvisioningProfileIndex.getBundleIdentifierMatchSpecificity("TEAMID.com.example.app",
+				"com.example.app"), Integer.MAX_VALUE);
+		assertEquals(ProvisioningProfileIndex.getBundleIdentifierMatchSpecificity("TEAMID.com.example.app",
+				"com.example.app2"), -1);
+		assertEquals(ProvisioningProfileIndex.getBundleIdentifierMatchSpecificity("TEAMID.com.other.*",
+				"com.example.app"), -1);
+
+		Path dir = Files.createTempDirectory("saker.apple-profiles");
+		try {
+			try (Stream<Path> files = Files.list(workingdir.resolve("profiles"))) {
+				for (Path p : (Iterable<Path>) files::iterator) {
+					Files.copy(p, dir.resolve(p.getFileName()));
+				}
+			}
+			ProvisioningProfileIndex index = new ProvisioningProfileIndex(dir);
+			Collection<ProvisioningProfileIndex.Entry> profiles = index.getProfiles();
+			//the invalid profile and the other file are not part of the index
+			assertEquals(profiles.size(), 5);
+
+			//the other profile expires later
+			assertEquals(selectName(profiles, "com.example.app", null), "othercert.mobileprovision");
+			assertEquals(selectName(profiles, "com.example.app", Collections.singleton(FINGERPRINT_TEST)),
+					"exact.mobileprovision");
+			assertEquals(selectName(profiles, "com.example.app", Collections.singleton(FINGERPRINT_OTHER)),
+					"othercert.mobileprovision");
+			assertEquals(selectName(profiles, "com.example.other", null), "wildcard.mobileprovision");
+			assertEquals(selectName(profiles, "org.example", null), "any.mobileprovision");
+			assertEquals(selectName(profiles, "org.example", Collections.singleton(FINGERPRINT_OTHER)), null);
+
+			//only expired and later profiles remain after 2030
+			assertEquals(ProvisioningProfileIndex.select(profiles, "com.example.app",
+					Collections.singleton(FINGERPRINT_TEST), 1900000000000L).getPath().getFileName().toString(),
+					"wildcard.mobileprovision");
+
+			//the index is updated when the directory is modified
+			Files.delete(dir.resolve("exact.mobileprovision"));
+			Files.setLastModifiedTime(dir, FileTime.fromMillis(Files.getLastModifiedTime(dir).toMillis() + 2000));
+			profiles = index.getProfiles();
+			assertEquals(profiles.size(), 4);
+			assertEquals(selectName(profiles, "com.example.app", Collections.singleton(FINGERPRINT_TEST)),
+					"wildcard.mobileprovision");
+
+			//the identity is selected based on the certificates of the profile when specified by fingerprint
+			SigningIndex signingindex = new SigningIndex(index, dir.resolve("keychains"));
+			SigningSelection selection = signingindex.select("com.example.app", FINGERPRINT_OTHER.toLowerCase(),
+					null, CURRENT_TIME);
+			assertEquals(selection.getProvisioningProfilePath(),
+					SakerPath.valueOf(dir.resolve("othercert.mobileprovision")));
+			assertEquals(selection.getSigningIdentity(), FINGERPRINT_OTHER.toLowerCase());
+		} finally {
+			try (Stream<Path> files = Files.walk(dir)) {
+				for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(p);
+				}
+			}
+		}
+	}
+
+	private static String selectName(Collection<ProvisioningProfileIndex.Entry> profiles, String bundleid,
+			Set<String> fingerprints) {
+		ProvisioningProfileIndex.Entry entry = ProvisioningProfileIndex.select(profiles, bundleid, fingerprints,
+				CURRENT_TIME);
+		return entry == null ? null : entry.getPath().getFileName().toString();
+	}
+
+	private Path getWorkingDirectory() {
+		return EnvironmentTestCase.getTestingBaseWorkingDirectory().resolve(getClass().getName().replace('.', '/'));
+	}
+}
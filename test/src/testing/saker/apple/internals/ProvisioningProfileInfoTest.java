@@ -0,0 +1,69 @@
+package testing.saker.apple.internals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import saker.apple.impl.iphoneos.sign.ProvisioningProfileInfo;
+import saker.apple.impl.plist.lib.Plist;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+import testing.saker.build.tests.EnvironmentTestCase;
+
+@SakerTest
+public class ProvisioningProfileInfoTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		//test.mobileprovision is signed with the same self-signed certificate that is in the DeveloperCertificates
+		//the default plist backend is native if the library is available, the decoding shouldn't depend on it
+		byte[] bytes = Files.readAllBytes(getWorkingDirectory().resolve("test.mobileprovision"));
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		ProvisioningProfileInfo info = ProvisioningProfileInfo.decode(buffer);
+		assertEquals(buffer.position(), 0);
+
+		assertEquals(info.getApplicationIdentifier(), "TEAMID.com.example.app");
+		assertEquals(info.getTeamIdentifier(), "TEAMID");
+		//2030-01-02T03:04:05Z
+		assertEquals(info.getExpirationDate(), 1893553445000L);
+		assertEquals(info.getCertificateFingerprints(), Arrays.asList("66794743EDC8BBB86D0E7C03096E96AE93C930BF"));
+
+		assertXcent(info.getXcentBytes(), Plist.BACKEND_JAVA);
+		if (Plist.getDefaultBackend() == Plist.BACKEND_NATIVE) {
+			assertXcent(info.getXcentBytes(), Plist.BACKEND_NATIVE);
+		}
+
+		assertTrue(info.isSameProfileHash(ProvisioningProfileInfo.hash(buffer)));
+		byte[] modified = bytes.clone();
+		modified[modified.length - 1] ^= 1;
+		assertFalse(info.isSameProfileHash(ProvisioningProfileInfo.hash(ByteBuffer.wrap(modified))));
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeObject(info);
+		}
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+			ProvisioningProfileInfo read = (ProvisioningProfileInfo) ois.readObject();
+			assertEquals(read, info);
+			assertTrue(Arrays.equals(read.getXcentBytes(), info.getXcentBytes()));
+		}
+	}
+
+	private static void assertXcent(byte[] xcentbytes, int backend) throws Exception {
+		try (Plist xcent = Plist.readFrom(ByteBuffer.wrap(xcentbytes), backend)) {
+			assertEquals(xcent.get("application-identifier"), "TEAMID.com.example.app");
+			assertEquals(xcent.get("get-task-allow"), true);
+			assertEquals(xcent.get("Name"), null);
+		}
+	}
+
+	private Path getWorkingDirectory() {
+		return EnvironmentTestCase.getTestingBaseWorkingDirectory().resolve(getClass().getName().replace('.', '/'));
+	}
+}
@@ -0,0 +1,147 @@
+package testing.saker.apple.internals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import saker.apple.api.SakerAppleUtils;
+import saker.apple.impl.SakerAppleImplUtils;
+import saker.apple.impl.lipo.LipoCreateWorkerTaskFactory;
+import saker.apple.impl.lipo.LipoThinWorkerTaskFactory;
+import saker.apple.impl.plist.ConvertPlistWorkerTaskFactory;
+import saker.apple.impl.plist.InsertPlistWorkerTaskFactory;
+import saker.apple.impl.strip.BatchStripWorkerTaskFactory;
+import saker.apple.impl.strip.StripWorkerTaskFactory;
+import saker.build.file.path.SakerPath;
+import saker.build.task.TaskExecutionEnvironmentSelector;
+import saker.build.task.TaskFactory;
+import saker.sdk.support.api.SDKDescription;
+import saker.sdk.support.api.SDKSupportUtils;
+import saker.std.api.file.location.ExecutionFileLocation;
+import saker.std.api.file.location.FileLocation;
+import saker.std.api.file.location.LocalFileLocation;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+/**
+ * Tests the remote dispatch settings of the worker tasks.
+ * <p>
+ * Running the tasks on multiple daemons requires a build cluster environment, which is not available to the tests of
+ * this repository. The test checks that the capability is only reported for execution file inputs, and that it is
+ * kept when the task factory is transferred to a cluster.
+ * <p>
+ * The tasks that use SDKs must select a cluster that has them when they are dispatched.
+ */
+@SakerTest
+public class RemoteDispatchableWorkerTaskTest extends SakerTestCase {
+
+	//the selector of a task that can run anywhere
+	private static final TaskExecutionEnvironmentSelector DEFAULT_SELECTOR = ((TaskFactory<?>) executioncontext -> null)
+			.getExecutionEnvironmentSelector();
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		FileLocation execinput = ExecutionFileLocation.create(SakerPath.valueOf("wd:/input"));
+		FileLocation localinput = LocalFileLocation.create(SakerPath.valueOf("/local/input"));
+
+		assertTrue(SakerAppleImplUtils.isRemoteDispatchableInputs(Collections.singleton(execinput)));
+		assertTrue(SakerAppleImplUtils.isRemoteDispatchableInputs(Arrays.asList(execinput, null)));
+		assertFalse(SakerAppleImplUtils.isRemoteDispatchableInputs(Arrays.asList(execinput, localinput)));
+
+		StripWorkerTaskFactory strip = new StripWorkerTaskFactory(execinput);
+		assertNotDispatchable(strip);
+		strip.setRemoteDispatchable(true);
+		assertDispatchable(strip);
+
+		ConvertPlistWorkerTaskFactory convert = new ConvertPlistWorkerTaskFactory(execinput, "xml1");
+		assertNotDispatchable(convert);
+		convert.setRemoteDispatchable(true);
+		assertDispatchable(convert);
+
+		LipoCreateWorkerTaskFactory lipo = new LipoCreateWorkerTaskFactory(
+				Arrays.asList(execinput, ExecutionFileLocation.create(SakerPath.valueOf("wd:/input2"))));
+		assertNotDispatchable(lipo);
+		lipo.setRemoteDispatchable(true);
+		assertDispatchable(lipo);
+
+		testSDKSelectors(execinput);
+	}
+
+	private static void testSDKSelectors(FileLocation execinput) throws Exception {
+		NavigableMap<String, SDKDescription> sdks = new TreeMap<>(SDKSupportUtils.getSDKNameComparator());
+		sdks.put(SakerAppleUtils.SDK_NAME_XCODE, SakerAppleUtils.getDefaultXcodeSDKDescription());
+		TaskExecutionEnvironmentSelector sdkselector = SDKSupportUtils
+				.getSDKBasedClusterExecutionEnvironmentSelector(sdks.values());
+		assertFalse(sdkselector.equals(DEFAULT_SELECTOR));
+
+		StripWorkerTaskFactory strip = new StripWorkerTaskFactory(execinput);
+		strip.setSDKDescriptions(sdks);
+		assertEquals(strip.getExecutionEnvironmentSelector(), DEFAULT_SELECTOR);
+		strip.setRemoteDispatchable(true);
+		assertEquals(strip.getExecutionEnvironmentSelector(), sdkselector);
+
+		BatchStripWorkerTaskFactory batchstrip = new BatchStripWorkerTaskFactory(
+				new TreeMap<>(Collections.singletonMap(SakerPath.valueOf("input"), execinput)));
+		batchstrip.setSDKDescriptions(sdks);
+		assertEquals(batchstrip.getExecutionEnvironmentSelector(), DEFAULT_SELECTOR);
+		batchstrip.setRemoteDispatchable(true);
+		assertEquals(batchstrip.getExecutionEnvironmentSelector(), sdkselector);
+
+		//the lipo tool is still needed for the non Mach-O inputs when the in-process writer is used
+		LipoCreateWorkerTaskFactory lipo = new LipoCreateWorkerTaskFactory(Collections.singletonList(execinput));
+		lipo.setSDKDescriptions(sdks);
+		assertEquals(lipo.getExecutionEnvironmentSelector(), DEFAULT_SELECTOR);
+		lipo.setRemoteDispatchable(true);
+		assertEquals(lipo.getExecutionEnvironmentSelector(), sdkselector);
+		lipo.setUseLipoTool(false);
+		assertEquals(lipo.getExecutionEnvironmentSelector(), sdkselector);
+
+		LipoThinWorkerTaskFactory thin = new LipoThinWorkerTaskFactory(execinput, Collections.singleton("arm64"));
+		thin.setSDKDescriptions(sdks);
+		assertEquals(thin.getExecutionEnvironmentSelector(), DEFAULT_SELECTOR);
+		thin.setRemoteDispatchable(true);
+		assertEquals(thin.getExecutionEnvironmentSelector(), sdkselector);
+		thin.setUseLipoTool(false);
+		assertEquals(thin.getExecutionEnvironmentSelector(), sdkselector);
+
+		InsertPlistWorkerTaskFactory insert = new InsertPlistWorkerTaskFactory(execinput, "xml1",
+				Collections.emptyNavigableMap());
+		insert.setSdkDescriptions(sdks);
+		assertEquals(insert.getExecutionEnvironmentSelector(), DEFAULT_SELECTOR);
+		insert.setRemoteDispatchable(true);
+		assertEquals(insert.getExecutionEnvironmentSelector(), sdkselector);
+
+		//no SDKs are used
+		ConvertPlistWorkerTaskFactory convert = new ConvertPlistWorkerTaskFactory(execinput, "xml1");
+		convert.setRemoteDispatchable(true);
+		assertEquals(convert.getExecutionEnvironmentSelector(), DEFAULT_SELECTOR);
+		StripWorkerTaskFactory nosdkstrip = new StripWorkerTaskFactory(execinput);
+		nosdkstrip.setRemoteDispatchable(true);
+		assertEquals(nosdkstrip.getExecutionEnvironmentSelector(), DEFAULT_SELECTOR);
+	}
+
+	private static void assertNotDispatchable(TaskFactory<?> factory) throws Exception {
+		assertFalse(factory.getCapabilities().contains(TaskFactory.CAPABILITY_REMOTE_DISPATCHABLE));
+	}
+
+	private static void assertDispatchable(TaskFactory<?> factory) throws Exception {
+		assertTrue(factory.getCapabilities().contains(TaskFactory.CAPABILITY_REMOTE_DISPATCHABLE));
+
+		//the factory is serialized when it is sent to a cluster
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeObject(factory);
+		}
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+			TaskFactory<?> read = (TaskFactory<?>) ois.readObject();
+			assertEquals(read, factory);
+			assertTrue(read.getCapabilities().contains(TaskFactory.CAPABILITY_REMOTE_DISPATCHABLE));
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package testing.saker.apple.internals;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.apple.impl.plist.PlistContentDescriptor;
+import saker.apple.impl.plist.lib.Plist;
+import saker.apple.impl.plist.lib.XmlPlistStreamTransformer;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class XmlPlistStreamTransformerTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		TreeMap<String, Object> nested = new TreeMap<>();
+		nested.put("x", "y");
+		nested.put("empty", new TreeMap<>());
+
+		TreeMap<String, Object> contents = new TreeMap<>();
+		contents.put("a", "first");
+		contents.put("c", new Object[] { 1L, "two", new Object[0] });
+		contents.put("e", nested);
+		contents.put("g", "removed");
+
+		byte[] xml;
+		try (Plist plist = Plist.createWithContents(contents, Plist.BACKEND_JAVA)) {
+			xml = plist.serialize(Plist.FORMAT_XML);
+			try (BufferedInputStream is = new BufferedInputStream(new ByteArrayInputStream(xml))) {
+				assertFalse(XmlPlistStreamTransformer.isBinaryPlist(is));
+			}
+			try (BufferedInputStream is = new BufferedInputStream(
+					new ByteArrayInputStream(plist.serialize(Plist.FORMAT_BINARY)))) {
+				assertTrue(XmlPlistStreamTransformer.isBinaryPlist(is));
+			}
+		}
+
+		//no modifications yield the same output as the in-memory serialization
+		assertEquals(transform(xml, null), new String(xml, StandardCharsets.UTF_8));
+
+		TreeMap<String, Object> modifications = new TreeMap<>();
+		modifications.put("b", "inserted");
+		modifications.put("c", true);
+		modifications.put("g", null);
+		modifications.put("z", 123L);
+
+		TreeMap<String, Object> expected = new TreeMap<>(contents);
+		expected.put("b", "inserted");
+		expected.put("c", true);
+		expected.remove("g");
+		expected.put("z", 123L);
+		byte[] expectedhash;
+		try (Plist plist = Plist.createWithContents(expected, Plist.BACKEND_JAVA)) {
+			assertEquals(transform(xml, modifications),
+					new String(plist.serialize(Plist.FORMAT_XML), StandardCharsets.UTF_8));
+			expectedhash = plist.getContentHash();
+		}
+		assertTrue(Arrays.equals(transformHash(xml, modifications), expectedhash));
+
+		//same contents with the keys in different order, the output keeps the input order
+		byte[] reorderedxml = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<plist version=\"1.0\">\n<dict>\n"
+				+ "<key>g</key><string>removed</string>\n"
+				+ "<key>e</key><dict><key>x</key><string>y</string><key>empty</key><dict/></dict>\n"
+				+ "<key>c</key><array><integer>1</integer><string>two</string><array/></array>\n"
+				+ "<key>a</key><string>first</string>\n" + "</dict>\n</plist>\n").getBytes(StandardCharsets.UTF_8);
+		assertFalse(transform(reorderedxml, modifications).equals(transform(xml, modifications)));
+		byte[] reorderedhash = transformHash(reorderedxml, modifications);
+		assertTrue(Arrays.equals(reorderedhash, expectedhash));
+		assertEquals(PlistContentDescriptor.createWithHash(reorderedhash, Plist.FORMAT_XML),
+				PlistContentDescriptor.createWithHash(transformHash(xml, modifications), Plist.FORMAT_XML));
+		assertTrue(Arrays.equals(transformHash(reorderedxml, null), transformHash(xml, null)));
+	}
+
+	private static String transform(byte[] xml, TreeMap<String, Object> modifications) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		XmlPlistStreamTransformer.transform(new ByteArrayInputStream(xml), out, modifications);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] transformHash(byte[] xml, TreeMap<String, Object> modifications) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] hash = XmlPlistStreamTransformer.transform(new ByteArrayInputStream(xml), out, modifications);
+		try (Plist written = Plist.readFrom(new ByteArrayInputStream(out.toByteArray()), Plist.BACKEND_JAVA)) {
+			//the streamed hash is the same as the hash of the written plist
+			assertTrue(Arrays.equals(hash, written.getContentHash()));
+		}
+		return hash;
+	}
+
+}